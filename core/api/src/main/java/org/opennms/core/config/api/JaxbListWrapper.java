@@ -71,6 +71,7 @@ public class JaxbListWrapper<T> implements Serializable, Iterable<T> {
 
     private List<T> m_objects = new ArrayList<>();
     private Integer m_totalCount;
+    private boolean m_totalCountUnknown = false;
     private Integer m_offset = 0;
 
     public List<T> getObjects() {
@@ -114,12 +115,29 @@ public class JaxbListWrapper<T> implements Serializable, Iterable<T> {
         return m_objects.size();
     }
     
+    /**
+     * @return the total count, which defaults to the count when it was never set,
+     * or null when it was explicitly marked as unknown
+     */
     @XmlAttribute(name="totalCount")
     public Integer getTotalCount() {
-        return m_totalCount == null? getCount() : m_totalCount;
+        if (m_totalCount == null) {
+            return m_totalCountUnknown ? null : getCount();
+        }
+        return m_totalCount;
     }
     public void setTotalCount(final Integer totalCount) {
         m_totalCount = totalCount;
+        m_totalCountUnknown = false;
+    }
+
+    /**
+     * Marks the total count as unknown, i.e. it was not calculated, so that it is
+     * omitted rather than reported as the number of objects in this list.
+     */
+    public void setTotalCountUnknown() {
+        m_totalCount = null;
+        m_totalCountUnknown = true;
     }
 
     @XmlAttribute(name="offset")
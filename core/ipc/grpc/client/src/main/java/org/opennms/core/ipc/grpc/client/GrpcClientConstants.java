@@ -41,4 +41,9 @@ public interface GrpcClientConstants {
     String CLIENT_CERTIFICATE_FILE_PATH = "client.cert.filepath";
     String CLIENT_PRIVATE_KEY_FILE_PATH = "client.private.key.filepath";
     String TRUST_CERTIFICATE_FILE_PATH = "trust.cert.filepath";
+    String GRPC_COMPRESSION = "compression";
+    String SINK_READY_TIMEOUT = "sink.ready.timeout";
+    long DEFAULT_SINK_READY_TIMEOUT = 1000;
+    String SINK_BATCH_SIZE = "sink.batch.size";
+    int DEFAULT_SINK_BATCH_SIZE = 1;
 }
@@ -33,10 +33,15 @@ import static org.opennms.core.ipc.grpc.client.GrpcClientConstants.CLIENT_PRIVAT
 import static org.opennms.core.ipc.grpc.client.GrpcClientConstants.DEFAULT_GRPC_HOST;
 import static org.opennms.core.ipc.grpc.client.GrpcClientConstants.DEFAULT_GRPC_PORT;
 import static org.opennms.core.ipc.grpc.client.GrpcClientConstants.DEFAULT_MESSAGE_SIZE;
+import static org.opennms.core.ipc.grpc.client.GrpcClientConstants.DEFAULT_SINK_BATCH_SIZE;
+import static org.opennms.core.ipc.grpc.client.GrpcClientConstants.DEFAULT_SINK_READY_TIMEOUT;
+import static org.opennms.core.ipc.grpc.client.GrpcClientConstants.GRPC_COMPRESSION;
 import static org.opennms.core.ipc.grpc.client.GrpcClientConstants.GRPC_CLIENT_PID;
 import static org.opennms.core.ipc.grpc.client.GrpcClientConstants.GRPC_HOST;
 import static org.opennms.core.ipc.grpc.client.GrpcClientConstants.GRPC_MAX_INBOUND_SIZE;
 import static org.opennms.core.ipc.grpc.client.GrpcClientConstants.GRPC_PORT;
+import static org.opennms.core.ipc.grpc.client.GrpcClientConstants.SINK_BATCH_SIZE;
+import static org.opennms.core.ipc.grpc.client.GrpcClientConstants.SINK_READY_TIMEOUT;
 import static org.opennms.core.ipc.grpc.client.GrpcClientConstants.TLS_ENABLED;
 import static org.opennms.core.ipc.grpc.client.GrpcClientConstants.TRUST_CERTIFICATE_FILE_PATH;
 import static org.opennms.core.ipc.sink.api.Message.SINK_METRIC_PRODUCER_DOMAIN;
@@ -49,12 +54,15 @@ import static org.opennms.core.tracing.api.TracerConstants.TAG_SYSTEM_ID;
 import java.io.File;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -62,14 +70,17 @@ import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 
 import javax.net.ssl.SSLException;
 
 import org.opennms.core.ipc.grpc.common.ConfigUtils;
+import org.opennms.core.ipc.grpc.common.Empty;
 import org.opennms.core.ipc.grpc.common.OpenNMSIpcGrpc;
 import org.opennms.core.ipc.grpc.common.RpcRequestProto;
 import org.opennms.core.ipc.grpc.common.RpcResponseProto;
 import org.opennms.core.ipc.grpc.common.SinkMessage;
+import org.opennms.core.ipc.grpc.common.SinkMessageBatch;
 import org.opennms.core.ipc.sink.api.Message;
 import org.opennms.core.ipc.sink.api.MessageConsumerManager;
 import org.opennms.core.ipc.sink.api.SinkModule;
@@ -88,17 +99,25 @@ import org.osgi.service.cm.ConfigurationAdmin;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Meter;
 import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
 import com.google.common.base.Strings;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.google.protobuf.ByteString;
 
+import io.grpc.CompressorRegistry;
 import io.grpc.ConnectivityState;
 import io.grpc.ManagedChannel;
+import io.grpc.Status;
 import io.grpc.netty.shaded.io.grpc.netty.GrpcSslContexts;
 import io.grpc.netty.shaded.io.grpc.netty.NegotiationType;
 import io.grpc.netty.shaded.io.grpc.netty.NettyChannelBuilder;
 import io.grpc.netty.shaded.io.netty.handler.ssl.SslContextBuilder;
+import io.grpc.stub.ClientCallStreamObserver;
+import io.grpc.stub.ClientResponseObserver;
 import io.grpc.stub.StreamObserver;
 import io.opentracing.Span;
 import io.opentracing.SpanContext;
@@ -116,14 +135,21 @@ import io.opentracing.util.GlobalTracer;
  * thread. Once the request is executed, the response sender call is synchronized as writing to observer is not thread-safe.
  * Minion also sends it's headers (SystemId/location) to OpenNMS whenever the stub is initialized.
  * <p>
- * Sink: Sink runs in uni-directional streaming mode. If the sink module is async and OpenNMS Server is not active, the
- * messages are buffered and blocked till minion is able to connect to OpenNMS.
+ * Sink: Sink runs in uni-directional streaming mode. Each sink module gets it's own stream so that a busy module can't
+ * starve the others, and messages are only written when the stream is ready to accept them. If the sink module is async
+ * and OpenNMS Server is not active or not keeping up, the messages are buffered and blocked till minion is able to send.
+ * When sink.batch.size is above 1, the messages that pile up while a stream is not ready are written as one batch.
  */
 public class MinionGrpcClient extends AbstractMessageDispatcherFactory<String> {
 
     private static final Logger LOG = LoggerFactory.getLogger(MinionGrpcClient.class);
     private static final long SINK_BLOCKING_TIMEOUT = 1000;
     private static final int SINK_BLOCKING_THREAD_POOL_SIZE = 100;
+    private static final String METRIC_SINK_BYTES_SENT = "grpcBytesSent";
+    private static final String METRIC_SINK_READY_WAIT = "grpcReadyWait";
+    private static final String METRIC_SINK_PENDING = "grpcPending";
+    private static final String METRIC_SINK_DROPPED = "grpcDropped";
+    private static final String METRIC_SINK_BATCH_SIZE = "grpcBatchSize";
     private ManagedChannel channel;
     private OpenNMSIpcGrpc.OpenNMSIpcStub asyncStub;
     private Properties properties;
@@ -131,7 +157,11 @@ public class MinionGrpcClient extends AbstractMessageDispatcherFactory<String> {
     private MinionIdentity minionIdentity;
     private ConfigurationAdmin configAdmin;
     private StreamObserver<RpcResponseProto> rpcStream;
-    private StreamObserver<SinkMessage> sinkStream;
+    private long sinkReadyTimeout;
+    private int sinkBatchSize;
+    private int sinkBatchMaxBytes;
+    // Cleared when the server rejects batch streams, reset on reconnect as the server may have been upgraded.
+    private volatile boolean sinkBatchStreamingSupported = true;
     private ConnectivityState currentChannelState;
     private MetricRegistry metrics;
     private TracerRegistry tracerRegistry;
@@ -145,6 +175,8 @@ public class MinionGrpcClient extends AbstractMessageDispatcherFactory<String> {
     private final ExecutorService requestHandlerExecutor = Executors.newCachedThreadPool(requestHandlerThreadFactory);
     // Maintain the map of RPC modules and their ID.
     private final Map<String, RpcModule<RpcRequest, RpcResponse>> registerdModules = new ConcurrentHashMap<>();
+    // Maintain the map of sink streams by module ID, streams are created on the first message of each module.
+    private final Map<String, SinkStreamHandler<?>> sinkStreamsByModuleId = new ConcurrentHashMap<>();
     // This maintains a blocking thread for each dispatch module when OpenNMS is not in active state.
     private final ScheduledExecutorService blockingSinkMessageScheduler = Executors.newScheduledThreadPool(SINK_BLOCKING_THREAD_POOL_SIZE,
             blockingSinkMessageThreadFactory);
@@ -162,6 +194,11 @@ public class MinionGrpcClient extends AbstractMessageDispatcherFactory<String> {
         int port = PropertiesUtils.getProperty(properties, GRPC_PORT, DEFAULT_GRPC_PORT);
         boolean tlsEnabled = PropertiesUtils.getProperty(properties, TLS_ENABLED, false);
         int maxInboundMessageSize = PropertiesUtils.getProperty(properties, GRPC_MAX_INBOUND_SIZE, DEFAULT_MESSAGE_SIZE);
+        String compression = PropertiesUtils.getProperty(properties, GRPC_COMPRESSION, null);
+        sinkReadyTimeout = PropertiesUtils.getProperty(properties, SINK_READY_TIMEOUT, DEFAULT_SINK_READY_TIMEOUT);
+        sinkBatchSize = Math.max(1, PropertiesUtils.getProperty(properties, SINK_BATCH_SIZE, DEFAULT_SINK_BATCH_SIZE));
+        // Leave room for the batch framing, the server applies the same limit to a whole batch.
+        sinkBatchMaxBytes = maxInboundMessageSize / 2;
 
         NettyChannelBuilder channelBuilder = NettyChannelBuilder.forAddress(host, port)
                 .keepAliveWithoutCalls(true)
@@ -178,6 +215,14 @@ public class MinionGrpcClient extends AbstractMessageDispatcherFactory<String> {
         }
 
         asyncStub = OpenNMSIpcGrpc.newStub(channel);
+        if (!Strings.isNullOrEmpty(compression)) {
+            if (CompressorRegistry.getDefaultInstance().lookupCompressor(compression) != null) {
+                asyncStub = asyncStub.withCompression(compression);
+                LOG.info("Using {} compression for gRPC", compression);
+            } else {
+                LOG.warn("Unknown gRPC compression {}, messages will be sent uncompressed", compression);
+            }
+        }
         initializeRpcStub();
         initializeSinkStub();
         if (tracerRegistry != null) {
@@ -215,13 +260,32 @@ public class MinionGrpcClient extends AbstractMessageDispatcherFactory<String> {
 
     private void initializeSinkStub() {
         if (getChannelState().equals(ConnectivityState.READY)) {
-            sinkStream = asyncStub.sinkStreaming(new EmptyMessageReceiver());
-            LOG.info("Initialized Sink stream");
+            // Streams are opened again on demand, drop the ones that were bound to the previous connection.
+            sinkStreamsByModuleId.values().forEach(SinkStreamHandler::close);
+            sinkStreamsByModuleId.clear();
+            sinkBatchStreamingSupported = true;
+            LOG.info("Initialized Sink streams");
         } else {
             LOG.warn("gRPC IPC server is not in ready state");
         }
     }
 
+    private SinkStreamHandler<?> getSinkStream(String moduleId) {
+        return sinkStreamsByModuleId.computeIfAbsent(moduleId, id -> {
+            if (sinkBatchSize > 1 && sinkBatchStreamingSupported) {
+                SinkStreamHandler<SinkMessageBatch> sinkStreamHandler = new SinkStreamHandler<>(id, sinkBatchSize,
+                        messages -> SinkMessageBatch.newBuilder().addAllMessages(messages).build());
+                asyncStub.sinkBatchStreaming(sinkStreamHandler);
+                LOG.info("Initialized Sink batch stream for module {}", id);
+                return sinkStreamHandler;
+            }
+            SinkStreamHandler<SinkMessage> sinkStreamHandler = new SinkStreamHandler<>(id, 1, messages -> messages.get(0));
+            asyncStub.sinkStreaming(sinkStreamHandler);
+            LOG.info("Initialized Sink stream for module {}", id);
+            return sinkStreamHandler;
+        });
+    }
+
 
     @SuppressWarnings({"rawtypes", "unchecked"})
     public void bind(RpcModule module) throws Exception {
@@ -257,6 +321,8 @@ public class MinionGrpcClient extends AbstractMessageDispatcherFactory<String> {
         if (rpcStream != null) {
             rpcStream.onCompleted();
         }
+        sinkStreamsByModuleId.values().forEach(SinkStreamHandler::close);
+        sinkStreamsByModuleId.clear();
         channel.shutdown();
         LOG.info("Minion at location {} with systemId {} stopped", minionIdentity.getLocation(), minionIdentity.getId());
     }
@@ -287,7 +353,7 @@ public class MinionGrpcClient extends AbstractMessageDispatcherFactory<String> {
     @Override
     public MetricRegistry getMetrics() {
         if (metrics == null) {
-            return new MetricRegistry();
+            metrics = new MetricRegistry();
         }
         return metrics;
     }
@@ -322,7 +388,7 @@ public class MinionGrpcClient extends AbstractMessageDispatcherFactory<String> {
                     .setContent(ByteString.copyFrom(sinkMessageContent));
 
             if (module.getId().equals(HEARTBEAT_MODULE_ID)) {
-                if (rpcStream == null || sinkStream == null || hasChangedToReadyState()) {
+                if (rpcStream == null || hasChangedToReadyState()) {
                     initializeSinkStub();
                     initializeRpcStub();
                 }
@@ -331,8 +397,8 @@ public class MinionGrpcClient extends AbstractMessageDispatcherFactory<String> {
             // If module has asyncpolicy, keep attempting to send message.
             if (module.getAsyncPolicy() != null) {
                 sendBlockingSinkMessage(sinkMessageBuilder.build());
-            } else {
-                sendSinkMessage(sinkMessageBuilder.build());
+            } else if (!sendSinkMessage(sinkMessageBuilder.build())) {
+                getMetrics().meter(MetricRegistry.name(module.getId(), METRIC_SINK_DROPPED)).mark();
             }
         }
     }
@@ -343,7 +409,13 @@ public class MinionGrpcClient extends AbstractMessageDispatcherFactory<String> {
             return;
         }
         //Recursively try to send sink message until it succeeds.
-        scheduleSinkMessageAfterDelay(sinkMessage);
+        Counter pending = getMetrics().counter(MetricRegistry.name(sinkMessage.getModuleId(), METRIC_SINK_PENDING));
+        pending.inc();
+        try {
+            scheduleSinkMessageAfterDelay(sinkMessage);
+        } finally {
+            pending.dec();
+        }
     }
 
     private boolean scheduleSinkMessageAfterDelay(SinkMessage sinkMessage) {
@@ -362,15 +434,15 @@ public class MinionGrpcClient extends AbstractMessageDispatcherFactory<String> {
     }
 
 
-    private synchronized boolean sendSinkMessage(SinkMessage sinkMessage) {
+    private boolean sendSinkMessage(SinkMessage sinkMessage) {
         if (getChannelState().equals(ConnectivityState.READY)) {
-            if (sinkStream != null) {
-                try {
-                    sinkStream.onNext(sinkMessage);
-                    return true;
-                } catch (Throwable e) {
-                    LOG.error("Exception while sending sinkMessage to gRPC IPC server", e);
-                }
+            try {
+                return getSinkStream(sinkMessage.getModuleId()).send(sinkMessage);
+            } catch (InterruptedException e) {
+                LOG.info("Interrupted while waiting for sink stream of module {}", sinkMessage.getModuleId());
+                Thread.currentThread().interrupt();
+            } catch (Throwable e) {
+                LOG.error("Exception while sending sinkMessage to gRPC IPC server", e);
             }
         } else {
             LOG.info("gRPC IPC server is not in ready state");
@@ -497,6 +569,178 @@ public class MinionGrpcClient extends AbstractMessageDispatcherFactory<String> {
         }
     }
 
+    /**
+     * Owns the sink stream of a single module. Writes wait for the stream to become ready instead of
+     * queueing up in the transport, so that a slow server pushes back on the dispatchers.
+     * Messages are queued before taking the stream lock, whichever thread gets to write next drains the queue
+     * into one frame of up to maxMessagesPerFrame messages.
+     *
+     * @param <T> the type of the frames written to the stream, either single messages or batches.
+     */
+    private class SinkStreamHandler<T> implements ClientResponseObserver<T, Empty> {
+
+        private final String moduleId;
+        private final int maxMessagesPerFrame;
+        private final Function<List<SinkMessage>, T> frameBuilder;
+        private final Object lock = new Object();
+        private final ConcurrentLinkedQueue<PendingSinkMessage> pendingMessages = new ConcurrentLinkedQueue<>();
+        private final Timer readyWaitTimer;
+        private final Meter bytesSent;
+        private final Histogram batchSize;
+        private ClientCallStreamObserver<T> requestStream;
+        private boolean closed = false;
+
+        private SinkStreamHandler(String moduleId, int maxMessagesPerFrame, Function<List<SinkMessage>, T> frameBuilder) {
+            this.moduleId = moduleId;
+            this.maxMessagesPerFrame = maxMessagesPerFrame;
+            this.frameBuilder = frameBuilder;
+            this.readyWaitTimer = getMetrics().timer(MetricRegistry.name(moduleId, METRIC_SINK_READY_WAIT));
+            this.bytesSent = getMetrics().meter(MetricRegistry.name(moduleId, METRIC_SINK_BYTES_SENT));
+            this.batchSize = getMetrics().histogram(MetricRegistry.name(moduleId, METRIC_SINK_BATCH_SIZE));
+        }
+
+        @Override
+        public void beforeStart(ClientCallStreamObserver<T> requestStream) {
+            this.requestStream = requestStream;
+            requestStream.setOnReadyHandler(() -> {
+                synchronized (lock) {
+                    lock.notifyAll();
+                }
+            });
+        }
+
+        /**
+         * Writing message through stream observer is not thread safe.
+         *
+         * @return false if the stream did not become ready within the timeout or was closed.
+         */
+        private boolean send(SinkMessage sinkMessage) throws InterruptedException {
+            final PendingSinkMessage pendingMessage = new PendingSinkMessage(sinkMessage);
+            pendingMessages.add(pendingMessage);
+            synchronized (lock) {
+                final long deadline = System.currentTimeMillis() + sinkReadyTimeout;
+                Timer.Context readyWait = null;
+                try {
+                    while (!pendingMessage.done && !closed) {
+                        if (requestStream.isReady()) {
+                            writePendingMessages();
+                            continue;
+                        }
+                        long remaining = deadline - System.currentTimeMillis();
+                        if (remaining <= 0) {
+                            break;
+                        }
+                        if (readyWait == null) {
+                            readyWait = readyWaitTimer.time();
+                        }
+                        lock.wait(remaining);
+                    }
+                } finally {
+                    if (readyWait != null) {
+                        readyWait.stop();
+                    }
+                }
+                if (!pendingMessage.done) {
+                    pendingMessages.remove(pendingMessage);
+                    LOG.debug("Sink stream for module {} is not ready", moduleId);
+                    return false;
+                }
+                return pendingMessage.sent;
+            }
+        }
+
+        // Called with the lock held and the stream ready.
+        private void writePendingMessages() {
+            final List<PendingSinkMessage> frame = new ArrayList<>();
+            long frameBytes = 0;
+            PendingSinkMessage next;
+            while (frame.size() < maxMessagesPerFrame && (next = pendingMessages.peek()) != null) {
+                int size = next.sinkMessage.getSerializedSize();
+                if (!frame.isEmpty() && frameBytes + size > sinkBatchMaxBytes) {
+                    break;
+                }
+                pendingMessages.poll();
+                frame.add(next);
+                frameBytes += size;
+            }
+            if (frame.isEmpty()) {
+                return;
+            }
+            final List<SinkMessage> messages = new ArrayList<>(frame.size());
+            frame.forEach(pendingMessage -> messages.add(pendingMessage.sinkMessage));
+            boolean sent = false;
+            try {
+                requestStream.onNext(frameBuilder.apply(messages));
+                bytesSent.mark(frameBytes);
+                batchSize.update(messages.size());
+                sent = true;
+            } catch (Exception e) {
+                LOG.error("Exception while sending {} sink message(s) of module {} to gRPC IPC server",
+                        messages.size(), moduleId, e);
+            } finally {
+                for (PendingSinkMessage pendingMessage : frame) {
+                    pendingMessage.sent = sent;
+                    pendingMessage.done = true;
+                }
+                lock.notifyAll();
+            }
+        }
+
+        private void close() {
+            synchronized (lock) {
+                if (!closed) {
+                    closed = true;
+                    try {
+                        requestStream.onCompleted();
+                    } catch (Exception e) {
+                        LOG.debug("Error while closing sink stream for module {}", moduleId, e);
+                    }
+                    lock.notifyAll();
+                }
+            }
+        }
+
+        @Override
+        public void onNext(Empty empty) {
+
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            if (maxMessagesPerFrame > 1 && Status.fromThrowable(throwable).getCode() == Status.Code.UNIMPLEMENTED) {
+                LOG.warn("gRPC IPC server does not support sink batches, sending single messages for module {}", moduleId);
+                sinkBatchStreamingSupported = false;
+            } else {
+                LOG.error("Error in sink streaming for module {}", moduleId, throwable);
+            }
+            onClosed();
+        }
+
+        @Override
+        public void onCompleted() {
+            onClosed();
+        }
+
+        private void onClosed() {
+            synchronized (lock) {
+                closed = true;
+                lock.notifyAll();
+            }
+            sinkStreamsByModuleId.remove(moduleId, this);
+        }
+    }
+
+    // Only accessed with the lock of the owning stream held once it has been queued.
+    private static class PendingSinkMessage {
+        private final SinkMessage sinkMessage;
+        private boolean done = false;
+        private boolean sent = false;
+
+        private PendingSinkMessage(SinkMessage sinkMessage) {
+            this.sinkMessage = sinkMessage;
+        }
+    }
+
     private class RpcMessageHandler implements StreamObserver<RpcRequestProto> {
 
         @Override
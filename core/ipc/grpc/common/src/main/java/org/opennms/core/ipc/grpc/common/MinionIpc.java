@@ -77,6 +77,11 @@ public final class MinionIpc {
   static final 
     com.google.protobuf.GeneratedMessageV3.FieldAccessorTable
       internal_static_SinkMessage_TracingInfoEntry_fieldAccessorTable;
+  static final com.google.protobuf.Descriptors.Descriptor
+    internal_static_SinkMessageBatch_descriptor;
+  static final 
+    com.google.protobuf.GeneratedMessageV3.FieldAccessorTable
+      internal_static_SinkMessageBatch_fieldAccessorTable;
 
   public static com.google.protobuf.Descriptors.FileDescriptor
       getDescriptor() {
@@ -98,16 +103,19 @@ public final class MinionIpc {
       "(\t\022\021\n\tmodule_id\030\005 \001(\t\0228\n\014tracing_info\030\006 " +
       "\003(\0132\".RpcResponseProto.TracingInfoEntry\032" +
       "2\n\020TracingInfoEntry\022\013\n\003key\030\001 \001(\t\022\r\n\005valu" +
-      "e\030\002 \001(\t:\0028\001\"\300\001\n\013SinkMessage\022\022\n\nmessage_i" +
-      "d\030\001 \001(\t\022\017\n\007content\030\002 \001(\014\022\020\n\010location\030\003 \001" +
-      "(\t\022\021\n\tmodule_id\030\004 \001(\t\0223\n\014tracing_info\030\005 " +
-      "\003(\0132\035.SinkMessage.TracingInfoEntry\0322\n\020Tr" +
-      "acingInfoEntry\022\013\n\003key\030\001 \001(\t\022\r\n\005value\030\002 \001" +
-      "(\t:\0028\0012o\n\007OnmsIpc\0229\n\014RpcStreaming\022\020.RpcR" +
-      "equestProto\032\021.RpcResponseProto\"\000(\0010\001\022)\n\r" +
-      "SinkStreaming\022\014.SinkMessage\032\006.Empty\"\000(\001B" +
-      "/\n org.opennms.core.ipc.grpc.commonB\tMin" +
-      "ionIpcP\001b\006proto3"
+      "e\030\002 \001(\t:\0028\001\"\323\001\n\013SinkMessage\022\022\n\nmessage_i" +
+      "d\030\001 \001(\t\022\017\n\007content\030\002 \001(\014\022\021\n\tsystem_id\030\003 " +
+      "\001(\t\022\020\n\010location\030\004 \001(\t\022\021\n\tmodule_id\030\005 \001(\t" +
+      "\0223\n\014tracing_info\030\006 \003(\0132\035.SinkMessage.Tra" +
+      "cingInfoEntry\0322\n\020TracingInfoEntry\022\013\n\003key" +
+      "\030\001 \001(\t\022\r\n\005value\030\002 \001(\t:\0028\001\"2\n\020SinkMessage" +
+      "Batch\022\036\n\010messages\030\001 \003(\0132\014.SinkMessage2\247\001" +
+      "\n\nOpenNMSIpc\0229\n\014RpcStreaming\022\021.RpcRespon" +
+      "seProto\032\020.RpcRequestProto\"\000(\0010\001\022)\n\rSinkS" +
+      "treaming\022\014.SinkMessage\032\006.Empty\"\000(\001\0223\n\022Si" +
+      "nkBatchStreaming\022\021.SinkMessageBatch\032\006.Em" +
+      "pty\"\000(\001B/\n org.opennms.core.ipc.grpc.com" +
+      "monB\tMinionIpcP\001b\006proto3"
     };
     descriptor = com.google.protobuf.Descriptors.FileDescriptor
       .internalBuildGeneratedFileFrom(descriptorData,
@@ -148,13 +156,19 @@ public final class MinionIpc {
     internal_static_SinkMessage_fieldAccessorTable = new
       com.google.protobuf.GeneratedMessageV3.FieldAccessorTable(
         internal_static_SinkMessage_descriptor,
-        new String[] { "MessageId", "Content", "Location", "ModuleId", "TracingInfo", });
+        new String[] { "MessageId", "Content", "SystemId", "Location", "ModuleId", "TracingInfo", });
     internal_static_SinkMessage_TracingInfoEntry_descriptor =
       internal_static_SinkMessage_descriptor.getNestedTypes().get(0);
     internal_static_SinkMessage_TracingInfoEntry_fieldAccessorTable = new
       com.google.protobuf.GeneratedMessageV3.FieldAccessorTable(
         internal_static_SinkMessage_TracingInfoEntry_descriptor,
         new String[] { "Key", "Value", });
+    internal_static_SinkMessageBatch_descriptor =
+      getDescriptor().getMessageTypes().get(4);
+    internal_static_SinkMessageBatch_fieldAccessorTable = new
+      com.google.protobuf.GeneratedMessageV3.FieldAccessorTable(
+        internal_static_SinkMessageBatch_descriptor,
+        new String[] { "Messages", });
   }
 
   // @@protoc_insertion_point(outer_class_scope)
@@ -112,6 +112,37 @@ public final class OpenNMSIpcGrpc {
     return getSinkStreamingMethod;
   }
 
+  private static volatile io.grpc.MethodDescriptor<SinkMessageBatch,
+      Empty> getSinkBatchStreamingMethod;
+
+  @io.grpc.stub.annotations.RpcMethod(
+      fullMethodName = SERVICE_NAME + '/' + "SinkBatchStreaming",
+      requestType = SinkMessageBatch.class,
+      responseType = Empty.class,
+      methodType = io.grpc.MethodDescriptor.MethodType.CLIENT_STREAMING)
+  public static io.grpc.MethodDescriptor<SinkMessageBatch,
+      Empty> getSinkBatchStreamingMethod() {
+    io.grpc.MethodDescriptor<SinkMessageBatch, Empty> getSinkBatchStreamingMethod;
+    if ((getSinkBatchStreamingMethod = OpenNMSIpcGrpc.getSinkBatchStreamingMethod) == null) {
+      synchronized (OpenNMSIpcGrpc.class) {
+        if ((getSinkBatchStreamingMethod = OpenNMSIpcGrpc.getSinkBatchStreamingMethod) == null) {
+          OpenNMSIpcGrpc.getSinkBatchStreamingMethod = getSinkBatchStreamingMethod =
+              io.grpc.MethodDescriptor.<SinkMessageBatch, Empty>newBuilder()
+              .setType(io.grpc.MethodDescriptor.MethodType.CLIENT_STREAMING)
+              .setFullMethodName(generateFullMethodName(SERVICE_NAME, "SinkBatchStreaming"))
+              .setSampledToLocalTracing(true)
+              .setRequestMarshaller(io.grpc.protobuf.ProtoUtils.marshaller(
+                  SinkMessageBatch.getDefaultInstance()))
+              .setResponseMarshaller(io.grpc.protobuf.ProtoUtils.marshaller(
+                  Empty.getDefaultInstance()))
+              .setSchemaDescriptor(new OpenNMSIpcMethodDescriptorSupplier("SinkBatchStreaming"))
+              .build();
+        }
+      }
+    }
+    return getSinkBatchStreamingMethod;
+  }
+
   /**
    * Creates a new async stub that supports all call types for the service
    */
@@ -162,6 +193,16 @@ public final class OpenNMSIpcGrpc {
       return asyncUnimplementedStreamingCall(getSinkStreamingMethod(), responseObserver);
     }
 
+    /**
+     * <pre>
+     * Streams batches of Sink messages from Minion to OpenNMS
+     * </pre>
+     */
+    public io.grpc.stub.StreamObserver<SinkMessageBatch> sinkBatchStreaming(
+        io.grpc.stub.StreamObserver<Empty> responseObserver) {
+      return asyncUnimplementedStreamingCall(getSinkBatchStreamingMethod(), responseObserver);
+    }
+
     @Override public final io.grpc.ServerServiceDefinition bindService() {
       return io.grpc.ServerServiceDefinition.builder(getServiceDescriptor())
           .addMethod(
@@ -178,6 +219,13 @@ public final class OpenNMSIpcGrpc {
                 SinkMessage,
                 Empty>(
                   this, METHODID_SINK_STREAMING)))
+          .addMethod(
+            getSinkBatchStreamingMethod(),
+            asyncClientStreamingCall(
+              new MethodHandlers<
+                SinkMessageBatch,
+                Empty>(
+                  this, METHODID_SINK_BATCH_STREAMING)))
           .build();
     }
   }
@@ -224,6 +272,17 @@ public final class OpenNMSIpcGrpc {
       return asyncClientStreamingCall(
           getChannel().newCall(getSinkStreamingMethod(), getCallOptions()), responseObserver);
     }
+
+    /**
+     * <pre>
+     * Streams batches of Sink messages from Minion to OpenNMS
+     * </pre>
+     */
+    public io.grpc.stub.StreamObserver<SinkMessageBatch> sinkBatchStreaming(
+        io.grpc.stub.StreamObserver<Empty> responseObserver) {
+      return asyncClientStreamingCall(
+          getChannel().newCall(getSinkBatchStreamingMethod(), getCallOptions()), responseObserver);
+    }
   }
 
   /**
@@ -272,6 +331,7 @@ public final class OpenNMSIpcGrpc {
 
   private static final int METHODID_RPC_STREAMING = 0;
   private static final int METHODID_SINK_STREAMING = 1;
+  private static final int METHODID_SINK_BATCH_STREAMING = 2;
 
   private static final class MethodHandlers<Req, Resp> implements
       io.grpc.stub.ServerCalls.UnaryMethod<Req, Resp>,
@@ -306,6 +366,9 @@ public final class OpenNMSIpcGrpc {
         case METHODID_SINK_STREAMING:
           return (io.grpc.stub.StreamObserver<Req>) serviceImpl.sinkStreaming(
               (io.grpc.stub.StreamObserver<Empty>) responseObserver);
+        case METHODID_SINK_BATCH_STREAMING:
+          return (io.grpc.stub.StreamObserver<Req>) serviceImpl.sinkBatchStreaming(
+              (io.grpc.stub.StreamObserver<Empty>) responseObserver);
         default:
           throw new AssertionError();
       }
@@ -359,6 +422,7 @@ public final class OpenNMSIpcGrpc {
               .setSchemaDescriptor(new OpenNMSIpcFileDescriptorSupplier())
               .addMethod(getRpcStreamingMethod())
               .addMethod(getSinkStreamingMethod())
+              .addMethod(getSinkBatchStreamingMethod())
               .build();
         }
       }
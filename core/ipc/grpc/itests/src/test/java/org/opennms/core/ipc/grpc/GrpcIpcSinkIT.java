@@ -36,6 +36,9 @@ import static org.opennms.core.ipc.grpc.GrpcIpcRpcIT.getAvailablePort;
 
 import java.io.IOException;
 import java.util.Hashtable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -50,13 +53,17 @@ import org.opennms.core.ipc.grpc.client.GrpcClientConstants;
 import org.opennms.core.ipc.grpc.client.MinionGrpcClient;
 import org.opennms.core.ipc.grpc.server.GrpcServerConstants;
 import org.opennms.core.ipc.grpc.server.OpennmsGrpcServer;
+import org.opennms.core.ipc.sink.api.MessageConsumer;
+import org.opennms.core.ipc.sink.api.SinkModule;
 import org.opennms.distributed.core.api.MinionIdentity;
 import org.osgi.service.cm.ConfigurationAdmin;
 
 import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
 
 /**
- * This test verifies that if there is no gRPC server available, sink message dispatch will block until it succeeds.
+ * This test verifies that if there is no gRPC server available, sink message dispatch will block until it succeeds,
+ * and how sink streams behave when the server does not keep up.
  */
 public class GrpcIpcSinkIT {
 
@@ -64,23 +71,31 @@ public class GrpcIpcSinkIT {
     private MinionGrpcClient grpcClient;
     private OpennmsGrpcServer server;
     private HeartbeatModule asyncModule = new HeartbeatModule(true);
+    private HeartbeatModule syncModule = new HeartbeatModule();
     private boolean serverStarted = false;
+    private int port;
+    private Hashtable<String, Object> serverConfig;
+    private Hashtable<String, Object> clientConfig;
+    private ConfigurationAdmin configAdmin;
 
     @Before
     public void setup() throws Exception {
-        Hashtable<String, Object> serverConfig = new Hashtable<>();
-        int port = getAvailablePort(new AtomicInteger(GrpcServerConstants.DEFAULT_GRPC_PORT), 9090);
+        serverConfig = new Hashtable<>();
+        port = getAvailablePort(new AtomicInteger(GrpcServerConstants.DEFAULT_GRPC_PORT), 9090);
         serverConfig.put(GrpcServerConstants.GRPC_SERVER_PORT, String.valueOf(port));
         serverConfig.put(GrpcServerConstants.TLS_ENABLED, false);
-        Hashtable<String, Object> clientConfig = new Hashtable<>();
+        clientConfig = new Hashtable<>();
         clientConfig.put(GrpcClientConstants.GRPC_PORT, String.valueOf(port));
 
         clientConfig.put(GrpcClientConstants.GRPC_HOST, "localhost");
         clientConfig.put(GrpcClientConstants.TLS_ENABLED, false);
-        ConfigurationAdmin configAdmin = mock(ConfigurationAdmin.class, RETURNS_DEEP_STUBS);
+        configAdmin = mock(ConfigurationAdmin.class, RETURNS_DEEP_STUBS);
         when(configAdmin.getConfiguration(GrpcServerConstants.GRPC_SERVER_PID).getProperties()).thenReturn(serverConfig);
         when(configAdmin.getConfiguration(GrpcClientConstants.GRPC_CLIENT_PID).getProperties()).thenReturn(clientConfig);
+    }
 
+    // Both ends read their configuration when they get created, tests change it before.
+    private void createClientAndServer() throws IOException {
         MinionIdentity minionIdentity = new MockMinionIdentity(REMOTE_LOCATION_NAME);
 
         grpcClient = new MinionGrpcClient(minionIdentity, configAdmin);
@@ -91,6 +106,7 @@ public class GrpcIpcSinkIT {
 
     @Test(timeout = 30000)
     public void testSinkMessageGetsDeliveredAsynchronously() throws Exception {
+        createClientAndServer();
         // Sending message on async module will block until it delivers.
         new Thread(() -> grpcClient.dispatch(asyncModule, null, new Heartbeat())).start();
 
@@ -108,6 +124,157 @@ public class GrpcIpcSinkIT {
                 }, Matchers.greaterThan(0L));
     }
 
+    @Test(timeout = 60000)
+    public void testModulesGetTheirOwnStreams() throws Exception {
+        // Only a single message is in flight per stream.
+        serverConfig.put(GrpcServerConstants.SINK_STREAM_WINDOW, "1");
+        createClientAndServer();
+        startServer();
+
+        BlockingHeartbeatConsumer blockedConsumer = new BlockingHeartbeatConsumer(syncModule);
+        server.registerConsumer(blockedConsumer);
+        OtherHeartbeatModule otherModule = new OtherHeartbeatModule();
+        Meter otherMeter = new Meter();
+        server.registerConsumer(new HeartbeatConsumer(otherModule, otherMeter));
+
+        try {
+            // Block the consumer of the heartbeat module, its stream is stalled from now on.
+            await().atMost(20, TimeUnit.SECONDS).pollInterval(100, TimeUnit.MILLISECONDS)
+                    .until(() -> {
+                        grpcClient.dispatch(syncModule, null, new Heartbeat());
+                        return blockedConsumer.received.getCount();
+                    }, Matchers.greaterThan(0L));
+            grpcClient.dispatch(syncModule, null, new Heartbeat());
+
+            // Messages of the other module don't queue up behind the stalled stream.
+            await().atMost(20, TimeUnit.SECONDS).pollInterval(100, TimeUnit.MILLISECONDS)
+                    .until(() -> {
+                        grpcClient.dispatch(otherModule, null, new Heartbeat());
+                        return otherMeter.getCount();
+                    }, Matchers.greaterThan(0L));
+            Assert.assertEquals(1, blockedConsumer.received.getCount());
+            Assert.assertThat(grpcClient.getMetrics().meter(MetricRegistry.name(syncModule.getId(), "grpcBytesSent")).getCount(),
+                    Matchers.greaterThan(0L));
+            Assert.assertThat(grpcClient.getMetrics().meter(MetricRegistry.name(otherModule.getId(), "grpcBytesSent")).getCount(),
+                    Matchers.greaterThan(0L));
+        } finally {
+            blockedConsumer.release.countDown();
+        }
+        // The stalled stream resumes once the consumer is released.
+        await().atMost(20, TimeUnit.SECONDS).until(() -> blockedConsumer.received.getCount(), Matchers.greaterThan(1L));
+    }
+
+    @Test(timeout = 60000)
+    public void testSinkStreamTimesOutWhenServerDoesNotRequestMessages() throws Exception {
+        serverConfig.put(GrpcServerConstants.SINK_STREAM_WINDOW, "1");
+        clientConfig.put(GrpcClientConstants.SINK_READY_TIMEOUT, "100");
+        createClientAndServer();
+        startServer();
+
+        BlockingHeartbeatConsumer blockedConsumer = new BlockingHeartbeatConsumer(syncModule);
+        server.registerConsumer(blockedConsumer);
+        Meter dropped = grpcClient.getMetrics().meter(MetricRegistry.name(syncModule.getId(), "grpcDropped"));
+
+        try {
+            await().atMost(20, TimeUnit.SECONDS).pollInterval(100, TimeUnit.MILLISECONDS)
+                    .until(() -> {
+                        grpcClient.dispatch(syncModule, null, new Heartbeat());
+                        return blockedConsumer.received.getCount();
+                    }, Matchers.greaterThan(0L));
+            long droppedWhileConnecting = dropped.getCount();
+
+            // The server doesn't request any more messages, so the stream stops being ready once the transport
+            // buffers are full and the client gives up on the message after the ready timeout.
+            int sent = fillSinkStream(syncModule, dropped, droppedWhileConnecting);
+
+            Assert.assertThat(sent, Matchers.greaterThan(0));
+            Assert.assertEquals(1, blockedConsumer.received.getCount());
+            Assert.assertThat(grpcClient.getMetrics().timer(MetricRegistry.name(syncModule.getId(), "grpcReadyWait")).getCount(),
+                    Matchers.greaterThan(0L));
+        } finally {
+            blockedConsumer.release.countDown();
+        }
+        await().atMost(20, TimeUnit.SECONDS).until(() -> blockedConsumer.received.getCount(), Matchers.greaterThan(1L));
+    }
+
+    @Test(timeout = 60000)
+    public void testSinkMessagesGetDeliveredOverCompressedStreams() throws Exception {
+        clientConfig.put(GrpcClientConstants.GRPC_COMPRESSION, "gzip");
+        serverConfig.put(GrpcServerConstants.GRPC_COMPRESSION, "gzip");
+        createClientAndServer();
+        startServer();
+
+        Meter meter = new Meter();
+        server.registerConsumer(new HeartbeatConsumer(syncModule, meter));
+
+        await().atMost(20, TimeUnit.SECONDS).pollInterval(100, TimeUnit.MILLISECONDS)
+                .until(() -> {
+                    grpcClient.dispatch(syncModule, null, new Heartbeat());
+                    return meter.getCount();
+                }, Matchers.greaterThan(0L));
+        Assert.assertThat(grpcClient.getMetrics().meter(MetricRegistry.name(syncModule.getId(), "grpcBytesSent")).getCount(),
+                Matchers.greaterThan(0L));
+    }
+
+    @Test(timeout = 60000)
+    public void testSinkMessagesGetBatchedWhileStreamIsNotReady() throws Exception {
+        serverConfig.put(GrpcServerConstants.SINK_STREAM_WINDOW, "1");
+        clientConfig.put(GrpcClientConstants.SINK_BATCH_SIZE, "100");
+        clientConfig.put(GrpcClientConstants.SINK_READY_TIMEOUT, "5000");
+        createClientAndServer();
+        startServer();
+
+        BlockingHeartbeatConsumer blockedConsumer = new BlockingHeartbeatConsumer(syncModule);
+        server.registerConsumer(blockedConsumer);
+        Meter dropped = grpcClient.getMetrics().meter(MetricRegistry.name(syncModule.getId(), "grpcDropped"));
+
+        final int numAsyncMessages = 20;
+        ExecutorService executor = Executors.newFixedThreadPool(numAsyncMessages);
+        try {
+            await().atMost(20, TimeUnit.SECONDS).pollInterval(100, TimeUnit.MILLISECONDS)
+                    .until(() -> {
+                        grpcClient.dispatch(syncModule, null, new Heartbeat());
+                        return blockedConsumer.received.getCount();
+                    }, Matchers.greaterThan(0L));
+            long droppedWhileConnecting = dropped.getCount();
+            long receivedBefore = blockedConsumer.received.getCount();
+            int sent = fillSinkStream(syncModule, dropped, droppedWhileConnecting);
+
+            // These wait for the stream to become ready and get written together.
+            for (int i = 0; i < numAsyncMessages; i++) {
+                executor.execute(() -> grpcClient.dispatch(asyncModule, null, new Heartbeat()));
+            }
+            Thread.sleep(500);
+            blockedConsumer.release.countDown();
+
+            await().atMost(30, TimeUnit.SECONDS).until(() -> blockedConsumer.received.getCount(),
+                    Matchers.greaterThanOrEqualTo(receivedBefore + sent + numAsyncMessages));
+            Assert.assertThat(grpcClient.getMetrics().histogram(MetricRegistry.name(syncModule.getId(), "grpcBatchSize"))
+                    .getSnapshot().getMax(), Matchers.greaterThan(1L));
+        } finally {
+            blockedConsumer.release.countDown();
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Dispatches messages until the client drops one because the stream did not become ready in time.
+     *
+     * @return the number of messages that got written to the stream.
+     */
+    private int fillSinkStream(HeartbeatModule module, Meter dropped, long droppedBefore) {
+        AtomicInteger dispatched = new AtomicInteger();
+        await().atMost(30, TimeUnit.SECONDS).pollInterval(10, TimeUnit.MILLISECONDS)
+                .until(() -> {
+                    for (int i = 0; i < 1000 && dropped.getCount() == droppedBefore; i++) {
+                        grpcClient.dispatch(module, null, new Heartbeat());
+                        dispatched.incrementAndGet();
+                    }
+                    return dropped.getCount();
+                }, Matchers.greaterThan(droppedBefore));
+        return dispatched.get() - (int) (dropped.getCount() - droppedBefore);
+    }
+
     private void startServer() throws IOException {
         if (!serverStarted) {
             server.start();
@@ -117,7 +284,43 @@ public class GrpcIpcSinkIT {
 
     @After
     public void shutdown() throws Exception {
-        grpcClient.shutdown();
-        server.shutdown();
+        if (grpcClient != null) {
+            grpcClient.shutdown();
+        }
+        if (server != null) {
+            server.shutdown();
+        }
+    }
+
+    private static class OtherHeartbeatModule extends HeartbeatModule {
+        @Override
+        public String getId() {
+            return "OtherHeartbeat";
+        }
+    }
+
+    private static class BlockingHeartbeatConsumer implements MessageConsumer<Heartbeat, Heartbeat> {
+        private final HeartbeatModule module;
+        private final Meter received = new Meter();
+        private final CountDownLatch release = new CountDownLatch(1);
+
+        private BlockingHeartbeatConsumer(HeartbeatModule module) {
+            this.module = module;
+        }
+
+        @Override
+        public SinkModule<Heartbeat, Heartbeat> getModule() {
+            return module;
+        }
+
+        @Override
+        public void handleMessage(Heartbeat message) {
+            received.mark();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
     }
 }
@@ -29,7 +29,10 @@
 package org.opennms.core.ipc.grpc.server;
 
 import static org.opennms.core.ipc.grpc.server.GrpcServerConstants.DEFAULT_GRPC_TTL;
+import static org.opennms.core.ipc.grpc.server.GrpcServerConstants.DEFAULT_SINK_STREAM_WINDOW;
+import static org.opennms.core.ipc.grpc.server.GrpcServerConstants.GRPC_COMPRESSION;
 import static org.opennms.core.ipc.grpc.server.GrpcServerConstants.GRPC_TTL_PROPERTY;
+import static org.opennms.core.ipc.grpc.server.GrpcServerConstants.SINK_STREAM_WINDOW;
 import static org.opennms.core.ipc.sink.api.Message.SINK_METRIC_CONSUMER_DOMAIN;
 import static org.opennms.core.rpc.api.RpcModule.MINION_HEADERS_MODULE;
 import static org.opennms.core.tracing.api.TracerConstants.TAG_LOCATION;
@@ -49,10 +52,12 @@ import java.util.concurrent.DelayQueue;
 import java.util.concurrent.Delayed;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.opennms.core.grpc.common.GrpcIpcServer;
 import org.opennms.core.ipc.grpc.common.Empty;
@@ -60,6 +65,7 @@ import org.opennms.core.ipc.grpc.common.OpenNMSIpcGrpc;
 import org.opennms.core.ipc.grpc.common.RpcRequestProto;
 import org.opennms.core.ipc.grpc.common.RpcResponseProto;
 import org.opennms.core.ipc.grpc.common.SinkMessage;
+import org.opennms.core.ipc.grpc.common.SinkMessageBatch;
 import org.opennms.core.ipc.sink.api.Message;
 import org.opennms.core.ipc.sink.api.MessageConsumerManager;
 import org.opennms.core.ipc.sink.api.SinkModule;
@@ -81,6 +87,7 @@ import org.opennms.distributed.core.api.Identity;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.codahale.metrics.Counter;
 import com.codahale.metrics.JmxReporter;
 import com.codahale.metrics.MetricRegistry;
 import com.codahale.metrics.Timer;
@@ -92,6 +99,8 @@ import com.google.common.collect.Multimap;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.google.protobuf.ByteString;
 
+import io.grpc.CompressorRegistry;
+import io.grpc.stub.ServerCallStreamObserver;
 import io.grpc.stub.StreamObserver;
 import io.opentracing.References;
 import io.opentracing.Scope;
@@ -117,17 +126,23 @@ import io.opentracing.util.GlobalTracer;
  * separate thread which may be used by rpc module to process the response.
  * <p>
  * Sink: Sink runs in uni-directional streaming mode. OpenNMS receives sink messages from client and they are dispatched
- * in the consumer threads that are initialized at start.
+ * in the consumer threads that are initialized at start. Each stream only has a limited number of messages (or batches
+ * of messages) in flight so that slow consumers push back on the client through gRPC flow control.
  */
 
 public class OpennmsGrpcServer extends AbstractMessageConsumerManager implements RpcClientFactory {
 
     private static final Logger LOG = LoggerFactory.getLogger(OpennmsGrpcServer.class);
+    private static final String METRIC_SINK_BYTES_RECEIVED = "grpcBytesReceived";
+    private static final String METRIC_SINK_QUEUED = "grpcQueued";
+    private static final String METRIC_SINK_QUEUE_TIME = "grpcQueueTime";
     private final GrpcIpcServer grpcIpcServer;
     private String location;
     private Identity identity;
     private Properties properties;
     private long ttl;
+    private String compression;
+    private int sinkStreamWindow = DEFAULT_SINK_STREAM_WINDOW;
     private MetricRegistry rpcMetrics;
     private MetricRegistry sinkMetrics;
     private JmxReporter rpcMetricsReporter;
@@ -173,17 +188,24 @@ public class OpennmsGrpcServer extends AbstractMessageConsumerManager implements
     public void start() throws IOException {
         try (Logging.MDCCloseable mdc = Logging.withPrefixCloseable(RpcClientFactory.LOG_PREFIX)) {
 
+            properties = grpcIpcServer.getProperties();
+            ttl = PropertiesUtils.getProperty(properties, GRPC_TTL_PROPERTY, DEFAULT_GRPC_TTL);
+            sinkStreamWindow = Math.max(1, PropertiesUtils.getProperty(properties, SINK_STREAM_WINDOW, DEFAULT_SINK_STREAM_WINDOW));
+            compression = PropertiesUtils.getProperty(properties, GRPC_COMPRESSION, null);
+            if (!Strings.isNullOrEmpty(compression) && CompressorRegistry.getDefaultInstance().lookupCompressor(compression) == null) {
+                LOG.warn("Unknown gRPC compression {}, RPC requests will be sent uncompressed", compression);
+                compression = null;
+            }
+
             grpcIpcServer.startServer(new OpennmsIpcService());
             LOG.info("Added RPC/Sink Service to OpenNMS IPC Grpc Server");
 
-            properties = grpcIpcServer.getProperties();
-            ttl = PropertiesUtils.getProperty(properties, GRPC_TTL_PROPERTY, DEFAULT_GRPC_TTL);
             rpcTimeoutExecutor.execute(this::handleRpcTimeouts);
             rpcMetricsReporter = JmxReporter.forRegistry(getRpcMetrics())
                     .inDomain(JMX_DOMAIN_RPC)
                     .build();
             rpcMetricsReporter.start();
-            sinkMetricsReporter = JmxReporter.forRegistry(getRpcMetrics())
+            sinkMetricsReporter = JmxReporter.forRegistry(getSinkMetrics())
                     .inDomain(SINK_METRIC_CONSUMER_DOMAIN)
                     .build();
             sinkMetricsReporter.start();
@@ -336,10 +358,12 @@ public class OpennmsGrpcServer extends AbstractMessageConsumerManager implements
     }
 
     /**
-     * Writing message through stream observer is not thread safe.
+     * Writing message through stream observer is not thread safe, requests to different minions don't need to wait on each other.
      */
-    private synchronized void sendRpcRequest(StreamObserver<RpcRequestProto> rpcHandler, RpcRequestProto rpcMessage) {
-        rpcHandler.onNext(rpcMessage);
+    private void sendRpcRequest(StreamObserver<RpcRequestProto> rpcHandler, RpcRequestProto rpcMessage) {
+        synchronized (rpcHandler) {
+            rpcHandler.onNext(rpcMessage);
+        }
     }
 
     @VisibleForTesting
@@ -484,6 +508,10 @@ public class OpennmsGrpcServer extends AbstractMessageConsumerManager implements
         public StreamObserver<RpcResponseProto> rpcStreaming(
                 StreamObserver<RpcRequestProto> responseObserver) {
 
+            if (!Strings.isNullOrEmpty(compression)) {
+                ((ServerCallStreamObserver<RpcRequestProto>) responseObserver).setCompression(compression);
+            }
+
             return new StreamObserver<RpcResponseProto>() {
 
                 @Override
@@ -513,24 +541,60 @@ public class OpennmsGrpcServer extends AbstractMessageConsumerManager implements
         public io.grpc.stub.StreamObserver<SinkMessage> sinkStreaming(
                 io.grpc.stub.StreamObserver<Empty> responseObserver) {
 
+            // Messages are only requested from the stream as they get dispatched.
+            final ServerCallStreamObserver<Empty> sinkCallObserver = (ServerCallStreamObserver<Empty>) responseObserver;
+            sinkCallObserver.disableAutoInboundFlowControl();
+            sinkCallObserver.request(sinkStreamWindow);
 
             return new StreamObserver<SinkMessage>() {
 
                 @Override
                 public void onNext(SinkMessage sinkMessage) {
+                    receiveSinkMessage(sinkMessage, () -> sinkCallObserver.request(1));
+                }
 
-                    if (!Strings.isNullOrEmpty(sinkMessage.getModuleId())) {
-                        ExecutorService sinkModuleExecutor = sinkConsumersByModuleId.get(sinkMessage.getModuleId());
-                        if(sinkModuleExecutor != null) {
-                            sinkModuleExecutor.execute(() -> dispatchSinkMessage(sinkMessage));
-                        }
-                    }
+                @Override
+                public void onError(Throwable throwable) {
+                    LOG.error("Error in sink streaming", throwable);
                 }
 
+                @Override
+                public void onCompleted() {
+
+                }
+            };
+        }
+
+        @Override
+        public io.grpc.stub.StreamObserver<SinkMessageBatch> sinkBatchStreaming(
+                io.grpc.stub.StreamObserver<Empty> responseObserver) {
+
+            // The window counts batches, the next one is requested once all messages of a batch got dispatched.
+            final ServerCallStreamObserver<Empty> sinkCallObserver = (ServerCallStreamObserver<Empty>) responseObserver;
+            sinkCallObserver.disableAutoInboundFlowControl();
+            sinkCallObserver.request(sinkStreamWindow);
+
+            return new StreamObserver<SinkMessageBatch>() {
+
+                @Override
+                public void onNext(SinkMessageBatch sinkMessageBatch) {
+                    if (sinkMessageBatch.getMessagesCount() == 0) {
+                        sinkCallObserver.request(1);
+                        return;
+                    }
+                    final AtomicInteger remaining = new AtomicInteger(sinkMessageBatch.getMessagesCount());
+                    for (SinkMessage sinkMessage : sinkMessageBatch.getMessagesList()) {
+                        receiveSinkMessage(sinkMessage, () -> {
+                            if (remaining.decrementAndGet() == 0) {
+                                sinkCallObserver.request(1);
+                            }
+                        });
+                    }
+                }
 
                 @Override
                 public void onError(Throwable throwable) {
-                    LOG.error("Error in sink streaming", throwable);
+                    LOG.error("Error in sink batch streaming", throwable);
                 }
 
                 @Override
@@ -541,6 +605,43 @@ public class OpennmsGrpcServer extends AbstractMessageConsumerManager implements
         }
     }
 
+    /**
+     * Hands the message over to the consumers of its module, onDone runs once it was dispatched or dropped.
+     */
+    private void receiveSinkMessage(SinkMessage sinkMessage, Runnable onDone) {
+        ExecutorService sinkModuleExecutor = null;
+        if (!Strings.isNullOrEmpty(sinkMessage.getModuleId())) {
+            sinkModuleExecutor = sinkConsumersByModuleId.get(sinkMessage.getModuleId());
+        }
+        if (sinkModuleExecutor == null) {
+            onDone.run();
+            return;
+        }
+        getSinkMetrics().meter(MetricRegistry.name(sinkMessage.getLocation(), sinkMessage.getModuleId(),
+                METRIC_SINK_BYTES_RECEIVED)).mark(sinkMessage.getSerializedSize());
+        final Counter queued = getSinkMetrics().counter(MetricRegistry.name(sinkMessage.getLocation(),
+                sinkMessage.getModuleId(), METRIC_SINK_QUEUED));
+        final Timer queueTime = getSinkMetrics().timer(MetricRegistry.name(sinkMessage.getLocation(),
+                sinkMessage.getModuleId(), METRIC_SINK_QUEUE_TIME));
+        final long receivedAt = System.nanoTime();
+        queued.inc();
+        try {
+            sinkModuleExecutor.execute(() -> {
+                queued.dec();
+                queueTime.update(System.nanoTime() - receivedAt, TimeUnit.NANOSECONDS);
+                try {
+                    dispatchSinkMessage(sinkMessage);
+                } finally {
+                    onDone.run();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            queued.dec();
+            onDone.run();
+            LOG.warn("Consumers for module {} are stopped, dropping sink message", sinkMessage.getModuleId());
+        }
+    }
+
     private void dispatchSinkMessage(SinkMessage sinkMessage) {
         SinkModule<?, Message> sinkModule = sinkModulesById.get(sinkMessage.getModuleId());
         if (sinkModule != null && sinkMessage.getContent() != null) {
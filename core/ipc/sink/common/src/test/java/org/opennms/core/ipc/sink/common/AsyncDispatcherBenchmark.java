@@ -0,0 +1,220 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2022 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2022 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.core.ipc.sink.common;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.opennms.core.ipc.sink.api.AggregationPolicy;
+import org.opennms.core.ipc.sink.api.AsyncDispatcher;
+import org.opennms.core.ipc.sink.api.AsyncPolicy;
+import org.opennms.core.ipc.sink.api.Message;
+import org.opennms.core.ipc.sink.api.SinkModule;
+import org.opennms.core.ipc.sink.offheap.DispatchQueueServiceLoader;
+import org.osgi.framework.BundleContext;
+
+import com.codahale.metrics.MetricRegistry;
+
+import io.opentracing.Tracer;
+import io.opentracing.util.GlobalTracer;
+
+/**
+ * Use the Java Microbenchmarking Harness (JMH) to measure the overhead of the {@link AsyncDispatcherImpl}.
+ * <p>
+ * Messages are dispatched to a local sink that discards them, so the results reflect the cost of
+ * queuing the messages and completing their futures, not that of any particular transport.
+ */
+public class AsyncDispatcherBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        org.openjdk.jmh.Main.main(args);
+    }
+
+    @State(Scope.Benchmark)
+    public static class BState {
+
+        @Param({"1", "4"})
+        public int numThreads;
+
+        @Param({"1000"})
+        public int queueSize;
+
+        private NoOpDispatcherFactory dispatcherFactory;
+        private AsyncDispatcher<BenchmarkMessage> asyncDispatcher;
+        private BenchmarkMessage message;
+
+        @Setup
+        public void setup() {
+            // Use the default in-memory queue
+            DispatchQueueServiceLoader.setDispatchQueue(null);
+
+            dispatcherFactory = new NoOpDispatcherFactory();
+            asyncDispatcher = dispatcherFactory.createAsyncDispatcher(new BenchmarkModule(queueSize, numThreads));
+            message = new BenchmarkMessage("benchmark");
+        }
+
+        @TearDown
+        public void tearDown() throws Exception {
+            asyncDispatcher.close();
+        }
+    }
+
+    @Benchmark
+    @Fork(value = 1)
+    @Warmup(iterations = 1)
+    @Measurement(iterations = 2)
+    @Threads(4)
+    public CompletableFuture<AsyncDispatcher.DispatchStatus> send(BState state) {
+        // the policy blocks when full, so this measures the rate at which the messages are drained
+        return state.asyncDispatcher.send(state.message);
+    }
+
+    @Benchmark
+    @Fork(value = 1)
+    @Warmup(iterations = 1)
+    @Measurement(iterations = 2)
+    @Threads(4)
+    public AsyncDispatcher.DispatchStatus sendAndWait(BState state) {
+        return state.asyncDispatcher.send(state.message).join();
+    }
+
+    private static class BenchmarkMessage implements Message {
+        private final String value;
+
+        private BenchmarkMessage(String value) {
+            this.value = value;
+        }
+    }
+
+    private static class BenchmarkModule implements SinkModule<BenchmarkMessage, BenchmarkMessage> {
+        private final AsyncPolicy asyncPolicy;
+
+        private BenchmarkModule(int queueSize, int numThreads) {
+            asyncPolicy = new AsyncPolicy() {
+                @Override
+                public int getQueueSize() {
+                    return queueSize;
+                }
+
+                @Override
+                public int getNumThreads() {
+                    return numThreads;
+                }
+
+                @Override
+                public boolean isBlockWhenFull() {
+                    return true;
+                }
+            };
+        }
+
+        @Override
+        public String getId() {
+            return "Benchmark";
+        }
+
+        @Override
+        public int getNumConsumerThreads() {
+            return 1;
+        }
+
+        @Override
+        public byte[] marshal(BenchmarkMessage message) {
+            return message.value.getBytes(StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public BenchmarkMessage unmarshal(byte[] message) {
+            return new BenchmarkMessage(new String(message, StandardCharsets.UTF_8));
+        }
+
+        @Override
+        public byte[] marshalSingleMessage(BenchmarkMessage message) {
+            return marshal(message);
+        }
+
+        @Override
+        public BenchmarkMessage unmarshalSingleMessage(byte[] message) {
+            return unmarshal(message);
+        }
+
+        @Override
+        public AggregationPolicy<BenchmarkMessage, BenchmarkMessage, ?> getAggregationPolicy() {
+            // dispatch directly
+            return null;
+        }
+
+        @Override
+        public AsyncPolicy getAsyncPolicy() {
+            return asyncPolicy;
+        }
+    }
+
+    /**
+     * Local sink that discards all of the messages.
+     */
+    private static class NoOpDispatcherFactory extends AbstractMessageDispatcherFactory<Void> {
+        private final MetricRegistry metrics = new MetricRegistry();
+
+        @Override
+        public <S extends Message, T extends Message> void dispatch(SinkModule<S, T> module, Void metadata, T message) {
+            // pass
+        }
+
+        @Override
+        public String getMetricDomain() {
+            return NoOpDispatcherFactory.class.getPackage().getName();
+        }
+
+        @Override
+        public BundleContext getBundleContext() {
+            return null;
+        }
+
+        @Override
+        public Tracer getTracer() {
+            return GlobalTracer.get();
+        }
+
+        @Override
+        public MetricRegistry getMetrics() {
+            return metrics;
+        }
+    }
+}
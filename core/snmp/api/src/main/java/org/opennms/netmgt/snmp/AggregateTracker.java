@@ -29,6 +29,7 @@
 package org.opennms.netmgt.snmp;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
@@ -292,13 +293,36 @@ public class AggregateTracker extends CollectionTracker {
     
     @Override
     public ResponseProcessor buildNextPdu(final PduBuilder parentBuilder) throws SnmpException {
-        
+        return buildNextPdu(m_children, parentBuilder);
+    }
+
+    @Override
+    public List<CollectionTracker> split(int maxTrackers) {
+        final List<List<CollectionTracker>> partitions = PartialTracker.partition(Arrays.asList(m_children), maxTrackers);
+        if (partitions.size() <= 1) {
+            return super.split(maxTrackers);
+        }
+        final List<CollectionTracker> trackers = new ArrayList<>(partitions.size());
+        for (final List<CollectionTracker> partition : partitions) {
+            final CollectionTracker[] children = partition.toArray(new CollectionTracker[partition.size()]);
+            trackers.add(new PartialTracker<CollectionTracker>(partition) {
+                @Override
+                public ResponseProcessor buildNextPdu(PduBuilder pduBuilder) throws SnmpException {
+                    return AggregateTracker.this.buildNextPdu(children, pduBuilder);
+                }
+            });
+        }
+        return trackers;
+    }
+
+    private ResponseProcessor buildNextPdu(final CollectionTracker[] children, final PduBuilder parentBuilder) throws SnmpException {
+
         // first process the child trackers that aren't finished up to maxVars 
         int count = 0;
         int maxVars = parentBuilder.getMaxVarsPerPdu();
-        final List<ChildTrackerPduBuilder> builders = new ArrayList<ChildTrackerPduBuilder>(m_children.length);
-        for (int i = 0; i < m_children.length && count < maxVars; i++) {
-            CollectionTracker childTracker = m_children[i];
+        final List<ChildTrackerPduBuilder> builders = new ArrayList<ChildTrackerPduBuilder>(children.length);
+        for (int i = 0; i < children.length && count < maxVars; i++) {
+            CollectionTracker childTracker = children[i];
             if (!childTracker.isFinished()) {
                 ChildTrackerPduBuilder childBuilder = new ChildTrackerPduBuilder(maxVars-count);
                 ResponseProcessor rp = childTracker.buildNextPdu(childBuilder);
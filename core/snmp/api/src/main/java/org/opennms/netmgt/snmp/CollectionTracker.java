@@ -28,6 +28,9 @@
 
 package org.opennms.netmgt.snmp;
 
+import java.util.Collections;
+import java.util.List;
+
 import org.opennms.netmgt.snmp.proxy.ProxiableTracker;
 
 public abstract class CollectionTracker implements Collectable, ProxiableTracker {
@@ -86,6 +89,17 @@ public abstract class CollectionTracker implements Collectable, ProxiableTracker
 
     public abstract ResponseProcessor buildNextPdu(PduBuilder pduBuilder) throws SnmpException;
 
+    /**
+     * Splits this tracker into at most {@code maxTrackers} trackers over disjoint OID subtrees,
+     * so that each of them can have its own PDU in flight. The results are still stored through
+     * this tracker, and {@link #isFinished()} must be checked on it once all the parts are finished.
+     *
+     * The default implementation does not split.
+     */
+    public List<CollectionTracker> split(int maxTrackers) {
+        return Collections.singletonList(this);
+    }
+
     protected void reportTooBigErr(String msg) {
         if (m_parent != null) {
             m_parent.reportTooBigErr(msg);
@@ -0,0 +1,153 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2022 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2022 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+
+package org.opennms.netmgt.snmp;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.opennms.netmgt.snmp.proxy.CorrelationIdUtils;
+import org.opennms.netmgt.snmp.proxy.WalkRequest;
+import org.opennms.netmgt.snmp.proxy.WalkResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A view over a subset of the child trackers of a tracker, used to walk
+ * disjoint subtrees with separate PDUs in flight.
+ *
+ * The children keep their original parent so that the results are stored
+ * exactly as if the whole tracker had been walked at once.
+ */
+abstract class PartialTracker<T extends CollectionTracker> extends CollectionTracker {
+
+    private static final Logger LOG = LoggerFactory.getLogger(PartialTracker.class);
+
+    private final List<T> m_members;
+
+    protected PartialTracker(List<T> members) {
+        m_members = members;
+    }
+
+    protected List<T> getMembers() {
+        return m_members;
+    }
+
+    @Override
+    public boolean isFinished() {
+        for (T member : m_members) {
+            if (!member.isFinished()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void setFailed(boolean failed) {
+        super.setFailed(failed);
+        for (T member : m_members) {
+            member.setFailed(failed);
+        }
+    }
+
+    @Override
+    public void setTimedOut(boolean timedOut) {
+        super.setTimedOut(timedOut);
+        for (T member : m_members) {
+            member.setTimedOut(timedOut);
+        }
+    }
+
+    @Override
+    public void setMaxRepetitions(int maxRepetitions) {
+        // set through the tracker that was split
+    }
+
+    @Override
+    public void setMaxRetries(int maxRetries) {
+        // set through the tracker that was split
+    }
+
+    /**
+     * Gathers the walk requests of the members, as done by the {@link AggregateTracker}.
+     */
+    @Override
+    public List<WalkRequest> getWalkRequests() {
+        final List<WalkRequest> walkRequests = new ArrayList<>();
+        for (int k = 0; k < m_members.size(); k++) {
+            for (WalkRequest walkRequest : m_members.get(k).getWalkRequests()) {
+                // Add the index to the correlation id, so we know which member the responses
+                // should be associated with
+                CorrelationIdUtils.pushIndexToCorrelationId(walkRequest, k);
+                walkRequests.add(walkRequest);
+            }
+        }
+        return walkRequests;
+    }
+
+    @Override
+    public void handleWalkResponses(List<WalkResponse> responses) {
+        // Group the responses by index, making sure we call handleWalkResponses() on every member
+        final Map<Integer, List<WalkResponse>> responsesByCorrelationId = new HashMap<>();
+        for (int i = 0; i < m_members.size(); i++) {
+            responsesByCorrelationId.put(i, new ArrayList<>());
+        }
+        responses.forEach(r -> CorrelationIdUtils.popIndexFromCollerationId(r, responsesByCorrelationId));
+
+        responsesByCorrelationId.forEach((index, memberResponses) -> {
+            if (index < 0 || index >= m_members.size()) {
+                LOG.warn("Invalid index on response: {}, {}, {}", index, memberResponses, m_members.size());
+            } else {
+                m_members.get(index).handleWalkResponses(memberResponses);
+            }
+        });
+    }
+
+    /**
+     * Deals the given trackers round-robin into at most {@code maxPartitions} non-empty lists.
+     */
+    static <T> List<List<T>> partition(List<T> trackers, int maxPartitions) {
+        final int numPartitions = Math.min(maxPartitions, trackers.size());
+        if (numPartitions <= 1) {
+            return Collections.singletonList(trackers);
+        }
+        final List<List<T>> partitions = new ArrayList<>(numPartitions);
+        for (int i = 0; i < numPartitions; i++) {
+            partitions.add(new ArrayList<>());
+        }
+        for (int i = 0; i < trackers.size(); i++) {
+            partitions.get(i % numPartitions).add(trackers.get(i));
+        }
+        return partitions;
+    }
+}
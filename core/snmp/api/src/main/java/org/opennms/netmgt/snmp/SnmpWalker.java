@@ -29,18 +29,39 @@
 package org.opennms.netmgt.snmp;
 
 import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public abstract class SnmpWalker implements AutoCloseable {
 
     protected abstract static class WalkerPduBuilder extends PduBuilder {
+        private Lane m_lane;
+
         protected WalkerPduBuilder(int maxVarsPerPdu) {
             super(maxVarsPerPdu);
         }
         
         public abstract void reset();
     }
+
+    /**
+     * One part of the walk, with at most one PDU in flight.
+     */
+    private static final class Lane {
+        private final CollectionTracker m_tracker;
+        private final WalkerPduBuilder m_pduBuilder;
+        private ResponseProcessor m_responseProcessor;
+
+        private Lane(CollectionTracker tracker, WalkerPduBuilder pduBuilder) {
+            m_tracker = tracker;
+            m_pduBuilder = pduBuilder;
+            m_pduBuilder.m_lane = this;
+        }
+    }
     
     private final String m_name;
     private final CollectionTracker m_tracker;
@@ -48,8 +69,10 @@ public abstract class SnmpWalker implements AutoCloseable {
     private final CountDownLatch m_signal;
 
     private final InetAddress m_address;
-    private WalkerPduBuilder m_pduBuilder;
-    private ResponseProcessor m_responseProcessor;
+    private List<Lane> m_lanes = Collections.emptyList();
+    private int m_activeLanes;
+    private int m_maxPdusInFlight = 1;
+    private final AtomicBoolean m_finished = new AtomicBoolean(false);
     private final int m_maxVarsPerPdu;
     private boolean m_error = false;
     private String m_errorMessage = "";
@@ -81,27 +104,75 @@ public abstract class SnmpWalker implements AutoCloseable {
     }
 
     protected abstract WalkerPduBuilder createPduBuilder(int maxVarsPerPdu);
+
+    /**
+     * Sets the number of PDUs that may be in flight to the agent at the same time.
+     *
+     * When greater than one, the tracker is split into disjoint OID subtrees (i.e. the
+     * columns of a table) that are walked independently. Implementations that support
+     * this must pass the {@link WalkerPduBuilder} that was sent back along with the
+     * response, and process the responses of one walker one at a time.
+     * Must be called before {@link #start()}.
+     */
+    protected void setMaxPdusInFlight(int maxPdusInFlight) {
+        m_maxPdusInFlight = Math.max(1, maxPdusInFlight);
+    }
+
+    public final int getMaxPdusInFlight() {
+        return m_maxPdusInFlight;
+    }
     
     public void start() {
-        m_pduBuilder = createPduBuilder(m_maxVarsPerPdu);
-        try {
-            buildAndSendNextPdu();
-        } catch (Throwable e) {
-            handleFatalError(e);
+        final List<CollectionTracker> trackers = m_maxPdusInFlight > 1
+                ? m_tracker.split(m_maxPdusInFlight)
+                : Collections.singletonList(m_tracker);
+        final List<Lane> lanes = new ArrayList<>(trackers.size());
+        for (final CollectionTracker tracker : trackers) {
+            lanes.add(new Lane(tracker, createPduBuilder(m_maxVarsPerPdu)));
+        }
+        synchronized (this) {
+            m_lanes = lanes;
+            m_activeLanes = lanes.size();
+            try {
+                for (final Lane lane : lanes) {
+                    buildAndSendNextPdu(lane.m_pduBuilder);
+                }
+            } catch (Throwable e) {
+                handleFatalError(e);
+            }
         }
     }
     
     public final int getMaxVarsPerPdu() {
-        return (m_pduBuilder == null ? m_maxVarsPerPdu : m_pduBuilder.getMaxVarsPerPdu());
+        return (m_lanes.isEmpty() ? m_maxVarsPerPdu : m_lanes.get(0).m_pduBuilder.getMaxVarsPerPdu());
     }
 
     protected void buildAndSendNextPdu() throws SnmpException {
-        if (m_tracker.isFinished()) {
+        buildAndSendNextPdu(getFirstPduBuilder());
+    }
+
+    /**
+     * Builds and sends the next PDU of the part of the walk the given builder was used for.
+     */
+    protected void buildAndSendNextPdu(WalkerPduBuilder pduBuilder) throws SnmpException {
+        final Lane lane = pduBuilder.m_lane;
+        if (m_finished.get()) {
+            // the walk already ended on another lane
+            return;
+        }
+        if (lane.m_tracker.isFinished()) {
+            if (--m_activeLanes > 0) {
+                return;
+            }
+            if (lane.m_tracker != m_tracker) {
+                // let the split tracker complete, i.e. flush the rows of a table
+                m_tracker.isFinished();
+            }
             handleDone();
         } else {
-            m_pduBuilder.reset();
-            m_responseProcessor = m_tracker.buildNextPdu(m_pduBuilder);
-            sendNextPdu(m_pduBuilder);
+            lane.m_pduBuilder.reset();
+            lane.m_responseProcessor = lane.m_tracker.buildNextPdu(lane.m_pduBuilder);
+            sendNextPdu(lane.m_pduBuilder);
         }
     }
 
@@ -152,6 +223,10 @@ public abstract class SnmpWalker implements AutoCloseable {
     }
 
     private void processError(String reason, String cause, Throwable t) {
+        if (m_finished.get()) {
+            // the walk already ended on another lane
+            return;
+        }
         String logMessage = reason + " " + getName() + " for " + m_address + ": " + cause;
 
         m_error = true;
@@ -162,6 +237,9 @@ public abstract class SnmpWalker implements AutoCloseable {
     }
 
     private void finish() {
+        if (!m_finished.compareAndSet(false, true)) {
+            return;
+        }
         signal();
         // Trigger the callback after the latch was decreased and the session was closed.
         if (m_callback != null) {
@@ -208,11 +286,23 @@ public abstract class SnmpWalker implements AutoCloseable {
     
     // processErrors returns true if we need to retry the request and false otherwise
     protected boolean processErrors(int errorStatus, int errorIndex) throws SnmpException {
-        return m_responseProcessor.processErrors(errorStatus, errorIndex);
+        return processErrors(getFirstPduBuilder(), errorStatus, errorIndex);
+    }
+
+    protected boolean processErrors(WalkerPduBuilder pduBuilder, int errorStatus, int errorIndex) throws SnmpException {
+        return pduBuilder.m_lane.m_responseProcessor.processErrors(errorStatus, errorIndex);
     }
     
     protected void processResponse(SnmpObjId receivedOid, SnmpValue val) throws SnmpException {
-        m_responseProcessor.processResponse(receivedOid, val);
+        processResponse(getFirstPduBuilder(), receivedOid, val);
+    }
+
+    protected void processResponse(WalkerPduBuilder pduBuilder, SnmpObjId receivedOid, SnmpValue val) throws SnmpException {
+        pduBuilder.m_lane.m_responseProcessor.processResponse(receivedOid, val);
+    }
+
+    private WalkerPduBuilder getFirstPduBuilder() {
+        return m_lanes.get(0).m_pduBuilder;
     }
 
     protected final InetAddress getAddress() {
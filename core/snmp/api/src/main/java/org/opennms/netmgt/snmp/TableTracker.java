@@ -96,13 +96,47 @@ public class TableTracker extends CollectionTracker implements RowCallback, RowR
 
     @Override
     public ResponseProcessor buildNextPdu(PduBuilder pduBuilder) throws SnmpException {
+        return buildNextPdu(m_columnTrackers, pduBuilder);
+    }
+
+    @Override
+    public List<CollectionTracker> split(int maxTrackers) {
+        final List<List<ColumnTracker>> partitions = PartialTracker.partition(m_columnTrackers, maxTrackers);
+        if (partitions.size() <= 1) {
+            return super.split(maxTrackers);
+        }
+        final List<CollectionTracker> trackers = new ArrayList<>(partitions.size());
+        for (final List<ColumnTracker> partition : partitions) {
+            trackers.add(new PartialTracker<ColumnTracker>(partition) {
+                @Override
+                public ResponseProcessor buildNextPdu(PduBuilder pduBuilder) throws SnmpException {
+                    return TableTracker.buildNextPdu(getMembers(), pduBuilder);
+                }
+
+                @Override
+                public List<WalkRequest> getWalkRequests() {
+                    return TableTracker.getWalkRequests(getMembers());
+                }
+
+                @Override
+                public void handleWalkResponses(List<WalkResponse> responses) {
+                    TableTracker.this.handleWalkResponses(getMembers(), responses);
+                    // Completes the table once all of the parts are finished
+                    TableTracker.this.isFinished();
+                }
+            });
+        }
+        return trackers;
+    }
+
+    private static ResponseProcessor buildNextPdu(List<ColumnTracker> columnTrackers, PduBuilder pduBuilder) throws SnmpException {
         if (pduBuilder.getMaxVarsPerPdu() < 1) {
             throw new IllegalArgumentException("maxVarsPerPdu < 1");
         }
 
         List<ResponseProcessor> processors = new ArrayList<ResponseProcessor>(pduBuilder.getMaxVarsPerPdu());
 
-        for (ColumnTracker ct : getNextColumnTrackers(pduBuilder.getMaxVarsPerPdu())) {
+        for (ColumnTracker ct : getNextColumnTrackers(columnTrackers, pduBuilder.getMaxVarsPerPdu())) {
             processors.add(ct.buildNextPdu(pduBuilder));
         }
 
@@ -131,9 +165,9 @@ public class TableTracker extends CollectionTracker implements RowCallback, RowR
         return m_tableResult.createRowResult(columnCount, instance);
     }
 
-    private List<ColumnTracker> getNextColumnTrackers(int maxVarsPerPdu) {
+    private static List<ColumnTracker> getNextColumnTrackers(List<ColumnTracker> columnTrackers, int maxVarsPerPdu) {
         List<ColumnTracker> trackers = new ArrayList<ColumnTracker>(maxVarsPerPdu);
-        List<ColumnTracker> sortedTrackerList = new ArrayList<ColumnTracker>(m_columnTrackers);
+        List<ColumnTracker> sortedTrackerList = new ArrayList<ColumnTracker>(columnTrackers);
 
         Collections.sort(sortedTrackerList, new Comparator<ColumnTracker>() {
             @Override
@@ -204,7 +238,11 @@ public class TableTracker extends CollectionTracker implements RowCallback, RowR
 
     @Override
     public List<WalkRequest> getWalkRequests() {
-        return m_columnTrackers.stream()
+        return getWalkRequests(m_columnTrackers);
+    }
+
+    private static List<WalkRequest> getWalkRequests(List<ColumnTracker> columnTrackers) {
+        return columnTrackers.stream()
                 .map(c -> {
                     WalkRequest walkRequest = new WalkRequest(c.getBase());
                     walkRequest.setMaxRepetitions(c.getMaxRepetitions());
@@ -215,19 +253,22 @@ public class TableTracker extends CollectionTracker implements RowCallback, RowR
 
     @Override
     public void handleWalkResponses(List<WalkResponse> responses) {
+        handleWalkResponses(m_columnTrackers, responses);
+        // Mark the table as completed
+        m_tableResult.tableFinished();
+    }
+
+    private void handleWalkResponses(List<ColumnTracker> columnTrackers, List<WalkResponse> responses) {
         // Store each result
         responses.stream()
             .flatMap(res -> res.getResults().stream())
             .forEach(this::storeResult);
         // Mark all of the base columns as completed
-        m_columnTrackers.stream()
+        columnTrackers.stream()
             .map(ColumnTracker::getBase)
             .forEach(m_tableResult::columnFinished);
         // Mark all of the column trackers as completed
-        m_columnTrackers.stream()
+        columnTrackers.stream()
             .forEach(t -> t.setFinished(true));
-        // Mark the table as completed
-        m_tableResult.tableFinished();
-            
     }
 }
@@ -41,6 +41,7 @@ import java.util.List;
 import org.junit.Before;
 import org.junit.Test;
 import org.opennms.netmgt.snmp.AggregateTracker;
+import org.opennms.netmgt.snmp.CollectionTracker;
 import org.opennms.netmgt.snmp.ColumnTracker;
 import org.opennms.netmgt.snmp.GatheringTracker;
 import org.opennms.netmgt.snmp.SingleInstanceTracker;
@@ -146,4 +147,27 @@ public class AggregateTrackerProxyTest {
         assertThat(parentAggregateTracker.isFinished(), equalTo(true));
         assertThat(gatherer.getResults(), hasSize(0));
     }
+
+    @Test
+    public void canWalkSplitTrackers() {
+        SnmpValue value = mock(SnmpValue.class);
+        List<CollectionTracker> parts = parentAggregateTracker.split(2);
+        assertThat(parts, hasSize(2));
+
+        // Walk each part on its own, answering every request
+        for (CollectionTracker part : parts) {
+            List<WalkResponse> responses = new ArrayList<>();
+            for (WalkRequest request : part.getWalkRequests()) {
+                responses.add(new WalkResponse(Collections.singletonList(
+                        new SnmpResult(request.getBaseOid(), SnmpInstId.INST_ZERO, value)),
+                        request.getCorrelationId()));
+            }
+            part.handleWalkResponses(responses);
+            assertThat(part.isFinished(), equalTo(true));
+        }
+
+        // The results are stored through the tracker that was split
+        assertThat(parentAggregateTracker.isFinished(), equalTo(true));
+        assertThat(gatherer.getResults(), hasSize(4));
+    }
 }
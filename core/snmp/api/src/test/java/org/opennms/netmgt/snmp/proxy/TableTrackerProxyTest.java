@@ -40,6 +40,7 @@ import java.util.List;
 
 import org.junit.Before;
 import org.junit.Test;
+import org.opennms.netmgt.snmp.CollectionTracker;
 import org.opennms.netmgt.snmp.SnmpInstId;
 import org.opennms.netmgt.snmp.SnmpObjId;
 import org.opennms.netmgt.snmp.SnmpResult;
@@ -96,4 +97,37 @@ public class TableTrackerProxyTest {
         assertThat(tracker.isFinished(), equalTo(true));
         assertThat(rows, hasSize(0));
     }
+
+    @Test
+    public void canWalkSplitTrackers() {
+        SnmpObjId[] columns = new SnmpObjId[] {
+                SnmpObjId.get(".1.3.6.1.2.1.1"),
+                SnmpObjId.get(".1.3.6.1.2.1.2")
+        };
+        TableTracker tableTracker = new TableTracker(columns) {
+            @Override
+            public void rowCompleted(SnmpRowResult row) {
+                rows.add(row);
+            }
+        };
+        List<CollectionTracker> parts = tableTracker.split(2);
+        assertThat(parts, hasSize(2));
+
+        // Walk each part on its own, answering every request
+        SnmpValue value = mock(SnmpValue.class);
+        for (CollectionTracker part : parts) {
+            List<WalkRequest> requests = part.getWalkRequests();
+            assertThat(requests, hasSize(1));
+            SnmpResult result = new SnmpResult(requests.get(0).getBaseOid(), SnmpInstId.INST_ZERO, value);
+            part.handleWalkResponses(Collections.singletonList(
+                    new WalkResponse(Collections.singletonList(result), requests.get(0).getCorrelationId())));
+            assertThat(part.isFinished(), equalTo(true));
+        }
+
+        // The table is completed once both parts are finished
+        assertThat(tableTracker.isFinished(), equalTo(true));
+        assertThat(rows, hasSize(1));
+        assertThat(rows.get(0).getValue(columns[0]), equalTo(value));
+        assertThat(rows.get(0).getValue(columns[1]), equalTo(value));
+    }
 }
@@ -90,6 +90,7 @@ import org.snmp4j.mp.MPv2c;
 import org.snmp4j.mp.MPv3;
 import org.snmp4j.mp.MessageProcessingModel;
 import org.snmp4j.mp.PduHandle;
+import org.snmp4j.mp.SnmpConstants;
 import org.snmp4j.security.SecurityLevel;
 import org.snmp4j.security.SecurityModel;
 import org.snmp4j.security.SecurityModels;
@@ -184,11 +185,36 @@ public class Snmp4JStrategy implements SnmpStrategy {
     }
     
     /**
-     * Not yet implemented.  Use a walker.
+     * SNMP GetBulk implementation.
+     * 
+     * All of the OIDs are repeated, up to the max-repetitions of the agent config.
+     * SNMPv1 agents don't support GetBulk, so a GetNext is sent to them instead.
+     * 
+     * @param agentConfig
+     * @param oids
+     * @return
+     *        Returns the values in the order of the response, that is the successors
+     *        of all of the OIDs for each repetition in turn. If the getBulk was
+     *        unsuccessful, then the first element of the array will be null and
+     *        length of 1.
      */
         @Override
-    public SnmpValue[] getBulk(SnmpAgentConfig agentConfig, SnmpObjId[] oid) {
-    	throw new UnsupportedOperationException("Snmp4JStrategy.getBulk not yet implemented.");
+    public SnmpValue[] getBulk(SnmpAgentConfig agentConfig, SnmpObjId[] oids) {
+    	LOG.debug("getBulk: OIDs: {} for Agent: {}", oids, agentConfig);
+
+        final Snmp4JAgentConfig snmp4jAgentConfig = new Snmp4JAgentConfig(agentConfig);
+        if (snmp4jAgentConfig.getVersion() == SnmpConstants.version1) {
+            return getNext(agentConfig, oids);
+        }
+
+        final PDU pdu = buildPdu(snmp4jAgentConfig, PDU.GETBULK, oids, null);
+        if (pdu == null) {
+            return null;
+        }
+        pdu.setNonRepeaters(0);
+        pdu.setMaxRepetitions(snmp4jAgentConfig.getMaxRepetitions());
+
+        return send(snmp4jAgentConfig, pdu, true);
     }
 
         @Override
@@ -446,7 +472,8 @@ public class Snmp4JStrategy implements SnmpStrategy {
     private static SnmpValue[] convertResponseToValues(Snmp4JAgentConfig agentConfig, ResponseEvent responseEvent, PDU requestPdu) {
         SnmpValue[] retvalues = new Snmp4JValue[responseEvent.getResponse().getVariableBindings().size()];
 
-        if (requestPdu.size() != retvalues.length) {
+        // The response to a GetBulk request holds several varbinds for each requested OID
+        if (requestPdu.size() != retvalues.length && requestPdu.getType() != PDU.GETBULK) {
             LOG.warn("Unexpected results, Request oids length doesn't match response values length for the " +
                             "Agent : {}, requestID= {}", agentConfig, responseEvent.getRequest().getRequestID());
             retvalues = new Snmp4JValue[requestPdu.size()];
@@ -49,6 +49,11 @@ import org.snmp4j.smi.VariableBinding;
 public class Snmp4JWalker extends SnmpWalker {
 	
 	private static final transient Logger LOG = LoggerFactory.getLogger(Snmp4JWalker.class);
+
+    /**
+     * Default number of PDUs in flight per walk, see {@link #setMaxPdusInFlight(int)}.
+     */
+    public static final String MAX_PDUS_IN_FLIGHT_PROPERTY = "org.opennms.core.snmp.walker.maxPdusInFlight";
 	
 	public static abstract class Snmp4JPduBuilder extends WalkerPduBuilder {
         public Snmp4JPduBuilder(int maxVarsPerPdu) {
@@ -135,13 +140,13 @@ public class Snmp4JWalker extends SnmpWalker {
      */
     public class Snmp4JResponseListener implements ResponseListener {
 
-        private void processResponse(final PDU response) throws SnmpException {
+        private void processResponse(final WalkerPduBuilder pduBuilder, final PDU response) throws SnmpException {
             try {
                 LOG.debug("Received a tracker PDU of type {} from {} of size {}, errorStatus = {}, errorStatusText = {}, errorIndex = {}", PDU.getTypeString(response.getType()), getAddress(), response.size(), response.getErrorStatus(), response.getErrorStatusText(), response.getErrorIndex());
                 if (response.getType() == PDU.REPORT) {
                     handleAuthError("A REPORT PDU was returned from the agent.  This is most likely an authentication problem.  Please check the config");
                 } else {
-                    if (!processErrors(response.getErrorStatus(), response.getErrorIndex())) {
+                    if (!processErrors(pduBuilder, response.getErrorStatus(), response.getErrorIndex())) {
                         if (response.size() == 0) { // NMS-6484
                             handleError("A PDU with no errors and 0 varbinds was returned from the agent at " + getAddress() + ". This seems to be related with a broken SNMP agent.");
                         } else {
@@ -149,11 +154,11 @@ public class Snmp4JWalker extends SnmpWalker {
                                 final VariableBinding vb = response.get(i);
                                 final SnmpObjId receivedOid = SnmpObjId.get(vb.getOid().getValue());
                                 final SnmpValue val = new Snmp4JValue(vb.getVariable());
-                                Snmp4JWalker.this.processResponse(receivedOid, val);
+                                Snmp4JWalker.this.processResponse(pduBuilder, receivedOid, val);
                             }
                         }
                     }
-                    buildAndSendNextPdu();
+                    buildAndSendNextPdu(pduBuilder);
                 }
             } catch (final RuntimeException|SnmpException e) {
                 handleFatalError(e);
@@ -165,6 +170,14 @@ public class Snmp4JWalker extends SnmpWalker {
             // need to cancel the request here otherwise SNMP4J Keeps it around forever... go figure
             m_session.cancel(responseEvent.getRequest(), this);
 
+            // The responses to the PDUs in flight for the different parts of the walk
+            // share the trackers, so we handle them one at a time
+            synchronized (Snmp4JWalker.this) {
+                handleResponse(responseEvent);
+            }
+        }
+
+        private void handleResponse(ResponseEvent responseEvent) {
             // Check to see if we got an interrupted exception
             if (responseEvent.getError() instanceof InterruptedException) {
                 LOG.debug("Interruption event.  We have probably tried to close the session due to an error", responseEvent.getError());
@@ -177,7 +190,7 @@ public class Snmp4JWalker extends SnmpWalker {
             // If we have a PDU in the response, process it
             } else {
                 try {
-                    processResponse(responseEvent.getResponse());
+                    processResponse((WalkerPduBuilder)responseEvent.getUserObject(), responseEvent.getResponse());
                 } catch (final SnmpException e) {
                     handleFatalError(e);
                 }
@@ -200,6 +213,18 @@ public class Snmp4JWalker extends SnmpWalker {
         
         m_tgt = agentConfig.getTarget();
         m_listener = new Snmp4JResponseListener();
+
+        setMaxPdusInFlight(Integer.getInteger(MAX_PDUS_IN_FLIGHT_PROPERTY, 1));
+    }
+
+    /**
+     * Sets the number of PDUs that may be in flight to the agent at the same time.
+     * The walk is split over disjoint subtrees, i.e. the columns of a table, so that the
+     * round trips to high-latency agents overlap. Must be called before {@link #start()}.
+     */
+    @Override
+    public void setMaxPdusInFlight(int maxPdusInFlight) {
+        super.setMaxPdusInFlight(maxPdusInFlight);
     }
     
         @Override
@@ -233,7 +258,7 @@ public class Snmp4JWalker extends SnmpWalker {
 
         LOG.debug("Sending tracker pdu of size {}", snmp4JPduBuilder.getPdu().size());
         try {
-            m_session.send(snmp4JPduBuilder.getPdu(), m_tgt, null, m_listener);
+            m_session.send(snmp4JPduBuilder.getPdu(), m_tgt, pduBuilder, m_listener);
         } catch (final IOException e) {
             LOG.debug("Failed to send pdu of size {}", snmp4JPduBuilder.getPdu().size(), e);
             close();
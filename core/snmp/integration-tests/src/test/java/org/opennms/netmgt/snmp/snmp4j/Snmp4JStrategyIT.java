@@ -36,6 +36,7 @@ import java.util.concurrent.CompletableFuture;
 
 import org.junit.Ignore;
 import org.junit.Test;
+import org.opennms.netmgt.snmp.SnmpAgentConfig;
 import org.opennms.netmgt.snmp.SnmpObjId;
 import org.opennms.netmgt.snmp.SnmpValue;
 import org.snmp4j.PDU;
@@ -246,6 +247,38 @@ public class Snmp4JStrategyIT extends MockSnmpAgentITCase {
         assertSnmpValueEquals("values[1]", SnmpValue.SNMP_COUNTER32, 42, values[1]);
     }
     
+    @Test
+    public void testGetBulkMultipleValues() throws Exception {
+        SnmpObjId[] oids = new SnmpObjId[] {
+                SnmpObjId.get(".1.3.5.1.1.2.0"),
+                SnmpObjId.get(".1.3.5.1.1.3.0"),
+        };
+
+        SnmpAgentConfig agentConfig = getAgentConfig();
+        agentConfig.setVersion(SnmpAgentConfig.VERSION2C);
+        agentConfig.setMaxRepetitions(2);
+        SnmpValue[] values = m_strategy.getBulk(agentConfig, oids);
+
+        assertNotNull("values should not be null", values);
+        assertEquals("values list size", 4, values.length);
+        // Expect the successors of both OIDs for each repetition in turn
+        assertSnmpValueEquals("values[0]", SnmpValue.SNMP_INT32, 42, values[0]);
+        assertSnmpValueEquals("values[1]", SnmpValue.SNMP_GAUGE32, 42, values[1]);
+        assertSnmpValueEquals("values[2]", SnmpValue.SNMP_GAUGE32, 42, values[2]);
+        assertSnmpValueEquals("values[3]", SnmpValue.SNMP_COUNTER32, 42, values[3]);
+    }
+
+    @Test
+    public void testGetBulkFallsBackToGetNextForV1() throws Exception {
+        SnmpObjId[] oids = new SnmpObjId[] { SnmpObjId.get(".1.3.5.1.1.3.0") };
+
+        SnmpValue[] values = m_strategy.getBulk(getAgentConfig(), oids);
+
+        assertNotNull("values should not be null", values);
+        assertEquals("values list size", 1, values.length);
+        assertSnmpValueEquals("values[0]", SnmpValue.SNMP_GAUGE32, 42, values[0]);
+    }
+
     @Test
     public void testPreparePduWithNoValues() throws Exception {
         SnmpObjId[] oids = new SnmpObjId[] {
@@ -0,0 +1,174 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2022 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2022 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+
+package org.opennms.netmgt.snmp.snmp4j;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.junit.Test;
+import org.opennms.netmgt.snmp.AggregateTracker;
+import org.opennms.netmgt.snmp.Collectable;
+import org.opennms.netmgt.snmp.CollectionTracker;
+import org.opennms.netmgt.snmp.SingleInstanceTracker;
+import org.opennms.netmgt.snmp.SnmpAgentConfig;
+import org.opennms.netmgt.snmp.SnmpException;
+import org.opennms.netmgt.snmp.SnmpInstId;
+import org.opennms.netmgt.snmp.SnmpObjId;
+import org.opennms.netmgt.snmp.SnmpResult;
+import org.opennms.netmgt.snmp.SnmpRowResult;
+import org.opennms.netmgt.snmp.TableTracker;
+import org.springframework.core.io.ClassPathResource;
+
+/**
+ * Verifies that walks with several PDUs in flight return the same results
+ * as sequential walks, in fewer consecutive round trips.
+ */
+public class Snmp4JWalkerIT extends MockSnmpAgentITCase {
+
+    private static final SnmpObjId IF_TABLE = SnmpObjId.get(".1.3.6.1.2.1.2.2.1");
+
+    private static final SnmpObjId SYS_DESCR = SnmpObjId.get(".1.3.6.1.2.1.1.1");
+
+    private static final SnmpObjId SYS_NAME = SnmpObjId.get(".1.3.6.1.2.1.1.5");
+
+    public Snmp4JWalkerIT() {
+        setPropertiesResource(new ClassPathResource("snmpTestData1.properties"));
+    }
+
+    @Override
+    protected boolean usingMockStrategy() {
+        return false;
+    }
+
+    /**
+     * Counts the PDUs sent by every part of the walk. The parts send their PDUs one after
+     * the other, so the largest count is the number of consecutive round trips of the walk.
+     */
+    private static class CountingWalker extends Snmp4JWalker {
+        private final Map<WalkerPduBuilder, Integer> m_pdusSent = new IdentityHashMap<>();
+
+        public CountingWalker(SnmpAgentConfig agentConfig, CollectionTracker tracker, int maxPdusInFlight) {
+            super(new Snmp4JAgentConfig(agentConfig), "test", tracker);
+            setMaxPdusInFlight(maxPdusInFlight);
+        }
+
+        @Override
+        protected void sendNextPdu(WalkerPduBuilder pduBuilder) throws SnmpException {
+            m_pdusSent.merge(pduBuilder, 1, Integer::sum);
+            super.sendNextPdu(pduBuilder);
+        }
+
+        public int getRoundTrips() {
+            return m_pdusSent.values().stream().mapToInt(Integer::intValue).max().orElse(0);
+        }
+    }
+
+    private static class WalkResult {
+        private final Map<String, String> m_values = new TreeMap<>();
+        private int m_rounds;
+    }
+
+    @Test(timeout = 60000)
+    public void testPipelinedTableWalk() throws Exception {
+        final WalkResult sequential = walkTable(1);
+        final WalkResult pipelined = walkTable(4);
+
+        assertFalse(sequential.m_values.isEmpty());
+        assertEquals(sequential.m_values, pipelined.m_values);
+        assertTrue("expected fewer round trips with pipelining, got " + pipelined.m_rounds + " vs " + sequential.m_rounds,
+                pipelined.m_rounds < sequential.m_rounds);
+    }
+
+    @Test(timeout = 60000)
+    public void testPipelinedAggregateWalk() throws Exception {
+        final WalkResult sequential = walkAggregate(1);
+        final WalkResult pipelined = walkAggregate(3);
+
+        assertFalse(sequential.m_values.isEmpty());
+        assertEquals(sequential.m_values, pipelined.m_values);
+        assertTrue("expected fewer round trips with pipelining, got " + pipelined.m_rounds + " vs " + sequential.m_rounds,
+                pipelined.m_rounds < sequential.m_rounds);
+    }
+
+    private WalkResult walkTable(int maxPdusInFlight) throws Exception {
+        final WalkResult result = new WalkResult();
+        final SnmpObjId[] columns = new SnmpObjId[8];
+        for (int i = 0; i < columns.length; i++) {
+            columns[i] = SnmpObjId.get(IF_TABLE, Integer.toString(i + 1));
+        }
+        final TableTracker tracker = new TableTracker(columns) {
+            @Override
+            public void rowCompleted(SnmpRowResult row) {
+                for (SnmpResult res : row.getResults()) {
+                    result.m_values.put(res.getAbsoluteInstance().toString(), res.getValue().toDisplayString());
+                }
+            }
+        };
+        result.m_rounds = walk(tracker, maxPdusInFlight);
+        return result;
+    }
+
+    private WalkResult walkAggregate(int maxPdusInFlight) throws Exception {
+        final WalkResult result = new WalkResult();
+        final Collectable[] children = new Collectable[] {
+                new SingleInstanceTracker(SYS_DESCR, SnmpInstId.INST_ZERO),
+                new SingleInstanceTracker(SYS_NAME, SnmpInstId.INST_ZERO),
+                new TableTracker(SnmpObjId.get(IF_TABLE, "2"), SnmpObjId.get(IF_TABLE, "3")),
+                new TableTracker(SnmpObjId.get(IF_TABLE, "5"), SnmpObjId.get(IF_TABLE, "6")),
+        };
+        final AggregateTracker tracker = new AggregateTracker(children) {
+            @Override
+            protected void storeResult(SnmpResult res) {
+                result.m_values.put(res.getAbsoluteInstance().toString(), res.getValue().toDisplayString());
+            }
+        };
+        result.m_rounds = walk(tracker, maxPdusInFlight);
+        return result;
+    }
+
+    private int walk(CollectionTracker tracker, int maxPdusInFlight) throws Exception {
+        final SnmpAgentConfig agentConfig = getAgentConfig();
+        agentConfig.setVersion(SnmpAgentConfig.VERSION2C);
+        agentConfig.setMaxVarsPerPdu(2);
+        agentConfig.setMaxRepetitions(2);
+
+        try (final CountingWalker walker = new CountingWalker(agentConfig, tracker, maxPdusInFlight)) {
+            walker.start();
+            walker.waitFor();
+            assertFalse(walker.getErrorMessage(), walker.failed());
+            return walker.getRoundTrips();
+        }
+    }
+}
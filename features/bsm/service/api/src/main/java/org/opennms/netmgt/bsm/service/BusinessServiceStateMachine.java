@@ -148,4 +148,12 @@ public interface BusinessServiceStateMachine {
     List<GraphVertex> calculateImpact(Application application);
 
     ThresholdResultExplanation explain(BusinessService businessService, Threshold threshold);
+
+    /**
+     * Retrieves the counters describing the work performed by the state machine
+     * since it was created.
+     *
+     * @return the current statistics
+     */
+    BusinessServiceStateMachineStatistics getStatistics();
 }
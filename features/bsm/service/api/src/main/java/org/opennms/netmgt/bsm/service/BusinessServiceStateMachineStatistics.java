@@ -0,0 +1,113 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2022 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2022 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.bsm.service;
+
+import com.google.common.base.MoreObjects;
+
+/**
+ * Point-in-time counters describing the work performed by the {@link BusinessServiceStateMachine}.
+ */
+public class BusinessServiceStateMachineStatistics {
+    private final long m_alarmUpdates;
+    private final long m_coalescedAlarmUpdates;
+    private final long m_propagations;
+    private final long m_evaluatedVertices;
+    private final long m_statusChanges;
+    private final long m_totalPropagationTimeNanos;
+    private final long m_maxPropagationTimeNanos;
+
+    public BusinessServiceStateMachineStatistics(long alarmUpdates, long coalescedAlarmUpdates, long propagations,
+                                                 long evaluatedVertices, long statusChanges,
+                                                 long totalPropagationTimeNanos, long maxPropagationTimeNanos) {
+        m_alarmUpdates = alarmUpdates;
+        m_coalescedAlarmUpdates = coalescedAlarmUpdates;
+        m_propagations = propagations;
+        m_evaluatedVertices = evaluatedVertices;
+        m_statusChanges = statusChanges;
+        m_totalPropagationTimeNanos = totalPropagationTimeNanos;
+        m_maxPropagationTimeNanos = maxPropagationTimeNanos;
+    }
+
+    /**
+     * @return the number of alarm updates handed to the state machine
+     */
+    public long getAlarmUpdates() {
+        return m_alarmUpdates;
+    }
+
+    /**
+     * @return the number of alarm updates that were superseded by a more recent update
+     * for the same reduction key before being applied
+     */
+    public long getCoalescedAlarmUpdates() {
+        return m_coalescedAlarmUpdates;
+    }
+
+    /**
+     * @return the number of times a batch of changes was propagated through the graph
+     */
+    public long getPropagations() {
+        return m_propagations;
+    }
+
+    /**
+     * @return the number of times the status of a vertex was reduced from its children
+     */
+    public long getEvaluatedVertices() {
+        return m_evaluatedVertices;
+    }
+
+    /**
+     * @return the number of times the status of a vertex changed
+     */
+    public long getStatusChanges() {
+        return m_statusChanges;
+    }
+
+    public long getTotalPropagationTimeNanos() {
+        return m_totalPropagationTimeNanos;
+    }
+
+    public long getMaxPropagationTimeNanos() {
+        return m_maxPropagationTimeNanos;
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("alarmUpdates", m_alarmUpdates)
+                .add("coalescedAlarmUpdates", m_coalescedAlarmUpdates)
+                .add("propagations", m_propagations)
+                .add("evaluatedVertices", m_evaluatedVertices)
+                .add("statusChanges", m_statusChanges)
+                .add("totalPropagationTimeNanos", m_totalPropagationTimeNanos)
+                .add("maxPropagationTimeNanos", m_maxPropagationTimeNanos)
+                .toString();
+    }
+}
@@ -36,15 +36,24 @@ import java.io.IOException;
 import java.math.BigInteger;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.NavigableMap;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.function.Function;
@@ -56,6 +65,7 @@ import org.apache.commons.collections15.Transformer;
 import org.opennms.netmgt.bsm.service.AlarmProvider;
 import org.opennms.netmgt.bsm.service.BusinessServiceStateChangeHandler;
 import org.opennms.netmgt.bsm.service.BusinessServiceStateMachine;
+import org.opennms.netmgt.bsm.service.BusinessServiceStateMachineStatistics;
 import org.opennms.netmgt.bsm.service.model.AlarmWrapper;
 import org.opennms.netmgt.bsm.service.model.Application;
 import org.opennms.netmgt.bsm.service.model.BusinessService;
@@ -83,6 +93,19 @@ import edu.uci.ics.jung.algorithms.layout.KKLayout;
 import edu.uci.ics.jung.algorithms.layout.Layout;
 import edu.uci.ics.jung.visualization.VisualizationImageServer;
 
+/**
+ * Maintains the operational status of the Business Services by propagating the status
+ * of the alarms (reduction keys) up through the graph.
+ *
+ * Alarm updates are queued per reduction key, so that a burst of updates for the same key
+ * is only applied once, and are applied in batches. Changes are only propagated along the
+ * edges that were affected, and each affected vertex is reduced once per batch, once
+ * all of its children have been updated, by processing the vertices from the highest
+ * (deepest) level up to the roots.
+ *
+ * After every batch, the resulting statuses are published in an immutable snapshot which is
+ * used to answer {@link #getOperationalStatus} without locking.
+ */
 public class DefaultBusinessServiceStateMachine implements BusinessServiceStateMachine {
     private static final Logger LOG = LoggerFactory.getLogger(DefaultBusinessServiceStateMachine.class);
     public static final Status MIN_SEVERITY = Status.NORMAL;
@@ -92,7 +115,21 @@ public class DefaultBusinessServiceStateMachine implements BusinessServiceStateM
 
     private final List<BusinessServiceStateChangeHandler> m_handlers = Lists.newArrayList();
     private final ReadWriteLock m_rwLock = new ReentrantReadWriteLock();
-    private BusinessServiceGraph m_g = new BusinessServiceGraphImpl(Collections.emptyList());
+    private volatile BusinessServiceGraph m_g = new BusinessServiceGraphImpl(Collections.emptyList());
+    private volatile StatusSnapshot m_snapshot = new StatusSnapshot(m_g);
+
+    /**
+     * Alarm updates which have yet to be applied, keyed by reduction key.
+     */
+    private final ConcurrentMap<String, Status> m_pendingAlarmUpdates = new ConcurrentHashMap<>();
+
+    private final LongAdder m_alarmUpdates = new LongAdder();
+    private final LongAdder m_coalescedAlarmUpdates = new LongAdder();
+    private final LongAdder m_propagations = new LongAdder();
+    private final LongAdder m_evaluatedVertices = new LongAdder();
+    private final LongAdder m_statusChanges = new LongAdder();
+    private final LongAdder m_totalPropagationTimeNanos = new LongAdder();
+    private final AtomicLong m_maxPropagationTimeNanos = new AtomicLong();
 
     @Override
     public void setBusinessServices(List<BusinessService> businessServices) {
@@ -100,6 +137,7 @@ public class DefaultBusinessServiceStateMachine implements BusinessServiceStateM
         try {
             // Create a new graph
             BusinessServiceGraph g = new BusinessServiceGraphImpl(businessServices);
+            Propagation propagation = new Propagation(g);
 
             // Prime the graph with the state from the previous graph and
             // keep track of the new reductions keys
@@ -107,7 +145,7 @@ public class DefaultBusinessServiceStateMachine implements BusinessServiceStateM
             for (String reductionKey : g.getReductionKeys()) {
                 GraphVertex reductionKeyVertex = m_g.getVertexByReductionKey(reductionKey);
                 if (reductionKeyVertex != null) {
-                    updateAndPropagateVertex(g, g.getVertexByReductionKey(reductionKey), reductionKeyVertex.getStatus());
+                    propagation.update(g.getVertexByReductionKey(reductionKey), reductionKeyVertex.getStatus());
                 } else {
                     reductionsKeysToLookup.add(reductionKey);
                 }
@@ -122,11 +160,16 @@ public class DefaultBusinessServiceStateMachine implements BusinessServiceStateM
                 if (reductionsKeysToLookup.size() > 0) {
                     final Map<String, AlarmWrapper> lookup = m_alarmProvider.lookup(reductionsKeysToLookup);
                     for (Entry<String, AlarmWrapper> eachEntry : lookup.entrySet()) {
-                        updateAndPropagateVertex(g, g.getVertexByReductionKey(eachEntry.getKey()), eachEntry.getValue().getStatus());
+                        propagation.update(g.getVertexByReductionKey(eachEntry.getKey()), eachEntry.getValue().getStatus());
                     }
                 }
             }
+            propagation.propagate();
             m_g = g;
+            m_snapshot = new StatusSnapshot(g);
+
+            // Apply any updates that were queued while we were busy
+            applyPendingAlarmUpdates();
         } finally {
             m_rwLock.writeLock().unlock();
         }
@@ -134,10 +177,23 @@ public class DefaultBusinessServiceStateMachine implements BusinessServiceStateM
 
     @Override
     public void handleNewOrUpdatedAlarm(AlarmWrapper alarm) {
+        final String reductionKey = alarm.getReductionKey();
+        if (reductionKey == null) {
+            // There can't be a vertex for this alarm
+            return;
+        }
+
+        m_alarmUpdates.increment();
+        if (m_pendingAlarmUpdates.put(reductionKey, Objects.requireNonNull(alarm.getStatus())) != null) {
+            // This replaced an update that was never applied
+            m_coalescedAlarmUpdates.increment();
+        }
+
+        // Apply our update, along with any other pending updates. If another thread
+        // gets the lock before us, it will apply ours and we will have nothing left to do.
         m_rwLock.writeLock().lock();
         try {
-            // Recursively propagate the status
-            updateAndPropagateVertex(m_g, m_g.getVertexByReductionKey(alarm.getReductionKey()), alarm.getStatus());
+            applyPendingAlarmUpdates();
         } finally {
             m_rwLock.writeLock().unlock();
         }
@@ -148,9 +204,12 @@ public class DefaultBusinessServiceStateMachine implements BusinessServiceStateM
         final Set<String> reductionKeysFromGivenAlarms = new HashSet<>(alarms.size());
         m_rwLock.writeLock().lock();
         try {
+            // Apply the queued updates first, the given alarms take precedence
+            applyPendingAlarmUpdates();
+
+            final Propagation propagation = new Propagation(m_g);
             for (AlarmWrapper alarm : alarms) {
-                // Recursively propagate the status for all of the given alarms
-                updateAndPropagateVertex(m_g, m_g.getVertexByReductionKey(alarm.getReductionKey()), alarm.getStatus());
+                propagation.update(m_g.getVertexByReductionKey(alarm.getReductionKey()), alarm.getStatus());
                 // Keep track of the reduction keys that have been processed
                 reductionKeysFromGivenAlarms.add(alarm.getReductionKey());
             }
@@ -158,81 +217,195 @@ public class DefaultBusinessServiceStateMachine implements BusinessServiceStateM
             for (String missingReductionKey : Sets.difference(m_g.getReductionKeys(), reductionKeysFromGivenAlarms)) {
                 // There is a vertex on the graph that corresponds to this reduction key
                 // but no alarm with this reduction key exists
-                updateAndPropagateVertex(m_g, m_g.getVertexByReductionKey(missingReductionKey), Status.INDETERMINATE);
+                propagation.update(m_g.getVertexByReductionKey(missingReductionKey), Status.INDETERMINATE);
             }
+            propagation.propagateAndPublish();
         } finally {
             m_rwLock.writeLock().unlock();
         }
     }
 
-    private void updateAndPropagateVertex(BusinessServiceGraph graph, GraphVertex vertex, Status newStatus) {
-        if (vertex == null) {
-            // Nothing to do here
+    /**
+     * Applies all of the queued alarm updates in a single batch.
+     *
+     * Must be called while holding the write lock.
+     */
+    private void applyPendingAlarmUpdates() {
+        if (m_pendingAlarmUpdates.isEmpty()) {
             return;
         }
 
-        // Apply lower bound
-        newStatus = newStatus.isLessThan(MIN_SEVERITY) ? MIN_SEVERITY : newStatus;
-
-        // Update the status if necessary
-        Status previousStatus = vertex.getStatus();
-        if (previousStatus.equals(newStatus)) {
-            // The status hasn't changed, there's nothing to propagate
-            return;
+        final Propagation propagation = new Propagation(m_g);
+        for (Entry<String, Status> entry : m_pendingAlarmUpdates.entrySet()) {
+            // Only apply the update if it wasn't replaced in the meantime, otherwise the
+            // thread that replaced it will apply the more recent one
+            if (m_pendingAlarmUpdates.remove(entry.getKey(), entry.getValue())) {
+                propagation.update(m_g.getVertexByReductionKey(entry.getKey()), entry.getValue());
+            }
         }
-        vertex.setStatus(newStatus);
+        propagation.propagateAndPublish();
+    }
 
-        // Notify the listeners
-        onStatusUpdated(graph, vertex, previousStatus);
+    /**
+     * Propagates a batch of status changes through a graph.
+     *
+     * The status of every vertex that needs to be re-evaluated is only reduced once,
+     * after all of its children were updated.
+     */
+    private class Propagation {
+        private final BusinessServiceGraph m_graph;
+        private final long m_start = System.nanoTime();
 
-        // Update the edges with the mapped status
-        List<GraphEdge> updatedEges = Lists.newArrayList();
-        for (GraphEdge edge : graph.getInEdges(vertex)) {
-            Status mappedStatus = newStatus;
-            if (newStatus.isGreaterThan(MIN_SEVERITY)) {
-                // Only apply the map function when the status is > the minimum
-                mappedStatus = edge.getMapFunction().map(newStatus).orElse(MIN_SEVERITY);
-            } else {
-                mappedStatus = newStatus;
+        /**
+         * Vertices which need to be reduced, by descending level.
+         */
+        private final NavigableMap<Integer, Set<GraphVertex>> m_dirtyVerticesByLevel = new TreeMap<>(Comparator.reverseOrder());
+
+        private final Set<GraphVertex> m_updatedVertices = Sets.newHashSet();
+
+        private Propagation(BusinessServiceGraph graph) {
+            m_graph = Objects.requireNonNull(graph);
+        }
+
+        /**
+         * Updates the status of the given vertex and the status of its edges,
+         * marking the affected parents for re-evaluation.
+         */
+        private void update(GraphVertex vertex, Status newStatus) {
+            if (vertex == null) {
+                // Nothing to do here
+                return;
             }
 
-            if (mappedStatus.equals(edge.getStatus())) {
-                // The status hasn't changed
-                continue;
+            // Apply lower bound
+            newStatus = newStatus.isLessThan(MIN_SEVERITY) ? MIN_SEVERITY : newStatus;
+
+            // Update the status if necessary
+            Status previousStatus = vertex.getStatus();
+            if (previousStatus.equals(newStatus)) {
+                // The status hasn't changed, there's nothing to propagate
+                return;
             }
+            vertex.setStatus(newStatus);
+            m_updatedVertices.add(vertex);
+            m_statusChanges.increment();
+
+            // Notify the listeners
+            onStatusUpdated(m_graph, vertex, previousStatus);
+
+            // Update the edges with the mapped status
+            for (GraphEdge edge : m_graph.getInEdges(vertex)) {
+                Status mappedStatus = newStatus;
+                if (newStatus.isGreaterThan(MIN_SEVERITY)) {
+                    // Only apply the map function when the status is > the minimum
+                    mappedStatus = edge.getMapFunction().map(newStatus).orElse(MIN_SEVERITY);
+                } else {
+                    mappedStatus = newStatus;
+                }
 
-            // Update the status and add it to the list of edges to propagate
-            edge.setStatus(mappedStatus);
-            updatedEges.add(edge);
+                if (mappedStatus.equals(edge.getStatus())) {
+                    // The status hasn't changed
+                    continue;
+                }
+
+                // Update the status and mark the parent for re-evaluation
+                edge.setStatus(mappedStatus);
+                final GraphVertex parent = m_graph.getOpposite(vertex, edge);
+                if (parent != null) {
+                    m_dirtyVerticesByLevel.computeIfAbsent(parent.getLevel(), l -> new LinkedHashSet<>()).add(parent);
+                }
+            }
         }
 
-        // Propagate once all of the edges have been updated
-        for (GraphEdge edge : updatedEges) {
-            reduceUpdateAndPropagateVertex(graph, graph.getOpposite(vertex, edge));
+        /**
+         * Reduces the status of the vertices that were marked for re-evaluation, starting
+         * with the deepest ones, until there are no more changes.
+         */
+        private void propagate() {
+            while (!m_dirtyVerticesByLevel.isEmpty()) {
+                final Entry<Integer, Set<GraphVertex>> level = m_dirtyVerticesByLevel.pollFirstEntry();
+                for (GraphVertex vertex : level.getValue()) {
+                    m_evaluatedVertices.increment();
+                    update(vertex, reduce(m_graph, vertex));
+                }
+            }
+
+            final long duration = System.nanoTime() - m_start;
+            m_propagations.increment();
+            m_totalPropagationTimeNanos.add(duration);
+            m_maxPropagationTimeNanos.accumulateAndGet(duration, Math::max);
         }
-    }
 
-    private void reduceUpdateAndPropagateVertex(BusinessServiceGraph graph, GraphVertex vertex) {
-        if (vertex == null) {
-            // Nothing to do here
-            return;
+        /**
+         * Propagates the changes and publishes a new snapshot with the updated statuses.
+         */
+        private void propagateAndPublish() {
+            propagate();
+            if (!m_updatedVertices.isEmpty()) {
+                m_snapshot = m_snapshot.withUpdatedStatuses(m_updatedVertices);
+            }
         }
+    }
 
+    private static Status reduce(BusinessServiceGraph graph, GraphVertex vertex) {
         // Calculate the weighed statuses from the child edges
         List<StatusWithIndex> statuses = weighEdges(graph.getOutEdges(vertex));
 
         // Reduce
         Optional<StatusWithIndices> reducedStatus = vertex.getReductionFunction().reduce(statuses);
 
-        Status newStatus;
         if (reducedStatus.isPresent()) {
-            newStatus = reducedStatus.get().getStatus();
+            return reducedStatus.get().getStatus();
         } else {
-            newStatus = MIN_SEVERITY;
+            return MIN_SEVERITY;
+        }
+    }
+
+    /**
+     * Immutable copy of the statuses of all of the vertices in a graph.
+     *
+     * The graph's structure and indices are never modified once it is built, so they are
+     * safe to use for lookups without holding any locks.
+     */
+    private static class StatusSnapshot {
+        private final BusinessServiceGraph m_graph;
+        private final Map<GraphVertex, Integer> m_indexByVertex;
+        private final Status[] m_statuses;
+
+        private StatusSnapshot(BusinessServiceGraph graph) {
+            m_graph = graph;
+            m_indexByVertex = new IdentityHashMap<>();
+            m_statuses = new Status[graph.getVertexCount()];
+            int k = 0;
+            for (GraphVertex vertex : graph.getVertices()) {
+                m_indexByVertex.put(vertex, k);
+                m_statuses[k++] = vertex.getStatus();
+            }
+        }
+
+        private StatusSnapshot(StatusSnapshot previous, Collection<GraphVertex> updatedVertices) {
+            m_graph = previous.m_graph;
+            m_indexByVertex = previous.m_indexByVertex;
+            m_statuses = previous.m_statuses.clone();
+            for (GraphVertex vertex : updatedVertices) {
+                final Integer index = m_indexByVertex.get(vertex);
+                if (index != null) {
+                    m_statuses[index] = vertex.getStatus();
+                }
+            }
+        }
+
+        private StatusSnapshot withUpdatedStatuses(Collection<GraphVertex> updatedVertices) {
+            return new StatusSnapshot(this, updatedVertices);
         }
 
-        // Update and propagate
-        updateAndPropagateVertex(graph, vertex, newStatus);
+        private Status getStatus(GraphVertex vertex) {
+            if (vertex == null) {
+                return null;
+            }
+            final Integer index = m_indexByVertex.get(vertex);
+            return index != null ? m_statuses[index] : null;
+        }
     }
 
     public static List<StatusWithIndex> weighEdges(Collection<GraphEdge> edges) {
@@ -297,58 +470,26 @@ public class DefaultBusinessServiceStateMachine implements BusinessServiceStateM
     @Override
     public Status getOperationalStatus(BusinessService businessService) {
         Objects.requireNonNull(businessService);
-        m_rwLock.readLock().lock();
-        try {
-            GraphVertex vertex = m_g.getVertexByBusinessServiceId(businessService.getId());
-            if (vertex != null) {
-                return vertex.getStatus();
-            }
-            return null;
-        } finally {
-            m_rwLock.readLock().unlock();
-        }
+        final StatusSnapshot snapshot = m_snapshot;
+        return snapshot.getStatus(snapshot.m_graph.getVertexByBusinessServiceId(businessService.getId()));
     }
 
     @Override
     public Status getOperationalStatus(IpService ipService) {
-        m_rwLock.readLock().lock();
-        try {
-            GraphVertex vertex = m_g.getVertexByIpServiceId(ipService.getId());
-            if (vertex != null) {
-                return vertex.getStatus();
-            }
-            return null;
-        } finally {
-            m_rwLock.readLock().unlock();
-        }
+        final StatusSnapshot snapshot = m_snapshot;
+        return snapshot.getStatus(snapshot.m_graph.getVertexByIpServiceId(ipService.getId()));
     }
 
     @Override
     public Status getOperationalStatus(String reductionKey) {
-        m_rwLock.readLock().lock();
-        try {
-            GraphVertex vertex = m_g.getVertexByReductionKey(reductionKey);
-            if (vertex != null) {
-                return vertex.getStatus();
-            }
-            return null;
-        } finally {
-            m_rwLock.readLock().unlock();
-        }
+        final StatusSnapshot snapshot = m_snapshot;
+        return snapshot.getStatus(snapshot.m_graph.getVertexByReductionKey(reductionKey));
     }
 
     @Override
     public Status getOperationalStatus(Edge edge) {
-        m_rwLock.readLock().lock();
-        try {
-            GraphVertex vertex = m_g.getVertexByEdgeId(edge.getId());
-            if (vertex != null) {
-                return vertex.getStatus();
-            }
-            return null;
-        } finally {
-            m_rwLock.readLock().unlock();
-        }
+        final StatusSnapshot snapshot = m_snapshot;
+        return snapshot.getStatus(snapshot.m_graph.getVertexByEdgeId(edge.getId()));
     }
 
     public void setAlarmProvider(AlarmProvider alarmProvider) {
@@ -570,6 +711,13 @@ public class DefaultBusinessServiceStateMachine implements BusinessServiceStateM
         return explanation;
     }
 
+    @Override
+    public BusinessServiceStateMachineStatistics getStatistics() {
+        return new BusinessServiceStateMachineStatistics(m_alarmUpdates.sum(), m_coalescedAlarmUpdates.sum(),
+                m_propagations.sum(), m_evaluatedVertices.sum(), m_statusChanges.sum(),
+                m_totalPropagationTimeNanos.sum(), m_maxPropagationTimeNanos.get());
+    }
+
     private List<GraphVertex> calculateImpact(GraphVertex vertex) {
         return GraphAlgorithms.calculateImpact(m_g, vertex);
     }
@@ -45,6 +45,7 @@ import org.opennms.netmgt.bsm.mock.MockAlarmWrapper;
 import org.opennms.netmgt.bsm.mock.MockBusinessServiceHierarchy;
 import org.opennms.netmgt.bsm.service.AlarmProvider;
 import org.opennms.netmgt.bsm.service.BusinessServiceStateMachine;
+import org.opennms.netmgt.bsm.service.BusinessServiceStateMachineStatistics;
 import org.opennms.netmgt.bsm.service.model.AlarmWrapper;
 import org.opennms.netmgt.bsm.service.model.BusinessService;
 import org.opennms.netmgt.bsm.service.model.Status;
@@ -56,6 +57,7 @@ import org.opennms.netmgt.bsm.service.model.graph.GraphVertex;
 import org.opennms.netmgt.bsm.test.LoggingStateChangeHandler;
 
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 
 public class DefaultBusinessServiceStateMachineTest {
@@ -156,6 +158,45 @@ public class DefaultBusinessServiceStateMachineTest {
         assertEquals(1, stateChangeHandler.getStateChanges().size());
     }
 
+    @Test
+    public void canPropagateABatchOfAlarmsOnce() {
+        MockBusinessServiceHierarchy h = MockBusinessServiceHierarchy.builder()
+                .withBusinessService(1)
+                    .withBusinessService(2)
+                        .withReductionKey(21, "a1")
+                        .withReductionKey(22, "a2")
+                        .withReductionKey(23, "a3")
+                    .commit()
+                .commit()
+                .build();
+
+        DefaultBusinessServiceStateMachine stateMachine = new DefaultBusinessServiceStateMachine();
+        LoggingStateChangeHandler stateChangeHandler = new LoggingStateChangeHandler();
+        stateMachine.addHandler(stateChangeHandler, Maps.newHashMap());
+        stateMachine.setBusinessServices(h.getBusinessServices());
+        BusinessServiceStateMachineStatistics statsBefore = stateMachine.getStatistics();
+
+        stateMachine.handleAllAlarms(Lists.newArrayList(
+                new MockAlarmWrapper("a1", Status.MINOR),
+                new MockAlarmWrapper("a2", Status.CRITICAL),
+                new MockAlarmWrapper("a3", Status.MAJOR)));
+
+        assertEquals(Status.CRITICAL, stateMachine.getOperationalStatus(h.getBusinessServiceById(1)));
+        assertEquals(Status.CRITICAL, stateMachine.getOperationalStatus(h.getBusinessServiceById(2)));
+        assertEquals(Status.MAJOR, stateMachine.getOperationalStatus("a3"));
+
+        // Each of the business services should have been reduced, and changed state, exactly once
+        BusinessServiceStateMachineStatistics statsAfter = stateMachine.getStatistics();
+        assertEquals(2, statsAfter.getEvaluatedVertices() - statsBefore.getEvaluatedVertices());
+        assertEquals(1, statsAfter.getPropagations() - statsBefore.getPropagations());
+        assertEquals(2, stateChangeHandler.getStateChanges().size());
+
+        // Alarm updates are applied as soon as they are handled
+        stateMachine.handleNewOrUpdatedAlarm(new MockAlarmWrapper("a2", Status.NORMAL));
+        assertEquals(Status.MAJOR, stateMachine.getOperationalStatus(h.getBusinessServiceById(1)));
+        assertEquals(statsAfter.getAlarmUpdates() + 1, stateMachine.getStatistics().getAlarmUpdates());
+    }
+
     @Test
     public void canPerformRootCauseAndImpactAnalysis() {
         // Create a hierarchy using all of the available reduction functions
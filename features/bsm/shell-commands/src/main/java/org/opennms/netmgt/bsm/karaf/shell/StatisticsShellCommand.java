@@ -0,0 +1,61 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2022 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2022 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.bsm.karaf.shell;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.karaf.shell.api.action.Action;
+import org.apache.karaf.shell.api.action.Command;
+import org.apache.karaf.shell.api.action.lifecycle.Reference;
+import org.apache.karaf.shell.api.action.lifecycle.Service;
+import org.opennms.netmgt.bsm.service.BusinessServiceStateMachine;
+import org.opennms.netmgt.bsm.service.BusinessServiceStateMachineStatistics;
+
+@Command(scope = "opennms", name = "bsm-stats", description="Displays statistics about the state machine's status propagation.")
+@Service
+public class StatisticsShellCommand implements Action {
+
+    @Reference
+    public BusinessServiceStateMachine businessServiceStateMachine;
+
+    @Override
+    public Object execute() throws Exception {
+        final BusinessServiceStateMachineStatistics stats = businessServiceStateMachine.getStatistics();
+        final long avgPropagationTimeMicros = stats.getPropagations() > 0 ?
+                TimeUnit.NANOSECONDS.toMicros(stats.getTotalPropagationTimeNanos() / stats.getPropagations()) : 0;
+        System.out.printf("Alarm updates:            %d%n", stats.getAlarmUpdates());
+        System.out.printf("Coalesced alarm updates:  %d%n", stats.getCoalescedAlarmUpdates());
+        System.out.printf("Propagations:             %d%n", stats.getPropagations());
+        System.out.printf("Evaluated vertices:       %d%n", stats.getEvaluatedVertices());
+        System.out.printf("Status changes:           %d%n", stats.getStatusChanges());
+        System.out.printf("Avg. propagation time:    %dus%n", avgPropagationTimeMicros);
+        System.out.printf("Max. propagation time:    %dus%n", TimeUnit.NANOSECONDS.toMicros(stats.getMaxPropagationTimeNanos()));
+        return null;
+    }
+}
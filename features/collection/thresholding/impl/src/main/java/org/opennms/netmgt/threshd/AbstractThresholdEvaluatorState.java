@@ -49,6 +49,7 @@ import org.opennms.features.distributed.kvstore.api.SerializingBlobStore;
 import org.opennms.netmgt.collection.api.CollectionResource;
 import org.opennms.netmgt.model.ResourceId;
 import org.opennms.netmgt.model.events.EventBuilder;
+import org.opennms.netmgt.threshd.api.ThresholdStateMonitor;
 import org.opennms.netmgt.threshd.api.ThresholdingSession;
 import org.opennms.netmgt.xml.event.Event;
 import org.slf4j.Logger;
@@ -97,6 +98,8 @@ public abstract class AbstractThresholdEvaluatorState<T extends AbstractThreshol
 
     private final SerializingBlobStore<T> kvStore;
 
+    private final Class<T> stateType;
+
     protected T state;
     
     protected final ThresholdingSession thresholdingSession;
@@ -120,8 +123,10 @@ public abstract class AbstractThresholdEvaluatorState<T extends AbstractThreshol
     /**
      * A last updated cache to track when the last time we know we persisted a given key was. This is for performance
      * reasons so that on fetch we can see if we already were the last ones to update and avoid a full fetch if so.
+     * <p>
+     * The {@link WriteBehindStatePersister} also uses the timestamps as the expected versions when updating states.
      */
-    private static final Map<String, Long> lastUpdatedCache = CacheBuilder.newBuilder()
+    static final Map<String, Long> lastUpdatedCache = CacheBuilder.newBuilder()
             .maximumSize(10000)
             .build(new CacheLoader<String, Long>() {
                 @Override
@@ -175,6 +180,7 @@ public abstract class AbstractThresholdEvaluatorState<T extends AbstractThreshol
         Objects.requireNonNull(thresholdingSession.getBlobStore());
 
         this.thresholdingSession = thresholdingSession;
+        this.stateType = Objects.requireNonNull(stateType);
         kvStore = getKvStoreForType(stateType, thresholdingSession.getBlobStore());
         key = String.format("%d-%s-%s-%s-%s-%s-%s", thresholdingSession.getKey().getNodeId(),
                 thresholdingSession.getKey().getLocation(), threshold.getDsType(),
@@ -229,8 +235,30 @@ public abstract class AbstractThresholdEvaluatorState<T extends AbstractThreshol
         return isStateDirty;
     }
 
+    private Optional<WriteBehindStatePersister> getWriteBehindPersister() {
+        ThresholdStateMonitor monitor = thresholdingSession.getThresholdStateMonitor();
+        if (monitor instanceof BlobStoreAwareMonitor) {
+            return ((BlobStoreAwareMonitor) monitor).getWriteBehindPersister();
+        }
+        return Optional.empty();
+    }
+
     private void persistStateIfNeeded() {
-        if (shouldPersist()) {
+        if (!shouldPersist()) {
+            return;
+        }
+
+        Optional<WriteBehindStatePersister> writeBehindPersister = getWriteBehindPersister();
+        if (writeBehindPersister.isPresent()) {
+            try {
+                // Serialize now since the state will keep changing, the write itself happens in the background
+                writeBehindPersister.get().enqueue(key, thresholdingSession.getBlobStore(), fst.asByteArray(state),
+                        stateTTL);
+                isStateDirty = false;
+            } catch (RuntimeException e) {
+                RATE_LIMITED_LOGGER.warn("Failed to queue state for threshold {}", key, e);
+            }
+        } else {
             try {
                 long newTimestamp = kvStore.put(key, state, THRESHOLDING_KV_CONTEXT, stateTTL);
                 lastUpdatedCache.put(key, newTimestamp);
@@ -257,16 +285,32 @@ public abstract class AbstractThresholdEvaluatorState<T extends AbstractThreshol
             }
 
             try {
+                Optional<WriteBehindStatePersister> writeBehindPersister = getWriteBehindPersister();
+                Optional<byte[]> pendingState = writeBehindPersister.flatMap(p -> p.getPending(key));
                 Long lastKnownUpdate = lastUpdatedCache.get(key);
 
-                // If we don't have a record of when this was last updated locally, get it from the store
-                // Otherwise if we are evaluating for the first time we need to fetch regardless since we have no state
-                if (lastKnownUpdate == null || firstEvaluation) {
+                if (pendingState.isPresent() && (firstEvaluation || lastKnownUpdate == null)) {
+                    // We have a more recent copy of the state than the store that has yet to be persisted. Unless the
+                    // store has a version newer than the one we know about, which we can't tell without a known
+                    // version, that copy is the one to use.
+                    if (firstEvaluation) {
+                        state = stateType.cast(fst.asObject(pendingState.get()));
+                    }
+                } else if (lastKnownUpdate == null || firstEvaluation) {
+                    // If we don't have a record of when this was last updated locally, get it from the store
+                    // Otherwise if we are evaluating for the first time we need to fetch regardless since we have no
+                    // state
                     kvStore.get(key, THRESHOLDING_KV_CONTEXT).ifPresent(v -> state = v);
                 } else {
                     // Otherwise get it from the store only if our record is stale
                     kvStore.getIfStale(key, THRESHOLDING_KV_CONTEXT, lastKnownUpdate)
-                            .ifPresent(o -> o.ifPresent(v -> state = v));
+                            .ifPresent(o -> o.ifPresent(v -> {
+                                // Someone else updated the state, so any changes we have yet to persist are outdated
+                                // and we no longer know the version of the record
+                                state = v;
+                                writeBehindPersister.ifPresent(p -> p.discard(key));
+                                lastUpdatedCache.remove(key);
+                            }));
                 }
             } catch (RuntimeException e) {
                 RATE_LIMITED_LOGGER.warn("Failed to retrieve state for threshold {}", key, e);
@@ -32,12 +32,14 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Optional;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.function.Consumer;
 
+import org.opennms.core.sysprops.SystemProperties;
 import org.opennms.features.distributed.kvstore.api.BlobStore;
 import org.opennms.netmgt.threshd.api.ReinitializableState;
 import org.opennms.netmgt.threshd.api.ThresholdStateMonitor;
@@ -46,6 +48,10 @@ import org.opennms.netmgt.threshd.api.ThresholdStateMonitor;
  * This implementation tracks the in-memory states of thresholds while also being aware of their persistence. This
  * allows for the encapsulation of atomic clear/reinitialize logic where both the in-memory and persisted copies of the
  * state can be cleared together without clients of being aware.
+ * <p>
+ * Unless disabled by setting the flush interval to 0, the states are persisted through a
+ * {@link WriteBehindStatePersister} which is flushed while holding the read lock, so that clearing the states can not
+ * interleave with a flush.
  */
 public class BlobStoreAwareMonitor implements ThresholdStateMonitor {
     private final ReadWriteLock readWriteLock = new ReentrantReadWriteLock();
@@ -53,9 +59,44 @@ public class BlobStoreAwareMonitor implements ThresholdStateMonitor {
     private final Lock writeLock = readWriteLock.writeLock();
     private final Map<String, ReinitializableState> stateMap = new ConcurrentHashMap<>();
     private final BlobStore blobStore;
+    private final WriteBehindStatePersister writeBehindPersister;
 
     public BlobStoreAwareMonitor(BlobStore blobStore) {
+        this(blobStore,
+                SystemProperties.getLong("org.opennms.netmgt.threshd.state_flush_interval_ms", 1000L),
+                SystemProperties.getInteger("org.opennms.netmgt.threshd.state_flush_batch_size", 500));
+    }
+
+    public BlobStoreAwareMonitor(BlobStore blobStore, long flushIntervalMs, int flushBatchSize) {
         this.blobStore = Objects.requireNonNull(blobStore);
+        if (flushIntervalMs > 0) {
+            writeBehindPersister = new WriteBehindStatePersister(AbstractThresholdEvaluatorState.lastUpdatedCache,
+                    flushIntervalMs, flushBatchSize, this::withReadLock);
+        } else {
+            writeBehindPersister = null;
+        }
+    }
+
+    /**
+     * @return the persister to use for the states, or empty if the states should be persisted synchronously
+     */
+    public Optional<WriteBehindStatePersister> getWriteBehindPersister() {
+        return Optional.ofNullable(writeBehindPersister);
+    }
+
+    /**
+     * Persists all of the pending states.
+     */
+    public void flush() {
+        if (writeBehindPersister != null) {
+            withReadLock(writeBehindPersister::flush);
+        }
+    }
+
+    public void destroy() {
+        if (writeBehindPersister != null) {
+            writeBehindPersister.close();
+        }
     }
 
     @Override
@@ -111,10 +152,16 @@ public class BlobStoreAwareMonitor implements ThresholdStateMonitor {
     }
 
     private void clearSingleStateFromPersistence(String stateKey) {
+        if (writeBehindPersister != null) {
+            writeBehindPersister.discard(stateKey);
+        }
         blobStore.delete(stateKey, AbstractThresholdEvaluatorState.THRESHOLDING_KV_CONTEXT);
     }
 
     private void clearAllStatesFromPersistence() {
+        if (writeBehindPersister != null) {
+            writeBehindPersister.discardAll();
+        }
         blobStore.truncateContext(AbstractThresholdEvaluatorState.THRESHOLDING_KV_CONTEXT);
     }
 }
@@ -0,0 +1,271 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2022 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2022 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.threshd;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import org.opennms.features.distributed.kvstore.api.BlobStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.swrve.ratelimitedlogger.RateLimitedLog;
+
+/**
+ * Buffers serialized threshold states in memory and persists them in batches from a background thread so that
+ * threshold evaluation never waits on the {@link BlobStore}.
+ * <p>
+ * Only the most recent state for a given key is retained until it is flushed. Each write is conditional on the last
+ * version of the record we know about (see {@link AbstractThresholdEvaluatorState#lastUpdatedCache}) so that a state
+ * that was updated by another instance (i.e. another Sentinel) in the meantime is not overwritten. When that happens
+ * our copy is dropped and the known version is forgotten which forces the evaluator to fetch the state again.
+ */
+public class WriteBehindStatePersister implements AutoCloseable {
+    private static final Logger LOG = LoggerFactory.getLogger(WriteBehindStatePersister.class);
+    private static final RateLimitedLog RATE_LIMITED_LOGGER = RateLimitedLog
+            .withRateLimit(LOG)
+            .maxRate(5).every(Duration.ofSeconds(30))
+            .build();
+
+    private final Map<String, PendingState> pendingStates = new ConcurrentHashMap<>();
+    private final Map<String, Long> knownVersions;
+    private final int batchSize;
+    private final ScheduledExecutorService executor;
+    private final AtomicBoolean flushRequested = new AtomicBoolean(false);
+    private final Runnable flushTask;
+
+    private final AtomicLong numPersisted = new AtomicLong();
+    private final AtomicLong numConflicts = new AtomicLong();
+    private final AtomicLong numFailures = new AtomicLong();
+
+    /**
+     * @param knownVersions  the last known version (timestamp) of each persisted state, maintained by this persister
+     *                       after every flush
+     * @param flushExecutor  used to wrap the periodic flushes i.e. to hold a lock while flushing
+     */
+    WriteBehindStatePersister(Map<String, Long> knownVersions, long flushIntervalMs, int batchSize,
+                              Consumer<Runnable> flushExecutor) {
+        if (flushIntervalMs <= 0) {
+            throw new IllegalArgumentException("The flush interval must be strictly positive");
+        }
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("The batch size must be strictly positive");
+        }
+        this.knownVersions = Objects.requireNonNull(knownVersions);
+        this.batchSize = batchSize;
+        Objects.requireNonNull(flushExecutor);
+
+        executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+                .setNameFormat("threshold-state-writer-%d")
+                .setDaemon(true)
+                .build());
+        executor.scheduleWithFixedDelay(() -> flushExecutor.accept(this::flushQuietly), flushIntervalMs,
+                flushIntervalMs, TimeUnit.MILLISECONDS);
+        this.flushTask = () -> {
+            flushRequested.set(false);
+            flushExecutor.accept(this::flushQuietly);
+        };
+    }
+
+    /**
+     * Queues the given state for persistence, replacing any state for the same key that has not been flushed yet.
+     */
+    public void enqueue(String key, BlobStore blobStore, byte[] value, Integer ttlInSeconds) {
+        pendingStates.put(key, new PendingState(blobStore, value, ttlInSeconds));
+
+        // Don't wait for the next interval if we already have enough for a full batch
+        if (pendingStates.size() >= batchSize && flushRequested.compareAndSet(false, true)) {
+            executor.execute(flushTask);
+        }
+    }
+
+    /**
+     * @return the serialized state for the given key if it has been queued but not yet persisted
+     */
+    public Optional<byte[]> getPending(String key) {
+        PendingState pendingState = pendingStates.get(key);
+        return pendingState == null ? Optional.empty() : Optional.of(pendingState.value);
+    }
+
+    public void discard(String key) {
+        pendingStates.remove(key);
+    }
+
+    public void discardAll() {
+        pendingStates.clear();
+    }
+
+    public int getNumPending() {
+        return pendingStates.size();
+    }
+
+    public long getNumPersisted() {
+        return numPersisted.get();
+    }
+
+    public long getNumConflicts() {
+        return numConflicts.get();
+    }
+
+    public long getNumFailures() {
+        return numFailures.get();
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            RATE_LIMITED_LOGGER.warn("Failed to flush threshold states", e);
+        }
+    }
+
+    /**
+     * Persists all of the states that were queued before this call.
+     */
+    public synchronized void flush() {
+        int remaining = pendingStates.size();
+        while (remaining > 0) {
+            // Group the batch by store since the evaluators are not guaranteed to share one
+            Map<BlobStore, Map<Integer, Map<String, PendingState>>> batch = new IdentityHashMap<>();
+            int batchCount = 0;
+            Iterator<String> keys = pendingStates.keySet().iterator();
+            while (keys.hasNext() && batchCount < batchSize) {
+                String key = keys.next();
+                PendingState pendingState = pendingStates.remove(key);
+                if (pendingState != null) {
+                    batch.computeIfAbsent(pendingState.blobStore, s -> new HashMap<>())
+                            .computeIfAbsent(pendingState.ttlInSeconds, t -> new HashMap<>())
+                            .put(key, pendingState);
+                    batchCount++;
+                }
+            }
+            if (batchCount == 0) {
+                return;
+            }
+            remaining -= batchCount;
+
+            boolean failed = false;
+            for (Map.Entry<BlobStore, Map<Integer, Map<String, PendingState>>> storeEntry : batch.entrySet()) {
+                for (Map.Entry<Integer, Map<String, PendingState>> ttlEntry : storeEntry.getValue().entrySet()) {
+                    if (failed) {
+                        // Keep the rest of the batch for the next flush unless the state was updated in the meantime
+                        ttlEntry.getValue().forEach(pendingStates::putIfAbsent);
+                    } else if (!persist(storeEntry.getKey(), ttlEntry.getKey(), ttlEntry.getValue())) {
+                        failed = true;
+                    }
+                }
+            }
+            if (failed) {
+                // Give the store a break until the next interval
+                return;
+            }
+        }
+    }
+
+    private boolean persist(BlobStore blobStore, Integer ttlInSeconds, Map<String, PendingState> states) {
+        Map<String, byte[]> values = new HashMap<>(states.size());
+        Map<String, Long> expectedVersions = new HashMap<>(states.size());
+        states.forEach((key, pendingState) -> {
+            values.put(key, pendingState.value);
+            Long knownVersion = knownVersions.get(key);
+            if (knownVersion != null) {
+                expectedVersions.put(key, knownVersion);
+            }
+        });
+
+        Map<String, Long> persisted;
+        try {
+            persisted = blobStore.putAllIfUnmodified(values, expectedVersions,
+                    AbstractThresholdEvaluatorState.THRESHOLDING_KV_CONTEXT, ttlInSeconds);
+        } catch (RuntimeException e) {
+            numFailures.addAndGet(states.size());
+            RATE_LIMITED_LOGGER.warn("Failed to store {} threshold states", states.size(), e);
+            // Retry on the next flush unless the state was updated in the meantime
+            states.forEach(pendingStates::putIfAbsent);
+            return false;
+        }
+
+        List<String> conflicts = new ArrayList<>();
+        for (String key : states.keySet()) {
+            Long version = persisted.get(key);
+            if (version != null) {
+                knownVersions.put(key, version);
+            } else {
+                // Someone else updated the state since we last saw it, forget about our version so that the evaluator
+                // fetches theirs
+                knownVersions.remove(key);
+                conflicts.add(key);
+            }
+        }
+        numPersisted.addAndGet(states.size() - conflicts.size());
+        if (!conflicts.isEmpty()) {
+            numConflicts.addAndGet(conflicts.size());
+            LOG.debug("Discarded {} threshold states that were modified concurrently: {}", conflicts.size(), conflicts);
+        }
+        return true;
+    }
+
+    @Override
+    public void close() {
+        executor.shutdown();
+        try {
+            executor.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flushQuietly();
+    }
+
+    private static class PendingState {
+        private final BlobStore blobStore;
+        private final byte[] value;
+        private final Integer ttlInSeconds;
+
+        private PendingState(BlobStore blobStore, byte[] value, Integer ttlInSeconds) {
+            this.blobStore = Objects.requireNonNull(blobStore);
+            this.value = Objects.requireNonNull(value);
+            this.ttlInSeconds = ttlInSeconds;
+        }
+    }
+}
@@ -52,7 +52,6 @@ import org.opennms.core.test.db.annotations.JUnitTemporaryDatabase;
 import org.opennms.features.distributed.kvstore.api.BlobStore;
 import org.opennms.netmgt.config.threshd.Threshold;
 import org.opennms.netmgt.config.threshd.ThresholdType;
-import org.opennms.netmgt.threshd.api.ThresholdStateMonitor;
 import org.opennms.netmgt.threshd.api.ThresholdingSession;
 import org.opennms.test.JUnitConfigurationEnvironment;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -73,7 +72,7 @@ public class ThresholdStateIT {
     private BlobStore blobStore;
 
     private final ThresholdingSession thresholdingSession = MockSession.getSession();
-    private ThresholdStateMonitor monitor;
+    private BlobStoreAwareMonitor monitor;
     private final Scope scope = mock(Scope.class);
 
     @Before
@@ -88,6 +87,7 @@ public class ThresholdStateIT {
     
     @After
     public void cleanup() {
+        monitor.destroy();
         blobStore.truncateContext(AbstractThresholdEvaluatorState.THRESHOLDING_KV_CONTEXT);
     }
     
@@ -117,6 +117,10 @@ public class ThresholdStateIT {
         // This test needs to use a non-default blobstore so we can count blobstore operations
         BlobStore mockBlobStore = mock(BlobStore.class);
         when(thresholdingSession.getBlobStore()).thenReturn(mockBlobStore);
+        // Persist synchronously so that only the fetches made while evaluating are counted
+        monitor.destroy();
+        monitor = new BlobStoreAwareMonitor(mockBlobStore, 0, 500);
+        when(thresholdingSession.getThresholdStateMonitor()).thenReturn(monitor);
         // We also need to explicitly clear the existing serdes that are in use since they will have been built using
         // the other blobstore impl
         AbstractThresholdEvaluatorState.clearSerdesMap();
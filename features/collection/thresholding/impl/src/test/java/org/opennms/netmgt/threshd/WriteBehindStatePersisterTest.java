@@ -0,0 +1,152 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2022 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2022 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.threshd;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.opennms.features.distributed.kvstore.api.BlobStore;
+import org.opennms.features.distributed.kvstore.blob.inmemory.InMemoryMapBlobStore;
+
+public class WriteBehindStatePersisterTest {
+    private static final String CONTEXT = AbstractThresholdEvaluatorState.THRESHOLDING_KV_CONTEXT;
+
+    private final Map<String, Long> knownVersions = new ConcurrentHashMap<>();
+    // Tick on every write so that successive writes within the same millisecond can be told apart
+    private final AtomicLong ticks = new AtomicLong();
+    private final BlobStore blobStore = new InMemoryMapBlobStore(ticks::incrementAndGet);
+    private WriteBehindStatePersister persister;
+
+    @Before
+    public void setUp() {
+        // Use an interval long enough for the periodic flush to never kick in during a test
+        persister = new WriteBehindStatePersister(knownVersions, 3_600_000, 100, Runnable::run);
+    }
+
+    @After
+    public void tearDown() {
+        persister.close();
+    }
+
+    @Test
+    public void canCoalesceAndFlushStates() {
+        persister.enqueue("a", blobStore, new byte[]{1}, null);
+        persister.enqueue("a", blobStore, new byte[]{2}, null);
+        persister.enqueue("b", blobStore, new byte[]{3}, null);
+
+        // Nothing is written until we flush, but the pending states are visible
+        assertThat(blobStore.get("a", CONTEXT).isPresent(), is(false));
+        assertThat(persister.getPending("a").get(), equalTo(new byte[]{2}));
+        assertThat(persister.getNumPending(), equalTo(2));
+
+        persister.flush();
+
+        assertThat(persister.getNumPending(), equalTo(0));
+        assertThat(persister.getNumPersisted(), equalTo(2L));
+        assertThat(persister.getPending("a"), equalTo(Optional.empty()));
+        assertThat(blobStore.get("a", CONTEXT).get(), equalTo(new byte[]{2}));
+        assertThat(blobStore.get("b", CONTEXT).get(), equalTo(new byte[]{3}));
+        assertThat(knownVersions.get("a"), equalTo(blobStore.getLastUpdated("a", CONTEXT).getAsLong()));
+    }
+
+    @Test
+    public void doesNotOverwriteConcurrentUpdates() {
+        persister.enqueue("a", blobStore, new byte[]{1}, null);
+        persister.flush();
+
+        // Another instance updates the state behind our back
+        blobStore.put("a", new byte[]{9}, CONTEXT);
+
+        persister.enqueue("a", blobStore, new byte[]{2}, null);
+        persister.flush();
+
+        assertThat(blobStore.get("a", CONTEXT).get(), equalTo(new byte[]{9}));
+        assertThat(persister.getNumConflicts(), equalTo(1L));
+        assertThat(knownVersions.containsKey("a"), is(false));
+    }
+
+    @Test
+    public void canDiscardPendingStates() {
+        persister.enqueue("a", blobStore, new byte[]{1}, null);
+        persister.enqueue("b", blobStore, new byte[]{2}, null);
+        persister.discard("a");
+        persister.flush();
+
+        assertThat(blobStore.get("a", CONTEXT).isPresent(), is(false));
+        assertThat(blobStore.get("b", CONTEXT).isPresent(), is(true));
+
+        persister.enqueue("c", blobStore, new byte[]{3}, null);
+        persister.discardAll();
+        persister.flush();
+        assertThat(blobStore.get("c", CONTEXT).isPresent(), is(false));
+    }
+
+    @Test
+    public void keepsWholeBatchWhenStoreFails() {
+        // A store that fails on the first write only
+        final AtomicBoolean failed = new AtomicBoolean(false);
+        final BlobStore failingStore = new InMemoryMapBlobStore(ticks::incrementAndGet) {
+            @Override
+            public Map<String, Long> putAllIfUnmodified(Map<String, byte[]> values, Map<String, Long> expectedTimestamps,
+                                                        String context, Integer ttlInSeconds) {
+                if (failed.compareAndSet(false, true)) {
+                    throw new RuntimeException("Store unavailable");
+                }
+                return super.putAllIfUnmodified(values, expectedTimestamps, context, ttlInSeconds);
+            }
+        };
+
+        // Use two TTLs so that the batch is split into two writes
+        persister.enqueue("a", failingStore, new byte[]{1}, null);
+        persister.enqueue("b", failingStore, new byte[]{2}, 60);
+        persister.flush();
+
+        // Neither the group that failed nor the one that was not attempted are lost
+        assertThat(persister.getNumFailures(), equalTo(1L));
+        assertThat(persister.getNumPersisted(), equalTo(0L));
+        assertThat(persister.getNumPending(), equalTo(2));
+
+        persister.flush();
+
+        assertThat(persister.getNumPending(), equalTo(0));
+        assertThat(persister.getNumPersisted(), equalTo(2L));
+        assertThat(failingStore.get("a", CONTEXT).get(), equalTo(new byte[]{1}));
+        assertThat(failingStore.get("b", CONTEXT).get(), equalTo(new byte[]{2}));
+    }
+}
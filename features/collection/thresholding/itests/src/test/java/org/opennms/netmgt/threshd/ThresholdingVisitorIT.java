@@ -1703,6 +1703,7 @@ public class ThresholdingVisitorIT {
         // NMS-12329: Previously the persisted states were not keyed correctly and collided resulting in there being
         // fewer persisted states than expected that ended up getting shared. To verify this is no longer happening we 
         // enumerate the persisted states to check that the correct number of individual states were persisted.
+        ((BlobStoreAwareMonitor) MockSession.getSession().getThresholdStateMonitor()).flush();
         Set<String> persistedKeys = MockSession.getSession()
                 .getBlobStore()
                 .enumerateContext(AbstractThresholdEvaluatorState.THRESHOLDING_KV_CONTEXT)
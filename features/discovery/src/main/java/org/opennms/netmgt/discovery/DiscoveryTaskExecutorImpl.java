@@ -38,6 +38,7 @@ import java.util.Queue;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 import org.opennms.core.logging.Logging;
@@ -54,7 +55,7 @@ import org.opennms.netmgt.icmp.proxy.PingSweepSummary;
 import org.opennms.netmgt.model.discovery.IPPollRange;
 import org.opennms.netmgt.model.events.EventBuilder;
 import org.opennms.netmgt.provision.LocationAwareDetectorClient;
-import org.opennms.netmgt.xml.event.Log;
+import org.opennms.netmgt.xml.event.Event;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -118,17 +119,21 @@ public class DiscoveryTaskExecutorImpl implements DiscoveryTaskExecutor {
         final Queue<DiscoveryJob> queue = new LinkedList<>(jobs);
         final AtomicInteger jobIndexTracker = new AtomicInteger();
         final CompletableFuture<Void> future = new CompletableFuture<>();
+        // The detection and newSuspect events of a job are handled while the next jobs are swept
+        final List<CompletableFuture<Void>> pendingResults = new ArrayList<>(jobs.size());
 
         // Trigger the first job, which will automatically trigger the next job when complete
-        triggerNextJobAsync(location, queue, jobIndexTracker, jobs.size(), taskId, future);
+        triggerNextJobAsync(location, queue, jobIndexTracker, jobs.size(), taskId, pendingResults, future);
 
         return future;
     }
 
-    private void triggerNextJobAsync(String location, Queue<DiscoveryJob> jobs, AtomicInteger jobIndexTracker, int totalNumberOfJobs, int taskId, CompletableFuture<Void> future) {
+    private void triggerNextJobAsync(String location, Queue<DiscoveryJob> jobs, AtomicInteger jobIndexTracker, int totalNumberOfJobs, int taskId,
+                                     List<CompletableFuture<Void>> pendingResults, CompletableFuture<Void> future) {
         final DiscoveryJob job = jobs.poll();
         if (job == null) {
-            future.complete(null);
+            CompletableFuture.allOf(pendingResults.toArray(new CompletableFuture[pendingResults.size()]))
+                .whenComplete((v, ex) -> future.complete(null));
             return;
         }
 
@@ -154,70 +159,68 @@ public class DiscoveryTaskExecutorImpl implements DiscoveryTaskExecutor {
                 @Override
                 public void run() {
                     if (summary != null) {
-                        // Perform detection if there are any detectors associated with these IP addresses.
-                        CompletableFuture<List<DiscoveryResult>> resultsFuture = performDetection(job.getLocation(), summary, job.getConfig());
-
-                        //Send new suspect events after detection completed for all the IP addresses in the job.
-                        resultsFuture.whenComplete((results, throwable) -> {
-
+                        // Perform detection if there are any detectors associated with these IP addresses,
+                        // and send the newSuspect event of every host as soon as its detection succeeded.
+                        CompletableFuture<Void> resultsFuture = performDetection(job.getLocation(), summary, job.getConfig(),
+                                result -> sendNewSuspectEvent(job, result));
+                        pendingResults.add(resultsFuture.whenComplete((results, throwable) -> {
                             LOG.debug("Job {} of {} at location {} (on task #{}) completed succesfully.",
                                     jobIndex, totalNumberOfJobs, location, taskId);
-                            // Generate an event log containing a newSuspect event for every host
-                            // that responded to our pings and succeeded detection if there are any detectors associated with an IP Address.
-                            final Log eventLog = toNewSuspectEvents(job, results);
-                            // Avoid forwarding an empty log
-                            if (eventLog.getEvents() != null && eventLog.getEvents().getEventCount() >= 1) {
-                                eventForwarder.sendNow(eventLog);
-                            }
-                            // Recurse until the queue is empty
-                            triggerNextJobAsync(location, jobs, jobIndexTracker, totalNumberOfJobs, taskId, future);
-                        });
+                        }));
 
+                        // The pings of the job are done, sweep the next one while the detectors run
+                        triggerNextJobAsync(location, jobs, jobIndexTracker, totalNumberOfJobs, taskId, pendingResults, future);
                     } else {
                         LOG.error("An error occurred while processing job {} of {} at location {} (on task #{})."
                                 + " No newSuspect events will be generated.", jobIndex, totalNumberOfJobs, location, taskId, ex);
                         // Recurse until the queue is empty
-                        triggerNextJobAsync(location, jobs, jobIndexTracker, totalNumberOfJobs, taskId, future);
+                        triggerNextJobAsync(location, jobs, jobIndexTracker, totalNumberOfJobs, taskId, pendingResults, future);
                     }
                 }
             });
         });
     }
 
-    private static Log toNewSuspectEvents(DiscoveryJob job, List<DiscoveryResult> results) {
-        final Log eventLog = new Log();
-        for (DiscoveryResult entry : results) {
-            EventBuilder eb = new EventBuilder(EventConstants.NEW_SUSPECT_INTERFACE_EVENT_UEI, Discovery.DAEMON_NAME);
-            eb.setInterface(entry.getAddress());
-            eb.addParam("RTT", entry.getPingDuration());
-            if (job.getForeignSource() != null) {
-                eb.addParam(EventConstants.PARM_FOREIGN_SOURCE, job.getForeignSource());
-            }
-            if (job.getLocation() != null) {
-                eb.addParam(EventConstants.PARM_LOCATION, job.getLocation());
+    private void sendNewSuspectEvent(DiscoveryJob job, DiscoveryResult result) {
+        Logging.withPrefix(Discovery.getLoggingCategory(), new Runnable() {
+            @Override
+            public void run() {
+                eventForwarder.sendNow(toNewSuspectEvent(job, result));
             }
-            eventLog.addEvent(eb.getEvent());
+        });
+    }
 
+    private static Event toNewSuspectEvent(DiscoveryJob job, DiscoveryResult result) {
+        EventBuilder eb = new EventBuilder(EventConstants.NEW_SUSPECT_INTERFACE_EVENT_UEI, Discovery.DAEMON_NAME);
+        eb.setInterface(result.getAddress());
+        eb.addParam("RTT", result.getPingDuration());
+        if (job.getForeignSource() != null) {
+            eb.addParam(EventConstants.PARM_FOREIGN_SOURCE, job.getForeignSource());
+        }
+        if (job.getLocation() != null) {
+            eb.addParam(EventConstants.PARM_LOCATION, job.getLocation());
         }
-        return eventLog;
+        return eb.getEvent();
     }
 
     /**
-     *  This method performs detection for all the IP Addressed that succeeded ping in parallel and returns a
-     *  completable future with discovery results that succeeded detection.
+     *  This method performs detection for all the IP Addressed that succeeded ping in parallel, and hands
+     *  every result that succeeded detection to the given consumer as soon as it is available. The returned
+     *  future completes once detection completed for all of the addresses.
      */
-    private CompletableFuture<List<DiscoveryResult>> performDetection(String location, PingSweepSummary summary, DiscoveryConfiguration config) {
-
-        List<CompletableFuture<DiscoveryResult>> futures = summary.getResponses().entrySet().stream()
-                .map(entry -> launchDetectors(entry.getKey(), entry.getValue(), location, config)).collect(Collectors.toList());
+    private CompletableFuture<Void> performDetection(String location, PingSweepSummary summary, DiscoveryConfiguration config,
+                                                     Consumer<DiscoveryResult> onSuccess) {
+
+        List<CompletableFuture<Void>> futures = summary.getResponses().entrySet().stream()
+                .map(entry -> launchDetectors(entry.getKey(), entry.getValue(), location, config)
+                        .thenAccept(result -> {
+                            if (result.getDetectResult()) {
+                                onSuccess.accept(result);
+                            }
+                        }))
+                .collect(Collectors.toList());
         // Combine all futures.
-        CompletableFuture<Void> allFutures = CompletableFuture.allOf(futures.toArray(new CompletableFuture[futures.size()]));
-        CompletableFuture<List<DiscoveryResult>> futureList = allFutures.thenApply(result -> {
-            return futures.stream().map(CompletableFuture::join).collect(Collectors.toList());
-        });
-        return futureList.thenApply((results) -> {
-             return results.stream().filter(DiscoveryResult::getDetectResult).collect(Collectors.toList());
-        });
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture[futures.size()]));
     }
 
     /**
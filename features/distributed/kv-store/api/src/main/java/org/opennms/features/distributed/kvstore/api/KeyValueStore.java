@@ -28,7 +28,9 @@
 
 package org.opennms.features.distributed.kvstore.api;
 
+import java.util.HashMap;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.OptionalLong;
 import java.util.concurrent.CompletableFuture;
@@ -68,6 +70,61 @@ public interface KeyValueStore<T> {
      */
     long put(String key, T value, String context, Integer ttlInSeconds);
 
+    /**
+     * Put multiple values with a suggested time-to-live.
+     * <p>
+     * The default implementation puts the values one by one. Implementations that support batching should override
+     * this.
+     *
+     * @param context      a context used to differentiate between keys with the same name (forms a compound key)
+     * @param ttlInSeconds the time to live in seconds for the keys or no ttl if null
+     * @return a map of the keys to the timestamp each value was persisted with
+     */
+    default Map<String, Long> putAll(Map<String, T> values, String context, Integer ttlInSeconds) {
+        Objects.requireNonNull(values);
+        Objects.requireNonNull(context);
+
+        Map<String, Long> timestamps = new HashMap<>();
+        values.forEach((key, value) -> timestamps.put(key, put(key, value, context, ttlInSeconds)));
+        return timestamps;
+    }
+
+    /**
+     * Put multiple values, each only if the record has not been modified since the given timestamp (compare-and-set on
+     * the last updated timestamp).
+     * <p>
+     * A value whose key has an expected timestamp is only put if the persisted record was last updated at exactly that
+     * timestamp or does not exist. A value whose key has no expected timestamp is put unconditionally.
+     * <p>
+     * The default implementation checks and puts the values one by one and is therefore not atomic. Implementations
+     * that can perform conditional writes should override this.
+     *
+     * @param expectedTimestamps a map of keys to the timestamp of the last known version of their record
+     * @param context            a context used to differentiate between keys with the same name (forms a compound key)
+     * @param ttlInSeconds       the time to live in seconds for the keys or no ttl if null
+     * @return a map of the keys that were put to the timestamp each value was persisted with, keys that were not put
+     * because their record was modified are absent
+     */
+    default Map<String, Long> putAllIfUnmodified(Map<String, T> values, Map<String, Long> expectedTimestamps,
+                                                 String context, Integer ttlInSeconds) {
+        Objects.requireNonNull(values);
+        Objects.requireNonNull(expectedTimestamps);
+        Objects.requireNonNull(context);
+
+        Map<String, Long> timestamps = new HashMap<>();
+        values.forEach((key, value) -> {
+            Long expectedTimestamp = expectedTimestamps.get(key);
+            if (expectedTimestamp != null) {
+                OptionalLong lastUpdated = getLastUpdated(key, context);
+                if (lastUpdated.isPresent() && lastUpdated.getAsLong() != expectedTimestamp) {
+                    return;
+                }
+            }
+            timestamps.put(key, put(key, value, context, ttlInSeconds));
+        });
+        return timestamps;
+    }
+
     /**
      * @param context a context used to differentiate between keys with the same name (forms a compound key)
      * @return an optional containing the value if present or empty if the key did not exist
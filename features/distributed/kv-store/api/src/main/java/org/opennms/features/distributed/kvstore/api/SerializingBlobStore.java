@@ -60,6 +60,15 @@ public final class SerializingBlobStore<V> {
         return blobStore.put(key, serializer.serialize(value), context, ttlInSeconds);
     }
 
+    public Map<String, Long> putAll(Map<String, V> values, String context, Integer ttlInSeconds) {
+        return blobStore.putAll(serializeMap(values), context, ttlInSeconds);
+    }
+
+    public Map<String, Long> putAllIfUnmodified(Map<String, V> values, Map<String, Long> expectedTimestamps,
+                                                String context, Integer ttlInSeconds) {
+        return blobStore.putAllIfUnmodified(serializeMap(values), expectedTimestamps, context, ttlInSeconds);
+    }
+
     public Optional<V> get(String key, String context) {
         return blobStore.get(key, context).map(deserializer::deserialize);
     }
@@ -92,6 +101,12 @@ public final class SerializingBlobStore<V> {
         return blobStore.enumerateContextAsync(context).thenApply(this::deserializeMap);
     }
 
+    private Map<String, byte[]> serializeMap(Map<String, V> inputMap) {
+        return inputMap.entrySet()
+                .stream()
+                .collect(Collectors.toMap(Map.Entry::getKey, e -> serializer.serialize(e.getValue())));
+    }
+
     private Map<String, V> deserializeMap(Map<String, byte[]> inputMap) {
         return Collections.unmodifiableMap(inputMap.entrySet()
                 .stream()
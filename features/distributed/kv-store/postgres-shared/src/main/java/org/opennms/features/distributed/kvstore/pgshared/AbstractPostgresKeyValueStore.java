@@ -34,7 +34,10 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Timestamp;
 import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
@@ -91,6 +94,16 @@ public abstract class AbstractPostgresKeyValueStore<T, S> extends AbstractAsyncK
         ));
     }
 
+    private PreparedStatement getConditionalUpsertStatement(Connection connection) throws SQLException {
+        return connection.prepareStatement(String.format(
+                "INSERT INTO %s (%s, %s, %s, %s, %s) VALUES (?, ?, ?, ?, " + getValueStatementPlaceholder() + ") ON " +
+                        "CONFLICT ON CONSTRAINT " + getPkConstraintName() + " DO UPDATE SET %s = ?, %s = ?, %s = " +
+                        getValueStatementPlaceholder() + " WHERE %s.%s = ?", getTableName(), KEY_COLUMN,
+                CONTEXT_COLUMN, LAST_UPDATED_COLUMN, EXPIRES_AT_COLUMN, VALUE_COLUMN, LAST_UPDATED_COLUMN,
+                EXPIRES_AT_COLUMN, VALUE_COLUMN, getTableName(), LAST_UPDATED_COLUMN
+        ));
+    }
+
     private PreparedStatement getLastUpdatedStatement(Connection connection) throws SQLException {
         return connection.prepareStatement(String.format("SELECT %s, %s FROM %s WHERE %s = ? AND %s = ?",
                 LAST_UPDATED_COLUMN, EXPIRES_AT_COLUMN, getTableName(), KEY_COLUMN, CONTEXT_COLUMN));
@@ -119,30 +132,107 @@ public abstract class AbstractPostgresKeyValueStore<T, S> extends AbstractAsyncK
         long now = System.currentTimeMillis();
 
         withStatement(this::getUpsertStatement, upsertStatement -> {
-            // The below sets the prepared values for both the INSERT and UPDATE cases hence some values being 
-            // repeated
-            upsertStatement.setString(1, key);
-            upsertStatement.setString(2, context);
-            upsertStatement.setTimestamp(3, new java.sql.Timestamp(now));
-            upsertStatement.setTimestamp(6, new java.sql.Timestamp(now));
-
-            if (ttlInSeconds != null) {
-                long expireTime = now + TimeUnit.MILLISECONDS.convert(ttlInSeconds, TimeUnit.SECONDS);
-                upsertStatement.setTimestamp(4, new java.sql.Timestamp(expireTime));
-                upsertStatement.setTimestamp(7, new java.sql.Timestamp(expireTime));
-            } else {
-                upsertStatement.setNull(4, Types.DATE);
-                upsertStatement.setNull(7, Types.DATE);
-            }
-
-            upsertStatement.setObject(5, getSQLTypeFromValueType(value));
-            upsertStatement.setObject(8, getSQLTypeFromValueType(value));
+            bindUpsertStatement(upsertStatement, key, value, context, now, ttlInSeconds);
             return upsertStatement.execute();
         });
 
         return now;
     }
 
+    @Override
+    public Map<String, Long> putAll(Map<String, T> values, String context, Integer ttlInSeconds) {
+        return putAllIfUnmodified(values, Collections.emptyMap(), context, ttlInSeconds);
+    }
+
+    /**
+     * Performs the puts in a single transaction using batched statements. Records with an expected timestamp are only
+     * updated if their last updated timestamp still matches, which is evaluated atomically by the upsert.
+     */
+    @Override
+    public Map<String, Long> putAllIfUnmodified(Map<String, T> values, Map<String, Long> expectedTimestamps,
+                                                String context, Integer ttlInSeconds) {
+        Objects.requireNonNull(values);
+        Objects.requireNonNull(expectedTimestamps);
+        Objects.requireNonNull(context);
+
+        if (values.isEmpty()) {
+            return Collections.emptyMap();
+        }
+
+        long now = System.currentTimeMillis();
+        List<String> unconditionalKeys = new ArrayList<>();
+        List<String> conditionalKeys = new ArrayList<>();
+
+        try (Connection connection = dataSource.getConnection()) {
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            try (PreparedStatement upsertStatement = getUpsertStatement(connection);
+                 PreparedStatement conditionalUpsertStatement = getConditionalUpsertStatement(connection)) {
+                for (Map.Entry<String, T> entry : values.entrySet()) {
+                    Long expectedTimestamp = expectedTimestamps.get(entry.getKey());
+                    if (expectedTimestamp == null) {
+                        bindUpsertStatement(upsertStatement, entry.getKey(), entry.getValue(), context, now,
+                                ttlInSeconds);
+                        upsertStatement.addBatch();
+                        unconditionalKeys.add(entry.getKey());
+                    } else {
+                        bindUpsertStatement(conditionalUpsertStatement, entry.getKey(), entry.getValue(), context,
+                                now, ttlInSeconds);
+                        conditionalUpsertStatement.setTimestamp(9, new java.sql.Timestamp(expectedTimestamp));
+                        conditionalUpsertStatement.addBatch();
+                        conditionalKeys.add(entry.getKey());
+                    }
+                }
+
+                Map<String, Long> timestamps = new HashMap<>();
+                if (!unconditionalKeys.isEmpty()) {
+                    upsertStatement.executeBatch();
+                    unconditionalKeys.forEach(key -> timestamps.put(key, now));
+                }
+                if (!conditionalKeys.isEmpty()) {
+                    int[] updateCounts = conditionalUpsertStatement.executeBatch();
+                    for (int i = 0; i < updateCounts.length; i++) {
+                        // A count of 0 means the conflicting record was modified and the update was skipped
+                        if (updateCounts[i] != 0) {
+                            timestamps.put(conditionalKeys.get(i), now);
+                        }
+                    }
+                }
+                connection.commit();
+                return timestamps;
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(autoCommit);
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private void bindUpsertStatement(PreparedStatement upsertStatement, String key, T value, String context,
+                                     long now, Integer ttlInSeconds) throws SQLException {
+        // The below sets the prepared values for both the INSERT and UPDATE cases hence some values being
+        // repeated
+        upsertStatement.setString(1, key);
+        upsertStatement.setString(2, context);
+        upsertStatement.setTimestamp(3, new java.sql.Timestamp(now));
+        upsertStatement.setTimestamp(6, new java.sql.Timestamp(now));
+
+        if (ttlInSeconds != null) {
+            long expireTime = now + TimeUnit.MILLISECONDS.convert(ttlInSeconds, TimeUnit.SECONDS);
+            upsertStatement.setTimestamp(4, new java.sql.Timestamp(expireTime));
+            upsertStatement.setTimestamp(7, new java.sql.Timestamp(expireTime));
+        } else {
+            upsertStatement.setNull(4, Types.DATE);
+            upsertStatement.setNull(7, Types.DATE);
+        }
+
+        upsertStatement.setObject(5, getSQLTypeFromValueType(value));
+        upsertStatement.setObject(8, getSQLTypeFromValueType(value));
+    }
+
     @Override
     public Optional<T> get(String key, String context) {
         Objects.requireNonNull(key);
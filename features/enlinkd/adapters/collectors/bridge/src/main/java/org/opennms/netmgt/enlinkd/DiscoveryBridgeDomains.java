@@ -41,6 +41,9 @@ import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.opennms.netmgt.enlinkd.common.Discovery;
 import org.opennms.netmgt.enlinkd.service.api.BridgeForwardingTableEntry;
@@ -48,6 +51,7 @@ import org.opennms.netmgt.enlinkd.service.api.BridgeTopologyException;
 import org.opennms.netmgt.enlinkd.service.api.BridgeTopologyService;
 import org.opennms.netmgt.enlinkd.service.api.BroadcastDomain;
 import org.opennms.netmgt.enlinkd.service.api.DiscoveryBridgeTopology;
+import org.opennms.netmgt.enlinkd.service.api.MacSet;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -61,17 +65,23 @@ public class DiscoveryBridgeDomains extends Discovery {
     private int m_maxthreads=1;
     private final BridgeTopologyService m_bridgeTopologyService;
 
+    private volatile int m_lastRunDomains;
+    private volatile long m_lastRunTime;
+    private volatile long m_lastRunMaxDomainTime;
+    private volatile long m_lastRunTotalCalculateTime;
+    private volatile long m_lastRunTotalStoreTime;
+
     public DiscoveryBridgeDomains(BridgeTopologyService bridgeTopologyService) {
         super();
         m_bridgeTopologyService = bridgeTopologyService;
     }
             
-    private BroadcastDomain find(Set<Integer> nodes, Set<String> setA) throws BridgeTopologyException {
+    private BroadcastDomain find(Set<Integer> nodes, MacSet setA) throws BridgeTopologyException {
         
         BroadcastDomain domain = null;
         
         for (BroadcastDomain curBDomain : m_bridgeTopologyService.findAll()) {
-            if (BroadcastDomain.checkMacSets(setA, curBDomain.getMacsOnSegments())) {
+            if (BroadcastDomain.checkMacSets(setA, MacSet.of(curBDomain.getMacsOnSegments()))) {
                 if (LOG.isDebugEnabled()) {
                     LOG.debug("find: node:{}, domain:{}",
                              nodes, 
@@ -111,14 +121,19 @@ public class DiscoveryBridgeDomains extends Discovery {
     @Override
     public void runDiscovery() {
         LOG.info("run: calculate topology on broadcast domains. Start");
+        final long start = System.nanoTime();
+        final AtomicInteger domains = new AtomicInteger();
+        final AtomicLong maxDomainTime = new AtomicLong();
+        final AtomicLong totalCalculateTime = new AtomicLong();
+        final AtomicLong totalStoreTime = new AtomicLong();
         
         Map<Integer, Map<Integer, Set<BridgeForwardingTableEntry>>> nodeondomainbft 
             = new HashMap<Integer, Map<Integer, Set<BridgeForwardingTableEntry>>>();
 
         Map<Integer, Set<BridgeForwardingTableEntry>> nodeBft 
             = new HashMap<Integer, Set<BridgeForwardingTableEntry>>();
-        Map<Integer, Set<String>> nodeMacs 
-        = new HashMap<Integer, Set<String>>();
+        Map<Integer, MacSet> nodeMacs
+        = new HashMap<Integer, MacSet>();
 
         Set<Integer> nodeids 
         = new HashSet<Integer>(
@@ -134,12 +149,21 @@ public class DiscoveryBridgeDomains extends Discovery {
                 continue;
             }
             nodeBft.put(nodeid, links);
-            Set<String> macs = new HashSet<String>();
+            List<String> macs = new ArrayList<String>(links.size());
             for (BridgeForwardingTableEntry link : links) {
                 macs.add(link.getMacAddress());
             }
-            LOG.debug("run: node:[{}]. macs:{}", nodeid, macs);
-            nodeMacs.put(nodeid, macs);
+            MacSet macSet = MacSet.of(macs);
+            LOG.debug("run: node:[{}]. macs:{}", nodeid, macSet);
+            nodeMacs.put(nodeid, macSet);
+        }
+
+        // number the macs once so that each pair of bridges is compared
+        // by and-ing bitmaps instead of intersecting hash sets
+        MacSet.Index macIndex = new MacSet.Index(nodeMacs.values());
+        Map<Integer, long[]> nodeMacBits = new HashMap<Integer, long[]>();
+        for (Map.Entry<Integer, MacSet> entry : nodeMacs.entrySet()) {
+            nodeMacBits.put(entry.getKey(), macIndex.bits(entry.getValue()));
         }
 
         Set<Integer> parsed = new HashSet<Integer>();
@@ -156,8 +180,10 @@ public class DiscoveryBridgeDomains extends Discovery {
                 if (parsed.contains(nodeidB)) {
                     continue;
                 }
-                if (BroadcastDomain.checkMacSets(nodeMacs.get(nodeidA),
-                                                 nodeMacs.get(nodeidB))) {
+                if (BroadcastDomain.checkMacSets(MacSet.commonBits(nodeMacBits.get(nodeidA),
+                                                                   nodeMacBits.get(nodeidB)),
+                                                 nodeMacs.get(nodeidA).size(),
+                                                 nodeMacs.get(nodeidB).size())) {
                     nodeondomainbft.get(nodeidA).put(nodeidB,
                                                      nodeBft.get(nodeidB));
                     parsed.add(nodeidB);
@@ -186,10 +212,13 @@ public class DiscoveryBridgeDomains extends Discovery {
                         
                         Date now = new Date();
                         LOG.debug("run: calculate start"); 
+                        final long calculateStart = System.nanoTime();
                         nodebridgetopology.calculate();
+                        final long calculateTime = System.nanoTime() - calculateStart;
                         LOG.debug("run: calculate end"); 
                     
                         LOG.debug("run: save start");
+                        final long storeStart = System.nanoTime();
                         try {
                             m_bridgeTopologyService.store(domain, now);
                         } catch (BridgeTopologyException e) {
@@ -202,7 +231,17 @@ public class DiscoveryBridgeDomains extends Discovery {
                                       e.getMessage(),
                                       domain.printTopology());
                         }
+                        final long storeTime = System.nanoTime() - storeStart;
                         LOG.debug("run: save end");
+
+                        domains.incrementAndGet();
+                        totalCalculateTime.addAndGet(calculateTime);
+                        totalStoreTime.addAndGet(storeTime);
+                        maxDomainTime.accumulateAndGet(calculateTime + storeTime, Math::max);
+                        LOG.info("run: domain with bridges {} calculated in {}ms, saved in {}ms",
+                                 domain.getBridgeNodesOnDomain(),
+                                 TimeUnit.NANOSECONDS.toMillis(calculateTime),
+                                 TimeUnit.NANOSECONDS.toMillis(storeTime));
                     }
                     return "executed Task: " + nodebridgetopology.getInfo();
                 };
@@ -236,7 +275,13 @@ public class DiscoveryBridgeDomains extends Discovery {
         } else {
             LOG.info("run: no updates on broadcast domains");
         }
-        LOG.info("run: calculate topology on broadcast domains. End");
+        m_lastRunDomains = domains.get();
+        m_lastRunMaxDomainTime = TimeUnit.NANOSECONDS.toMillis(maxDomainTime.get());
+        m_lastRunTotalCalculateTime = TimeUnit.NANOSECONDS.toMillis(totalCalculateTime.get());
+        m_lastRunTotalStoreTime = TimeUnit.NANOSECONDS.toMillis(totalStoreTime.get());
+        m_lastRunTime = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        LOG.info("run: calculate topology on broadcast domains. End. {} domains in {}ms, slowest domain {}ms",
+                 m_lastRunDomains, m_lastRunTime, m_lastRunMaxDomainTime);
 
     }
 
@@ -253,6 +298,41 @@ public class DiscoveryBridgeDomains extends Discovery {
         m_maxthreads = maxthreads;
     }
 
+    /**
+     * @return the number of broadcast domains calculated by the last run
+     */
+    public int getLastRunDomains() {
+        return m_lastRunDomains;
+    }
+
+    /**
+     * @return the duration of the last run in milliseconds
+     */
+    public long getLastRunTime() {
+        return m_lastRunTime;
+    }
+
+    /**
+     * @return the time spent calculating and saving the slowest domain of the last run in milliseconds
+     */
+    public long getLastRunMaxDomainTime() {
+        return m_lastRunMaxDomainTime;
+    }
+
+    /**
+     * @return the time spent calculating all the domains of the last run in milliseconds
+     */
+    public long getLastRunTotalCalculateTime() {
+        return m_lastRunTotalCalculateTime;
+    }
+
+    /**
+     * @return the time spent saving all the domains of the last run in milliseconds
+     */
+    public long getLastRunTotalStoreTime() {
+        return m_lastRunTotalStoreTime;
+    }
+
     public BridgeTopologyService getBridgeTopologyService() {
         return m_bridgeTopologyService;
     }
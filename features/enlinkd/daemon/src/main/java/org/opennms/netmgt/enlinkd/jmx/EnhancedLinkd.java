@@ -53,4 +53,29 @@ public class EnhancedLinkd extends AbstractSpringContextJmxServiceDaemon<org.ope
         return "enhancedLinkdContext";
     }
 
+    @Override
+    public int getBridgeDomainsLastRunDomains() {
+        return getDaemon().getDiscoveryBridgeDomains().getLastRunDomains();
+    }
+
+    @Override
+    public long getBridgeDomainsLastRunTime() {
+        return getDaemon().getDiscoveryBridgeDomains().getLastRunTime();
+    }
+
+    @Override
+    public long getBridgeDomainsLastRunMaxDomainTime() {
+        return getDaemon().getDiscoveryBridgeDomains().getLastRunMaxDomainTime();
+    }
+
+    @Override
+    public long getBridgeDomainsLastRunCalculateTime() {
+        return getDaemon().getDiscoveryBridgeDomains().getLastRunTotalCalculateTime();
+    }
+
+    @Override
+    public long getBridgeDomainsLastRunStoreTime() {
+        return getDaemon().getDiscoveryBridgeDomains().getLastRunTotalStoreTime();
+    }
+
 }
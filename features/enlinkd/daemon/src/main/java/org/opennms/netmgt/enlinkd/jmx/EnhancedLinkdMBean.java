@@ -37,4 +37,29 @@ import org.opennms.netmgt.daemon.BaseOnmsMBean;
  * @version $Id: $
  */
 public interface EnhancedLinkdMBean extends BaseOnmsMBean {
+
+    /**
+     * @return the number of broadcast domains calculated by the last bridge topology run
+     */
+    int getBridgeDomainsLastRunDomains();
+
+    /**
+     * @return the duration of the last bridge topology run in milliseconds
+     */
+    long getBridgeDomainsLastRunTime();
+
+    /**
+     * @return the time spent on the slowest broadcast domain of the last run in milliseconds
+     */
+    long getBridgeDomainsLastRunMaxDomainTime();
+
+    /**
+     * @return the time spent calculating broadcast domains during the last run in milliseconds
+     */
+    long getBridgeDomainsLastRunCalculateTime();
+
+    /**
+     * @return the time spent saving broadcast domains during the last run in milliseconds
+     */
+    long getBridgeDomainsLastRunStoreTime();
 }
@@ -153,6 +153,7 @@ public class BridgeForwardingTable implements Topology {
     private Map<String, BridgePort> m_mactoport = new HashMap<String, BridgePort>();
     private Map<String, Set<BridgePort>> m_duplicated = new HashMap<String, Set<BridgePort>>();
     private Set<BridgePortWithMacs> m_porttomac = new HashSet<BridgePortWithMacs>();
+    private MacSet m_learnedMacs;
 
     private BridgeForwardingTable(Bridge bridge, Set<BridgeForwardingTableEntry> entries) {
         m_bridge = bridge;
@@ -179,6 +180,18 @@ public class BridgeForwardingTable implements Topology {
 
     public void setMactoport(Map<String, BridgePort> mactoport) {
         m_mactoport = mactoport;
+        m_learnedMacs = null;
+    }
+
+    /**
+     * The learned macs as a {@link MacSet}, built on first use. The table is
+     * compared with every other bridge of the domain, so it is packed once.
+     */
+    public MacSet getLearnedMacs() {
+        if (m_learnedMacs == null) {
+            m_learnedMacs = MacSet.of(m_mactoport.keySet());
+        }
+        return m_learnedMacs;
     }
 
     public Map<String, Set<BridgePort>> getDuplicated() {
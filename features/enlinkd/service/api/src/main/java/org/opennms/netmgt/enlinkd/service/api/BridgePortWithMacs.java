@@ -61,6 +61,10 @@ public class BridgePortWithMacs implements Topology {
         return m_macs;
     }
 
+    public void retainMacs(MacSet macs) {
+        m_macs.removeIf(mac -> !macs.contains(mac));
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
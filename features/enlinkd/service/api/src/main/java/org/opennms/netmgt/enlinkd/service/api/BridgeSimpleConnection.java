@@ -85,7 +85,7 @@ import org.slf4j.LoggerFactory;
 // 
 public class BridgeSimpleConnection implements Topology {
 
-    public static Set<String> getMacs(BridgeForwardingTable xBridge,
+    public static MacSet getMacs(BridgeForwardingTable xBridge,
             BridgeForwardingTable yBridge, BridgeSimpleConnection simple)
             throws BridgeTopologyException {
 
@@ -109,8 +109,11 @@ public class BridgeSimpleConnection implements Topology {
                     + yBridge.getNodeId() + "]", simple.getSecondPort());
         }
 
-        Set<String> macsOnSegment = xBridge.getBridgePortWithMacs(simple.getFirstPort()).getMacs();
-        macsOnSegment.retainAll(yBridge.getBridgePortWithMacs(simple.getSecondPort()).getMacs());
+        BridgePortWithMacs xPort = xBridge.getBridgePortWithMacs(simple.getFirstPort());
+        MacSet macsOnSegment = MacSet.of(xPort.getMacs()).intersection(
+                MacSet.of(yBridge.getBridgePortWithMacs(simple.getSecondPort()).getMacs()));
+        // the first port only keeps the macs it shares with the second one
+        xPort.retainMacs(macsOnSegment);
 
         return macsOnSegment;
     }
@@ -196,8 +199,7 @@ public class BridgeSimpleConnection implements Topology {
         }
         
         
-        Set<String> commonlearnedmacs = new HashSet<String>(m_xBridge.getMactoport().keySet()); 
-        commonlearnedmacs.retainAll(new HashSet<String>(m_yBridge.getMactoport().keySet()));
+        MacSet commonlearnedmacs = m_xBridge.getLearnedMacs().intersection(m_yBridge.getLearnedMacs());
         if (LOG.isDebugEnabled()) {
             LOG.debug("bridge: [{}] <-> [{}] common (learned mac): {}",
                   m_yBridge.getNodeId(),
@@ -244,7 +246,7 @@ public class BridgeSimpleConnection implements Topology {
         m_yxPort= ports.get(1);
     }
 
-    private static List<BridgePort> condition3(Set<String> commonlearnedmacs,
+    private static List<BridgePort> condition3(MacSet commonlearnedmacs,
                                                BridgeForwardingTable bridgexFt,
                                                BridgeForwardingTable bridgeyFt
                                                ) throws BridgeTopologyException {
@@ -400,7 +402,7 @@ public class BridgeSimpleConnection implements Topology {
     // condition 2 yx found                         m_x belongs to FDB(yx,Y)
     // if exists m_1 and m_2, p1 and p2 on Y :      m_1 belongs to FDB(p1,Y) FDB(xy,X)
     //                                              m_2 belongs to FDB(p2,Y) FDB(xy,X)
-    private static BridgePort condition2(Set<String> commonlearnedmacs, BridgePort bridge1port, 
+    private static BridgePort condition2(MacSet commonlearnedmacs, BridgePort bridge1port, 
             BridgeForwardingTable bridge1Ft, 
             BridgeForwardingTable bridge2Ft) throws BridgeTopologyException {
         
@@ -444,7 +446,7 @@ public class BridgeSimpleConnection implements Topology {
     
     // This is a particolar condition 
     // in which I get the port without intersection only if I have two forwarding port
-    public static BridgePort conditionB(Set<String> commonlearnedmacs, 
+    public static BridgePort conditionB(MacSet commonlearnedmacs, 
             BridgeForwardingTable bridge2Ft) throws BridgeTopologyException {
                 
         if (bridge2Ft.getPorttomac().size() != 2) {
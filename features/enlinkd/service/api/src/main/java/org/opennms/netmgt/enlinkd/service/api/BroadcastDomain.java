@@ -55,10 +55,18 @@ public class BroadcastDomain implements Topology {
     public static boolean checkMacSets(Set<String> setA, Set<String> setB) {
         Set<String>retainedSet = new HashSet<String>(setB);
         retainedSet.retainAll(setA);
+        return checkMacSets(retainedSet.size(), setA.size(), setB.size());
+    }
+
+    public static boolean checkMacSets(MacSet setA, MacSet setB) {
+        return checkMacSets(setA.intersectionSize(setB), setA.size(), setB.size());
+    }
+
+    public static boolean checkMacSets(int common, int sizeA, int sizeB) {
         // should contain at list 20 or 50% of the all size
-        if (retainedSet.size() > DOMAIN_MATCH_MIN_SIZE
-            || retainedSet.size() > setA.size() * DOMAIN_MATCH_MIN_RATIO
-            || retainedSet.size() > setB.size() * DOMAIN_MATCH_MIN_RATIO
+        if (common > DOMAIN_MATCH_MIN_SIZE
+            || common > sizeA * DOMAIN_MATCH_MIN_RATIO
+            || common > sizeB * DOMAIN_MATCH_MIN_RATIO
                 ) {
             return true;
         }
@@ -439,6 +447,12 @@ public class BroadcastDomain implements Topology {
         });
     }
 
+    public void cleanForwarders(MacSet macs) {
+        m_forwarding.stream().forEach( bpm -> {
+            bpm.getMacs().removeIf(mac -> macs.contains(mac));
+        });
+    }
+
     public BridgePortWithMacs getForwarder(BridgePort port) {
         Set<BridgePortWithMacs> links = new HashSet<BridgePortWithMacs>();
         m_forwarding.stream().filter( bp -> {
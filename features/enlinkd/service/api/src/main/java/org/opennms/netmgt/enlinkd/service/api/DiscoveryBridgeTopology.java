@@ -515,7 +515,8 @@ public class DiscoveryBridgeTopology {
         BridgeSimpleConnection nextDownSP = null;
         boolean levelfound = false;
         
-        Set<String> maconupsegment = BridgeSimpleConnection.getMacs(bridgeUpFT, bridgeFT, upsimpleconn);
+        BridgePortWithMacs upport = bridgeUpFT.getBridgePortWithMacs(upsimpleconn.getFirstPort());
+        MacSet maconupsegment = BridgeSimpleConnection.getMacs(bridgeUpFT, bridgeFT, upsimpleconn);
         
         for (Bridge curbridge : m_domain.getBridgeOnSharedSegment(upSegment)) {
             
@@ -601,8 +602,10 @@ public class DiscoveryBridgeTopology {
                 continue;
             }
             //here are all the simple connection in which the connection is the root port
-            maconupsegment.retainAll(BridgeSimpleConnection.getMacs(curBridgeFT, bridgeFT, simpleconn));
+            maconupsegment = maconupsegment.intersection(BridgeSimpleConnection.getMacs(curBridgeFT, bridgeFT, simpleconn));
         } // end of loop on up segment bridges
+        // the up port forwards only the macs left on the up segment
+        upport.retainMacs(maconupsegment);
         
         if (nextDownBridge != null) {
             down(nextDownBridge, bridgeFT, nextDownSP,bridgeFtMapCalcul,level);
@@ -0,0 +1,336 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2022 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2022 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+
+package org.opennms.netmgt.enlinkd.service.api;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Immutable set of MAC addresses used to compare forwarding tables.
+ *
+ * Addresses made of 12 hex digits are packed into a sorted {@code long[]}, so
+ * intersecting two sets is a linear merge without any boxing or hashing.
+ * Anything else is kept verbatim and compared as strings.
+ */
+public final class MacSet implements Iterable<String> {
+
+    public static final MacSet EMPTY = new MacSet(new long[0], new String[0]);
+
+    private final long[] m_packed;
+    private final String[] m_other;
+
+    private MacSet(long[] packed, String[] other) {
+        m_packed = packed;
+        m_other = other;
+    }
+
+    public static MacSet of(Collection<String> macs) {
+        if (macs == null || macs.isEmpty()) {
+            return EMPTY;
+        }
+        long[] packed = new long[macs.size()];
+        int n = 0;
+        Set<String> other = null;
+        for (String mac : macs) {
+            long value = pack(mac);
+            if (value < 0) {
+                if (other == null) {
+                    other = new TreeSet<>();
+                }
+                other.add(mac);
+                continue;
+            }
+            packed[n++] = value;
+        }
+        MacSet set = of(Arrays.copyOf(packed, n));
+        return other == null ? set : new MacSet(set.m_packed, other.toArray(new String[0]));
+    }
+
+    private static MacSet of(long[] packed) {
+        long[] sorted = packed.clone();
+        Arrays.sort(sorted);
+        int unique = 0;
+        for (int i = 0; i < sorted.length; i++) {
+            if (unique == 0 || sorted[unique - 1] != sorted[i]) {
+                sorted[unique++] = sorted[i];
+            }
+        }
+        return new MacSet(Arrays.copyOf(sorted, unique), EMPTY.m_other);
+    }
+
+    /**
+     * Packs a MAC address of exactly 12 lower case hex digits into the lower
+     * 48 bits of a long. Returns -1 if the address has any other form, so
+     * that string equality is preserved for everything we pack.
+     */
+    public static long pack(String mac) {
+        if (mac == null || mac.length() != 12) {
+            return -1;
+        }
+        long value = 0;
+        for (int i = 0; i < 12; i++) {
+            char c = mac.charAt(i);
+            int digit;
+            if (c >= '0' && c <= '9') {
+                digit = c - '0';
+            } else if (c >= 'a' && c <= 'f') {
+                digit = c - 'a' + 10;
+            } else {
+                return -1;
+            }
+            value = (value << 4) | digit;
+        }
+        return value;
+    }
+
+    public static String unpack(long mac) {
+        StringBuilder buffer = new StringBuilder(12);
+        for (int shift = 44; shift >= 0; shift -= 4) {
+            buffer.append(Character.forDigit((int) (mac >>> shift) & 0xf, 16));
+        }
+        return buffer.toString();
+    }
+
+    public int size() {
+        return m_packed.length + m_other.length;
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    public boolean contains(String mac) {
+        long value = pack(mac);
+        if (value < 0) {
+            return Arrays.binarySearch(m_other, mac) >= 0;
+        }
+        return Arrays.binarySearch(m_packed, value) >= 0;
+    }
+
+    public MacSet intersection(MacSet other) {
+        if (isEmpty() || other.isEmpty()) {
+            return EMPTY;
+        }
+        return new MacSet(intersection(m_packed, other.m_packed),
+                          intersection(m_other, other.m_other));
+    }
+
+    public Set<String> toSet() {
+        Set<String> macs = new HashSet<>(size() * 4 / 3 + 1);
+        for (String mac : this) {
+            macs.add(mac);
+        }
+        return macs;
+    }
+
+    /**
+     * Iterates the packed addresses in ascending order, then the others.
+     */
+    @Override
+    public Iterator<String> iterator() {
+        return new Iterator<String>() {
+            private int m_next;
+
+            @Override
+            public boolean hasNext() {
+                return m_next < size();
+            }
+
+            @Override
+            public String next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                int next = m_next++;
+                return next < m_packed.length ? unpack(m_packed[next]) : m_other[next - m_packed.length];
+            }
+        };
+    }
+
+    public int intersectionSize(MacSet other) {
+        return intersectionSize(m_packed, other.m_packed)
+                + intersectionSize(m_other, other.m_other);
+    }
+
+    /**
+     * Counts the common bits of two bitmaps built by the same {@link Index}.
+     */
+    public static int commonBits(long[] bitsA, long[] bitsB) {
+        int n = Math.min(bitsA.length, bitsB.length);
+        int count = 0;
+        for (int i = 0; i < n; i++) {
+            count += Long.bitCount(bitsA[i] & bitsB[i]);
+        }
+        return count;
+    }
+
+    /**
+     * Numbers every MAC address found in a group of sets, so that each set
+     * can be turned into a bitmap and any two of them intersected with a
+     * popcount over a few machine words.
+     */
+    public static final class Index {
+        private final long[] m_packed;
+        private final String[] m_other;
+
+        public Index(Collection<MacSet> sets) {
+            int packed = 0;
+            Set<String> other = new TreeSet<>();
+            for (MacSet set : sets) {
+                packed += set.m_packed.length;
+                other.addAll(Arrays.asList(set.m_other));
+            }
+            long[] all = new long[packed];
+            int n = 0;
+            for (MacSet set : sets) {
+                System.arraycopy(set.m_packed, 0, all, n, set.m_packed.length);
+                n += set.m_packed.length;
+            }
+            m_packed = MacSet.of(all).m_packed;
+            m_other = other.toArray(new String[0]);
+        }
+
+        public int size() {
+            return m_packed.length + m_other.length;
+        }
+
+        public long[] bits(MacSet set) {
+            long[] bits = new long[(size() + 63) >>> 6];
+            for (long mac : set.m_packed) {
+                set(bits, Arrays.binarySearch(m_packed, mac));
+            }
+            for (String mac : set.m_other) {
+                set(bits, m_packed.length + Arrays.binarySearch(m_other, mac));
+            }
+            return bits;
+        }
+
+        private static void set(long[] bits, int position) {
+            if (position < 0) {
+                throw new IllegalArgumentException("set was not part of the index");
+            }
+            bits[position >>> 6] |= 1L << position;
+        }
+    }
+
+    private static long[] intersection(long[] a, long[] b) {
+        long[] common = new long[Math.min(a.length, b.length)];
+        int i = 0, j = 0, n = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] < b[j]) {
+                i++;
+            } else if (a[i] > b[j]) {
+                j++;
+            } else {
+                common[n++] = a[i];
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(common, n);
+    }
+
+    private static String[] intersection(String[] a, String[] b) {
+        if (a.length == 0 || b.length == 0) {
+            return EMPTY.m_other;
+        }
+        String[] common = new String[Math.min(a.length, b.length)];
+        int i = 0, j = 0, n = 0;
+        while (i < a.length && j < b.length) {
+            int cmp = a[i].compareTo(b[j]);
+            if (cmp < 0) {
+                i++;
+            } else if (cmp > 0) {
+                j++;
+            } else {
+                common[n++] = a[i];
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(common, n);
+    }
+
+    private static int intersectionSize(long[] a, long[] b) {
+        int i = 0, j = 0, count = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] < b[j]) {
+                i++;
+            } else if (a[i] > b[j]) {
+                j++;
+            } else {
+                count++;
+                i++;
+                j++;
+            }
+        }
+        return count;
+    }
+
+    private static int intersectionSize(String[] a, String[] b) {
+        int i = 0, j = 0, count = 0;
+        while (i < a.length && j < b.length) {
+            int cmp = a[i].compareTo(b[j]);
+            if (cmp < 0) {
+                i++;
+            } else if (cmp > 0) {
+                j++;
+            } else {
+                count++;
+                i++;
+                j++;
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder buffer = new StringBuilder("[");
+        for (long mac : m_packed) {
+            if (buffer.length() > 1) {
+                buffer.append(", ");
+            }
+            buffer.append(unpack(mac));
+        }
+        for (String mac : m_other) {
+            if (buffer.length() > 1) {
+                buffer.append(", ");
+            }
+            buffer.append(mac);
+        }
+        return buffer.append(']').toString();
+    }
+}
@@ -72,7 +72,7 @@ public class SharedSegment implements Topology{
     public static void merge(BroadcastDomain domain,
         SharedSegment upsegment, 
         Map<BridgePortWithMacs, Set<BridgePortWithMacs>> splitted, 
-        Set<String> macsonsegment, 
+        MacSet macsonsegment, 
         BridgePort rootport,
         Set<BridgePortWithMacs> throughset) {
         
@@ -81,15 +81,16 @@ public class SharedSegment implements Topology{
             SharedSegment splitsegment = new SharedSegment();
             splitsegment.getBridgePortsOnSegment().add(designated.getPort());
             splitsegment.setDesignatedBridge(designated.getPort().getNodeId());
-            Set<String> macs = new HashSet<String>(designated.getMacs());
-            ports.stream().forEach( bft -> 
-            {
-                macs.retainAll(bft.getMacs());
+            MacSet macs = MacSet.of(designated.getMacs());
+            for (BridgePortWithMacs bft : ports) {
+                macs = macs.intersection(MacSet.of(bft.getMacs()));
                 domain.cleanForwarders(bft.getPort().getNodeId());
                 upsegment.getBridgePortsOnSegment().remove(bft.getPort());
                 splitsegment.getBridgePortsOnSegment().add(bft.getPort());
-            });
-            splitsegment.getMacsOnSegment().addAll(macs);
+            }
+            for (String mac : macs) {
+                splitsegment.getMacsOnSegment().add(mac);
+            }
             domain.getSharedSegments().add(splitsegment);
             domain.cleanForwarders(macs);
         });
@@ -123,7 +124,7 @@ public class SharedSegment implements Topology{
         });
 
         upsegment.getBridgePortsOnSegment().add(rootport);
-        upsegment.getMacsOnSegment().retainAll(macsonsegment);
+        upsegment.getMacsOnSegment().removeIf(mac -> !macsonsegment.contains(mac));
         domain.cleanForwarders(upsegment.getMacsOnSegment());
 
         throughset.stream().forEach(bft -> SharedSegment.createAndAddToBroadcastDomain(domain,
@@ -0,0 +1,100 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2022 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2022 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+
+package org.opennms.netmgt.enlinkd.service.api;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+public class MacSetTest {
+
+    @Test
+    public void shouldPackLowerCaseHexAddressesOnly() {
+        assertEquals(0x001122aabbccL, MacSet.pack("001122aabbcc"));
+        assertEquals("001122aabbcc", MacSet.unpack(MacSet.pack("001122aabbcc")));
+        assertEquals(-1, MacSet.pack("001122AABBCC"));
+        assertEquals(-1, MacSet.pack("00:11:22:aa:bb:cc"));
+        assertEquals(-1, MacSet.pack(null));
+    }
+
+    @Test
+    public void shouldIntersectLikeStringSets() {
+        Set<String> a = new HashSet<>(Arrays.asList("000000000001", "000000000002", "000000000003", "ABC", "zzz"));
+        Set<String> b = new HashSet<>(Arrays.asList("000000000003", "000000000002", "000000000004", "zzz", "000000000001"));
+        MacSet setA = MacSet.of(a);
+        MacSet setB = MacSet.of(b);
+
+        assertEquals(5, setA.size());
+        assertTrue(setA.contains("ABC"));
+        assertTrue(setA.contains("000000000002"));
+        assertFalse(setA.contains("000000000004"));
+
+        Set<String> common = new HashSet<>(a);
+        common.retainAll(b);
+        assertEquals(common.size(), setA.intersectionSize(setB));
+        assertEquals(common.size(), setB.intersectionSize(setA));
+        assertEquals(BroadcastDomain.checkMacSets(a, b), BroadcastDomain.checkMacSets(setA, setB));
+
+        MacSet.Index index = new MacSet.Index(Arrays.asList(setA, setB));
+        assertEquals(6, index.size());
+        assertEquals(common.size(), MacSet.commonBits(index.bits(setA), index.bits(setB)));
+    }
+
+    @Test
+    public void shouldRetainLikeStringSets() {
+        Set<String> a = new HashSet<>(Arrays.asList("000000000001", "000000000002", "000000000003", "ABC", "zzz"));
+        Set<String> b = new HashSet<>(Arrays.asList("000000000003", "000000000002", "000000000004", "zzz", "ABD"));
+
+        Set<String> common = new HashSet<>(a);
+        common.retainAll(b);
+        MacSet intersection = MacSet.of(a).intersection(MacSet.of(b));
+
+        assertEquals(common, intersection.toSet());
+        assertEquals(common.size(), intersection.size());
+        assertEquals(Arrays.asList("000000000002", "000000000003", "zzz"), Lists.newArrayList(intersection));
+        assertTrue(MacSet.of(a).intersection(MacSet.EMPTY).isEmpty());
+        assertEquals(a, MacSet.of(a).toSet());
+    }
+
+    @Test
+    public void shouldIgnoreDuplicates() {
+        MacSet set = MacSet.of(Arrays.asList("000000000001", "000000000001", "x", "x"));
+        assertEquals(2, set.size());
+        assertEquals(0, MacSet.EMPTY.intersectionSize(set));
+    }
+}
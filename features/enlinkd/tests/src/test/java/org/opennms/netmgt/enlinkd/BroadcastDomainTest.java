@@ -32,6 +32,7 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
@@ -48,6 +49,7 @@ import org.opennms.netmgt.enlinkd.service.api.BridgeForwardingTable;
 import org.opennms.netmgt.enlinkd.service.api.BridgeForwardingTableEntry;
 import org.opennms.netmgt.enlinkd.service.api.BridgePort;
 import org.opennms.netmgt.enlinkd.service.api.BridgePortWithMacs;
+import org.opennms.netmgt.enlinkd.service.api.BridgeSimpleConnection;
 import org.opennms.netmgt.enlinkd.service.api.BridgeTopologyException;
 import org.opennms.netmgt.enlinkd.service.api.BroadcastDomain;
 import org.opennms.netmgt.enlinkd.service.api.DiscoveryBridgeTopology;
@@ -1208,6 +1210,58 @@ public class BroadcastDomainTest extends EnLinkdTestHelper {
         topology.check(ndbt.getDomain());
     }
 
+    @Test
+    public void testDEFGHILMacSetsMatchStringSets() throws BridgeTopologyException {
+        DEFGHILTopology topology = new DEFGHILTopology();
+
+        BroadcastDomain domain = new BroadcastDomain();
+        Bridge.create(domain,topology.nodeDId);
+        Bridge.create(domain,topology.nodeEId);
+        Bridge.create(domain,topology.nodeFId);
+        Bridge.create(domain,topology.nodeGId);
+        Bridge.create(domain,topology.nodeHId);
+        Bridge.create(domain,topology.nodeIId);
+        Bridge.create(domain,topology.nodeLId);
+        setBridgeElements(domain,topology.elemlist);
+
+        Map<Integer, Set<BridgeForwardingTableEntry>> bfts = new HashMap<Integer, Set<BridgeForwardingTableEntry>>();
+        bfts.put(topology.nodeDId, topology.bftD);
+        bfts.put(topology.nodeEId, topology.bftE);
+        bfts.put(topology.nodeFId, topology.bftF);
+        bfts.put(topology.nodeGId, topology.bftG);
+        bfts.put(topology.nodeHId, topology.bftH);
+        bfts.put(topology.nodeIId, topology.bftI);
+        bfts.put(topology.nodeLId, topology.bftL);
+
+        for (Integer xId: bfts.keySet()) {
+            for (Integer yId: bfts.keySet()) {
+                if (xId.intValue() == yId.intValue()) {
+                    continue;
+                }
+                BridgeForwardingTable xBridge = BridgeForwardingTable.create(domain.getBridge(xId), bfts.get(xId));
+                BridgeForwardingTable yBridge = BridgeForwardingTable.create(domain.getBridge(yId), bfts.get(yId));
+
+                Set<String> learned = new HashSet<String>(xBridge.getMactoport().keySet());
+                learned.retainAll(yBridge.getMactoport().keySet());
+                assertEquals(learned, xBridge.getLearnedMacs().intersection(yBridge.getLearnedMacs()).toSet());
+
+                BridgeSimpleConnection simple = BridgeSimpleConnection.createAndRun(xBridge, yBridge);
+                Set<String> onSegment = new HashSet<String>(xBridge.getBridgePortWithMacs(simple.getFirstPort()).getMacs());
+                onSegment.retainAll(yBridge.getBridgePortWithMacs(simple.getSecondPort()).getMacs());
+                assertEquals(onSegment, BridgeSimpleConnection.getMacs(xBridge, yBridge, simple).toSet());
+                assertEquals(onSegment, xBridge.getBridgePortWithMacs(simple.getFirstPort()).getMacs());
+            }
+        }
+
+        DiscoveryBridgeTopology ndbt= new DiscoveryBridgeTopology(domain);
+        for (Integer nodeId: bfts.keySet()) {
+            ndbt.addUpdatedBFT(nodeId, bfts.get(nodeId));
+        }
+        ndbt.calculate();
+
+        topology.check(ndbt.getDomain());
+    }
+
 
     @Test 
     public void testHierarchySetUp() throws BridgeTopologyException {
@@ -0,0 +1,149 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2022 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2022 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.eventd;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.opennms.netmgt.events.api.EventHandler;
+import org.opennms.netmgt.events.api.EventListener;
+import org.opennms.netmgt.events.api.model.IEvent;
+import org.opennms.netmgt.model.events.EventBuilder;
+import org.opennms.netmgt.xml.event.Event;
+import org.opennms.netmgt.xml.event.Log;
+
+import com.codahale.metrics.MetricRegistry;
+
+/**
+ * Use the Java Microbenchmarking Harness (JMH) to measure the cost of broadcasting an event
+ * to a large number of registered listeners.
+ * <p>
+ * The listeners are spread evenly over a number of UEIs, the broadcasted event matches the
+ * UEI of {@code listeners / ueis} listeners. Listeners registered for all events are not used
+ * since every broadcast would then be sent to all of them.
+ */
+public class EventIpcManagerBroadcastBenchmark {
+
+    private static final String UEI_PREFIX = "uei.opennms.org/benchmark/";
+
+    public static void main(String[] args) throws Exception {
+        org.openjdk.jmh.Main.main(args);
+    }
+
+    @State(Scope.Benchmark)
+    public static class BState {
+
+        @Param({"1000"})
+        public int listeners;
+
+        @Param({"1", "100"})
+        public int ueis;
+
+        private EventIpcManagerDefaultImpl eventIpcManager;
+        private final List<EventListener> eventListeners = new ArrayList<>();
+        private Event event;
+
+        @Setup
+        public void setup() {
+            eventIpcManager = new EventIpcManagerDefaultImpl(new MetricRegistry());
+            eventIpcManager.setEventHandler(new NoOpEventHandler());
+            eventIpcManager.setHandlerPoolSize(1);
+            eventIpcManager.afterPropertiesSet();
+
+            for (int i = 0; i < listeners; i++) {
+                final EventListener listener = new NoOpEventListener("listener-" + i);
+                eventIpcManager.addEventListener(listener, UEI_PREFIX + (i % ueis));
+                eventListeners.add(listener);
+            }
+
+            event = new EventBuilder(UEI_PREFIX + "0", "benchmark")
+                    .setNodeid(1)
+                    .addParam("key", "value")
+                    .getEvent();
+        }
+
+        @TearDown
+        public void tearDown() {
+            for (EventListener listener : eventListeners) {
+                eventIpcManager.removeEventListener(listener);
+            }
+            eventListeners.clear();
+        }
+    }
+
+    @Benchmark
+    @Fork(value = 1)
+    @Warmup(iterations = 1)
+    @Measurement(iterations = 2)
+    public void broadcastNow(BState state, Blackhole blackhole) {
+        // wait for all of the listeners so that the queues don't grow unbounded between invocations
+        state.eventIpcManager.broadcastNow(state.event, true);
+        blackhole.consume(state.event);
+    }
+
+    private static class NoOpEventListener implements EventListener {
+        private final String name;
+
+        private NoOpEventListener(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public void onEvent(IEvent e) {
+            // pass
+        }
+    }
+
+    private static class NoOpEventHandler implements EventHandler {
+        @Override
+        public Runnable createRunnable(Log eventLog) {
+            return () -> {};
+        }
+
+        @Override
+        public Runnable createRunnable(Log eventLog, boolean synchronous) {
+            return () -> {};
+        }
+    }
+}
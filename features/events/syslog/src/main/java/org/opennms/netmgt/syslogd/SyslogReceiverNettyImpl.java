@@ -0,0 +1,299 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2022 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2022 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+
+package org.opennms.netmgt.syslogd;
+
+import static org.opennms.core.utils.InetAddressUtils.addr;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ThreadFactory;
+
+import org.opennms.netmgt.config.SyslogdConfig;
+import org.opennms.netmgt.syslogd.api.SyslogConnection;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.FixedRecvByteBufAllocator;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollChannelOption;
+import io.netty.channel.epoll.EpollDatagramChannel;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.DatagramChannel;
+import io.netty.channel.socket.DatagramPacket;
+import io.netty.channel.socket.nio.NioDatagramChannel;
+
+/**
+ * Receives syslog messages with Netty, without going through Camel.
+ *
+ * When the native epoll transport is available, several channels are bound to the same port
+ * with SO_REUSEPORT so that the kernel spreads the packets over the reader threads. Otherwise
+ * a single NIO channel is used. Each packet is handed to the dispatcher as soon as it was read.
+ */
+public class SyslogReceiverNettyImpl extends SinkDispatchingSyslogReceiver {
+
+    private static final Logger LOG = LoggerFactory.getLogger(SyslogReceiverNettyImpl.class);
+
+    private final SyslogdConfig m_config;
+
+    private int m_listenerThreads = 0;
+
+    private int m_receiveBufferSize = Integer.MAX_VALUE;
+
+    private int m_maxPacketSize = 0xffff;
+
+    private MetricRegistry m_metrics = new MetricRegistry();
+
+    private Meter m_packetsReceived;
+
+    private Meter m_packetsDropped;
+
+    private Histogram m_packetsPerRead;
+
+    private boolean m_usingEpoll = false;
+
+    private EventLoopGroup m_group;
+
+    private final List<Channel> m_channels = new ArrayList<>();
+
+    public SyslogReceiverNettyImpl(final SyslogdConfig config) {
+        super(config);
+        m_config = config;
+    }
+
+    @Override
+    public String getName() {
+        String listenAddress = m_config.getListenAddress() == null? "0.0.0.0" : m_config.getListenAddress();
+        return getClass().getSimpleName() + " [" + listenAddress + ":" + m_config.getSyslogPort() + "]";
+    }
+
+    public boolean isStarted() {
+        return m_channels.stream().anyMatch(Channel::isActive);
+    }
+
+    /**
+     * Whether the channels use the native epoll transport instead of NIO.
+     */
+    public boolean isUsingEpoll() {
+        return m_usingEpoll;
+    }
+
+    public int getNumChannels() {
+        return m_channels.size();
+    }
+
+    /**
+     * The execution context.
+     */
+    @Override
+    public void run() {
+        // Setup logging and create the dispatcher
+        super.run();
+
+        m_packetsReceived = m_metrics.meter(MetricRegistry.name(getClass(), "packetsReceived"));
+        m_packetsDropped = m_metrics.meter(MetricRegistry.name(getClass(), "packetsDropped"));
+        m_packetsPerRead = m_metrics.histogram(MetricRegistry.name(getClass(), "packetsPerRead"));
+
+        final int threads = m_listenerThreads > 0 ? m_listenerThreads : Runtime.getRuntime().availableProcessors();
+        final ThreadFactory threadFactory = new ThreadFactoryBuilder()
+                .setNameFormat("syslogd-listener-%d")
+                .build();
+        final InetSocketAddress address = m_config.getListenAddress() != null
+                ? new InetSocketAddress(addr(m_config.getListenAddress()), m_config.getSyslogPort())
+                : new InetSocketAddress(m_config.getSyslogPort());
+
+        final Bootstrap bootstrap = new Bootstrap()
+                .option(ChannelOption.SO_REUSEADDR, true)
+                .option(ChannelOption.SO_RCVBUF, m_receiveBufferSize)
+                .option(ChannelOption.RCVBUF_ALLOCATOR, new FixedRecvByteBufAllocator(m_maxPacketSize))
+                .handler(new ChannelInitializer<DatagramChannel>() {
+                    @Override
+                    protected void initChannel(DatagramChannel ch) {
+                        ch.pipeline().addLast(new PacketHandler());
+                    }
+                });
+
+        final int numChannels;
+        if (EpollSupport.isAvailable()) {
+            m_group = EpollSupport.configure(bootstrap, threads, threadFactory);
+            m_usingEpoll = true;
+            numChannels = threads;
+        } else {
+            LOG.info("The native epoll transport is not available, using a single listener thread");
+            m_group = new NioEventLoopGroup(1, threadFactory);
+            m_usingEpoll = false;
+            bootstrap.group(m_group).channel(NioDatagramChannel.class);
+            numChannels = 1;
+        }
+
+        try {
+            for (int i = 0; i < numChannels; i++) {
+                m_channels.add(bootstrap.bind(address).sync().channel());
+            }
+            LOG.info("Listening for syslog messages on {} with {} channel(s)", address, numChannels);
+        } catch (InterruptedException e) {
+            LOG.info("Interrupted while binding the syslog listener");
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            LOG.error("Could not bind the syslog listener to {}", address, e);
+        }
+    }
+
+    /**
+     * stop the current receiver
+     * @throws InterruptedException
+     */
+    @Override
+    public void stop() throws InterruptedException {
+        for (final Channel channel : m_channels) {
+            channel.close().sync();
+        }
+        m_channels.clear();
+        if (m_group != null) {
+            m_group.shutdownGracefully().sync();
+            m_group = null;
+        }
+        super.stop();
+    }
+
+    @Override
+    public void reload() throws IOException {
+        m_config.reload();
+    }
+
+    public int getListenerThreads() {
+        return m_listenerThreads;
+    }
+
+    /**
+     * Number of channels bound to the port when epoll is available, defaults to the number of cores.
+     */
+    public void setListenerThreads(int listenerThreads) {
+        m_listenerThreads = listenerThreads;
+    }
+
+    public int getReceiveBufferSize() {
+        return m_receiveBufferSize;
+    }
+
+    public void setReceiveBufferSize(int receiveBufferSize) {
+        m_receiveBufferSize = receiveBufferSize;
+    }
+
+    public int getMaxPacketSize() {
+        return m_maxPacketSize;
+    }
+
+    public void setMaxPacketSize(int maxPacketSize) {
+        m_maxPacketSize = maxPacketSize;
+    }
+
+    public void setMetricRegistry(MetricRegistry metrics) {
+        m_metrics = Objects.requireNonNull(metrics);
+    }
+
+    /**
+     * Dispatches every packet as it is read and records how many packets each read pass over the channel drained.
+     */
+    private class PacketHandler extends SimpleChannelInboundHandler<DatagramPacket> {
+        private int m_packetsInRead = 0;
+
+        @Override
+        protected void channelRead0(ChannelHandlerContext ctx, DatagramPacket packet) {
+            m_packetsReceived.mark();
+            m_packetsInRead++;
+            if (m_dispatcher == null) {
+                m_packetsDropped.mark();
+                return;
+            }
+            final SyslogConnection connection = new SyslogConnection(packet.sender(), ByteBuffer.wrap(ByteBufUtil.getBytes(packet.content())));
+            m_dispatcher.send(connection).whenComplete((r, e) -> {
+                if (e != null) {
+                    m_packetsDropped.mark();
+                }
+            });
+        }
+
+        @Override
+        public void channelReadComplete(ChannelHandlerContext ctx) {
+            if (m_packetsInRead > 0) {
+                m_packetsPerRead.update(m_packetsInRead);
+                m_packetsInRead = 0;
+            }
+            ctx.fireChannelReadComplete();
+        }
+
+        @Override
+        public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+            LOG.warn("Error while receiving syslog message", cause);
+        }
+    }
+
+    /**
+     * Keeps the references to the native transport in a separate class,
+     * so that the receiver still loads when it is missing.
+     */
+    private static class EpollSupport {
+
+        private static boolean isAvailable() {
+            try {
+                return Epoll.isAvailable();
+            } catch (LinkageError e) {
+                LOG.debug("Could not load the native epoll transport", e);
+                return false;
+            }
+        }
+
+        private static EventLoopGroup configure(Bootstrap bootstrap, int threads, ThreadFactory threadFactory) {
+            final EventLoopGroup group = new EpollEventLoopGroup(threads, threadFactory);
+            bootstrap.group(group)
+                    .channel(EpollDatagramChannel.class)
+                    .option(EpollChannelOption.SO_REUSEPORT, true);
+            return group;
+        }
+    }
+}
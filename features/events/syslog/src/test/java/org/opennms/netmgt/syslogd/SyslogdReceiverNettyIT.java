@@ -0,0 +1,193 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2022 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2022 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+
+package org.opennms.netmgt.syslogd;
+
+import static com.jayway.awaitility.Awaitility.await;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.opennms.core.utils.InetAddressUtils.addr;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.opennms.core.ipc.sink.common.ThreadLockingDispatcherFactory;
+import org.opennms.core.ipc.sink.common.ThreadLockingSyncDispatcher;
+import org.opennms.core.test.MockLogAppender;
+import org.opennms.netmgt.config.SyslogdConfig;
+import org.opennms.netmgt.dao.api.DistPollerDao;
+import org.opennms.netmgt.syslogd.SyslogdReceiverCamelNettyIT.SyslogGenerator;
+import org.opennms.netmgt.syslogd.api.SyslogConnection;
+
+import com.codahale.metrics.MetricRegistry;
+
+import io.netty.channel.epoll.Epoll;
+
+public class SyslogdReceiverNettyIT {
+
+    private final MetricRegistry metrics = new MetricRegistry();
+
+    private SyslogReceiverNettyImpl syslogReceiver;
+
+    @Before
+    public void setUp() throws Exception {
+        MockLogAppender.setupLogging();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (syslogReceiver != null) {
+            syslogReceiver.stop();
+        }
+        MockLogAppender.assertNoErrorOrGreater();
+    }
+
+    @Test(timeout=3 * 60 * 1000)
+    public void testParallelismAndQueueing() throws Exception {
+        final int NUM_GENERATORS = 3;
+        final double MESSAGE_RATE_PER_GENERATOR = 1000.0;
+        final int NUM_CONSUMER_THREADS = 8;
+        final int MESSAGE_QUEUE_SIZE = 529;
+
+        ThreadLockingDispatcherFactory<SyslogConnection> threadLockingDispatcherFactory = new ThreadLockingDispatcherFactory<>();
+        ThreadLockingSyncDispatcher<SyslogConnection> syncDispatcher = threadLockingDispatcherFactory.getThreadLockingSyncDispatcher();
+        CompletableFuture<Integer> future = syncDispatcher.waitForThreads(NUM_CONSUMER_THREADS);
+
+        syslogReceiver = createReceiver(threadLockingDispatcherFactory, NUM_CONSUMER_THREADS, MESSAGE_QUEUE_SIZE);
+        syslogReceiver.setListenerThreads(4);
+        syslogReceiver.run();
+        assertTrue(syslogReceiver.isStarted());
+
+        // Fire up the syslog generators
+        List<SyslogGenerator> generators = new ArrayList<>(NUM_GENERATORS);
+        for (int k = 0; k < NUM_GENERATORS; k++) {
+            SyslogGenerator generator = new SyslogGenerator(addr("127.0.0.1"), k, MESSAGE_RATE_PER_GENERATOR);
+            generator.start();
+            generators.add(generator);
+        }
+
+        // Wait until we have NUM_CONSUMER_THREADS locked
+        future.get();
+
+        // Keep generating traffic for a few seconds while the queue is full
+        Thread.sleep(SECONDS.toMillis(10));
+
+        // Verify that there aren't more than NUM_CONSUMER_THREADS waiting
+        assertEquals(0, syncDispatcher.getNumExtraThreadsWaiting());
+
+        // Release the producer threads
+        syncDispatcher.release();
+
+        // Stop the generators
+        for (int k = 0; k < NUM_GENERATORS; k++) {
+            generators.get(k).stop();
+        }
+    }
+
+    @Test(timeout=60 * 1000)
+    public void canCountReceivedPackets() throws Exception {
+        final int NUM_MESSAGES = 100;
+
+        ThreadLockingDispatcherFactory<SyslogConnection> threadLockingDispatcherFactory = new ThreadLockingDispatcherFactory<>();
+        ThreadLockingSyncDispatcher<SyslogConnection> syncDispatcher = threadLockingDispatcherFactory.getThreadLockingSyncDispatcher();
+
+        syslogReceiver = createReceiver(threadLockingDispatcherFactory, 1, 1000);
+        syslogReceiver.setListenerThreads(2);
+        syslogReceiver.run();
+        assertTrue(syslogReceiver.isStarted());
+
+        final SyslogClient sc = new SyslogClient(null, 10, SyslogClient.LOG_DEBUG, addr("127.0.0.1"));
+        for (int k = 0; k < NUM_MESSAGES; k++) {
+            sc.syslog(SyslogClient.LOG_DEBUG, String.format("2016-12-08 localhost test: message %d on tty1", k));
+        }
+
+        await().atMost(30, SECONDS).until(() -> metrics.meter(MetricRegistry.name(SyslogReceiverNettyImpl.class, "packetsReceived")).getCount(),
+                equalTo((long)NUM_MESSAGES));
+        assertEquals(0, metrics.meter(MetricRegistry.name(SyslogReceiverNettyImpl.class, "packetsDropped")).getCount());
+        assertTrue(metrics.histogram(MetricRegistry.name(SyslogReceiverNettyImpl.class, "packetsPerRead")).getCount() > 0);
+
+        // Release the consumer thread
+        syncDispatcher.release();
+    }
+
+    @Test(timeout=60 * 1000)
+    public void usesOneEpollChannelPerThreadWhenAvailable() throws Exception {
+        // The native transport ships for linux-x86_64 only
+        assumeTrue(Epoll.isAvailable());
+        final int NUM_MESSAGES = 100;
+
+        ThreadLockingDispatcherFactory<SyslogConnection> threadLockingDispatcherFactory = new ThreadLockingDispatcherFactory<>();
+        ThreadLockingSyncDispatcher<SyslogConnection> syncDispatcher = threadLockingDispatcherFactory.getThreadLockingSyncDispatcher();
+
+        syslogReceiver = createReceiver(threadLockingDispatcherFactory, 1, 1000);
+        syslogReceiver.setListenerThreads(3);
+        syslogReceiver.run();
+        assertTrue(syslogReceiver.isStarted());
+        assertTrue(syslogReceiver.isUsingEpoll());
+        assertEquals(3, syslogReceiver.getNumChannels());
+
+        // All channels share the port
+        final SyslogClient sc = new SyslogClient(null, 10, SyslogClient.LOG_DEBUG, addr("127.0.0.1"));
+        for (int k = 0; k < NUM_MESSAGES; k++) {
+            sc.syslog(SyslogClient.LOG_DEBUG, String.format("2016-12-08 localhost test: message %d on tty1", k));
+        }
+        await().atMost(30, SECONDS).until(() -> metrics.meter(MetricRegistry.name(SyslogReceiverNettyImpl.class, "packetsReceived")).getCount(),
+                equalTo((long)NUM_MESSAGES));
+
+        syncDispatcher.release();
+    }
+
+    private SyslogReceiverNettyImpl createReceiver(ThreadLockingDispatcherFactory<SyslogConnection> dispatcherFactory,
+                                                   int numThreads, int queueSize) {
+        SyslogdConfig syslogdConfig = mock(SyslogdConfig.class);
+        when(syslogdConfig.getSyslogPort()).thenReturn(SyslogClient.PORT);
+        when(syslogdConfig.getNumThreads()).thenReturn(numThreads);
+        when(syslogdConfig.getQueueSize()).thenReturn(queueSize);
+
+        DistPollerDao distPollerDao = mock(DistPollerDao.class, Mockito.RETURNS_DEEP_STUBS);
+        when(distPollerDao.whoami().getId()).thenReturn("");
+        when(distPollerDao.whoami().getLocation()).thenReturn("");
+
+        SyslogReceiverNettyImpl receiver = new SyslogReceiverNettyImpl(syslogdConfig);
+        receiver.setMessageDispatcherFactory(dispatcherFactory);
+        receiver.setDistPollerDao(distPollerDao);
+        receiver.setMetricRegistry(metrics);
+        return receiver;
+    }
+}
@@ -32,6 +32,7 @@ import static org.opennms.core.utils.InetAddressUtils.str;
 
 import java.net.InetAddress;
 import java.util.Date;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 
@@ -62,6 +63,17 @@ class EventCreator {
     }
 
     public Event createEventFrom(final TrapDTO trapDTO, final String systemId, final String location, final InetAddress trapAddress) {
+        return createEventFrom(trapDTO, systemId, location, trapAddress, null);
+    }
+
+    /**
+     * Creates the event for the given trap, reusing the event definitions already
+     * resolved for identical traps in the same batch.
+     *
+     * @param lookups event definitions resolved so far, keyed by trap, or null to always query the {@link EventConfDao}
+     */
+    public Event createEventFrom(final TrapDTO trapDTO, final String systemId, final String location, final InetAddress trapAddress,
+                                 final Map<TrapKey, Optional<org.opennms.netmgt.xml.eventconf.Event>> lookups) {
         LOG.debug("{} trap - trapInterface: {}", trapDTO.getVersion(), trapDTO.getAgentAddress());
 
         // Set event data
@@ -107,7 +119,12 @@ class EventCreator {
 
         // Get event template and set uei, if unknown
         final Event event = eventBuilder.getEvent();
-        final org.opennms.netmgt.xml.eventconf.Event econf = eventConfDao.findByEvent(event);
+        final org.opennms.netmgt.xml.eventconf.Event econf;
+        if (lookups != null) {
+            econf = lookups.computeIfAbsent(new TrapKey(event), k -> Optional.ofNullable(eventConfDao.findByEvent(event))).orElse(null);
+        } else {
+            econf = eventConfDao.findByEvent(event);
+        }
         if (econf == null || econf.getUei() == null) {
             event.setUei("uei.opennms.org/default/trap");
         } else {
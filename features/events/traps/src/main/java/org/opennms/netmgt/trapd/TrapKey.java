@@ -0,0 +1,129 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2022 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2022 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+
+package org.opennms.netmgt.trapd;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+import org.opennms.netmgt.xml.event.Event;
+import org.opennms.netmgt.xml.event.Parm;
+import org.opennms.netmgt.xml.event.Snmp;
+import org.opennms.netmgt.xml.event.Value;
+
+/**
+ * Identifies a trap by the fields of the event created from it.
+ *
+ * Besides the enterprise OID and the generic and specific types, the key
+ * retains the agent, the trap OID and the varbinds, since event definitions
+ * may match on any of these with their masks and varbind filters. Two traps
+ * with equal keys are therefore resolved to the same event definition.
+ */
+class TrapKey {
+
+    private final String enterpriseId;
+    private final Integer generic;
+    private final Integer specific;
+    private final String trapOid;
+    private final String community;
+    private final String host;
+    private final String snmpHost;
+    private final String ipAddr;
+    private final Long nodeId;
+    private final List<List<String>> parms;
+    private final int hashCode;
+
+    TrapKey(Event event) {
+        final Snmp snmp = event.getSnmp();
+        if (snmp != null) {
+            enterpriseId = snmp.getId();
+            generic = snmp.getGeneric();
+            specific = snmp.getSpecific();
+            trapOid = snmp.getTrapOID();
+            community = snmp.getCommunity();
+        } else {
+            enterpriseId = null;
+            generic = null;
+            specific = null;
+            trapOid = null;
+            community = null;
+        }
+        host = event.getHost();
+        snmpHost = event.getSnmphost();
+        ipAddr = event.getInterface();
+        nodeId = event.hasNodeid() ? event.getNodeid() : null;
+
+        parms = new ArrayList<>(event.getParmCollection().size());
+        for (Parm parm : event.getParmCollection()) {
+            final Value value = parm.getValue();
+            final List<String> fields = new ArrayList<>(4);
+            fields.add(parm.getParmName());
+            fields.add(value != null ? value.getContent() : null);
+            fields.add(value != null ? value.getType() : null);
+            fields.add(value != null ? value.getEncoding() : null);
+            parms.add(fields);
+        }
+
+        hashCode = Objects.hash(enterpriseId, generic, specific, trapOid, community, host, snmpHost, ipAddr, nodeId, parms);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (obj == null || getClass() != obj.getClass()) {
+            return false;
+        }
+        final TrapKey other = (TrapKey) obj;
+        return hashCode == other.hashCode
+                && Objects.equals(enterpriseId, other.enterpriseId)
+                && Objects.equals(generic, other.generic)
+                && Objects.equals(specific, other.specific)
+                && Objects.equals(trapOid, other.trapOid)
+                && Objects.equals(community, other.community)
+                && Objects.equals(host, other.host)
+                && Objects.equals(snmpHost, other.snmpHost)
+                && Objects.equals(ipAddr, other.ipAddr)
+                && Objects.equals(nodeId, other.nodeId)
+                && Objects.equals(parms, other.parms);
+    }
+
+    @Override
+    public int hashCode() {
+        return hashCode;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("TrapKey[enterpriseId=%s, generic=%s, specific=%s, trapOid=%s, host=%s, snmpHost=%s, nodeId=%s, parms=%s]",
+                enterpriseId, generic, specific, trapOid, host, snmpHost, nodeId, parms);
+    }
+}
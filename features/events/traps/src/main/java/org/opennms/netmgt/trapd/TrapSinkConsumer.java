@@ -30,7 +30,19 @@ package org.opennms.netmgt.trapd;
 
 import static org.opennms.core.utils.InetAddressUtils.addr;
 
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 
 import org.opennms.core.ipc.sink.api.MessageConsumer;
 import org.opennms.core.ipc.sink.api.MessageConsumerManager;
@@ -65,6 +77,19 @@ public class TrapSinkConsumer implements MessageConsumer<TrapInformationWrapper,
 	 */
 	private static final String LOCALHOST_ADDRESS = InetAddressUtils.getLocalHostName();
 
+	/**
+	 * Maximum number of trap logs that may be waiting to be forwarded to eventd
+	 * while the next ones are being processed. Set to 0 to forward synchronously.
+	 */
+	public static final String MAX_IN_FLIGHT_LOGS_PROPERTY = "org.opennms.netmgt.trapd.maxInFlightLogs";
+
+	private static final int DEFAULT_MAX_IN_FLIGHT_LOGS = 100;
+
+	/**
+	 * How often windows of suppressed traps are checked for expiry.
+	 */
+	private static final long SUPPRESSION_SWEEP_INTERVAL_MS = 1000;
+
 	@Autowired
 	private MessageConsumerManager messageConsumerManager;
 
@@ -86,10 +111,43 @@ public class TrapSinkConsumer implements MessageConsumer<TrapInformationWrapper,
 
 	private EventCreator eventCreator;
 
+	private TrapSuppressor trapSuppressor;
+
+	private Semaphore inFlightLogs;
+
+	private ExecutorService forwarder;
+
+	private ScheduledExecutorService suppressionSweeper;
+
 	@PostConstruct
 	public void init() throws Exception {
-		messageConsumerManager.registerConsumer(this);
 		eventCreator = new EventCreator(interfaceToNodeCache, eventConfDao);
+		trapSuppressor = new TrapSuppressor(config::getSuppressionWindowMs);
+
+		// Events are forwarded by a single thread so that they reach eventd in the order they were received
+		final int maxInFlightLogs = Integer.getInteger(MAX_IN_FLIGHT_LOGS_PROPERTY, DEFAULT_MAX_IN_FLIGHT_LOGS);
+		if (maxInFlightLogs > 0) {
+			inFlightLogs = new Semaphore(maxInFlightLogs);
+			forwarder = Executors.newSingleThreadExecutor(r -> newDaemonThread(r, "Trapd-Forwarder"));
+		}
+		suppressionSweeper = Executors.newSingleThreadScheduledExecutor(r -> newDaemonThread(r, "Trapd-Suppression"));
+		suppressionSweeper.scheduleWithFixedDelay(this::sendSuppressedEvents,
+				SUPPRESSION_SWEEP_INTERVAL_MS, SUPPRESSION_SWEEP_INTERVAL_MS, TimeUnit.MILLISECONDS);
+
+		messageConsumerManager.registerConsumer(this);
+	}
+
+	@PreDestroy
+	public void destroy() throws Exception {
+		messageConsumerManager.unregisterConsumer(this);
+		suppressionSweeper.shutdownNow();
+		if (forwarder != null) {
+			forwarder.shutdown();
+			if (!forwarder.awaitTermination(30, TimeUnit.SECONDS)) {
+				LOG.warn("Timed out waiting for pending traps to be forwarded.");
+				forwarder.shutdownNow();
+			}
+		}
 	}
 
 	@Override
@@ -101,7 +159,45 @@ public class TrapSinkConsumer implements MessageConsumer<TrapInformationWrapper,
 	public void handleMessage(TrapLogDTO messageLog) {
 		try (Logging.MDCCloseable mdc = Logging.withPrefixCloseable(Trapd.LOG4J_CATEGORY)) {
 			final Log eventLog = toLog(messageLog);
+			if (eventLog.getEvents().getEventCount() > 0) {
+				forward(eventLog);
+			}
+		}
+	}
+
+	/**
+	 * Hands the log over to the forwarding thread, blocking the caller
+	 * while the maximum number of logs are already waiting to be sent.
+	 */
+	private void forward(Log eventLog) {
+		if (forwarder == null) {
+			send(eventLog);
+			return;
+		}
+		try {
+			inFlightLogs.acquire();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			LOG.warn("Interrupted while waiting to forward traps, sending them synchronously.");
+			send(eventLog);
+			return;
+		}
+		try {
+			forwarder.execute(() -> {
+				try (Logging.MDCCloseable mdc = Logging.withPrefixCloseable(Trapd.LOG4J_CATEGORY)) {
+					send(eventLog);
+				} finally {
+					inFlightLogs.release();
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			inFlightLogs.release();
+			send(eventLog);
+		}
+	}
 
+	private void send(Log eventLog) {
+		try {
 			eventForwarder.sendNowSync(eventLog);
 
 			// If configured, also send events for new suspects
@@ -113,6 +209,29 @@ public class TrapSinkConsumer implements MessageConsumer<TrapInformationWrapper,
 							LOG.debug("Sent newSuspectEvent for interface {}", e.getInterface());
 						});
 			}
+		} catch (Throwable e) {
+			LOG.error("Unexpected error forwarding traps: {}", eventLog, e);
+			trapdInstrumentation.incErrorCount();
+		}
+	}
+
+	/**
+	 * Sends a single event, with a repeat count, for each expired window in which duplicate traps were suppressed.
+	 */
+	private void sendSuppressedEvents() {
+		try (Logging.MDCCloseable mdc = Logging.withPrefixCloseable(Trapd.LOG4J_CATEGORY)) {
+			final List<Event> suppressed = trapSuppressor.expire(System.currentTimeMillis());
+			if (suppressed.isEmpty()) {
+				return;
+			}
+			final Log log = new Log();
+			final Events events = new Events();
+			suppressed.forEach(events::addEvent);
+			log.setEvents(events);
+			LOG.debug("Sending {} events for suppressed duplicate traps.", suppressed.size());
+			forward(log);
+		} catch (Throwable e) {
+			LOG.error("Unexpected error sending events for suppressed traps.", e);
 		}
 	}
 
@@ -121,18 +240,26 @@ public class TrapSinkConsumer implements MessageConsumer<TrapInformationWrapper,
 		final Events events = new Events();
 		log.setEvents(events);
 
+		// Identical traps in the same batch are matched against the event definitions only once
+		final Map<TrapKey, Optional<org.opennms.netmgt.xml.eventconf.Event>> lookups = new HashMap<>();
 		for (TrapDTO eachMessage : messageLog.getMessages()) {
 			try {
 				final Event event = eventCreator.createEventFrom(
 						eachMessage,
 						messageLog.getSystemId(),
 						messageLog.getLocation(),
-						messageLog.getTrapAddress());
+						messageLog.getTrapAddress(),
+						lookups);
 				if (!shouldDiscard(event)) {
 					if (event.getSnmp() != null) {
 						trapdInstrumentation.incTrapsReceivedCount(event.getSnmp().getVersion());
 					}
-					events.addEvent(event);
+					if (trapSuppressor.accept(event, System.currentTimeMillis())) {
+						events.addEvent(event);
+					} else {
+						LOG.debug("Duplicate trap suppressed: {}", event);
+						trapdInstrumentation.incSuppressedCount();
+					}
 				} else {
 					LOG.debug("Trap discarded due to matching event having logmsg dest == discardtraps");
 					trapdInstrumentation.incDiscardCount();
@@ -145,6 +272,12 @@ public class TrapSinkConsumer implements MessageConsumer<TrapInformationWrapper,
 		return log;
 	}
 
+	private static Thread newDaemonThread(Runnable r, String name) {
+		final Thread thread = new Thread(r, name);
+		thread.setDaemon(true);
+		return thread;
+	}
+
 	private void sendNewSuspectEvent(String trapInterface, String distPoller) {
 		// construct event with 'trapd' as source
 		EventBuilder bldr = new EventBuilder(org.opennms.netmgt.events.api.EventConstants.NEW_SUSPECT_INTERFACE_EVENT_UEI, "trapd");
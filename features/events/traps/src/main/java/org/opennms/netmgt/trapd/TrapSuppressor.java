@@ -0,0 +1,138 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2022 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2022 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+
+package org.opennms.netmgt.trapd;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.IntSupplier;
+
+import org.opennms.netmgt.xml.event.Event;
+import org.opennms.netmgt.xml.event.Parm;
+
+/**
+ * Collapses identical traps, with the same agent, trap OID and varbinds,
+ * received within a configurable window.
+ *
+ * The first trap of a window is forwarded as is. Any identical traps received
+ * until the window expires are suppressed and counted, and once it expires a
+ * single event, copied from the last suppressed trap, is sent in their place
+ * with the number of suppressed traps in the {@link #REPEAT_COUNT_PARM} parameter.
+ */
+class TrapSuppressor {
+
+    public static final String REPEAT_COUNT_PARM = "repeatCount";
+
+    private final IntSupplier windowMs;
+
+    private final Map<TrapKey, Window> windows = new ConcurrentHashMap<>();
+
+    private final ConcurrentLinkedQueue<Window> expired = new ConcurrentLinkedQueue<>();
+
+    private static class Window {
+        private final long start;
+        private int count = 0;
+        private Event last;
+
+        private Window(long start) {
+            this.start = start;
+        }
+    }
+
+    /**
+     * @param windowMs supplies the current window, in ms, a value <= 0 disables suppression
+     */
+    TrapSuppressor(IntSupplier windowMs) {
+        this.windowMs = windowMs;
+    }
+
+    /**
+     * @return true if the event should be forwarded, false if it was suppressed
+     */
+    boolean accept(Event event, long now) {
+        final int window = windowMs.getAsInt();
+        if (window <= 0) {
+            return true;
+        }
+        final boolean[] forward = new boolean[1];
+        windows.compute(new TrapKey(event), (key, w) -> {
+            if (w == null || now - w.start >= window) {
+                if (w != null && w.count > 0) {
+                    expired.add(w);
+                }
+                forward[0] = true;
+                return new Window(now);
+            }
+            w.count++;
+            w.last = event;
+            return w;
+        });
+        return forward[0];
+    }
+
+    /**
+     * Removes the windows that have expired.
+     *
+     * @return one event for every expired window in which traps were suppressed
+     */
+    List<Event> expire(long now) {
+        final int window = windowMs.getAsInt();
+        final List<Window> done = new ArrayList<>();
+        for (TrapKey key : windows.keySet()) {
+            windows.computeIfPresent(key, (k, w) -> {
+                if (window > 0 && now - w.start < window) {
+                    return w;
+                }
+                if (w.count > 0) {
+                    done.add(w);
+                }
+                return null;
+            });
+        }
+        Window w;
+        while ((w = expired.poll()) != null) {
+            done.add(w);
+        }
+
+        final List<Event> events = new ArrayList<>(done.size());
+        for (Window each : done) {
+            final Event event = each.last;
+            event.addParm(new Parm(REPEAT_COUNT_PARM, Integer.toString(each.count)));
+            events.add(event);
+        }
+        return events;
+    }
+
+    int size() {
+        return windows.size();
+    }
+}
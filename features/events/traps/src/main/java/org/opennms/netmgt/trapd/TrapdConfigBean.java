@@ -62,6 +62,7 @@ public class TrapdConfigBean implements TrapdConfig, Serializable {
 	private int batchSize;
 	private int queueSize;
 	private int numThreads;
+	private int suppressionWindowMs;
 	private boolean useAddressFromVarbind;
 
 	public TrapdConfigBean() {
@@ -81,6 +82,7 @@ public class TrapdConfigBean implements TrapdConfig, Serializable {
 		setBatchSize(trapdConfiguration.getBatchSize());
 		setQueueSize(trapdConfiguration.getQueueSize());
 		setNumThreads(trapdConfiguration.getThreads());
+		setSuppressionWindowMs(trapdConfiguration.getSuppressionWindow());
 		if (trapdConfiguration.getSnmpv3UserCollection() != null) {
 			setSnmpV3Users(trapdConfiguration.getSnmpv3UserCollection().stream()
 						.map(TrapdConfigBean::toSnmpV3User)
@@ -166,6 +168,7 @@ public class TrapdConfigBean implements TrapdConfig, Serializable {
 		setBatchSize(config.getBatchSize());
 		setQueueSize(config.getQueueSize());
 		setNumThreads(config.getNumThreads());
+		setSuppressionWindowMs(config.getSuppressionWindowMs());
 		setSnmpV3Users(config.getSnmpV3Users());
 	}
 
@@ -185,6 +188,15 @@ public class TrapdConfigBean implements TrapdConfig, Serializable {
 		this.numThreads = numThreads;
 	}
 
+	@Override
+	public int getSuppressionWindowMs() {
+		return suppressionWindowMs;
+	}
+
+	public void setSuppressionWindowMs(int suppressionWindowMs) {
+		this.suppressionWindowMs = suppressionWindowMs;
+	}
+
 	public static SnmpV3User toSnmpV3User(Snmpv3User snmpv3User) {
 		SnmpV3User snmpV3User = new SnmpV3User();
 		snmpV3User.setAuthPassPhrase(snmpv3User.getAuthPassphrase());
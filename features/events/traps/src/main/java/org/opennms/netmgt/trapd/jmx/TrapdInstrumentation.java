@@ -44,6 +44,7 @@ public class TrapdInstrumentation {
     private final AtomicLong vUnknownTrapsReceived = new AtomicLong();
     private final AtomicLong trapsDiscarded = new AtomicLong();
     private final AtomicLong trapsErrored = new AtomicLong();
+    private final AtomicLong trapsSuppressed = new AtomicLong();
 
     public void incTrapsReceivedCount(String version) {
         trapsReceived.incrementAndGet();
@@ -67,6 +68,10 @@ public class TrapdInstrumentation {
         trapsErrored.incrementAndGet();
     }
 
+    public void incSuppressedCount() {
+        trapsSuppressed.incrementAndGet();
+    }
+
     public long getV1TrapsReceived() {
         return v1TrapsReceived.get();
     }
@@ -91,6 +96,10 @@ public class TrapdInstrumentation {
         return trapsErrored.get();
     }
 
+    public long getTrapsSuppressed() {
+        return trapsSuppressed.get();
+    }
+
     public long getTrapsReceived() {
         return trapsReceived.get();
     }
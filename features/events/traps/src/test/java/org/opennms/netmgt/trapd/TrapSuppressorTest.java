@@ -0,0 +1,116 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2022 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2022 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+
+package org.opennms.netmgt.trapd;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import org.opennms.netmgt.model.events.EventBuilder;
+import org.opennms.netmgt.xml.event.Event;
+
+public class TrapSuppressorTest {
+
+    private final AtomicInteger windowMs = new AtomicInteger(1000);
+
+    private final TrapSuppressor suppressor = new TrapSuppressor(windowMs::get);
+
+    @Test
+    public void canSuppressDuplicateTraps() {
+        assertTrue(suppressor.accept(trap("10.0.0.1", ".1.3.6.1.4.1.9.9.41.2.0.1", "up"), 0));
+        assertFalse(suppressor.accept(trap("10.0.0.1", ".1.3.6.1.4.1.9.9.41.2.0.1", "up"), 10));
+        assertFalse(suppressor.accept(trap("10.0.0.1", ".1.3.6.1.4.1.9.9.41.2.0.1", "up"), 20));
+
+        // Traps from another agent, with another OID or with other varbinds are not duplicates
+        assertTrue(suppressor.accept(trap("10.0.0.2", ".1.3.6.1.4.1.9.9.41.2.0.1", "up"), 30));
+        assertTrue(suppressor.accept(trap("10.0.0.1", ".1.3.6.1.4.1.9.9.41.2.0.2", "up"), 30));
+        assertTrue(suppressor.accept(trap("10.0.0.1", ".1.3.6.1.4.1.9.9.41.2.0.1", "down"), 30));
+
+        // Nothing is sent until the window expires
+        assertEquals(0, suppressor.expire(999).size());
+
+        final List<Event> events = suppressor.expire(1000);
+        assertEquals(1, events.size());
+        assertEquals("10.0.0.1", events.get(0).getHost());
+        assertEquals("2", events.get(0).getParm(TrapSuppressor.REPEAT_COUNT_PARM).getValue().getContent());
+
+        // The other windows expire too, but had no duplicates
+        assertEquals(0, suppressor.expire(1030).size());
+        assertEquals(0, suppressor.size());
+    }
+
+    @Test
+    public void canStartNewWindowAfterExpiry() {
+        assertTrue(suppressor.accept(trap("10.0.0.1", ".1.3.6.1.4.1.9.9.41.2.0.1", "up"), 0));
+        assertFalse(suppressor.accept(trap("10.0.0.1", ".1.3.6.1.4.1.9.9.41.2.0.1", "up"), 500));
+
+        // The next trap after the window is forwarded and the pending repeat event is kept for the next sweep
+        assertTrue(suppressor.accept(trap("10.0.0.1", ".1.3.6.1.4.1.9.9.41.2.0.1", "up"), 1500));
+
+        final List<Event> events = suppressor.expire(1600);
+        assertEquals(1, events.size());
+        assertEquals("1", events.get(0).getParm(TrapSuppressor.REPEAT_COUNT_PARM).getValue().getContent());
+        assertEquals(1, suppressor.size());
+    }
+
+    @Test
+    public void canDisableSuppression() {
+        windowMs.set(0);
+        assertTrue(suppressor.accept(trap("10.0.0.1", ".1.3.6.1.4.1.9.9.41.2.0.1", "up"), 0));
+        assertTrue(suppressor.accept(trap("10.0.0.1", ".1.3.6.1.4.1.9.9.41.2.0.1", "up"), 10));
+        assertEquals(0, suppressor.size());
+    }
+
+    @Test
+    public void canFlushWindowsWhenDisabled() {
+        assertTrue(suppressor.accept(trap("10.0.0.1", ".1.3.6.1.4.1.9.9.41.2.0.1", "up"), 0));
+        assertFalse(suppressor.accept(trap("10.0.0.1", ".1.3.6.1.4.1.9.9.41.2.0.1", "up"), 10));
+
+        windowMs.set(0);
+        assertEquals(1, suppressor.expire(20).size());
+        assertEquals(0, suppressor.size());
+    }
+
+    private static Event trap(String agent, String trapOid, String status) {
+        final EventBuilder builder = new EventBuilder("uei.opennms.org/default/trap", "trapd");
+        builder.setHost(agent);
+        builder.setSnmpHost(agent);
+        builder.setTrapOID(trapOid);
+        builder.setGeneric(6);
+        builder.setSpecific(1);
+        builder.setEnterpriseId(".1.3.6.1.4.1.9.9.41.2");
+        builder.addParam(".1.3.6.1.4.1.9.9.41.1.2.3.1.5", status);
+        return builder.getEvent();
+    }
+}
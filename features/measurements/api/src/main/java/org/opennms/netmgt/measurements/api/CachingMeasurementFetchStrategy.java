@@ -0,0 +1,244 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2022 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2022 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.measurements.api;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.opennms.netmgt.measurements.model.Source;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.base.Optional;
+import com.google.common.base.Preconditions;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+/**
+ * Decorates any {@link MeasurementFetchStrategy} with a short-lived result cache.
+ *
+ * Requests are normalized before they hit the cache: the start and end timestamps are
+ * aligned to the step so that dashboards refreshing a sliding window within the same step
+ * share an entry. Concurrent identical requests are collapsed into a single fetch against
+ * the underlying strategy, all other callers wait for and share its result.
+ *
+ * The cached {@link FetchResults} are never handed out directly since callers mutate the
+ * column and constant maps when applying expressions and removing transient sources. The
+ * value arrays themselves are shared and must be treated as read-only.
+ */
+public class CachingMeasurementFetchStrategy implements MeasurementFetchStrategy {
+
+    private static final Logger LOG = LoggerFactory.getLogger(CachingMeasurementFetchStrategy.class);
+
+    public static final String CACHE_TTL_PROPERTY = "org.opennms.measurements.cache.ttl";
+    public static final long DEFAULT_CACHE_TTL_MS = TimeUnit.SECONDS.toMillis(15);
+
+    public static final String CACHE_MAX_ENTRIES_PROPERTY = "org.opennms.measurements.cache.maxEntries";
+    public static final long DEFAULT_CACHE_MAX_ENTRIES = 1000;
+
+    private final MeasurementFetchStrategy delegate;
+
+    private final Cache<FetchKey, Optional<FetchResults>> cache;
+
+    public CachingMeasurementFetchStrategy(MeasurementFetchStrategy delegate, long ttlMs, long maxEntries) {
+        this.delegate = Preconditions.checkNotNull(delegate, "delegate argument");
+        Preconditions.checkArgument(ttlMs > 0, "ttl must be strictly positive");
+        Preconditions.checkArgument(maxEntries > 0, "maxEntries must be strictly positive");
+        this.cache = CacheBuilder.newBuilder()
+                .expireAfterWrite(ttlMs, TimeUnit.MILLISECONDS)
+                .maximumSize(maxEntries)
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * Wraps the given strategy with a cache configured from the system properties,
+     * or returns it unchanged if caching was disabled by setting a ttl <= 0.
+     */
+    public static MeasurementFetchStrategy wrap(MeasurementFetchStrategy strategy) {
+        final long ttlMs = Long.getLong(CACHE_TTL_PROPERTY, DEFAULT_CACHE_TTL_MS);
+        final long maxEntries = Long.getLong(CACHE_MAX_ENTRIES_PROPERTY, DEFAULT_CACHE_MAX_ENTRIES);
+        if (ttlMs <= 0 || maxEntries <= 0) {
+            LOG.info("Measurement result caching is disabled.");
+            return strategy;
+        }
+        LOG.info("Caching measurement results for {}ms in up to {} entries.", ttlMs, maxEntries);
+        return new CachingMeasurementFetchStrategy(strategy, ttlMs, maxEntries);
+    }
+
+    @Override
+    public FetchResults fetch(long start, long end, long step, int maxrows, Long interval, Long heartbeat,
+                              List<Source> sources, boolean relaxed) throws Exception {
+        final FetchKey key = new FetchKey(start, end, step, maxrows, interval, heartbeat, sources, relaxed);
+        final Optional<FetchResults> results;
+        try {
+            results = cache.get(key, new Callable<Optional<FetchResults>>() {
+                @Override
+                public Optional<FetchResults> call() throws Exception {
+                    return Optional.fromNullable(delegate.fetch(key.start, key.end, key.step, key.maxrows,
+                            key.interval, key.heartbeat, key.sources, key.relaxed));
+                }
+            });
+        } catch (ExecutionException|UncheckedExecutionException e) {
+            if (e.getCause() instanceof Exception) {
+                throw (Exception)e.getCause();
+            }
+            throw e;
+        }
+        return results.isPresent() ? copyOf(results.get()) : null;
+    }
+
+    public CacheStats getStats() {
+        return cache.stats();
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    public MeasurementFetchStrategy getDelegate() {
+        return delegate;
+    }
+
+    private static FetchResults copyOf(FetchResults results) {
+        return new FetchResults(results.getTimestamps(),
+                new LinkedHashMap<>(results.getColumns()),
+                results.getStep(),
+                new LinkedHashMap<>(results.getConstants()),
+                results.getMetadata());
+    }
+
+    /**
+     * Normalized fetch parameters.
+     */
+    protected static class FetchKey {
+        private final long start;
+        private final long end;
+        private final long step;
+        private final int maxrows;
+        private final Long interval;
+        private final Long heartbeat;
+        private final List<Source> sources;
+        private final boolean relaxed;
+
+        // The sources are mutable beans, so we retain the relevant fields separately
+        private final List<List<Object>> sourceFields;
+
+        protected FetchKey(long start, long end, long step, int maxrows, Long interval, Long heartbeat,
+                           List<Source> sources, boolean relaxed) {
+            if (step > 0) {
+                // Align the window on the step, extending it to cover the requested range
+                this.start = start - floorMod(start, step);
+                final long endRemainder = floorMod(end, step);
+                this.end = endRemainder == 0 ? end : end + (step - endRemainder);
+            } else {
+                this.start = start;
+                this.end = end;
+            }
+            this.step = step;
+            this.maxrows = maxrows;
+            this.interval = interval;
+            this.heartbeat = heartbeat;
+            this.sources = new ArrayList<>(sources);
+            this.relaxed = relaxed;
+
+            this.sourceFields = new ArrayList<>(sources.size());
+            for (Source source : sources) {
+                final List<Object> fields = new ArrayList<>(7);
+                fields.add(source.getLabel());
+                fields.add(source.getResourceId());
+                fields.add(source.getAttribute());
+                fields.add(source.getFallbackAttribute());
+                fields.add(source.getDataSource());
+                fields.add(source.getAggregation());
+                fields.add(source.getTransient());
+                sourceFields.add(fields);
+            }
+        }
+
+        private static long floorMod(long x, long y) {
+            final long mod = x % y;
+            return mod < 0 ? mod + y : mod;
+        }
+
+        public long getStart() {
+            return start;
+        }
+
+        public long getEnd() {
+            return end;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (obj == null || getClass() != obj.getClass()) {
+                return false;
+            }
+            final FetchKey other = (FetchKey) obj;
+            return start == other.start
+                    && end == other.end
+                    && step == other.step
+                    && maxrows == other.maxrows
+                    && relaxed == other.relaxed
+                    && Objects.equals(interval, other.interval)
+                    && Objects.equals(heartbeat, other.heartbeat)
+                    && Objects.equals(sourceFields, other.sourceFields);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(start, end, step, maxrows, relaxed, interval, heartbeat, sourceFields);
+        }
+
+        @Override
+        public String toString() {
+            return MoreObjects.toStringHelper(this)
+                    .add("start", start)
+                    .add("end", end)
+                    .add("step", step)
+                    .add("maxrows", maxrows)
+                    .add("interval", interval)
+                    .add("heartbeat", heartbeat)
+                    .add("sources", sourceFields)
+                    .add("relaxed", relaxed)
+                    .toString();
+        }
+    }
+}
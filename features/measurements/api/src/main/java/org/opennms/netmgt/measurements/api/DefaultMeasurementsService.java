@@ -53,13 +53,30 @@ public class DefaultMeasurementsService implements MeasurementsService {
 
     @Autowired
     public DefaultMeasurementsService(MeasurementFetchStrategy fetchStrategy, ExpressionEngine expressionEngine, FilterEngine filterEngine) {
-        this.fetchStrategy = Preconditions.checkNotNull(fetchStrategy);
+        // Wrap the strategy here rather than in the factory, so that the strategy itself remains the bean that gets autowired
+        this.fetchStrategy = CachingMeasurementFetchStrategy.wrap(Preconditions.checkNotNull(fetchStrategy));
         this.expressionEngine = Preconditions.checkNotNull(expressionEngine);
         this.filterEngine = Preconditions.checkNotNull(filterEngine);
     }
 
     @Override
     public QueryResponse query(QueryRequest request) throws MeasurementException {
+        final FetchResults results = fetch(request);
+
+        // Build the response
+        final QueryResponse response = new QueryResponse();
+        response.setStart(request.getStart());
+        response.setEnd(request.getEnd());
+        response.setStep(results.getStep());
+        response.setTimestamps(results.getTimestamps());
+        response.setColumns(results.getColumns());
+        response.setConstants(results.getConstants());
+        response.setMetadata(results.getMetadata());
+        return response;
+    }
+
+    @Override
+    public FetchResults fetch(QueryRequest request) throws MeasurementException {
         validate(request);
 
         // Fetch the measurements
@@ -98,17 +115,7 @@ public class DefaultMeasurementsService implements MeasurementsService {
                 columns.remove(source.getLabel());
             }
         }
-
-        // Build the response
-        final QueryResponse response = new QueryResponse();
-        response.setStart(request.getStart());
-        response.setEnd(request.getEnd());
-        response.setStep(results.getStep());
-        response.setTimestamps(results.getTimestamps());
-        response.setColumns(results.getColumns());
-        response.setConstants(results.getConstants());
-        response.setMetadata(results.getMetadata());
-        return response;
+        return results;
     }
 
     private void validate(QueryRequest request) throws ValidationException {
@@ -34,4 +34,11 @@ import org.opennms.netmgt.measurements.model.QueryResponse;
 
 public interface MeasurementsService {
     QueryResponse query(QueryRequest request) throws MeasurementException;
+
+    /**
+     * Executes the query like {@link #query(QueryRequest)}, but returns the resulting columns
+     * as they were left by the expressions and filters instead of copying them into a
+     * {@link QueryResponse}. The columns of the returned results may be modified by the caller.
+     */
+    FetchResults fetch(QueryRequest request) throws MeasurementException;
 }
@@ -0,0 +1,148 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2022 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2022 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.measurements.api;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import org.opennms.netmgt.measurements.model.Source;
+
+import com.google.common.collect.Lists;
+
+public class CachingMeasurementFetchStrategyTest {
+
+    private final AtomicInteger numFetches = new AtomicInteger(0);
+
+    @Test
+    public void canCacheResultsForIdenticalRequests() throws Exception {
+        final CachingMeasurementFetchStrategy strategy = new CachingMeasurementFetchStrategy(countingStrategy(null), 60000, 100);
+
+        final FetchResults first = strategy.fetch(1000, 2000, 300, 0, null, null, sources("x"), false);
+        final FetchResults second = strategy.fetch(1000, 2000, 300, 0, null, null, sources("x"), false);
+        assertEquals(1, numFetches.get());
+
+        // Callers get their own maps, so they can freely add expressions and remove transient sources
+        assertNotSame(first.getColumns(), second.getColumns());
+        first.getColumns().put("y", new double[0]);
+        assertFalse(second.getColumns().containsKey("y"));
+
+        // Different sources result in a different key
+        strategy.fetch(1000, 2000, 300, 0, null, null, sources("y"), false);
+        assertEquals(2, numFetches.get());
+    }
+
+    @Test
+    public void canNormalizeWindowToStep() throws Exception {
+        final CachingMeasurementFetchStrategy strategy = new CachingMeasurementFetchStrategy(countingStrategy(null), 60000, 100);
+
+        strategy.fetch(1010, 1990, 100, 0, null, null, sources("x"), false);
+        strategy.fetch(1050, 1950, 100, 0, null, null, sources("x"), false);
+        assertEquals(1, numFetches.get());
+
+        final CachingMeasurementFetchStrategy.FetchKey key = new CachingMeasurementFetchStrategy.FetchKey(1010, 1990, 100, 0, null, null, sources("x"), false);
+        assertEquals(1000, key.getStart());
+        assertEquals(2000, key.getEnd());
+    }
+
+    @Test
+    public void canCacheMissingResources() throws Exception {
+        final CachingMeasurementFetchStrategy strategy = new CachingMeasurementFetchStrategy(new MeasurementFetchStrategy() {
+            @Override
+            public FetchResults fetch(long start, long end, long step, int maxrows, Long interval, Long heartbeat, List<Source> sources, boolean relaxed) {
+                numFetches.incrementAndGet();
+                return null;
+            }
+        }, 60000, 100);
+
+        assertNull(strategy.fetch(1000, 2000, 300, 0, null, null, sources("x"), false));
+        assertNull(strategy.fetch(1000, 2000, 300, 0, null, null, sources("x"), false));
+        assertEquals(1, numFetches.get());
+    }
+
+    @Test(timeout = 30000)
+    public void canCollapseConcurrentIdenticalRequests() throws Exception {
+        final CountDownLatch latch = new CountDownLatch(1);
+        final CachingMeasurementFetchStrategy strategy = new CachingMeasurementFetchStrategy(countingStrategy(latch), 60000, 100);
+
+        final int numThreads = 8;
+        final ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+        try {
+            final List<Future<FetchResults>> futures = Lists.newArrayList();
+            for (int i = 0; i < numThreads; i++) {
+                futures.add(executor.submit(() -> strategy.fetch(1000, 2000, 300, 0, null, null, sources("x"), false)));
+            }
+            // Give the other threads a chance to pile up behind the first fetch
+            Thread.sleep(100);
+            latch.countDown();
+            for (Future<FetchResults> future : futures) {
+                assertTrue(future.get().getColumns().containsKey("x"));
+            }
+        } finally {
+            executor.shutdownNow();
+            executor.awaitTermination(5, TimeUnit.SECONDS);
+        }
+        assertEquals(1, numFetches.get());
+    }
+
+    private MeasurementFetchStrategy countingStrategy(final CountDownLatch latch) {
+        return new MeasurementFetchStrategy() {
+            @Override
+            public FetchResults fetch(long start, long end, long step, int maxrows, Long interval, Long heartbeat, List<Source> sources, boolean relaxed) throws Exception {
+                numFetches.incrementAndGet();
+                if (latch != null) {
+                    latch.await();
+                }
+                final Map<String, double[]> columns = new LinkedHashMap<>();
+                for (Source source : sources) {
+                    columns.put(source.getLabel(), new double[]{1.0d});
+                }
+                return new FetchResults(new long[]{start}, columns, step, new LinkedHashMap<String, Object>(), null);
+            }
+        };
+    }
+
+    private static List<Source> sources(String label) {
+        return Collections.singletonList(new Source(label, "node[1].nodeSnmp[]", label, label, false));
+    }
+}
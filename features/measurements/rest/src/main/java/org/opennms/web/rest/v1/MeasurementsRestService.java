@@ -47,6 +47,7 @@ import javax.ws.rs.core.Response.Status;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.Lists;
 
+import org.opennms.netmgt.measurements.api.FetchResults;
 import org.opennms.netmgt.measurements.api.FilterEngine;
 import org.opennms.netmgt.measurements.api.MeasurementsService;
 import org.opennms.netmgt.measurements.api.exceptions.ExpressionException;
@@ -171,9 +172,49 @@ public class MeasurementsRestService {
     public QueryResponse query(final QueryRequest request) {
         Preconditions.checkState(service != null);
         LOG.debug("Executing query with {}", request);
-        QueryResponse response = null;
+        final QueryResponse response = execute(() -> service.query(request));
+
+        // Return a 204 if there are no columns
+        if (response.getColumns().length == 0) {
+            throw getException(Status.NO_CONTENT, "No content.");
+        }
+
+        return response;
+    }
+
+    /**
+     * Same as {@link #query(QueryRequest)}, but streams the resulting columns as JSON
+     * instead of marshaling the complete response through the JAX-RS providers.
+     *
+     * Intended for clients which request large numbers of rows or columns.
+     */
+    @POST
+    @Path("stream")
+    @Consumes({MediaType.APPLICATION_XML, MediaType.APPLICATION_JSON, MediaType.APPLICATION_ATOM_XML})
+    @Produces(MediaType.APPLICATION_JSON)
+    @Transactional(readOnly=true)
+    public Response streamingQuery(final QueryRequest request) {
+        Preconditions.checkState(service != null);
+        LOG.debug("Executing streaming query with {}", request);
+        // Everything that may fail runs before the response is committed, so that errors keep their status codes
+        final FetchResults results = execute(() -> service.fetch(request));
+
+        // Return a 204 if there are no columns
+        if (results.getColumns().isEmpty()) {
+            throw getException(Status.NO_CONTENT, "No content.");
+        }
+
+        return Response.ok(new QueryResponseStreamingOutput(request, results), MediaType.APPLICATION_JSON_TYPE).build();
+    }
+
+    @FunctionalInterface
+    private interface Query<T> {
+        T execute() throws Exception;
+    }
+
+    private static <T> T execute(final Query<T> query) {
         try {
-            response = service.query(request);
+            return query.execute();
         } catch (ExpressionException e) {
             throw getException(Status.BAD_REQUEST, e, "An error occurred while evaluating an expression: {}", e.getMessage());
         } catch (FilterException  | ValidationException e) {
@@ -185,13 +226,6 @@ public class MeasurementsRestService {
         } catch (Exception e) {
             throw getException(Status.INTERNAL_SERVER_ERROR, e, "Query failed: {}", e.getMessage());
         }
-
-        // Return a 204 if there are no columns
-        if (response.getColumns().length == 0) {
-            throw getException(Status.NO_CONTENT, "No content.");
-        }
-
-        return response;
     }
 
     protected static WebApplicationException getException(final Status status, String msg, Object... params) throws WebApplicationException {
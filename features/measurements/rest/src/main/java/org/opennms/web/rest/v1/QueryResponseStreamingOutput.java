@@ -0,0 +1,131 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2022 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2022 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.web.rest.v1;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.Map;
+
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.StreamingOutput;
+
+import org.codehaus.jackson.JsonEncoding;
+import org.codehaus.jackson.JsonGenerator;
+import org.codehaus.jackson.jaxrs.JacksonJaxbJsonProvider;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.opennms.netmgt.measurements.api.FetchResults;
+import org.opennms.netmgt.measurements.model.QueryMetadata;
+import org.opennms.netmgt.measurements.model.QueryRequest;
+import org.opennms.netmgt.measurements.model.QueryResponse;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Writes the results of a query as JSON, one column at a time.
+ *
+ * The columns are written directly from the fetched arrays instead of being copied into a
+ * {@link QueryResponse} and introspected by the JAX-RS provider. Every column is released
+ * once it has been written, and the output is flushed after every column so that clients
+ * can start consuming large responses before they are complete.
+ *
+ * The generated document has the same structure as the one generated by the
+ * {@link JacksonJaxbJsonProvider} for the {@link QueryResponse} of the same query.
+ */
+public class QueryResponseStreamingOutput implements StreamingOutput {
+
+    private static final ObjectMapper MAPPER = new JacksonJaxbJsonProvider()
+            .locateMapper(QueryMetadata.class, MediaType.APPLICATION_JSON_TYPE);
+
+    private final QueryRequest request;
+    private final FetchResults results;
+
+    public QueryResponseStreamingOutput(QueryRequest request, FetchResults results) {
+        this.request = Preconditions.checkNotNull(request, "request argument");
+        this.results = Preconditions.checkNotNull(results, "results argument");
+    }
+
+    @Override
+    public void write(OutputStream output) throws IOException {
+        final JsonGenerator gen = MAPPER.getJsonFactory().createJsonGenerator(output, JsonEncoding.UTF8);
+        gen.writeStartObject();
+        gen.writeNumberField("step", results.getStep());
+        gen.writeNumberField("start", request.getStart());
+        gen.writeNumberField("end", request.getEnd());
+
+        gen.writeArrayFieldStart("timestamps");
+        if (results.getTimestamps() != null) {
+            for (long timestamp : results.getTimestamps()) {
+                gen.writeNumber(timestamp);
+            }
+        }
+        gen.writeEndArray();
+
+        final Map<String, double[]> columns = results.getColumns();
+        gen.writeArrayFieldStart("labels");
+        for (String label : columns.keySet()) {
+            gen.writeString(label);
+        }
+        gen.writeEndArray();
+
+        gen.writeArrayFieldStart("columns");
+        final Iterator<double[]> it = columns.values().iterator();
+        while (it.hasNext()) {
+            final double[] values = it.next();
+            gen.writeStartObject();
+            gen.writeArrayFieldStart("values");
+            if (values != null) {
+                for (double value : values) {
+                    gen.writeNumber(value);
+                }
+            }
+            gen.writeEndArray();
+            gen.writeEndObject();
+            gen.flush();
+            // The column is no longer needed once it has been written
+            it.remove();
+        }
+        gen.writeEndArray();
+
+        gen.writeArrayFieldStart("constants");
+        for (Map.Entry<String, Object> constant : results.getConstants().entrySet()) {
+            gen.writeStartObject();
+            gen.writeStringField("key", constant.getKey());
+            gen.writeStringField("value", constant.getValue().toString());
+            gen.writeEndObject();
+        }
+        gen.writeEndArray();
+
+        gen.writeFieldName("metadata");
+        MAPPER.writeValue(gen, results.getMetadata());
+
+        gen.writeEndObject();
+        gen.flush();
+    }
+}
@@ -31,6 +31,7 @@ package org.opennms.web.rest.v1;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.containsString;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 
@@ -42,6 +43,9 @@ import java.util.Map;
 import javax.servlet.ServletContext;
 import javax.ws.rs.core.MediaType;
 
+import org.codehaus.jackson.JsonNode;
+import org.codehaus.jackson.JsonParser;
+import org.codehaus.jackson.map.ObjectMapper;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -49,11 +53,15 @@ import org.opennms.core.spring.BeanUtils;
 import org.opennms.core.test.OpenNMSJUnit4ClassRunner;
 import org.opennms.core.test.db.annotations.JUnitTemporaryDatabase;
 import org.opennms.core.test.rest.AbstractSpringJerseyRestTestCase;
+import org.opennms.core.xml.JaxbUtils;
 import org.opennms.netmgt.dao.api.MonitoringLocationDao;
 import org.opennms.netmgt.dao.api.NodeDao;
 import org.opennms.netmgt.dao.api.SnmpInterfaceDao;
 import org.opennms.netmgt.dao.support.FilesystemResourceStorageDao;
 import org.opennms.netmgt.measurements.api.MeasurementsService;
+import org.opennms.netmgt.measurements.model.Expression;
+import org.opennms.netmgt.measurements.model.QueryRequest;
+import org.opennms.netmgt.measurements.model.Source;
 import org.opennms.netmgt.model.OnmsNode;
 import org.opennms.netmgt.model.OnmsSnmpInterface;
 import org.opennms.test.JUnitConfigurationEnvironment;
@@ -62,6 +70,7 @@ import org.springframework.mock.web.MockHttpServletRequest;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.web.WebAppConfiguration;
 
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 
 /**
@@ -201,6 +210,47 @@ public class MeasurementRestServiceIT extends AbstractSpringJerseyRestTestCase {
         assertThat(xml, containsString("<columns>"));
     }
 
+    /**
+     * The streamed JSON must describe the same response as the JSON generated
+     * by the JAX-RS provider.
+     */
+    @Test
+    public void canStreamMeasurementsAsJson() throws Exception {
+        final QueryRequest query = new QueryRequest();
+        query.setStart(1414602000000L);
+        query.setEnd(1417046400000L);
+        query.setStep(1000L);
+        query.setMaxRows(700);
+
+        final Source avg = new Source("ifInOctetsAvg", "node[1].interfaceSnmp[eth0-04013f75f101]", "ifInOctets", null, false);
+        avg.setAggregation("AVERAGE");
+        final Source max = new Source("ifInOctetsMax", "node[1].interfaceSnmp[eth0-04013f75f101]", "ifInOctets", null, true);
+        max.setAggregation("MAX");
+        query.setSources(Lists.newArrayList(avg, max));
+        query.setExpressions(Lists.newArrayList(new Expression("ifInBits", "ifInOctetsMax * 8", false)));
+
+        final String xml = JaxbUtils.marshal(query);
+        final String json = postJson("/measurements", xml);
+        final String streamedJson = postJson("/measurements/stream", xml);
+
+        final ObjectMapper mapper = new ObjectMapper();
+        mapper.configure(JsonParser.Feature.ALLOW_NON_NUMERIC_NUMBERS, true);
+        final JsonNode expected = mapper.readTree(json);
+        final JsonNode actual = mapper.readTree(streamedJson);
+        // the transient source is left out
+        assertEquals(2, actual.get("labels").size());
+        assertEquals(2, actual.get("columns").size());
+        assertEquals(expected, actual);
+    }
+
+    private String postJson(final String url, final String xml) throws Exception {
+        final MockHttpServletRequest request = createRequest(m_context, POST, url);
+        request.setContentType(MediaType.APPLICATION_XML);
+        request.setContent(xml.getBytes(StandardCharsets.UTF_8));
+        request.addHeader("Accept", MediaType.APPLICATION_JSON);
+        return sendRequest(request, 200);
+    }
+
     @Test
     public void canRetrieveFilters() throws Exception {
         // Retrieve all filters
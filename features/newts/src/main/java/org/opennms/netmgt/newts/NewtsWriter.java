@@ -29,11 +29,15 @@
 package org.opennms.netmgt.newts;
 
 import java.time.Duration;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
 import java.util.stream.Collectors;
 
 import javax.inject.Inject;
@@ -50,18 +54,19 @@ import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.annotation.Autowired;
 
 import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Histogram;
 import com.codahale.metrics.Meter;
 import com.codahale.metrics.MetricRegistry;
-import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Preconditions;
-import com.google.common.collect.Lists;
 import com.google.common.math.DoubleMath;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.lmax.disruptor.BatchEventProcessor;
+import com.lmax.disruptor.EventHandler;
 import com.lmax.disruptor.EventTranslatorOneArg;
 import com.lmax.disruptor.FatalExceptionHandler;
 import com.lmax.disruptor.RingBuffer;
-import com.lmax.disruptor.WorkHandler;
-import com.lmax.disruptor.WorkerPool;
+import com.lmax.disruptor.Sequence;
+import com.lmax.disruptor.SequenceBarrier;
 import com.swrve.ratelimitedlogger.RateLimitedLog;
 
 /**
@@ -70,9 +75,20 @@ import com.swrve.ratelimitedlogger.RateLimitedLog;
  * Calls to {@link #insert()} publish the samples to a ring buffer so
  * that they don't block while the data is being persisted.
  *
+ * The ring buffer is consumed by a fixed number of writers, each of which handles
+ * a share of the entries. A writer coalesces the samples from consecutive entries
+ * and only writes them out once it reaches the maximum batch size (in samples or
+ * in estimated bytes), or once it has caught up with the ring buffer. The number
+ * of concurrent inserts against the repository can be capped independently of the
+ * number of writers.
+ *
+ * When the ring buffer is full, callers block for up to the configured timeout
+ * waiting for space to free up before the samples are dropped. Dropped samples
+ * are counted in total and per resource type.
+ *
  * @author jwhite
  */
-public class NewtsWriter implements WorkHandler<SampleBatchEvent>, DisposableBean {
+public class NewtsWriter implements DisposableBean {
 
     private static final Logger LOG = LoggerFactory.getLogger(NewtsWriter.class);
 
@@ -81,33 +97,66 @@ public class NewtsWriter implements WorkHandler<SampleBatchEvent>, DisposableBea
             .maxRate(5).every(Duration.ofSeconds(30))
             .build();
 
+    /**
+     * Bounds used to back-off while waiting for space in the ring buffer.
+     */
+    private static final long MIN_PUBLISH_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+    private static final long MAX_PUBLISH_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    /**
+     * Estimated size, in bytes, of a sample excluding its resource id and metric name.
+     */
+    private static final int SAMPLE_OVERHEAD_BYTES = 64;
+
     @Autowired
     private SampleRepository m_sampleRepository;
 
     @Autowired
     private Indexer m_indexer;
 
-    private WorkerPool<SampleBatchEvent> m_workerPool;
-
     private RingBuffer<SampleBatchEvent> m_ringBuffer;
 
+    private final List<BatchEventProcessor<SampleBatchEvent>> m_processors = new ArrayList<>();
+
+    private ExecutorService m_executor;
+
     private final int m_maxBatchSize;
 
+    private final int m_maxBatchBytes;
+
     private final int m_ringBufferSize;
 
     private final int m_numWriterThreads;
 
+    private final int m_maxInFlightInserts;
+
+    private final long m_publishTimeoutMs;
+
+    private final Semaphore m_inFlightInserts;
+
+    private final MetricRegistry m_registry;
+
     private final Meter m_droppedSamples;
 
+    private final Meter m_blockedPublishes;
+
+    private final Histogram m_insertBatchSize;
+
     /**
      * The {@link RingBuffer} doesn't appear to expose any methods that indicate the number
      * of elements that are currently "queued", so we keep track of them with this atomic counter.
      */
     private final AtomicLong m_numEntriesOnRingBuffer = new AtomicLong();
 
+    public NewtsWriter(Integer maxBatchSize, Integer ringBufferSize, Integer numWriterThreads, MetricRegistry registry) {
+        this(maxBatchSize, ringBufferSize, numWriterThreads, 0, 0, 0L, registry);
+    }
+
     @Inject
     public NewtsWriter(@Named("newts.max_batch_size") Integer maxBatchSize, @Named("newts.ring_buffer_size") Integer ringBufferSize,
-            @Named("newts.writer_threads") Integer numWriterThreads, @Named("newtsMetricRegistry") MetricRegistry registry) {
+            @Named("newts.writer_threads") Integer numWriterThreads, @Named("newts.max_batch_bytes") Integer maxBatchBytes,
+            @Named("newts.max_inflight_inserts") Integer maxInFlightInserts, @Named("newts.ring_buffer_block_ms") Long publishTimeoutMs,
+            @Named("newtsMetricRegistry") MetricRegistry registry) {
         Preconditions.checkArgument(maxBatchSize > 0, "maxBatchSize must be strictly positive");
         Preconditions.checkArgument(ringBufferSize > 0, "ringBufferSize must be positive");
         Preconditions.checkArgument(DoubleMath.isMathematicalInteger(Math.log(ringBufferSize) / Math.log(2)), "ringBufferSize must be a power of two");
@@ -115,8 +164,13 @@ public class NewtsWriter implements WorkHandler<SampleBatchEvent>, DisposableBea
         Preconditions.checkNotNull(registry, "metric registry");
 
         m_maxBatchSize = maxBatchSize;
+        m_maxBatchBytes = maxBatchBytes != null && maxBatchBytes > 0 ? maxBatchBytes : Integer.MAX_VALUE;
         m_ringBufferSize = ringBufferSize;
         m_numWriterThreads = numWriterThreads;
+        m_maxInFlightInserts = maxInFlightInserts != null && maxInFlightInserts > 0 ? maxInFlightInserts : numWriterThreads;
+        m_publishTimeoutMs = publishTimeoutMs != null ? Math.max(0L, publishTimeoutMs) : 0L;
+        m_inFlightInserts = new Semaphore(m_maxInFlightInserts);
+        m_registry = registry;
         m_numEntriesOnRingBuffer.set(0L);
 
         registry.register(MetricRegistry.name("ring-buffer", "size"),
@@ -133,41 +187,57 @@ public class NewtsWriter implements WorkHandler<SampleBatchEvent>, DisposableBea
                         return Long.valueOf(m_ringBufferSize);
                     }
                 });
+        registry.register(MetricRegistry.name("writer", "in-flight-inserts"),
+                new Gauge<Integer>() {
+                    @Override
+                    public Integer getValue() {
+                        return m_maxInFlightInserts - m_inFlightInserts.availablePermits();
+                    }
+                });
 
         m_droppedSamples = registry.meter(MetricRegistry.name("ring-buffer", "dropped-samples"));
+        m_blockedPublishes = registry.meter(MetricRegistry.name("ring-buffer", "blocked-publishes"));
+        m_insertBatchSize = registry.histogram(MetricRegistry.name("writer", "insert-batch-size"));
 
-        LOG.debug("Using max_batch_size: {} and ring_buffer_size: {}", maxBatchSize, m_ringBufferSize);
-        setUpWorkerPool();
+        LOG.debug("Using max_batch_size: {}, max_batch_bytes: {}, ring_buffer_size: {}, max_inflight_inserts: {} and ring_buffer_block_ms: {}",
+                maxBatchSize, m_maxBatchBytes, m_ringBufferSize, m_maxInFlightInserts, m_publishTimeoutMs);
+        setUpWriters();
     }
 
-    private void setUpWorkerPool() {
+    private void setUpWriters() {
         // Executor that will be used to construct new threads for consumers
         final ThreadFactory namedThreadFactory = new ThreadFactoryBuilder()
                 .setNameFormat("NewtsWriter-Consumer-%d").build();
-        final Executor executor = Executors.newCachedThreadPool(namedThreadFactory);
+        m_executor = Executors.newFixedThreadPool(m_numWriterThreads, namedThreadFactory);
 
-        @SuppressWarnings("unchecked")
-        final WorkHandler<SampleBatchEvent> handlers[] = new WorkHandler[m_numWriterThreads];
+        m_ringBuffer = RingBuffer.createMultiProducer(SampleBatchEvent::new, m_ringBufferSize);
+        final SequenceBarrier barrier = m_ringBuffer.newBarrier();
+        final Sequence[] sequences = new Sequence[m_numWriterThreads];
         for (int i = 0; i < m_numWriterThreads; i++) {
-            handlers[i] = this;
+            final BatchEventProcessor<SampleBatchEvent> processor = new BatchEventProcessor<>(m_ringBuffer, barrier, new Writer(i));
+            processor.setExceptionHandler(new FatalExceptionHandler());
+            m_processors.add(processor);
+            sequences[i] = processor.getSequence();
         }
+        m_ringBuffer.addGatingSequences(sequences);
 
-        m_ringBuffer = RingBuffer.createMultiProducer(SampleBatchEvent::new, m_ringBufferSize);
-        m_workerPool = new WorkerPool<SampleBatchEvent>(
-                m_ringBuffer,
-                m_ringBuffer.newBarrier(),
-                new FatalExceptionHandler(),
-                handlers);
-        m_ringBuffer.addGatingSequences(m_workerPool.getWorkerSequences());
-
-        m_workerPool.start(executor);
+        for (BatchEventProcessor<SampleBatchEvent> processor : m_processors) {
+            m_executor.execute(processor);
+        }
     }
 
     @Override
     public void destroy() throws Exception {
-        if (m_workerPool != null) {
-            m_workerPool.drainAndHalt();
+        if (m_executor == null) {
+            return;
+        }
+        // Wait for the writers to process, and flush, all of the published entries
+        final long cursor = m_ringBuffer.getCursor();
+        while (m_ringBuffer.getMinimumGatingSequence() < cursor) {
+            Thread.sleep(1);
         }
+        m_processors.forEach(BatchEventProcessor::halt);
+        m_executor.shutdown();
     }
 
     public void insert(List<Sample> samples) {
@@ -180,7 +250,7 @@ public class NewtsWriter implements WorkHandler<SampleBatchEvent>, DisposableBea
 
     private void pushToRingBuffer(List<Sample> samples, EventTranslatorOneArg<SampleBatchEvent, List<Sample>> translator) {
         // Add the samples to the ring buffer
-        if (!m_ringBuffer.tryPublishEvent(translator, samples)) {
+        if (!publish(samples, translator)) {
             RATE_LIMITED_LOGGER.error("The ring buffer is full. {} samples associated with resource ids {} will be dropped.",
                     samples.size(), new Object() {
                         @Override
@@ -194,30 +264,150 @@ public class NewtsWriter implements WorkHandler<SampleBatchEvent>, DisposableBea
                         }
                     });
             m_droppedSamples.mark(samples.size());
+            samples.stream()
+                .collect(Collectors.groupingBy(NewtsWriter::getResourceType, Collectors.counting()))
+                .forEach((type, count) -> m_registry.meter(MetricRegistry.name("ring-buffer", "dropped-samples", type)).mark(count));
             return;
         }
         // Increase our entry counter
         m_numEntriesOnRingBuffer.incrementAndGet();
     }
 
-    @Override
-    public void onEvent(SampleBatchEvent event) throws Exception {
-        // We'd expect the logs from this thread to be in collectd.log
-        Logging.putPrefix("collectd");
+    /**
+     * Publishes the samples to the ring buffer, waiting for up to the configured timeout
+     * if the ring buffer is full.
+     *
+     * @return false if the samples could not be published
+     */
+    private boolean publish(List<Sample> samples, EventTranslatorOneArg<SampleBatchEvent, List<Sample>> translator) {
+        if (m_ringBuffer.tryPublishEvent(translator, samples)) {
+            return true;
+        }
+        if (m_publishTimeoutMs <= 0) {
+            return false;
+        }
+
+        m_blockedPublishes.mark();
+        final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(m_publishTimeoutMs);
+        long parkNanos = MIN_PUBLISH_PARK_NANOS;
+        while (System.nanoTime() - deadline < 0) {
+            LockSupport.parkNanos(parkNanos);
+            if (m_ringBuffer.tryPublishEvent(translator, samples)) {
+                return true;
+            }
+            if (Thread.currentThread().isInterrupted()) {
+                return false;
+            }
+            parkNanos = Math.min(parkNanos * 2, MAX_PUBLISH_PARK_NANOS);
+        }
+        return false;
+    }
+
+    /**
+     * The resource type used to account for dropped samples. This is the last element of the resource id,
+     * which is the name of the group (or service) the sample was collected for.
+     */
+    protected static String getResourceType(Sample sample) {
+        final String type = NewtsUtils.toMetricName(sample.getResource().getId());
+        return type != null ? type.replace('.', '_') : "unknown";
+    }
+
+    private static int estimateSize(Sample sample) {
+        return SAMPLE_OVERHEAD_BYTES + 2 * (sample.getResource().getId().length() + sample.getName().length());
+    }
+
+    /**
+     * Handles every {@code numWriterThreads}-th entry on the ring buffer, coalescing their samples.
+     */
+    private class Writer implements EventHandler<SampleBatchEvent> {
+        private final int m_ordinal;
+
+        private final List<Sample> m_pendingInserts = new ArrayList<>();
+        private long m_pendingInsertBytes = 0;
+
+        private final List<Sample> m_pendingIndex = new ArrayList<>();
+        private long m_pendingIndexBytes = 0;
+
+        private Writer(int ordinal) {
+            m_ordinal = ordinal;
+        }
 
-        List<Sample> samples = event.getSamples();
-        // Decrement our entry counter
-        m_numEntriesOnRingBuffer.decrementAndGet();
+        @Override
+        public void onEvent(SampleBatchEvent event, long sequence, boolean endOfBatch) throws Exception {
+            if (sequence % m_numWriterThreads == m_ordinal) {
+                // We'd expect the logs from this thread to be in collectd.log
+                Logging.putPrefix("collectd");
+
+                final List<Sample> samples = event.getSamples();
+                final boolean indexOnly = event.isIndexOnly() && !NewtsUtils.DISABLE_INDEXING;
+                // Decrement our entry counter
+                m_numEntriesOnRingBuffer.decrementAndGet();
+
+                for (Sample sample : samples) {
+                    final int size = estimateSize(sample);
+                    if (indexOnly) {
+                        if (!m_pendingIndex.isEmpty() && m_pendingIndexBytes + size > m_maxBatchBytes) {
+                            flushIndex();
+                        }
+                        m_pendingIndex.add(sample);
+                        m_pendingIndexBytes += size;
+                        if (m_pendingIndex.size() >= m_maxBatchSize) {
+                            flushIndex();
+                        }
+                    } else {
+                        if (!m_pendingInserts.isEmpty() && m_pendingInsertBytes + size > m_maxBatchBytes) {
+                            flushInserts();
+                        }
+                        m_pendingInserts.add(sample);
+                        m_pendingInsertBytes += size;
+                        if (m_pendingInserts.size() >= m_maxBatchSize) {
+                            flushInserts();
+                        }
+                    }
+                }
+            }
 
-        // Partition the samples into collections smaller then max_batch_size
-        for (List<Sample> batch : Lists.partition(samples, m_maxBatchSize)) {
+            // Write out whatever we have once we've caught up with the producers
+            if (endOfBatch) {
+                flushInserts();
+                flushIndex();
+            }
+        }
+
+        private void flushInserts() {
+            if (m_pendingInserts.isEmpty()) {
+                return;
+            }
+            final List<Sample> batch = new ArrayList<>(m_pendingInserts);
+            m_pendingInserts.clear();
+            m_pendingInsertBytes = 0;
+            write(batch, false);
+        }
+
+        private void flushIndex() {
+            if (m_pendingIndex.isEmpty()) {
+                return;
+            }
+            final List<Sample> batch = new ArrayList<>(m_pendingIndex);
+            m_pendingIndex.clear();
+            m_pendingIndexBytes = 0;
+            write(batch, true);
+        }
+
+        private void write(List<Sample> batch, boolean indexOnly) {
             try {
-                if (event.isIndexOnly() && !NewtsUtils.DISABLE_INDEXING) {
-                    LOG.debug("Indexing {} samples", batch.size());
-                    m_indexer.update(batch);
-                } else {
-                    LOG.debug("Inserting {} samples", batch.size());
-                    m_sampleRepository.insert(batch);
+                m_inFlightInserts.acquireUninterruptibly();
+                try {
+                    m_insertBatchSize.update(batch.size());
+                    if (indexOnly) {
+                        LOG.debug("Indexing {} samples", batch.size());
+                        m_indexer.update(batch);
+                    } else {
+                        LOG.debug("Inserting {} samples", batch.size());
+                        m_sampleRepository.insert(batch);
+                    }
+                } finally {
+                    m_inFlightInserts.release();
                 }
 
                 if (LOG.isDebugEnabled()) {
@@ -31,12 +31,16 @@ package org.opennms.netmgt.newts.support;
 import static com.codahale.metrics.MetricRegistry.name;
 
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
 import java.util.stream.Collectors;
 import java.util.stream.StreamSupport;
 
 import javax.inject.Inject;
 import javax.inject.Named;
 
+import org.nustaq.serialization.FSTConfiguration;
 import org.opennms.newts.api.Context;
 import org.opennms.newts.api.Resource;
 import org.opennms.newts.cassandra.search.ResourceMetadata;
@@ -50,8 +54,11 @@ import com.google.common.base.Joiner;
 import com.google.common.base.Optional;
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalCause;
 import com.google.common.cache.RemovalListener;
 import com.google.common.cache.RemovalNotification;
+import com.google.common.cache.Weigher;
+import com.google.common.util.concurrent.Striped;
 import com.googlecode.concurrenttrees.radix.ConcurrentRadixTree;
 import com.googlecode.concurrenttrees.radix.node.concrete.DefaultCharArrayNodeFactory;
 
@@ -64,34 +71,84 @@ import com.googlecode.concurrenttrees.radix.node.concrete.DefaultCharArrayNodeFa
  * The additional memory usage should be minimal since we only need to duplicate the keys, the nodes
  * references the same objects.
  *
- * Both structures are kept in synch via a {@link RemovalListener}.
+ * Both structures are kept in synch via a {@link RemovalListener}. Updates to the Radix Tree for a given
+ * key are serialized using a striped lock, and an entry is only removed from the tree if the tree still
+ * references the evicted value, so that concurrent merges and evictions cannot leave the structures
+ * out of synch.
+ *
+ * The cache is either bounded by the number of entries, or when a maximum weight is set, by the estimated
+ * number of bytes used by the keys, metrics and attributes of the entries. The size of the metrics and
+ * attributes is estimated from their serialized form whenever they change, which is only done when the
+ * cache is bounded by weight.
  *
  * @author jwhite
  */
-public class GuavaSearchableResourceMetadataCache implements SearchableResourceMetadataCache, RemovalListener<String, ResourceMetadata> {
+public class GuavaSearchableResourceMetadataCache implements SearchableResourceMetadataCache, RemovalListener<String, GuavaSearchableResourceMetadataCache.Entry> {
 
     private static final Logger LOG = LoggerFactory.getLogger(GuavaSearchableResourceMetadataCache.class);
 
     private static final Joiner m_keyJoiner = Joiner.on(':');
 
-    private final Cache<String, ResourceMetadata> m_cache;
+    private static final FSTConfiguration conf = FSTConfiguration.createDefaultConfiguration();
+
+    /**
+     * Estimated overhead, in bytes, of an entry in the cache and in the tree, excluding the key and the metadata
+     */
+    protected static final int ENTRY_OVERHEAD = 256;
+
+    /**
+     * Weight used for merged metadata that could not be serialized
+     */
+    protected static final int DEFAULT_METADATA_WEIGHT = 512;
+
+    private static final int LOCK_STRIPES = 64;
+
+    private final Cache<String, Entry> m_cache;
     private final ConcurrentRadixTree<ResourceMetadata> m_radixTree;
+    private final Striped<Lock> m_radixTreeLocks = Striped.lock(LOCK_STRIPES);
+    private final AtomicLong m_weight = new AtomicLong(0);
+    private final boolean m_weighMetadata;
     private final Meter m_metricReqs;
     private final Meter m_attributeReqs;
     private final Meter m_metricMisses;
     private final Meter m_attributeMisses;
+    private final Meter m_hits;
+    private final Meter m_misses;
+    private final Meter m_evictions;
+
+    public GuavaSearchableResourceMetadataCache(long maxSize, MetricRegistry registry) {
+        this(maxSize, 0, registry);
+    }
 
     @Inject
-    public GuavaSearchableResourceMetadataCache(@Named("search.resourceMetadata.maxCacheEntries") long maxSize, @Named("newtsMetricRegistry") MetricRegistry registry) {
+    public GuavaSearchableResourceMetadataCache(@Named("search.resourceMetadata.maxCacheEntries") long maxSize,
+                                                @Named("search.resourceMetadata.maxCacheWeight") long maxWeight,
+                                                @Named("newtsMetricRegistry") MetricRegistry registry) {
         m_radixTree = new ConcurrentRadixTree<>(new DefaultCharArrayNodeFactory());
 
-        LOG.info("Initializing resource metadata cache ({} max entries)", maxSize);
-        m_cache = CacheBuilder.newBuilder().maximumSize(maxSize).removalListener(this).build();
+        final CacheBuilder<String, Entry> cacheBuilder = CacheBuilder.newBuilder().removalListener(this);
+        m_weighMetadata = maxWeight > 0;
+        if (m_weighMetadata) {
+            LOG.info("Initializing resource metadata cache ({} max bytes)", maxWeight);
+            cacheBuilder.maximumWeight(maxWeight).weigher(new Weigher<String, Entry>() {
+                @Override
+                public int weigh(String key, Entry entry) {
+                    return Math.max(0, entry.getWeight());
+                }
+            });
+        } else {
+            LOG.info("Initializing resource metadata cache ({} max entries)", maxSize);
+            cacheBuilder.maximumSize(maxSize);
+        }
+        m_cache = cacheBuilder.build();
 
         m_metricReqs = registry.meter(name("cache", "metric-reqs"));
         m_metricMisses = registry.meter(name("cache", "metric-misses"));
         m_attributeReqs = registry.meter(name("cache", "attribute-reqs"));
         m_attributeMisses = registry.meter(name("cache", "attribute-misses"));
+        m_hits = registry.meter(name("cache", "hits"));
+        m_misses = registry.meter(name("cache", "misses"));
+        m_evictions = registry.meter(name("cache", "evictions"));
 
         registry.register(MetricRegistry.name("cache", "size"),
                 new Gauge<Long>() {
@@ -104,15 +161,34 @@ public class GuavaSearchableResourceMetadataCache implements SearchableResourceM
                 new Gauge<Long>() {
                     @Override
                     public Long getValue() {
-                        return maxSize;
+                        return maxWeight > 0 ? 0L : maxSize;
+                    }
+                });
+        registry.register(MetricRegistry.name("cache", "weight"),
+                new Gauge<Long>() {
+                    @Override
+                    public Long getValue() {
+                        return m_weight.get();
+                    }
+                });
+        registry.register(MetricRegistry.name("cache", "max-weight"),
+                new Gauge<Long>() {
+                    @Override
+                    public Long getValue() {
+                        return Math.max(0L, maxWeight);
                     }
                 });
     }
 
     @Override
     public Optional<ResourceMetadata> get(Context context, Resource resource) {
-        ResourceMetadata r = m_cache.getIfPresent(key(context, resource.getId()));
-        return (r != null) ? Optional.of(r) : Optional.<ResourceMetadata>absent();
+        final Entry entry = m_cache.getIfPresent(key(context, resource.getId()));
+        if (entry == null) {
+            m_misses.mark();
+            return Optional.<ResourceMetadata>absent();
+        }
+        m_hits.mark();
+        return Optional.of(entry.metadata);
     }
 
     @Override
@@ -130,20 +206,54 @@ public class GuavaSearchableResourceMetadataCache implements SearchableResourceM
 
     @Override
     public void merge(Context context, Resource resource, ResourceMetadata metadata) {
+        final String key = key(context, resource.getId());
 
-        Optional<ResourceMetadata> o = get(context, resource);
+        final Entry existing = m_cache.asMap().get(key);
+        if (existing != null) {
+            mergeInto(key, existing, metadata);
+            return;
+        }
 
-        if (!o.isPresent()) {
-            ResourceMetadata newMetadata = new ResourceMetadata(m_metricReqs, m_attributeReqs, m_metricMisses, m_attributeMisses);
-            newMetadata.merge(metadata);
-            String key = key(context, resource.getId());
-            m_cache.put(key, newMetadata);
-            m_radixTree.put(key, newMetadata);
+        final ResourceMetadata newMetadata = new ResourceMetadata(m_metricReqs, m_attributeReqs, m_metricMisses, m_attributeMisses);
+        newMetadata.merge(metadata);
+        final Entry entry = new Entry(newMetadata, weigh(key, newMetadata));
+
+        // Account for the weight before inserting, the entry may be evicted straight away
+        m_weight.addAndGet(entry.getWeight());
+        final Entry raced = m_cache.asMap().putIfAbsent(key, entry);
+        if (raced != null) {
+            m_weight.addAndGet(-entry.getWeight());
+            mergeInto(key, raced, metadata);
             return;
         }
 
-        o.get().merge(metadata);
+        final Lock lock = m_radixTreeLocks.get(key);
+        lock.lock();
+        try {
+            // Only index the entry if it wasn't already evicted
+            if (!entry.isEvicted()) {
+                m_radixTree.put(key, newMetadata);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
 
+    private void mergeInto(String key, Entry entry, ResourceMetadata metadata) {
+        if (!entry.metadata.merge(metadata) || !m_weighMetadata) {
+            return;
+        }
+        // Weigh the merged result, the incoming metadata may overlap with what we already had
+        final int delta = entry.updateWeight(weigh(key, entry.metadata));
+        if (delta != 0) {
+            m_weight.addAndGet(delta);
+            // Replace the entry with itself so that the cache recomputes its weight
+            m_cache.asMap().replace(key, entry, entry);
+        }
+    }
+
+    private int weigh(String key, ResourceMetadata metadata) {
+        return ENTRY_OVERHEAD + 4 * key.length() + (m_weighMetadata ? weigh(metadata) : 0);
     }
 
     @Override
@@ -154,11 +264,91 @@ public class GuavaSearchableResourceMetadataCache implements SearchableResourceM
     }
 
     @Override
-    public void onRemoval(RemovalNotification<String, ResourceMetadata> notification) {
-        m_radixTree.remove(notification.getKey());
+    public void onRemoval(RemovalNotification<String, Entry> notification) {
+        if (notification.getCause() == RemovalCause.REPLACED) {
+            // Only happens when an entry is replaced by itself after its weight changed
+            return;
+        }
+        if (notification.wasEvicted()) {
+            m_evictions.mark();
+        }
+
+        final String key = notification.getKey();
+        final Entry entry = notification.getValue();
+        m_weight.addAndGet(-entry.markEvicted());
+
+        final Lock lock = m_radixTreeLocks.get(key);
+        lock.lock();
+        try {
+            // The key may have been re-inserted with a new value since
+            if (m_radixTree.getValueForExactKey(key) == entry.metadata) {
+                m_radixTree.remove(key);
+            }
+        } finally {
+            lock.unlock();
+        }
     }
 
     public long getSize() {
         return m_cache.size();
     }
+
+    public long getWeight() {
+        return m_weight.get();
+    }
+
+    /**
+     * Estimates the number of bytes used by the metrics and attributes in the given metadata.
+     */
+    protected static int weigh(ResourceMetadata metadata) {
+        try {
+            // Copy, so that only the metrics and attributes are accounted for
+            final ResourceMetadata copy = new ResourceMetadata();
+            copy.merge(metadata);
+            return conf.asByteArray(copy).length;
+        } catch (RuntimeException e) {
+            LOG.debug("Failed to estimate the size of {}. Using the default weight.", metadata, e);
+            return DEFAULT_METADATA_WEIGHT;
+        }
+    }
+
+    /**
+     * A cached value along with its weight.
+     */
+    protected static class Entry {
+        private final ResourceMetadata metadata;
+
+        /**
+         * The weight of the entry, or -1 once it was removed from the cache
+         */
+        private final AtomicInteger weight;
+
+        private Entry(ResourceMetadata metadata, int weight) {
+            this.metadata = metadata;
+            this.weight = new AtomicInteger(weight);
+        }
+
+        private int getWeight() {
+            return weight.get();
+        }
+
+        private boolean isEvicted() {
+            return weight.get() < 0;
+        }
+
+        /**
+         * @return the change in weight, or 0 if the entry was already removed from the cache
+         */
+        private int updateWeight(int newWeight) {
+            final int previous = weight.getAndUpdate(w -> w < 0 ? w : newWeight);
+            return previous < 0 ? 0 : newWeight - previous;
+        }
+
+        /**
+         * @return the weight of the entry before it was marked as removed
+         */
+        private int markEvicted() {
+            return Math.max(0, weight.getAndSet(-1));
+        }
+    }
 }
@@ -37,10 +37,12 @@ import com.codahale.metrics.MetricRegistry;
 public class GuavaCacheFactory implements CacheFactory<GuavaSearchableResourceMetadataCache> {
 
     private final long cacheSize;
+    private final long cacheWeight;
     private final MetricRegistry metricRegistry;
 
-    public GuavaCacheFactory(long cacheSize, MetricRegistry metricRegistry) {
+    public GuavaCacheFactory(long cacheSize, long cacheWeight, MetricRegistry metricRegistry) {
         this.cacheSize = cacheSize;
+        this.cacheWeight = cacheWeight;
         this.metricRegistry = Objects.requireNonNull(metricRegistry);
     }
 
@@ -51,6 +53,6 @@ public class GuavaCacheFactory implements CacheFactory<GuavaSearchableResourceMe
 
     @Override
     public GuavaSearchableResourceMetadataCache createCache() {
-        return new GuavaSearchableResourceMetadataCache(cacheSize, metricRegistry);
+        return new GuavaSearchableResourceMetadataCache(cacheSize, cacheWeight, metricRegistry);
     }
 }
@@ -29,6 +29,7 @@
 package org.opennms.netmgt.newts;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 import java.util.Collection;
 import java.util.concurrent.CountDownLatch;
@@ -119,6 +120,173 @@ public class NewtsWriterTest {
         assertEquals(ringBufferSize, sampleRepo.getNumSamplesInserted());
     }
 
+    /**
+     * Verifies that the samples from consecutive entries on the ring buffer
+     * are coalesced into a single insert.
+     */
+    @Test
+    public void canCoalesceBatches() throws Exception {
+        Resource x = new Resource("x");
+        Lock lock = new ReentrantLock();
+        LockedSampleRepository sampleRepo = new LockedSampleRepository(lock);
+        MetricRegistry registry = new MetricRegistry();
+        NewtsWriter writer = new NewtsWriter(100, 1024, 1, 0, 0, 0L, registry);
+        writer.setSampleRepository(sampleRepo);
+
+        // Lock the writer thread on the first insert
+        lock.lock();
+        writer.insert(Lists.newArrayList(new Sample(Timestamp.now(), x, "y", MetricType.COUNTER, new Counter(0))));
+        waitForThreadsLocked(sampleRepo, 1);
+
+        // Queue up more entries than fit in a single batch
+        for (int i = 1; i <= 150; i++) {
+            writer.insert(Lists.newArrayList(new Sample(Timestamp.now(), x, "y", MetricType.COUNTER, new Counter(i))));
+        }
+
+        lock.unlock();
+        writer.destroy();
+
+        // One insert for the first sample, followed by one full batch and the remainder
+        assertEquals(151, sampleRepo.getNumSamplesInserted());
+        assertEquals(3, sampleRepo.getNumInserts());
+    }
+
+    /**
+     * Verifies that batches are split once they exceed the byte limit.
+     */
+    @Test
+    public void canLimitBatchesByBytes() throws Exception {
+        Resource x = new Resource("x");
+        Lock lock = new ReentrantLock();
+        LockedSampleRepository sampleRepo = new LockedSampleRepository(lock);
+        MetricRegistry registry = new MetricRegistry();
+        NewtsWriter writer = new NewtsWriter(100, 1024, 1, 1, 0, 0L, registry);
+        writer.setSampleRepository(sampleRepo);
+
+        lock.lock();
+        writer.insert(Lists.newArrayList(new Sample(Timestamp.now(), x, "y", MetricType.COUNTER, new Counter(0))));
+        waitForThreadsLocked(sampleRepo, 1);
+
+        for (int i = 1; i <= 10; i++) {
+            writer.insert(Lists.newArrayList(new Sample(Timestamp.now(), x, "y", MetricType.COUNTER, new Counter(i))));
+        }
+
+        lock.unlock();
+        writer.destroy();
+
+        // Every sample exceeds the limit on its own
+        assertEquals(11, sampleRepo.getNumSamplesInserted());
+        assertEquals(11, sampleRepo.getNumInserts());
+    }
+
+    /**
+     * Verifies that the number of concurrent inserts is capped independently
+     * of the number of writer threads.
+     */
+    @Test
+    public void canLimitInFlightInserts() throws Exception {
+        Resource x = new Resource("x");
+        Lock lock = new ReentrantLock();
+        LockedSampleRepository sampleRepo = new LockedSampleRepository(lock);
+        MetricRegistry registry = new MetricRegistry();
+        NewtsWriter writer = new NewtsWriter(1, 1024, 4, 0, 1, 0L, registry);
+        writer.setSampleRepository(sampleRepo);
+
+        lock.lock();
+        for (int i = 0; i < 8; i++) {
+            writer.insert(Lists.newArrayList(new Sample(Timestamp.now(), x, "y", MetricType.COUNTER, new Counter(i))));
+        }
+
+        Thread.sleep(250);
+        assertEquals(1, sampleRepo.getNumThreadsLocked());
+        assertEquals(1, registry.getGauges().get("writer.in-flight-inserts").getValue());
+
+        lock.unlock();
+        writer.destroy();
+
+        assertEquals(0, sampleRepo.getNumThreadsLocked());
+        assertEquals(8, sampleRepo.getNumSamplesInserted());
+    }
+
+    /**
+     * Verifies that callers wait for space on the ring buffer
+     * instead of immediately dropping the samples.
+     */
+    @Test
+    public void insertBlocksWhenRingBufferIsFull() throws Exception {
+        Resource x = new Resource("x");
+        int ringBufferSize = 4;
+
+        Lock lock = new ReentrantLock();
+        LockedSampleRepository sampleRepo = new LockedSampleRepository(lock);
+        MetricRegistry registry = new MetricRegistry();
+        NewtsWriter writer = new NewtsWriter(1, ringBufferSize, 1, 0, 0, 30000L, registry);
+        writer.setSampleRepository(sampleRepo);
+
+        lock.lock();
+        for (int i = 0; i < ringBufferSize; i++) {
+            writer.insert(Lists.newArrayList(new Sample(Timestamp.now(), x, "y", MetricType.COUNTER, new Counter(i))));
+        }
+        waitForThreadsLocked(sampleRepo, 1);
+
+        // The ring buffer is full, so this should block until the writer is unlocked
+        Thread producer = new Thread(() -> writer.insert(Lists.newArrayList(
+                new Sample(Timestamp.now(), x, "y", MetricType.COUNTER, new Counter(ringBufferSize)))));
+        producer.start();
+        producer.join(250);
+        assertTrue(producer.isAlive());
+
+        lock.unlock();
+        producer.join();
+        writer.destroy();
+
+        assertEquals(ringBufferSize + 1, sampleRepo.getNumSamplesInserted());
+        assertEquals(0, registry.meter("ring-buffer.dropped-samples").getCount());
+        assertEquals(1, registry.meter("ring-buffer.blocked-publishes").getCount());
+    }
+
+    /**
+     * Verifies that dropped samples are accounted for per resource type.
+     */
+    @Test
+    public void droppedSamplesAreCountedByResourceType() throws Exception {
+        Resource x = new Resource("x");
+        int ringBufferSize = 4;
+
+        Lock lock = new ReentrantLock();
+        LockedSampleRepository sampleRepo = new LockedSampleRepository(lock);
+        MetricRegistry registry = new MetricRegistry();
+        NewtsWriter writer = new NewtsWriter(1, ringBufferSize, 1, 0, 0, 0L, registry);
+        writer.setSampleRepository(sampleRepo);
+
+        lock.lock();
+        for (int i = 0; i < ringBufferSize; i++) {
+            writer.insert(Lists.newArrayList(new Sample(Timestamp.now(), x, "y", MetricType.COUNTER, new Counter(i))));
+        }
+
+        Resource ifResource = new Resource("snmp:1:eth0:mib2-interfaces");
+        Resource tcpResource = new Resource("snmp:1:tcp");
+        writer.insert(Lists.newArrayList(
+                new Sample(Timestamp.now(), ifResource, "ifInOctets", MetricType.COUNTER, new Counter(1)),
+                new Sample(Timestamp.now(), ifResource, "ifOutOctets", MetricType.COUNTER, new Counter(1)),
+                new Sample(Timestamp.now(), tcpResource, "tcpActiveOpens", MetricType.COUNTER, new Counter(1))));
+
+        lock.unlock();
+        writer.destroy();
+
+        assertEquals(ringBufferSize, sampleRepo.getNumSamplesInserted());
+        assertEquals(3, registry.meter("ring-buffer.dropped-samples").getCount());
+        assertEquals(2, registry.meter("ring-buffer.dropped-samples.mib2-interfaces").getCount());
+        assertEquals(1, registry.meter("ring-buffer.dropped-samples.tcp").getCount());
+    }
+
+    private static void waitForThreadsLocked(LockedSampleRepository sampleRepo, int numThreadsLocked) throws InterruptedException {
+        for (int i = 0; i < 100 && sampleRepo.getNumThreadsLocked() < numThreadsLocked; i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(numThreadsLocked, sampleRepo.getNumThreadsLocked());
+    }
+
     private static class LatchedSampleRepository extends MockSampleRepository {
         private final CountDownLatch latch;
 
@@ -141,6 +309,7 @@ public class NewtsWriterTest {
         private final Lock lock;
         private final AtomicInteger numThreadsLocked = new AtomicInteger(0);
         private final AtomicInteger numSamplesInserted = new AtomicInteger(0);
+        private final AtomicInteger numInserts = new AtomicInteger(0);
 
         public LockedSampleRepository(Lock lock) {
             this.lock = lock;
@@ -151,6 +320,7 @@ public class NewtsWriterTest {
             numThreadsLocked.incrementAndGet();
             lock.lock();
             numSamplesInserted.addAndGet(samples.size());
+            numInserts.incrementAndGet();
             lock.unlock();
             numThreadsLocked.decrementAndGet();
         }
@@ -162,6 +332,10 @@ public class NewtsWriterTest {
         public int getNumSamplesInserted() {
             return numSamplesInserted.get();
         }
+
+        public int getNumInserts() {
+            return numInserts.get();
+        }
     }
 
     private static class MockSampleRepository implements SampleRepository {
@@ -29,6 +29,7 @@
 package org.opennms.netmgt.newts.support;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 import org.junit.Test;
@@ -60,6 +61,103 @@ public class GuavaSearchableResourceMetadataCacheTest {
         assertTrue(cache.getResourceIdsWithPrefix(ctx, "a:b:c:d").isEmpty());
     }
 
+    @Test
+    public void canBoundByWeight() {
+        Context ctx = Context.DEFAULT_CONTEXT;
+        GuavaSearchableResourceMetadataCache cache = new GuavaSearchableResourceMetadataCache(0, 64 * 1024, m_registry);
+
+        for (int k = 0; k < 1000; k++) {
+            Resource resource = new Resource(String.format("snmp:%d:eth0-x", k));
+            ResourceMetadata resourceMetadata = new ResourceMetadata();
+            resourceMetadata.putMetric("ifHCInOctets");
+            resourceMetadata.putMetric("ifHCOutOctets");
+            resourceMetadata.putAttribute("ifDescr", "eth0-x");
+            cache.merge(ctx, resource, resourceMetadata);
+        }
+
+        // Entries were evicted to stay within the bound
+        assertTrue(cache.getSize() < 1000);
+        assertTrue(cache.getWeight() <= 64 * 1024);
+        assertTrue(m_registry.meter("cache.evictions").getCount() > 0);
+
+        // The tree only references the entries that are still cached
+        assertEquals(cache.getSize(), cache.getResourceIdsWithPrefix(ctx, "snmp").size());
+        assertTrue(cache.get(ctx, new Resource("snmp:999:eth0-x")).isPresent());
+        assertFalse(cache.get(ctx, new Resource("snmp:0:eth0-x")).isPresent());
+        assertTrue(cache.getResourceIdsWithPrefix(ctx, "snmp:0:").isEmpty());
+    }
+
+    @Test
+    public void weightDoesNotGrowWithRepeatedMerges() {
+        Context ctx = Context.DEFAULT_CONTEXT;
+        GuavaSearchableResourceMetadataCache cache = new GuavaSearchableResourceMetadataCache(0, 64 * 1024, m_registry);
+
+        Resource resource = new Resource("snmp:1:eth0-x");
+        ResourceMetadata resourceMetadata = new ResourceMetadata();
+        resourceMetadata.putMetric("ifHCInOctets");
+        cache.merge(ctx, resource, resourceMetadata);
+        final long initialWeight = cache.getWeight();
+
+        // Adding a metric increases the weight
+        resourceMetadata.putMetric("ifHCOutOctets");
+        cache.merge(ctx, resource, resourceMetadata);
+        final long mergedWeight = cache.getWeight();
+        assertTrue(mergedWeight > initialWeight);
+
+        // Merging metadata that partially overlaps only accounts for the merged result
+        for (int k = 0; k < 10; k++) {
+            ResourceMetadata partialMetadata = new ResourceMetadata();
+            partialMetadata.putMetric("ifHCInOctets");
+            partialMetadata.putAttribute("ifDescr", "eth0-x");
+            cache.merge(ctx, resource, partialMetadata);
+        }
+
+        // The weight is the same as if everything had been merged at once
+        ResourceMetadata everything = new ResourceMetadata();
+        everything.putMetric("ifHCInOctets");
+        everything.putMetric("ifHCOutOctets");
+        everything.putAttribute("ifDescr", "eth0-x");
+        GuavaSearchableResourceMetadataCache other = new GuavaSearchableResourceMetadataCache(0, 64 * 1024, new MetricRegistry());
+        other.merge(ctx, resource, everything);
+        assertEquals(other.getWeight(), cache.getWeight());
+    }
+
+    @Test
+    public void doesNotWeighMetadataWhenBoundBySize() {
+        Context ctx = Context.DEFAULT_CONTEXT;
+        GuavaSearchableResourceMetadataCache cache = new GuavaSearchableResourceMetadataCache(2048, m_registry);
+
+        Resource resource = new Resource("snmp:1:eth0-x");
+        ResourceMetadata resourceMetadata = new ResourceMetadata();
+        cache.merge(ctx, resource, resourceMetadata);
+        final long weight = cache.getWeight();
+
+        // Only the key and the overhead are accounted for
+        resourceMetadata.putMetric("ifHCInOctets");
+        resourceMetadata.putAttribute("ifDescr", "eth0-x");
+        cache.merge(ctx, resource, resourceMetadata);
+        assertEquals(weight, cache.getWeight());
+    }
+
+    @Test
+    public void canTrackHitsAndMisses() {
+        Context ctx = Context.DEFAULT_CONTEXT;
+        GuavaSearchableResourceMetadataCache cache = new GuavaSearchableResourceMetadataCache(2048, m_registry);
+
+        Resource resource = new Resource("a:b:c");
+        assertFalse(cache.get(ctx, resource).isPresent());
+        cache.merge(ctx, resource, new ResourceMetadata());
+        assertTrue(cache.get(ctx, resource).isPresent());
+
+        assertEquals(1, m_registry.meter("cache.hits").getCount());
+        assertEquals(1, m_registry.meter("cache.misses").getCount());
+
+        cache.delete(ctx, resource);
+        assertTrue(cache.getResourceIdsWithPrefix(ctx, "a").isEmpty());
+        assertEquals(0, cache.getWeight());
+        assertEquals(0, m_registry.meter("cache.evictions").getCount());
+    }
+
     @Test
     @IfProfileValue(name="runBenchmarkTests", value="true")
     public void getResourceIdsWithPrefixPerftTest() {
@@ -28,15 +28,26 @@
 
 package org.opennms.netmgt.telemetry.protocols.bmp.adapter;
 
+import static com.codahale.metrics.MetricRegistry.name;
 import static java.lang.Boolean.FALSE;
 import static java.lang.Boolean.TRUE;
 
+import java.net.InetAddress;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -45,6 +56,7 @@ import org.opennms.netmgt.dao.api.SessionUtils;
 import org.opennms.netmgt.telemetry.protocols.bmp.adapter.openbmp.BmpMessageHandler;
 import org.opennms.netmgt.telemetry.protocols.bmp.adapter.openbmp.Context;
 import org.opennms.netmgt.telemetry.protocols.bmp.adapter.openbmp.proto.Message;
+import org.opennms.netmgt.telemetry.protocols.bmp.adapter.openbmp.proto.Record;
 import org.opennms.netmgt.telemetry.protocols.bmp.adapter.openbmp.proto.Type;
 import org.opennms.netmgt.telemetry.protocols.bmp.adapter.openbmp.proto.records.BaseAttribute;
 import org.opennms.netmgt.telemetry.protocols.bmp.adapter.openbmp.proto.records.Collector;
@@ -62,6 +74,7 @@ import org.opennms.netmgt.telemetry.protocols.bmp.persistence.api.BmpIpRibLog;
 import org.opennms.netmgt.telemetry.protocols.bmp.persistence.api.BmpIpRibLogDao;
 import org.opennms.netmgt.telemetry.protocols.bmp.persistence.api.BmpPeer;
 import org.opennms.netmgt.telemetry.protocols.bmp.persistence.api.BmpPeerDao;
+import org.opennms.netmgt.telemetry.protocols.bmp.persistence.api.BmpRibChangeListener;
 import org.opennms.netmgt.telemetry.protocols.bmp.persistence.api.BmpRouter;
 import org.opennms.netmgt.telemetry.protocols.bmp.persistence.api.BmpRouterDao;
 import org.opennms.netmgt.telemetry.protocols.bmp.persistence.api.BmpUnicastPrefix;
@@ -71,10 +84,16 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
 import com.google.common.base.Joiner;
+import com.google.common.base.Strings;
 import com.google.common.collect.HashMultimap;
 import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Multimaps;
 import com.google.common.collect.SetMultimap;
+import com.google.common.util.concurrent.Striped;
 import com.swrve.ratelimitedlogger.RateLimitedLog;
 
 public class BmpMessagePersister implements BmpMessageHandler {
@@ -113,10 +132,80 @@ public class BmpMessagePersister implements BmpMessageHandler {
     @Autowired
     private SessionUtils sessionUtils;
 
-    private SetMultimap<String, BmpPeer> peerMultimap = HashMultimap.create();
+    private MetricRegistry metricRegistry = new MetricRegistry();
+
+    private List<BmpRibChangeListener> ribChangeListeners = Collections.emptyList();
+
+    private SetMultimap<String, BmpPeer> peerMultimap = Multimaps.synchronizedSetMultimap(HashMultimap.create());
+
+    private static final int PEER_LOCK_STRIPES = 64;
+
+    // Messages of different peers are persisted concurrently, the messages of a single peer in order
+    private final Striped<Lock> peerLocks = Striped.lock(PEER_LOCK_STRIPES);
+
+    // Collector and router messages change the state of all peers of a router, so they run alone
+    private final ReadWriteLock exclusiveLock = new ReentrantReadWriteLock();
+
+    // The hops of AS paths are shared by all peers
+    private final Object asnPathLock = new Object();
 
     @Override
-    public synchronized void handle(Message message, Context context) {
+    public void handle(Message message, Context context) {
+        final String type = message.getType().name().toLowerCase();
+        metricRegistry.meter(name("adapters", "bmp", "persister", type, "records")).mark(message.getRecords().size());
+
+        final Set<String> peerKeys = getPeerKeys(message);
+        final Lock lock = peerKeys.isEmpty() ? exclusiveLock.writeLock() : exclusiveLock.readLock();
+        lock.lock();
+        try {
+            // bulkGet returns the stripes in a fixed order, so two messages never wait on each other
+            final List<Lock> locks = Lists.newArrayList(peerLocks.bulkGet(peerKeys));
+            locks.forEach(Lock::lock);
+            try (Timer.Context ctx = metricRegistry.timer(name("adapters", "bmp", "persister", type, "persisting")).time()) {
+                persist(message, context);
+                if (message.getType() == Type.BASE_ATTRIBUTE) {
+                    // The hops are keyed by ASN only, two peers must not insert the same hop at once
+                    synchronized (asnPathLock) {
+                        persistAsnPaths(message);
+                    }
+                }
+            } finally {
+                Lists.reverse(locks).forEach(Lock::unlock);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the router and peer address of every peer the message is about, or nothing if the message
+     * is not limited to single peers.
+     */
+    static Set<String> getPeerKeys(Message message) {
+        final Set<String> peerKeys = new HashSet<>();
+        for (Record record : message.getRecords()) {
+            switch (record.getType()) {
+                case PEER:
+                    peerKeys.add(peerKey(((Peer) record).routerHash, ((Peer) record).remoteIp));
+                    break;
+                case BASE_ATTRIBUTE:
+                    peerKeys.add(peerKey(((BaseAttribute) record).routerHash, ((BaseAttribute) record).peerIp));
+                    break;
+                case UNICAST_PREFIX:
+                    peerKeys.add(peerKey(((UnicastPrefix) record).routerHash, ((UnicastPrefix) record).peerIp));
+                    break;
+                default:
+                    return Collections.emptySet();
+            }
+        }
+        return peerKeys;
+    }
+
+    private static String peerKey(String routerHash, InetAddress peerAddress) {
+        return routerHash + "/" + InetAddressUtils.str(peerAddress);
+    }
+
+    private void persist(Message message, Context context) {
         sessionUtils.withTransaction(() -> {
             switch (message.getType()) {
                 case COLLECTOR:
@@ -181,16 +270,6 @@ public class BmpMessagePersister implements BmpMessageHandler {
                         } catch (Exception e) {
                             LOG.error("Exception while persisting BMP base attribute {}", bmpBaseAttribute, e);
                         }
-                        String asPath = bmpBaseAttribute.getAsPath();
-                        List<BmpAsnPathAnalysis> asnPaths = buildBmpAsnPath(asPath);
-                        asnPaths.forEach(asnPath -> {
-                            try {
-                                bmpAsnPathAnalysisDao.saveOrUpdate(asnPath);
-                            } catch (Exception e) {
-                                LOG.error("Exception while persisting BMP asn path {}", asnPath, e);
-                            }
-                        });
-
                     });
                     break;
                 case UNICAST_PREFIX:
@@ -209,7 +288,26 @@ public class BmpMessagePersister implements BmpMessageHandler {
     }
 
 
+    private void persistAsnPaths(Message message) {
+        sessionUtils.withTransaction(() -> {
+            // Attributes of the same message share most of their paths, look up and persist each hop only once
+            Map<String, BmpAsnPathAnalysis> asnPathsByKey = new LinkedHashMap<>();
+            message.getRecords().stream()
+                    .filter(record -> record.getType().equals(Type.BASE_ATTRIBUTE))
+                    .forEach(record -> buildBmpAsnPath(((BaseAttribute) record).asPath, asnPathsByKey));
+            asnPathsByKey.values().forEach(asnPath -> {
+                try {
+                    bmpAsnPathAnalysisDao.saveOrUpdate(asnPath);
+                } catch (Exception e) {
+                    LOG.error("Exception while persisting BMP asn path {}", asnPath, e);
+                }
+            });
+        });
+    }
+
     private void updateStats(BmpUnicastPrefix unicastPrefix, String location) {
+        updateActivePrefixes(unicastPrefix);
+
         // Update counts if this is new prefix update or
         // if previous withdrawn state is different or it's an update with different base attributes
         if (unicastPrefix.getId() == null ||
@@ -226,10 +324,23 @@ public class BmpMessagePersister implements BmpMessageHandler {
             bmpIpRibLog.setTimestamp(new Date());
             bmpIpRibLog.setWithDrawn(unicastPrefix.isWithDrawn());
             bmpIpRibLogDao.saveOrUpdate(bmpIpRibLog);
+            ribChangeListeners.forEach(listener -> listener.ribLogged(bmpIpRibLog));
         }
 
     }
 
+    private void updateActivePrefixes(BmpUnicastPrefix unicastPrefix) {
+        if (ribChangeListeners.isEmpty()) {
+            return;
+        }
+        boolean wasActive = unicastPrefix.getId() != null && !unicastPrefix.isPrevWithDrawnState();
+        boolean isActive = !unicastPrefix.isWithDrawn();
+        if (wasActive != isActive) {
+            String peerHashId = unicastPrefix.getBmpPeer().getHashId();
+            ribChangeListeners.forEach(listener -> listener.activePrefixesChanged(peerHashId, unicastPrefix.isIpv4(), isActive ? 1 : -1));
+        }
+    }
+
 
     @Override
     public void close() {
@@ -395,21 +506,43 @@ public class BmpMessagePersister implements BmpMessageHandler {
 
     private List<BmpUnicastPrefix> buildBmpUnicastPrefix(Message message) {
 
+        // Fetch all known prefixes of this message at once instead of querying them one by one
+        Map<String, BmpUnicastPrefix> existingPrefixes = new HashMap<>();
+        Set<String> hashIds = message.getRecords().stream()
+                .filter(record -> record.getType().equals(Type.UNICAST_PREFIX))
+                .map(record -> ((UnicastPrefix) record).hash)
+                .filter(hash -> !Strings.isNullOrEmpty(hash))
+                .collect(Collectors.toSet());
+        if (!hashIds.isEmpty()) {
+            bmpUnicastPrefixDao.findByHashIds(hashIds).forEach(prefix -> existingPrefixes.put(prefix.getHashId(), prefix));
+        }
+        // A message usually carries the prefixes of a single peer
+        Map<String, Optional<BmpPeer>> peersByHashId = new HashMap<>();
+        // Prefixes that are repeated within the message update the same entity
+        Map<String, BmpUnicastPrefix> builtPrefixes = new HashMap<>();
+
         List<BmpUnicastPrefix> bmpUnicastPrefixes = new ArrayList<>();
         message.getRecords().forEach(record -> {
             if (record.getType().equals(Type.UNICAST_PREFIX)) {
                 BmpPeer bmpPeer;
                 UnicastPrefix unicastPrefix = (UnicastPrefix) record;
                 try {
-                    BmpUnicastPrefix bmpUnicastPrefix = bmpUnicastPrefixDao.findByHashId(unicastPrefix.hash);
-                    if (bmpUnicastPrefix == null) {
-                        bmpUnicastPrefix = new BmpUnicastPrefix();
-                        bmpUnicastPrefix.setFirstAddedTimestamp(Date.from(unicastPrefix.timestamp));
-                        bmpPeer = bmpPeerDao.findByPeerHashId(unicastPrefix.peerHash);
-                    } else {
-                        bmpUnicastPrefix.setPrevBaseAttrHashId(bmpUnicastPrefix.getBaseAttrHashId());
-                        bmpUnicastPrefix.setPrevWithDrawnState(bmpUnicastPrefix.isWithDrawn());
+                    BmpUnicastPrefix bmpUnicastPrefix = builtPrefixes.get(unicastPrefix.hash);
+                    boolean repeated = bmpUnicastPrefix != null;
+                    if (repeated) {
                         bmpPeer = bmpUnicastPrefix.getBmpPeer();
+                    } else {
+                        bmpUnicastPrefix = existingPrefixes.get(unicastPrefix.hash);
+                        if (bmpUnicastPrefix == null) {
+                            bmpUnicastPrefix = new BmpUnicastPrefix();
+                            bmpUnicastPrefix.setFirstAddedTimestamp(Date.from(unicastPrefix.timestamp));
+                            bmpPeer = peersByHashId.computeIfAbsent(unicastPrefix.peerHash,
+                                    peerHash -> Optional.ofNullable(bmpPeerDao.findByPeerHashId(peerHash))).orElse(null);
+                        } else {
+                            bmpUnicastPrefix.setPrevBaseAttrHashId(bmpUnicastPrefix.getBaseAttrHashId());
+                            bmpUnicastPrefix.setPrevWithDrawnState(bmpUnicastPrefix.isWithDrawn());
+                            bmpPeer = bmpUnicastPrefix.getBmpPeer();
+                        }
                     }
                     if (bmpPeer == null) {
                         RATE_LIMITED_LOGGER.warn("Peer entity with hashId '{}', IpAddress = {} doesn't exist yet",
@@ -430,7 +563,12 @@ public class BmpMessagePersister implements BmpMessageHandler {
                     bmpUnicastPrefix.setLabels(unicastPrefix.labels);
                     bmpUnicastPrefix.setPrePolicy(unicastPrefix.prePolicy);
                     bmpUnicastPrefix.setAdjRibIn(unicastPrefix.adjIn);
-                    bmpUnicastPrefixes.add(bmpUnicastPrefix);
+                    if (!repeated) {
+                        bmpUnicastPrefixes.add(bmpUnicastPrefix);
+                        if (!Strings.isNullOrEmpty(unicastPrefix.hash)) {
+                            builtPrefixes.put(unicastPrefix.hash, bmpUnicastPrefix);
+                        }
+                    }
                 } catch (Exception e) {
                     LOG.error("Exception while mapping Unicast prefix with prefix {} to UnicastPrefix entity",
                             InetAddressUtils.str(unicastPrefix.prefix), e);
@@ -442,6 +580,14 @@ public class BmpMessagePersister implements BmpMessageHandler {
 
 
     List<BmpAsnPathAnalysis> buildBmpAsnPath(String asnPath) {
+        return buildBmpAsnPath(asnPath, new LinkedHashMap<>());
+    }
+
+    /**
+     * Builds the path analysis entries for the given path, reusing and collecting
+     * the entries that were already built for the same hops in {@code asnPathsByKey}.
+     */
+    List<BmpAsnPathAnalysis> buildBmpAsnPath(String asnPath, Map<String, BmpAsnPathAnalysis> asnPathsByKey) {
 
         List<BmpAsnPathAnalysis> bmpAsnPathAnalyses = new ArrayList<>();
         String[] asnStringArray = asnPath.split(" ");
@@ -464,7 +610,11 @@ public class BmpMessagePersister implements BmpMessageHandler {
                         continue;
                     }
                     Boolean isPeeringAsn = (i == 0 || i == 1) ? TRUE : FALSE;
-                    BmpAsnPathAnalysis bmpAsnPathAnalysis = bmpAsnPathAnalysisDao.findByAsnPath(asn, leftAsn, rightAsn, isPeeringAsn);
+                    String key = asnPathKey(asn, leftAsn, rightAsn, isPeeringAsn);
+                    BmpAsnPathAnalysis bmpAsnPathAnalysis = asnPathsByKey.get(key);
+                    if (bmpAsnPathAnalysis == null) {
+                        bmpAsnPathAnalysis = bmpAsnPathAnalysisDao.findByAsnPath(asn, leftAsn, rightAsn, isPeeringAsn);
+                    }
                     if (bmpAsnPathAnalysis == null) {
                         bmpAsnPathAnalysis = new BmpAsnPathAnalysis();
                         bmpAsnPathAnalysis.setAsn(asn);
@@ -474,9 +624,14 @@ public class BmpMessagePersister implements BmpMessageHandler {
                     }
                     bmpAsnPathAnalysis.setLastUpdated(Date.from(Instant.now()));
                     bmpAsnPathAnalyses.add(bmpAsnPathAnalysis);
+                    asnPathsByKey.put(key, bmpAsnPathAnalysis);
                 } else {
                     // No more left in path - Origin ASN
-                    BmpAsnPathAnalysis bmpAsnPathAnalysis = bmpAsnPathAnalysisDao.findByAsnPath(asn, leftAsn, 0L, false);
+                    String key = asnPathKey(asn, leftAsn, 0L, false);
+                    BmpAsnPathAnalysis bmpAsnPathAnalysis = asnPathsByKey.get(key);
+                    if (bmpAsnPathAnalysis == null) {
+                        bmpAsnPathAnalysis = bmpAsnPathAnalysisDao.findByAsnPath(asn, leftAsn, 0L, false);
+                    }
                     if (bmpAsnPathAnalysis == null) {
                         bmpAsnPathAnalysis = new BmpAsnPathAnalysis();
                         bmpAsnPathAnalysis.setAsn(asn);
@@ -486,6 +641,7 @@ public class BmpMessagePersister implements BmpMessageHandler {
                     }
                     bmpAsnPathAnalysis.setLastUpdated(Date.from(Instant.now()));
                     bmpAsnPathAnalyses.add(bmpAsnPathAnalysis);
+                    asnPathsByKey.put(key, bmpAsnPathAnalysis);
                     break;
                 }
 
@@ -495,6 +651,10 @@ public class BmpMessagePersister implements BmpMessageHandler {
         return bmpAsnPathAnalyses;
     }
 
+    private static String asnPathKey(Long asn, Long leftAsn, Long rightAsn, boolean isPeeringAsn) {
+        return asn + ":" + leftAsn + ":" + rightAsn + ":" + isPeeringAsn;
+    }
+
     static long[] getLongArrayFromStringArray(String[] asnArray) {
         long[] emptyArray = {};
         try {
@@ -569,6 +729,22 @@ public class BmpMessagePersister implements BmpMessageHandler {
         this.bmpIpRibLogDao = bmpIpRibLogDao;
     }
 
+    public MetricRegistry getMetricRegistry() {
+        return metricRegistry;
+    }
+
+    public void setMetricRegistry(MetricRegistry metricRegistry) {
+        this.metricRegistry = metricRegistry;
+    }
+
+    public List<BmpRibChangeListener> getRibChangeListeners() {
+        return ribChangeListeners;
+    }
+
+    public void setRibChangeListeners(List<BmpRibChangeListener> ribChangeListeners) {
+        this.ribChangeListeners = ribChangeListeners;
+    }
+
     public SessionUtils getSessionUtils() {
         return sessionUtils;
     }
@@ -30,10 +30,13 @@ package org.opennms.netmgt.telemetry.protocols.bmp.adapter;
 
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
 
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.hamcrest.Matchers;
 import org.junit.Test;
@@ -79,6 +82,27 @@ public class AsnPathTest {
     }
 
 
+    @Test
+    public void testSharedHopsAreLookedUpOnce() {
+
+        BmpMessagePersister bmpMessagePersister = new BmpMessagePersister();
+        BmpAsnPathAnalysisDao bmpAsnPathAnalysisDao = Mockito.mock(BmpAsnPathAnalysisDao.class);
+        Mockito.when(bmpAsnPathAnalysisDao.findByAsnPath(Mockito.anyLong(), Mockito.anyLong(), Mockito.anyLong(), Mockito.anyBoolean())).thenReturn(null);
+        bmpMessagePersister.setBmpAsnPathAnalysisDao(bmpAsnPathAnalysisDao);
+
+        Map<String, BmpAsnPathAnalysis> asnPathsByKey = new LinkedHashMap<>();
+        List<BmpAsnPathAnalysis> first = bmpMessagePersister.buildBmpAsnPath("8319 33891 1299 2914", asnPathsByKey);
+        List<BmpAsnPathAnalysis> second = bmpMessagePersister.buildBmpAsnPath("8319 33891 1299 3356", asnPathsByKey);
+        assertThat(first, Matchers.hasSize(4));
+        assertThat(second, Matchers.hasSize(4));
+
+        // The first two hops are shared, only the last two differ
+        assertSame(first.get(0), second.get(0));
+        assertSame(first.get(1), second.get(1));
+        assertEquals(6, asnPathsByKey.size());
+        Mockito.verify(bmpAsnPathAnalysisDao, Mockito.times(6)).findByAsnPath(Mockito.anyLong(), Mockito.anyLong(), Mockito.anyLong(), Mockito.anyBoolean());
+    }
+
     @Test
     public void testStringArrayToLongArray() {
         String[] asnPaths = {"8319", "ABC", "1299"};
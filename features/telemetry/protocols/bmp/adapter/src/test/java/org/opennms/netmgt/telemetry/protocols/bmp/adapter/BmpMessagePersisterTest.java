@@ -0,0 +1,153 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2021 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2021 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.telemetry.protocols.bmp.adapter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doCallRealMethod;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Instant;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.opennms.core.utils.InetAddressUtils;
+import org.opennms.netmgt.dao.api.SessionUtils;
+import org.opennms.netmgt.telemetry.protocols.bmp.adapter.openbmp.Context;
+import org.opennms.netmgt.telemetry.protocols.bmp.adapter.openbmp.proto.Message;
+import org.opennms.netmgt.telemetry.protocols.bmp.adapter.openbmp.proto.Type;
+import org.opennms.netmgt.telemetry.protocols.bmp.adapter.openbmp.proto.records.Peer;
+import org.opennms.netmgt.telemetry.protocols.bmp.adapter.openbmp.proto.records.Router;
+import org.opennms.netmgt.telemetry.protocols.bmp.persistence.api.BmpPeer;
+import org.opennms.netmgt.telemetry.protocols.bmp.persistence.api.BmpPeerDao;
+import org.opennms.netmgt.telemetry.protocols.bmp.persistence.api.BmpRouter;
+import org.opennms.netmgt.telemetry.protocols.bmp.persistence.api.BmpRouterDao;
+
+import com.google.common.collect.ImmutableList;
+
+public class BmpMessagePersisterTest {
+
+    private final Context context = new Context("admin", "collector", "router", Instant.now(),
+            InetAddressUtils.addr("10.0.0.1"), 5000, "Default");
+
+    private BmpMessagePersister persister;
+    private BmpPeerDao bmpPeerDao;
+    private ExecutorService executor;
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        SessionUtils sessionUtils = mock(SessionUtils.class);
+        when(sessionUtils.withTransaction(any(Supplier.class))).thenAnswer(invocation -> ((Supplier<?>) invocation.getArgument(0)).get());
+        doCallRealMethod().when(sessionUtils).withTransaction(any(Runnable.class));
+
+        BmpRouterDao bmpRouterDao = mock(BmpRouterDao.class);
+        when(bmpRouterDao.findByRouterHashId(anyString())).thenReturn(new BmpRouter());
+        bmpPeerDao = mock(BmpPeerDao.class);
+
+        persister = new BmpMessagePersister();
+        persister.setSessionUtils(sessionUtils);
+        persister.setBmpRouterDao(bmpRouterDao);
+        persister.setBmpPeerDao(bmpPeerDao);
+
+        executor = Executors.newFixedThreadPool(2);
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void shouldPersistTwoPeersAtTheSameTime() throws Exception {
+        // Both lookups have to be in progress at once to get past the barrier
+        CyclicBarrier barrier = new CyclicBarrier(2);
+        when(bmpPeerDao.findByPeerHashId(anyString())).thenAnswer(invocation -> {
+            barrier.await(10, TimeUnit.SECONDS);
+            return null;
+        });
+
+        Future<?> first = executor.submit(() -> persister.handle(peerMessage("peer1", "192.168.0.1"), context));
+        Future<?> second = executor.submit(() -> persister.handle(peerMessage("peer2", "192.168.0.2"), context));
+        first.get(30, TimeUnit.SECONDS);
+        second.get(30, TimeUnit.SECONDS);
+
+        // A broken barrier fails the mapping of the peer, which is then not saved
+        verify(bmpPeerDao, times(2)).saveOrUpdate(any(BmpPeer.class));
+    }
+
+    @Test
+    public void shouldPersistTheMessagesOfAPeerInOrder() throws Exception {
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        when(bmpPeerDao.findByPeerHashId(anyString())).thenAnswer(invocation -> {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            Thread.sleep(100);
+            running.decrementAndGet();
+            return null;
+        });
+
+        Future<?> first = executor.submit(() -> persister.handle(peerMessage("peer1", "192.168.0.1"), context));
+        Future<?> second = executor.submit(() -> persister.handle(peerMessage("peer1", "192.168.0.1"), context));
+        first.get(30, TimeUnit.SECONDS);
+        second.get(30, TimeUnit.SECONDS);
+
+        assertEquals(1, maxRunning.get());
+        verify(bmpPeerDao, times(2)).saveOrUpdate(any(BmpPeer.class));
+    }
+
+    @Test
+    public void shouldKeyMessagesByRouterAndPeerAddress() {
+        assertEquals(1, BmpMessagePersister.getPeerKeys(peerMessage("peer1", "192.168.0.1")).size());
+        assertTrue(BmpMessagePersister.getPeerKeys(new Message("collector", Type.ROUTER, ImmutableList.of(new Router()))).isEmpty());
+    }
+
+    private static Message peerMessage(String hash, String remoteIp) {
+        Peer peer = new Peer();
+        peer.hash = hash;
+        peer.routerHash = "router";
+        peer.remoteIp = InetAddressUtils.addr(remoteIp);
+        peer.action = Peer.Action.UP;
+        peer.timestamp = Instant.now();
+        return new Message("collector", Type.PEER, ImmutableList.of(peer));
+    }
+}
@@ -0,0 +1,50 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2022 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2022 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+
+package org.opennms.netmgt.telemetry.protocols.bmp.persistence.api;
+
+/**
+ * Receives the changes to the RIBs as they are persisted, so that statistics can be
+ * maintained incrementally instead of re-querying the RIB tables.
+ *
+ * Implementations are called while the persister holds its lock and must return quickly.
+ */
+public interface BmpRibChangeListener {
+
+    /**
+     * A change of a prefix was recorded in the RIB log.
+     */
+    void ribLogged(BmpIpRibLog ribLog);
+
+    /**
+     * The number of prefixes of the given peer and address family that are not
+     * withdrawn changed by the given amount.
+     */
+    void activePrefixesChanged(String peerHashId, boolean ipv4, int delta);
+}
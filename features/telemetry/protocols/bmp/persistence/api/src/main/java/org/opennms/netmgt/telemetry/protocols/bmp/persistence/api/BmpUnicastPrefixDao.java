@@ -29,6 +29,7 @@
 package org.opennms.netmgt.telemetry.protocols.bmp.persistence.api;
 
 
+import java.util.Collection;
 import java.util.Date;
 import java.util.List;
 
@@ -38,6 +39,8 @@ public interface BmpUnicastPrefixDao extends OnmsDao<BmpUnicastPrefix, Long> {
 
     BmpUnicastPrefix findByHashId(String hashId);
 
+    List<BmpUnicastPrefix> findByHashIds(Collection<String> hashIds);
+
     List<BmpUnicastPrefix> getUnicastPrefixesAfterDate(String hashId, Date time);
 
     List<PrefixByAS> getPrefixesGroupedByAS();
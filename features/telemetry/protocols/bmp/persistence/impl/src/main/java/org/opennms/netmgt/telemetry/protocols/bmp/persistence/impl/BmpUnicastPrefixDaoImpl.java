@@ -29,6 +29,8 @@
 package org.opennms.netmgt.telemetry.protocols.bmp.persistence.impl;
 
 import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Date;
 import java.util.List;
 
@@ -44,9 +46,13 @@ import org.opennms.netmgt.telemetry.protocols.bmp.persistence.api.PrefixByAS;
 import org.opennms.netmgt.telemetry.protocols.bmp.persistence.api.StatsPeerRib;
 
 import com.google.common.base.Strings;
+import com.google.common.collect.Iterables;
 
 public class BmpUnicastPrefixDaoImpl extends AbstractDaoHibernate<BmpUnicastPrefix, Long> implements BmpUnicastPrefixDao {
 
+    // Keep the IN lists well below the parameter limits of the driver
+    private static final int MAX_HASH_IDS_PER_QUERY = 1000;
+
     public BmpUnicastPrefixDaoImpl() {
         super(BmpUnicastPrefix.class);
     }
@@ -65,6 +71,17 @@ public class BmpUnicastPrefixDaoImpl extends AbstractDaoHibernate<BmpUnicastPref
         return null;
     }
 
+    @Override
+    public List<BmpUnicastPrefix> findByHashIds(Collection<String> hashIds) {
+        List<BmpUnicastPrefix> bmpUnicastPrefixes = new ArrayList<>();
+        for (List<String> chunk : Iterables.partition(hashIds, MAX_HASH_IDS_PER_QUERY)) {
+            Criteria criteria = new Criteria(BmpUnicastPrefix.class);
+            criteria.addRestriction(Restrictions.in("hashId", chunk));
+            bmpUnicastPrefixes.addAll(findMatching(criteria));
+        }
+        return bmpUnicastPrefixes;
+    }
+
     @Override
     public List<BmpUnicastPrefix> getUnicastPrefixesAfterDate(String hashId, Date time) {
         CriteriaBuilder criteriaBuilder = new CriteriaBuilder(BmpUnicastPrefix.class);
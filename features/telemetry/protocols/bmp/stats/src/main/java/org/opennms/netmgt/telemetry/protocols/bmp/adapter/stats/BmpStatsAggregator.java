@@ -28,7 +28,11 @@
 
 package org.opennms.netmgt.telemetry.protocols.bmp.adapter.stats;
 
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Date;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ThreadFactory;
@@ -38,7 +42,9 @@ import org.opennms.netmgt.dao.api.SessionUtils;
 import org.opennms.netmgt.telemetry.protocols.bmp.persistence.api.BmpAsnInfoDao;
 import org.opennms.netmgt.telemetry.protocols.bmp.persistence.api.BmpGlobalIpRib;
 import org.opennms.netmgt.telemetry.protocols.bmp.persistence.api.BmpGlobalIpRibDao;
+import org.opennms.netmgt.telemetry.protocols.bmp.persistence.api.BmpIpRibLog;
 import org.opennms.netmgt.telemetry.protocols.bmp.persistence.api.BmpIpRibLogDao;
+import org.opennms.netmgt.telemetry.protocols.bmp.persistence.api.BmpRibChangeListener;
 import org.opennms.netmgt.telemetry.protocols.bmp.persistence.api.BmpRouteInfo;
 import org.opennms.netmgt.telemetry.protocols.bmp.persistence.api.BmpRouteInfoDao;
 import org.opennms.netmgt.telemetry.protocols.bmp.persistence.api.BmpRpkiInfo;
@@ -69,8 +75,13 @@ import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 /**
  * Stats Aggregation happen completely on OpenNMS.
+ *
+ * By default the statistics are recomputed periodically by querying the RIB tables. In incremental
+ * mode, the updates and withdraws as well as the active prefixes per peer are counted in memory from
+ * the changes reported by the persister. The active prefixes are re-counted from the database only
+ * every few hours to correct any drift.
  */
-public class BmpStatsAggregator {
+public class BmpStatsAggregator implements BmpRibChangeListener {
 
     private static final Logger LOG = LoggerFactory.getLogger(BmpStatsAggregator.class);
 
@@ -116,10 +127,22 @@ public class BmpStatsAggregator {
     @Autowired
     private SessionUtils sessionUtils;
 
+    private boolean incremental = false;
+
+    private long consistencyCheckHours = 6;
+
+    private final IncrementalStats incrementalStats = new IncrementalStats();
+
     public void init() {
-        scheduledExecutorService.scheduleAtFixedRate(this::updatePeerStats, 0, 5, TimeUnit.MINUTES);
-        scheduledExecutorService.scheduleAtFixedRate(this::updateStatsByAsn, 0, 5, TimeUnit.MINUTES);
-        scheduledExecutorService.scheduleAtFixedRate(this::updateStatsByPrefix, 0, 5, TimeUnit.MINUTES);
+        if (incremental) {
+            LOG.info("Aggregating BMP stats incrementally, re-counting active prefixes every {} hours.", consistencyCheckHours);
+            scheduledExecutorService.scheduleAtFixedRate(this::flushIncrementalStats, 1, 1, TimeUnit.MINUTES);
+            scheduledExecutorService.scheduleAtFixedRate(this::seedActivePrefixes, consistencyCheckHours, consistencyCheckHours, TimeUnit.HOURS);
+        } else {
+            scheduledExecutorService.scheduleAtFixedRate(this::updatePeerStats, 0, 5, TimeUnit.MINUTES);
+            scheduledExecutorService.scheduleAtFixedRate(this::updateStatsByAsn, 0, 5, TimeUnit.MINUTES);
+            scheduledExecutorService.scheduleAtFixedRate(this::updateStatsByPrefix, 0, 5, TimeUnit.MINUTES);
+        }
         scheduledExecutorService.scheduleAtFixedRate(this::updatePeerRibCountStats, 0, 15, TimeUnit.MINUTES);
         scheduledExecutorService.scheduleAtFixedRate(this::updateGlobalRibsAndAsnInfo, 0, 60, TimeUnit.MINUTES);
         scheduledExecutorService.scheduleAtFixedRate(this::updateStatsIpOrigins, 0, 60, TimeUnit.MINUTES);
@@ -129,6 +152,119 @@ public class BmpStatsAggregator {
         scheduledExecutorService.shutdown();
     }
 
+    @Override
+    public void ribLogged(BmpIpRibLog ribLog) {
+        if (incremental) {
+            incrementalStats.ribLogged(ribLog);
+        }
+    }
+
+    @Override
+    public void activePrefixesChanged(String peerHashId, boolean ipv4, int delta) {
+        if (incremental) {
+            incrementalStats.activePrefixesChanged(peerHashId, ipv4, delta);
+        }
+    }
+
+    private void flushIncrementalStats() {
+        LOG.debug("Flushing incremental stats ++");
+        try {
+            final long currentMinute = System.currentTimeMillis() / 60000 * 60000;
+
+            final Map<IncrementalStats.Key, long[]> byPeer = incrementalStats.drainByPeer(currentMinute);
+            byPeer.forEach((key, counts) -> {
+                BmpStatsByPeer bmpStatsByPeer = new BmpStatsByPeer();
+                bmpStatsByPeer.setPeerHashId(key.getPeerHashId());
+                bmpStatsByPeer.setTimestamp(IncrementalStats.toIntervalTime(key.getMinute()));
+                bmpStatsByPeer.setUpdates(counts[0]);
+                bmpStatsByPeer.setWithdraws(counts[1]);
+                try {
+                    bmpStatsByPeerDao.saveOrUpdate(bmpStatsByPeer);
+                } catch (Exception e) {
+                    // Late changes for an interval that was already flushed, add them up.
+                    BmpStatsByPeer retrieved = bmpStatsByPeerDao.findByPeerAndIntervalTime(bmpStatsByPeer.getPeerHashId(), bmpStatsByPeer.getTimestamp());
+                    if (retrieved != null) {
+                        retrieved.setUpdates(add(retrieved.getUpdates(), counts[0]));
+                        retrieved.setWithdraws(add(retrieved.getWithdraws(), counts[1]));
+                        saveBmpStatsByPeer(retrieved);
+                    }
+                }
+            });
+
+            final Map<IncrementalStats.Key, long[]> byAsn = incrementalStats.drainByAsn(currentMinute);
+            byAsn.forEach((key, counts) -> {
+                BmpStatsByAsn bmpStatsByAsn = new BmpStatsByAsn();
+                bmpStatsByAsn.setPeerHashId(key.getPeerHashId());
+                bmpStatsByAsn.setOriginAsn(key.getOriginAs());
+                bmpStatsByAsn.setTimestamp(IncrementalStats.toIntervalTime(key.getMinute()));
+                bmpStatsByAsn.setUpdates(counts[0]);
+                bmpStatsByAsn.setWithdraws(counts[1]);
+                try {
+                    bmpStatsByAsnDao.saveOrUpdate(bmpStatsByAsn);
+                } catch (Exception e) {
+                    BmpStatsByAsn retrieved = bmpStatsByAsnDao.findByAsnAndIntervalTime(bmpStatsByAsn.getPeerHashId(), bmpStatsByAsn.getOriginAsn(), bmpStatsByAsn.getTimestamp());
+                    if (retrieved != null) {
+                        retrieved.setUpdates(add(retrieved.getUpdates(), counts[0]));
+                        retrieved.setWithdraws(add(retrieved.getWithdraws(), counts[1]));
+                        saveStatsByAsn(retrieved);
+                    }
+                }
+            });
+
+            final Map<IncrementalStats.Key, long[]> byPrefix = incrementalStats.drainByPrefix(currentMinute);
+            byPrefix.forEach((key, counts) -> {
+                BmpStatsByPrefix bmpStatsByPrefix = new BmpStatsByPrefix();
+                bmpStatsByPrefix.setPeerHashId(key.getPeerHashId());
+                bmpStatsByPrefix.setPrefix(key.getPrefix());
+                bmpStatsByPrefix.setPrefixLen(key.getPrefixLen());
+                bmpStatsByPrefix.setTimestamp(IncrementalStats.toIntervalTime(key.getMinute()));
+                bmpStatsByPrefix.setUpdates(counts[0]);
+                bmpStatsByPrefix.setWithdraws(counts[1]);
+                try {
+                    bmpStatsByPrefixDao.saveOrUpdate(bmpStatsByPrefix);
+                } catch (Exception e) {
+                    BmpStatsByPrefix retrieved = bmpStatsByPrefixDao.findByPrefixAndIntervalTime(bmpStatsByPrefix.getPeerHashId(), bmpStatsByPrefix.getPrefix(),
+                            bmpStatsByPrefix.getTimestamp());
+                    if (retrieved != null) {
+                        retrieved.setUpdates(add(retrieved.getUpdates(), counts[0]));
+                        retrieved.setWithdraws(add(retrieved.getWithdraws(), counts[1]));
+                        saveBmpStatsByPrefix(retrieved);
+                    }
+                }
+            });
+            LOG.debug("Flushed {} StatsByPeer, {} StatsByAsn and {} StatsByPrefix elements", byPeer.size(), byAsn.size(), byPrefix.size());
+        } catch (Exception e) {
+            LOG.error("Exception while flushing incremental BMP stats", e);
+        }
+        LOG.debug("Flushing incremental stats --");
+    }
+
+    private static Long add(Long value, long delta) {
+        return value != null ? value + delta : delta;
+    }
+
+    private void seedActivePrefixes() {
+        LOG.debug("Counting active prefixes per peer ++");
+        try {
+            incrementalStats.seedActivePrefixes(bmpUnicastPrefixDao.getPeerRibCountsByPeer());
+        } catch (Exception e) {
+            LOG.error("Exception while counting active prefixes per peer", e);
+        }
+        LOG.debug("Counting active prefixes per peer --");
+    }
+
+    private List<StatsPeerRib> getIncrementalPeerRibCounts() {
+        if (!incrementalStats.isSeeded()) {
+            seedActivePrefixes();
+        }
+        // Same 15 minute intervals as the query on the RIB
+        final Date intervalTime = new Date(System.currentTimeMillis() / 900000 * 900000);
+        final List<StatsPeerRib> statsPeerRibs = new ArrayList<>();
+        incrementalStats.getActivePrefixes().forEach((peerHashId, counts) ->
+                statsPeerRibs.add(new StatsPeerRib(intervalTime, peerHashId, BigInteger.valueOf(counts[0]), BigInteger.valueOf(counts[1]))));
+        return statsPeerRibs;
+    }
+
     private void updateGlobalRibsAndAsnInfo() {
         LOG.debug("Updating GlobalRibs ++");
         setShouldDeleteForExisting();
@@ -338,7 +474,7 @@ public class BmpStatsAggregator {
 
     private void updatePeerRibCountStats() {
         LOG.debug("Updating StatsPeerRib ++");
-        List<StatsPeerRib> statsPeerRibs = bmpUnicastPrefixDao.getPeerRibCountsByPeer();
+        List<StatsPeerRib> statsPeerRibs = incremental ? getIncrementalPeerRibCounts() : bmpUnicastPrefixDao.getPeerRibCountsByPeer();
         LOG.debug("Retrieved {} StatsPeerRib elements", statsPeerRibs.size());
 
         statsPeerRibs.forEach(statsPeerRib -> {
@@ -469,4 +605,12 @@ public class BmpStatsAggregator {
     public void setSessionUtils(SessionUtils sessionUtils) {
         this.sessionUtils = sessionUtils;
     }
+
+    public void setIncremental(boolean incremental) {
+        this.incremental = incremental;
+    }
+
+    public void setConsistencyCheckHours(long consistencyCheckHours) {
+        this.consistencyCheckHours = consistencyCheckHours;
+    }
 }
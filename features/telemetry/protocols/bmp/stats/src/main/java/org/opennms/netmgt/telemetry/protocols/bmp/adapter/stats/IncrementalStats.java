@@ -0,0 +1,228 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2022 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2022 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+
+package org.opennms.netmgt.telemetry.protocols.bmp.adapter.stats;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TimeZone;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import org.opennms.netmgt.telemetry.protocols.bmp.persistence.api.BmpIpRibLog;
+import org.opennms.netmgt.telemetry.protocols.bmp.persistence.api.StatsPeerRib;
+
+import com.google.common.base.MoreObjects;
+
+/**
+ * In-memory counters for the BMP statistics, maintained from the RIB changes
+ * reported by the persister.
+ *
+ * Updates and withdraws are counted per minute, like the queries against the RIB log
+ * do, and are drained once the minute is over. Counters that receive late changes after
+ * being drained start over and are drained as an additional delta.
+ *
+ * The active prefixes per peer are seeded from the database and then adjusted by
+ * the reported changes. Changes that bypass the persister, like prefixes removed
+ * together with their peer, are only picked up by the next seed.
+ */
+public class IncrementalStats {
+
+    private static final long INTERVAL_MS = TimeUnit.MINUTES.toMillis(1);
+
+    private final ConcurrentMap<Key, long[]> byPeer = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Key, long[]> byAsn = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Key, long[]> byPrefix = new ConcurrentHashMap<>();
+
+    private volatile ConcurrentMap<String, long[]> activePrefixes;
+
+    public void ribLogged(BmpIpRibLog ribLog) {
+        final long minute = ribLog.getTimestamp().getTime() / INTERVAL_MS * INTERVAL_MS;
+        final long[] delta = ribLog.isWithDrawn() ? new long[]{0, 1} : new long[]{1, 0};
+        byPeer.merge(new Key(minute, ribLog.getPeerHashId(), null, null, null), delta, IncrementalStats::sum);
+        byAsn.merge(new Key(minute, ribLog.getPeerHashId(), ribLog.getOriginAs(), null, null), delta, IncrementalStats::sum);
+        byPrefix.merge(new Key(minute, ribLog.getPeerHashId(), null, ribLog.getPrefix(), ribLog.getPrefixLen()), delta, IncrementalStats::sum);
+    }
+
+    public void activePrefixesChanged(String peerHashId, boolean ipv4, int delta) {
+        final ConcurrentMap<String, long[]> counts = activePrefixes;
+        if (counts != null) {
+            counts.merge(peerHashId, ipv4 ? new long[]{delta, 0} : new long[]{0, delta}, IncrementalStats::sum);
+        }
+    }
+
+    /**
+     * Removes and returns the updates and withdraws per peer of all minutes before the given time.
+     */
+    public Map<Key, long[]> drainByPeer(long before) {
+        return drain(byPeer, before);
+    }
+
+    /**
+     * Removes and returns the updates and withdraws per peer and origin AS of all minutes before the given time.
+     */
+    public Map<Key, long[]> drainByAsn(long before) {
+        return drain(byAsn, before);
+    }
+
+    /**
+     * Removes and returns the updates and withdraws per peer and prefix of all minutes before the given time.
+     */
+    public Map<Key, long[]> drainByPrefix(long before) {
+        return drain(byPrefix, before);
+    }
+
+    public boolean isSeeded() {
+        return activePrefixes != null;
+    }
+
+    /**
+     * Replaces the active prefixes per peer with the given counts.
+     */
+    public void seedActivePrefixes(Iterable<StatsPeerRib> counts) {
+        final ConcurrentMap<String, long[]> seeded = new ConcurrentHashMap<>();
+        for (StatsPeerRib count : counts) {
+            seeded.put(count.getPeerHashId(), new long[]{
+                    count.getV4prefixes() != null ? count.getV4prefixes() : 0,
+                    count.getV6prefixes() != null ? count.getV6prefixes() : 0});
+        }
+        activePrefixes = seeded;
+    }
+
+    /**
+     * Returns a snapshot of the v4 and v6 prefixes per peer that are not withdrawn.
+     */
+    public Map<String, long[]> getActivePrefixes() {
+        final Map<String, long[]> snapshot = new HashMap<>();
+        final ConcurrentMap<String, long[]> counts = activePrefixes;
+        if (counts != null) {
+            counts.forEach((peerHashId, count) -> snapshot.put(peerHashId, new long[]{Math.max(0, count[0]), Math.max(0, count[1])}));
+        }
+        return snapshot;
+    }
+
+    /**
+     * The interval time of the per minute statistics is stored as the UTC wall clock time,
+     * mirroring what the queries against the RIB log return.
+     */
+    public static Date toIntervalTime(long minute) {
+        return new Date(minute - TimeZone.getDefault().getOffset(minute));
+    }
+
+    private static Map<Key, long[]> drain(ConcurrentMap<Key, long[]> counters, long before) {
+        final Map<Key, long[]> drained = new HashMap<>();
+        final Iterator<Key> it = counters.keySet().iterator();
+        while (it.hasNext()) {
+            final Key key = it.next();
+            if (key.minute < before) {
+                final long[] counts = counters.remove(key);
+                if (counts != null) {
+                    drained.put(key, counts);
+                }
+            }
+        }
+        return drained;
+    }
+
+    private static long[] sum(long[] a, long[] b) {
+        return new long[]{a[0] + b[0], a[1] + b[1]};
+    }
+
+    public static class Key {
+        private final long minute;
+        private final String peerHashId;
+        private final Long originAs;
+        private final String prefix;
+        private final Integer prefixLen;
+
+        private Key(long minute, String peerHashId, Long originAs, String prefix, Integer prefixLen) {
+            this.minute = minute;
+            this.peerHashId = peerHashId;
+            this.originAs = originAs;
+            this.prefix = prefix;
+            this.prefixLen = prefixLen;
+        }
+
+        public long getMinute() {
+            return minute;
+        }
+
+        public String getPeerHashId() {
+            return peerHashId;
+        }
+
+        public Long getOriginAs() {
+            return originAs;
+        }
+
+        public String getPrefix() {
+            return prefix;
+        }
+
+        public Integer getPrefixLen() {
+            return prefixLen;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            final Key that = (Key) o;
+            return minute == that.minute
+                    && Objects.equals(peerHashId, that.peerHashId)
+                    && Objects.equals(originAs, that.originAs)
+                    && Objects.equals(prefix, that.prefix)
+                    && Objects.equals(prefixLen, that.prefixLen);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(minute, peerHashId, originAs, prefix, prefixLen);
+        }
+
+        @Override
+        public String toString() {
+            return MoreObjects.toStringHelper(this)
+                    .add("minute", minute)
+                    .add("peerHashId", peerHashId)
+                    .add("originAs", originAs)
+                    .add("prefix", prefix)
+                    .add("prefixLen", prefixLen)
+                    .toString();
+        }
+    }
+}
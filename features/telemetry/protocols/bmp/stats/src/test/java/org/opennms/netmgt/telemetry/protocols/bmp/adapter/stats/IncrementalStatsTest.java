@@ -0,0 +1,117 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2022 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2022 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+
+package org.opennms.netmgt.telemetry.protocols.bmp.adapter.stats;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.math.BigInteger;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Map;
+
+import org.junit.Test;
+import org.opennms.netmgt.telemetry.protocols.bmp.persistence.api.BmpIpRibLog;
+import org.opennms.netmgt.telemetry.protocols.bmp.persistence.api.StatsPeerRib;
+
+public class IncrementalStatsTest {
+
+    private static final long MINUTE = 60000;
+
+    @Test
+    public void testCountsPerMinute() {
+        IncrementalStats stats = new IncrementalStats();
+        stats.ribLogged(ribLog(10 * MINUTE + 1, "peer1", 65000L, "10.0.0.0", false));
+        stats.ribLogged(ribLog(10 * MINUTE + 2, "peer1", 65000L, "10.0.0.0", true));
+        stats.ribLogged(ribLog(10 * MINUTE + 3, "peer1", 65001L, "10.1.0.0", false));
+        stats.ribLogged(ribLog(11 * MINUTE, "peer1", 65000L, "10.0.0.0", false));
+
+        // Only the completed minute is drained
+        Map<IncrementalStats.Key, long[]> byPeer = stats.drainByPeer(11 * MINUTE);
+        assertEquals(1, byPeer.size());
+        IncrementalStats.Key key = byPeer.keySet().iterator().next();
+        assertEquals(10 * MINUTE, key.getMinute());
+        assertEquals("peer1", key.getPeerHashId());
+        assertArrayEquals(new long[]{2, 1}, byPeer.get(key));
+
+        Map<IncrementalStats.Key, long[]> byAsn = stats.drainByAsn(11 * MINUTE);
+        assertEquals(2, byAsn.size());
+        byAsn.forEach((k, counts) -> {
+            if (k.getOriginAs() == 65000L) {
+                assertArrayEquals(new long[]{1, 1}, counts);
+            } else {
+                assertArrayEquals(new long[]{1, 0}, counts);
+            }
+        });
+
+        assertEquals(2, stats.drainByPrefix(11 * MINUTE).size());
+
+        // Drained counters are gone, the current minute remains
+        assertTrue(stats.drainByPeer(11 * MINUTE).isEmpty());
+        assertEquals(1, stats.drainByPeer(12 * MINUTE).size());
+    }
+
+    @Test
+    public void testActivePrefixes() {
+        IncrementalStats stats = new IncrementalStats();
+
+        // Changes are ignored until the counts have been seeded
+        stats.activePrefixesChanged("peer1", true, 1);
+        assertFalse(stats.isSeeded());
+        assertTrue(stats.getActivePrefixes().isEmpty());
+
+        stats.seedActivePrefixes(Collections.singletonList(new StatsPeerRib(new Date(), "peer1", BigInteger.valueOf(10), BigInteger.valueOf(5))));
+        assertTrue(stats.isSeeded());
+
+        stats.activePrefixesChanged("peer1", true, 1);
+        stats.activePrefixesChanged("peer1", false, -1);
+        stats.activePrefixesChanged("peer2", false, 1);
+        stats.activePrefixesChanged("peer3", true, -1);
+
+        Map<String, long[]> activePrefixes = stats.getActivePrefixes();
+        assertArrayEquals(new long[]{11, 4}, activePrefixes.get("peer1"));
+        assertArrayEquals(new long[]{0, 1}, activePrefixes.get("peer2"));
+        // Drift below zero is not reported
+        assertArrayEquals(new long[]{0, 0}, activePrefixes.get("peer3"));
+    }
+
+    private static BmpIpRibLog ribLog(long timestamp, String peerHashId, Long originAs, String prefix, boolean withdrawn) {
+        BmpIpRibLog ribLog = new BmpIpRibLog();
+        ribLog.setTimestamp(new Date(timestamp));
+        ribLog.setPeerHashId(peerHashId);
+        ribLog.setOriginAs(originAs);
+        ribLog.setPrefix(prefix);
+        ribLog.setPrefixLen(16);
+        ribLog.setWithDrawn(withdrawn);
+        return ribLog;
+    }
+}
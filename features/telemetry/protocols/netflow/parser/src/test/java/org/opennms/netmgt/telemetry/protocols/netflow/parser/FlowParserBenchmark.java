@@ -0,0 +1,237 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2022 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2022 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.telemetry.protocols.netflow.parser;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.opennms.core.ipc.sink.api.AsyncDispatcher;
+import org.opennms.distributed.core.api.Identity;
+import org.opennms.netmgt.dnsresolver.api.DnsResolver;
+import org.opennms.netmgt.events.api.EventForwarder;
+import org.opennms.netmgt.telemetry.api.receiver.TelemetryMessage;
+import org.opennms.netmgt.xml.event.Event;
+import org.opennms.netmgt.xml.event.Log;
+
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.io.Resources;
+
+import io.netty.buffer.Unpooled;
+
+/**
+ * Use the Java Microbenchmarking Harness (JMH) to measure the throughput of the Netflow v9 and IPFIX parsers.
+ * <p>
+ * The templates of the captured fixtures are parsed once during the setup, the data packets are then parsed
+ * repeatedly. Records are enriched without DNS lookups, serialized and handed to a dispatcher that discards them.
+ * Since the same packets are parsed over and over again the sequence number checks will fail, which only affects
+ * the sequence error counter.
+ */
+public class FlowParserBenchmark {
+
+    private static final InetSocketAddress REMOTE_ADDRESS = new InetSocketAddress(InetAddress.getLoopbackAddress(), 50000);
+    private static final InetSocketAddress LOCAL_ADDRESS = new InetSocketAddress(InetAddress.getLoopbackAddress(), 4738);
+
+    public static void main(String[] args) throws Exception {
+        org.openjdk.jmh.Main.main(args);
+    }
+
+    public enum Fixture {
+        NETFLOW9 {
+            @Override
+            UdpParserBase createParser(AsyncDispatcher<TelemetryMessage> dispatcher, EventForwarder eventForwarder,
+                                       Identity identity, DnsResolver dnsResolver, MetricRegistry metricRegistry) {
+                return new Netflow9UdpParser("Netflow-9", dispatcher, eventForwarder, identity, dnsResolver, metricRegistry);
+            }
+
+            @Override
+            String[] templates() {
+                return new String[]{"netflow9_test_cisco_asr9k_tpl260.dat"};
+            }
+
+            @Override
+            String[] packets() {
+                return new String[]{"netflow9_test_cisco_asr9k_data260.dat"};
+            }
+        },
+        IPFIX {
+            @Override
+            UdpParserBase createParser(AsyncDispatcher<TelemetryMessage> dispatcher, EventForwarder eventForwarder,
+                                       Identity identity, DnsResolver dnsResolver, MetricRegistry metricRegistry) {
+                return new IpfixUdpParser("IPFIX", dispatcher, eventForwarder, identity, dnsResolver, metricRegistry);
+            }
+
+            @Override
+            String[] templates() {
+                return new String[]{"ipfix_test_vmware_vds_tpl.dat"};
+            }
+
+            @Override
+            String[] packets() {
+                return new String[]{"ipfix_test_vmware_vds_data264.dat", "ipfix_test_vmware_vds_data266.dat"};
+            }
+        };
+
+        abstract UdpParserBase createParser(AsyncDispatcher<TelemetryMessage> dispatcher, EventForwarder eventForwarder,
+                                            Identity identity, DnsResolver dnsResolver, MetricRegistry metricRegistry);
+
+        abstract String[] templates();
+
+        abstract String[] packets();
+    }
+
+    @State(Scope.Benchmark)
+    public static class BState {
+
+        @Param({"NETFLOW9", "IPFIX"})
+        public Fixture fixture;
+
+        private ScheduledExecutorService executorService;
+        private UdpParserBase parser;
+        private List<byte[]> packets;
+
+        @Setup
+        public void setup() throws Exception {
+            parser = fixture.createParser(new NoOpDispatcher(), new NoOpEventForwarder(), new BenchmarkIdentity(),
+                    new NoOpDnsResolver(), new MetricRegistry());
+            parser.setDnsLookupsEnabled(false);
+
+            executorService = Executors.newSingleThreadScheduledExecutor();
+            parser.start(executorService);
+
+            for (final String template : fixture.templates()) {
+                parser.parse(Unpooled.wrappedBuffer(load(template)), REMOTE_ADDRESS, LOCAL_ADDRESS).get();
+            }
+
+            packets = new ArrayList<>();
+            for (final String packet : fixture.packets()) {
+                packets.add(load(packet));
+            }
+        }
+
+        @TearDown
+        public void tearDown() {
+            parser.stop();
+            executorService.shutdown();
+        }
+    }
+
+    @Benchmark
+    @Fork(value = 1)
+    @Warmup(iterations = 1)
+    @Measurement(iterations = 2)
+    public void parse(BState state) throws Exception {
+        for (final byte[] packet : state.packets) {
+            // wait for the records to be dispatched
+            state.parser.parse(Unpooled.wrappedBuffer(packet), REMOTE_ADDRESS, LOCAL_ADDRESS).get();
+        }
+    }
+
+    private static byte[] load(final String file) throws IOException {
+        return Resources.toByteArray(Resources.getResource(FlowParserBenchmark.class, "/flows/" + file));
+    }
+
+    private static class NoOpDispatcher implements AsyncDispatcher<TelemetryMessage> {
+        @Override
+        public CompletableFuture<DispatchStatus> send(TelemetryMessage message) {
+            return CompletableFuture.completedFuture(DispatchStatus.DISPATCHED);
+        }
+
+        @Override
+        public int getQueueSize() {
+            return 0;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    private static class NoOpEventForwarder implements EventForwarder {
+        @Override
+        public void sendNow(Event event) {
+        }
+
+        @Override
+        public void sendNow(Log eventLog) {
+        }
+
+        @Override
+        public void sendNowSync(Event event) {
+        }
+
+        @Override
+        public void sendNowSync(Log eventLog) {
+        }
+    }
+
+    private static class NoOpDnsResolver implements DnsResolver {
+        @Override
+        public CompletableFuture<Optional<InetAddress>> lookup(String hostname) {
+            return CompletableFuture.completedFuture(Optional.empty());
+        }
+
+        @Override
+        public CompletableFuture<Optional<String>> reverseLookup(InetAddress inetAddress) {
+            return CompletableFuture.completedFuture(Optional.empty());
+        }
+    }
+
+    private static class BenchmarkIdentity implements Identity {
+        @Override
+        public String getId() {
+            return "benchmark";
+        }
+
+        @Override
+        public String getLocation() {
+            return "Default";
+        }
+
+        @Override
+        public String getType() {
+            return "OpenNMS";
+        }
+    }
+}
@@ -29,6 +29,8 @@
 package org.opennms.netmgt.timeseries.shell;
 
 import java.io.PrintStream;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.karaf.shell.api.action.Action;
 import org.apache.karaf.shell.api.action.Command;
@@ -39,6 +41,9 @@ import org.opennms.integration.api.v1.timeseries.Metric;
 import org.opennms.netmgt.timeseries.TimeseriesStorageManager;
 import org.opennms.netmgt.timeseries.stats.StatisticsCollector;
 
+import com.codahale.metrics.Snapshot;
+import com.codahale.metrics.Timer;
+
 /**
  * Shows statistics of the time series layer.
  * Install: feature:install opennms-timeseries-shell
@@ -67,9 +72,22 @@ public class TimeseriesStatsCommand implements Action {
         out.println();
         out.println("Tags with highest number of unique values (top 100):");
         stats.getTopNTags().stream().limit(100).forEach(out::println);
+        out.println();
+        out.println("Store latencies per plugin (ms):");
+        for (Map.Entry<String, Timer> entry : stats.getStoreTimers().entrySet()) {
+            final Snapshot snapshot = entry.getValue().getSnapshot();
+            out.printf("%s%n    count: %d, mean: %.2f, p50: %.2f, p95: %.2f, p99: %.2f, max: %.2f%n",
+                    entry.getKey(), entry.getValue().getCount(),
+                    toMillis(snapshot.getMean()), toMillis(snapshot.getMedian()), toMillis(snapshot.get95thPercentile()),
+                    toMillis(snapshot.get99thPercentile()), toMillis(snapshot.getMax()));
+        }
         return null;
     }
 
+    private static double toMillis(double nanos) {
+        return nanos / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
     private String toString(final Metric metric) {
         return metric.getFirstTagByKey(IntrinsicTagNames.resourceId).getValue() + "/"
                 + metric.getFirstTagByKey(IntrinsicTagNames.name).getValue() +
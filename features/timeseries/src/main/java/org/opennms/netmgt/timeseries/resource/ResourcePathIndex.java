@@ -0,0 +1,285 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2022 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2022 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.timeseries.resource;
+
+import static org.opennms.netmgt.timeseries.util.TimeseriesUtils.WILDCARD_INDEX_NO;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+
+import org.opennms.core.cache.Cache;
+import org.opennms.core.cache.CacheBuilder;
+import org.opennms.core.cache.CacheConfig;
+import org.opennms.integration.api.v1.timeseries.IntrinsicTagNames;
+import org.opennms.integration.api.v1.timeseries.Metric;
+import org.opennms.integration.api.v1.timeseries.Sample;
+import org.opennms.integration.api.v1.timeseries.StorageException;
+import org.opennms.integration.api.v1.timeseries.Tag;
+import org.opennms.integration.api.v1.timeseries.TagMatcher;
+import org.opennms.integration.api.v1.timeseries.immutables.ImmutableTagMatcher;
+import org.opennms.netmgt.model.ResourcePath;
+import org.opennms.netmgt.timeseries.TimeseriesStorageManager;
+
+import com.google.common.cache.CacheLoader;
+
+/**
+ * In-memory index of the resource tree below the wildcard level (see {@link org.opennms.netmgt.timeseries.util.TimeseriesUtils#WILDCARD_INDEX_NO}).
+ *
+ * Every subtree (i.e. every node) is a trie of resource id elements, the metrics are attached to the
+ * element that completes their resource id. A subtree is loaded from the storage with a single query
+ * the first time it is accessed and is then kept up to date by the
+ * {@link org.opennms.netmgt.timeseries.samplewrite.TimeseriesPersister} as it writes samples. Browsing
+ * the resource tree of a node is served from memory until its subtree is evicted from the cache, which
+ * also happens periodically so that metrics written by other instances are picked up.
+ */
+public class ResourcePathIndex {
+
+    private static final Pattern SEPARATOR = Pattern.compile("/");
+
+    private final Cache<String, Node> subtrees;
+
+    @Inject
+    public ResourcePathIndex(TimeseriesStorageManager timeseriesStorageManager,
+                             @Named("timeseriesResourcePathIndexCache") final CacheConfig cacheConfig) {
+        Objects.requireNonNull(timeseriesStorageManager, "timeseriesStorageManager must not be null");
+        subtrees = new CacheBuilder<>()
+                .withConfig(cacheConfig)
+                .withCacheLoader(new SubtreeLoader(timeseriesStorageManager))
+                .build();
+    }
+
+    /**
+     * Returns the metrics with a resource id made of the given path followed by exactly depth + 1 elements.
+     * The path must be at or below the wildcard level.
+     */
+    public Set<Metric> search(ResourcePath path, int depth) throws StorageException {
+        final String[] elements = path.elements();
+        if (elements.length < WILDCARD_INDEX_NO) {
+            throw new IllegalArgumentException("Path " + path + " is above the indexed level.");
+        }
+
+        final Node subtree;
+        try {
+            subtree = subtrees.get(toSubtreeKey(elements));
+        } catch (Exception e) {
+            throw new StorageException(e);
+        }
+
+        Node node = subtree;
+        for (int i = WILDCARD_INDEX_NO; i < elements.length && node != null; i++) {
+            node = node.getChild(elements[i]);
+        }
+        if (node == null) {
+            return Collections.emptySet();
+        }
+        final Set<Metric> metrics = new HashSet<>();
+        node.collect(depth + 1, metrics);
+        return metrics;
+    }
+
+    /**
+     * Adds the metrics of the given samples to the subtrees that are currently loaded.
+     * Subtrees that are not loaded will pick the metrics up from the storage when they are first accessed.
+     */
+    public void index(Collection<Sample> samples) {
+        String lastResourceId = null;
+        Node lastNode = null;
+        for (Sample sample : samples) {
+            final Metric metric = sample.getMetric();
+            final String resourceId = getResourceId(metric);
+            if (resourceId == null) {
+                continue;
+            }
+            // Samples are generally grouped by resource, so avoid walking the trie again for each of them
+            if (!resourceId.equals(lastResourceId)) {
+                lastResourceId = resourceId;
+                lastNode = getOrCreateNode(resourceId);
+            }
+            if (lastNode != null) {
+                lastNode.putMetric(metric);
+            }
+        }
+    }
+
+    /**
+     * Removes the given metric from the index, if it is loaded.
+     */
+    public void remove(Metric metric) {
+        final String resourceId = getResourceId(metric);
+        if (resourceId == null) {
+            return;
+        }
+        final String[] elements = SEPARATOR.split(resourceId);
+        if (elements.length <= WILDCARD_INDEX_NO) {
+            return;
+        }
+        Node node = subtrees.getIfCached(toSubtreeKey(elements));
+        for (int i = WILDCARD_INDEX_NO; i < elements.length && node != null; i++) {
+            node = node.getChild(elements[i]);
+        }
+        if (node != null) {
+            node.removeMetric(metric);
+        }
+    }
+
+    private Node getOrCreateNode(String resourceId) {
+        final String[] elements = SEPARATOR.split(resourceId);
+        if (elements.length <= WILDCARD_INDEX_NO) {
+            return null;
+        }
+        Node node = subtrees.getIfCached(toSubtreeKey(elements));
+        for (int i = WILDCARD_INDEX_NO; i < elements.length && node != null; i++) {
+            node = node.getOrCreateChild(elements[i]);
+        }
+        return node;
+    }
+
+    private static String toSubtreeKey(String[] elements) {
+        return String.join("/", Arrays.asList(elements).subList(0, WILDCARD_INDEX_NO));
+    }
+
+    private static String getResourceId(Metric metric) {
+        final Tag resourceId = metric.getFirstTagByKey(IntrinsicTagNames.resourceId);
+        return resourceId != null ? resourceId.getValue() : null;
+    }
+
+    /**
+     * An element of the resource tree. The maps are only allocated once needed, since most
+     * of the elements either have children or metrics, but not both.
+     */
+    private static final class Node {
+        private volatile Map<String, Node> children;
+        private volatile Map<String, Metric> metrics;
+
+        private Node getChild(String element) {
+            final Map<String, Node> c = children;
+            return c != null ? c.get(element) : null;
+        }
+
+        private Node getOrCreateChild(String element) {
+            Map<String, Node> c = children;
+            if (c == null) {
+                synchronized (this) {
+                    if (children == null) {
+                        children = new ConcurrentHashMap<>(4);
+                    }
+                    c = children;
+                }
+            }
+            return c.computeIfAbsent(element, k -> new Node());
+        }
+
+        private void putMetric(Metric metric) {
+            Map<String, Metric> m = metrics;
+            if (m == null) {
+                synchronized (this) {
+                    if (metrics == null) {
+                        metrics = new ConcurrentHashMap<>(4);
+                    }
+                    m = metrics;
+                }
+            }
+            // Keep the latest version of the metric, its external tags may have changed
+            m.put(metric.getKey(), metric);
+        }
+
+        private void removeMetric(Metric metric) {
+            final Map<String, Metric> m = metrics;
+            if (m != null) {
+                m.remove(metric.getKey());
+            }
+        }
+
+        private void collect(int levelsBelow, Set<Metric> into) {
+            if (levelsBelow == 0) {
+                final Map<String, Metric> m = metrics;
+                if (m != null) {
+                    into.addAll(m.values());
+                }
+                return;
+            }
+            final Map<String, Node> c = children;
+            if (c != null) {
+                for (Node child : c.values()) {
+                    child.collect(levelsBelow - 1, into);
+                }
+            }
+        }
+    }
+
+    /**
+     * Loads all the metrics of a subtree with a single query.
+     */
+    private static final class SubtreeLoader extends CacheLoader<String, Node> {
+        private final TimeseriesStorageManager timeseriesStorageManager;
+
+        private SubtreeLoader(TimeseriesStorageManager timeseriesStorageManager) {
+            this.timeseriesStorageManager = timeseriesStorageManager;
+        }
+
+        @Override
+        public Node load(final String subtreeKey) throws Exception {
+            final TagMatcher tagMatcher = ImmutableTagMatcher.builder()
+                    .type(TagMatcher.Type.EQUALS_REGEX)
+                    .key(IntrinsicTagNames.resourceId)
+                    .value("^" + Pattern.quote(subtreeKey) + "/.*$")
+                    .build();
+            final List<Metric> metricList = timeseriesStorageManager.get().findMetrics(Collections.singletonList(tagMatcher));
+            final Node subtree = new Node();
+            for (Metric metric : metricList) {
+                final String resourceId = getResourceId(metric);
+                if (resourceId == null) {
+                    continue;
+                }
+                final String[] elements = SEPARATOR.split(resourceId);
+                // Don't trust the storage to have applied the regex strictly
+                if (elements.length <= WILDCARD_INDEX_NO || !subtreeKey.equals(toSubtreeKey(elements))) {
+                    continue;
+                }
+                Node node = subtree;
+                for (int i = WILDCARD_INDEX_NO; i < elements.length; i++) {
+                    node = node.getOrCreateChild(elements[i]);
+                }
+                node.putMetric(metric);
+            }
+            return subtree;
+        }
+    }
+}
@@ -127,6 +127,7 @@ public class TimeseriesResourceStorageDao implements ResourceStorageDao {
         for (final Metric metric : results) {
                 try {
                     storageManager.get().delete(metric);
+                    searcher.removeFromIndex(metric);
                 } catch (StorageException e) {
                     LOG.error("Could not delete {}, will ignore problem and continue ", metric, e);
                 }
@@ -29,16 +29,13 @@
 package org.opennms.netmgt.timeseries.resource;
 
 import static org.opennms.netmgt.timeseries.util.TimeseriesUtils.WILDCARD_INDEX_NO;
-import static org.opennms.netmgt.timeseries.util.TimeseriesUtils.toResourceId;
 import static org.opennms.netmgt.timeseries.util.TimeseriesUtils.toSearchRegex;
 
-import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ExecutionException;
 
 import javax.inject.Named;
 
@@ -66,73 +63,41 @@ public class TimeseriesSearcher {
 
     private final Cache<TagMatcher, Set<Metric>> indexMetricsByTagMatcher;
 
+    private final ResourcePathIndex resourcePathIndex;
+
     @Autowired
     public TimeseriesSearcher(TimeseriesStorageManager timeseriesStorageManager,
-                              @Named("timeseriesSearcherCache") final CacheConfig cacheConfig) {
+                              @Named("timeseriesSearcherCache") final CacheConfig cacheConfig,
+                              ResourcePathIndex resourcePathIndex) {
         this.timeseriesStorageManager = Objects.requireNonNull(timeseriesStorageManager, "timeseriesStorageManager must not be null");
+        this.resourcePathIndex = Objects.requireNonNull(resourcePathIndex, "resourcePathIndex must not be null");
         indexMetricsByTagMatcher = new org.opennms.core.cache.CacheBuilder<>()
                 .withConfig(cacheConfig)
                 .withCacheLoader(new MetricCacheLoader(timeseriesStorageManager))
                 .build();
     }
 
-    /**
-     * Gets all metrics that reside under the given path
-     */
-    private Set<Metric> getMetricsBelowWildcardPath(final String wildcardPath) throws StorageException {
-        TagMatcher tagMatcher = ImmutableTagMatcher.builder()
-                .type(TagMatcher.Type.EQUALS_REGEX)
-                .key(IntrinsicTagNames.resourceId)
-                .value(wildcardPath + "/.*$")
-                .build();
-        return getMetricFromCacheOrLoad(tagMatcher);
-    }
-
     public Set<Metric> search(ResourcePath path, int depth) throws StorageException {
+        // in order not to call the TimeseriesStorage implementation for every resource, the resources below a certain
+        // depth (defined as WILDCARD_INDEX_NO) are served from the index, which loads them one subtree at a time.
+        if (path.elements().length >= WILDCARD_INDEX_NO) {
+            return resourcePathIndex.search(path, depth);
+        }
+
+        // we are above the wildcard level -> let's just get metrics that are associated with the index matcher
         TagMatcher indexMatcher = ImmutableTagMatcher.builder()
                 .type(TagMatcher.Type.EQUALS_REGEX)
                 .key(IntrinsicTagNames.resourceId)
                 .value(toSearchRegex(path, depth + 1))
                 .build();
-        Set<Metric> metrics = indexMetricsByTagMatcher.getIfCached(indexMatcher);
-
-        // found in cache => we are done
-        if (metrics != null) {
-            return metrics;
-        }
+        return getMetricFromCacheOrLoad(indexMatcher);
+    }
 
-        // in order not to call the TimeseriesStorage implementation for every resource, we query all resources below a certain
-        // depth (defined as WILDCARD_INDEX_NO).
-        if (path.elements().length >= WILDCARD_INDEX_NO) {
-            String wildcardPath = toResourceId(ResourcePath.get(Arrays.asList(path.elements()).subList(0, WILDCARD_INDEX_NO)));
-            Set<Metric> metricsFromWildcard = getMetricsBelowWildcardPath(wildcardPath);
-
-            for (Metric metric : metricsFromWildcard) {
-                ResourcePath pathOfMetric = ResourcePath.fromString(metric.getFirstTagByKey(IntrinsicTagNames.resourceId).getValue());
-                ResourcePath currentPath = pathOfMetric;
-                while (true) {
-                    TagMatcher matcher = ImmutableTagMatcher.builder()
-                            .type(TagMatcher.Type.EQUALS_REGEX)
-                            .key(IntrinsicTagNames.resourceId)
-                            .value(toSearchRegex(currentPath, pathOfMetric.elements().length - currentPath.elements().length))
-                            .build();
-                    getMetricsFromCacheOrAddEmptySet(matcher).add(metric);
-                    if (currentPath.hasParent()) {
-                        currentPath = currentPath.getParent();
-                    } else {
-                        break;
-                    }
-                }
-            }
-
-            // Either we have found it by now or it doesn't exist => add empty list
-            metrics = getMetricsFromCacheOrAddEmptySet(indexMatcher);
-
-        } else {
-            // we are above the wildcard level -> let's just get metrics that are associated with the index matcher
-            metrics = getMetricFromCacheOrLoad(indexMatcher);
-        }
-        return metrics;
+    /**
+     * Removes a deleted metric from the index.
+     */
+    public void removeFromIndex(Metric metric) {
+        resourcePathIndex.remove(metric);
     }
 
     private Set<Metric> getMetricFromCacheOrLoad(TagMatcher matcher) throws StorageException {
@@ -143,15 +108,6 @@ public class TimeseriesSearcher {
         }
     }
 
-    private Set<Metric> getMetricsFromCacheOrAddEmptySet(TagMatcher tagMatcher) {
-        try {
-            return indexMetricsByTagMatcher.get(tagMatcher, ConcurrentHashMap::newKeySet);
-        } catch (ExecutionException e) {
-            // should never happen
-            throw new RuntimeException("Error creating ConcurrentHashMap.newKeySet()", e);
-        }
-    }
-
     private final static class MetricCacheLoader extends CacheLoader<TagMatcher, Set<Metric>> {
 
         private TimeseriesStorageManager timeseriesStorageManager;
@@ -0,0 +1,146 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2022 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2022 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.timeseries.samplewrite;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+
+import org.opennms.core.cache.Cache;
+import org.opennms.core.cache.CacheBuilder;
+import org.opennms.core.cache.CacheConfig;
+import org.opennms.integration.api.v1.timeseries.IntrinsicTagNames;
+import org.opennms.integration.api.v1.timeseries.Tag;
+import org.opennms.integration.api.v1.timeseries.immutables.ImmutableMetric;
+
+import com.google.common.cache.CacheLoader;
+
+/**
+ * Hands out shared {@link ImmutableMetric} instances so that the metrics don't need to be
+ * rebuilt, along with all of their tag sets, on every collection cycle.
+ *
+ * A metric is identified by its resource id, its name, its type and the meta and external
+ * tags it carries. The meta tags change whenever the {@link MetaTagDataLoader} returns
+ * different data for the resource, so a new metric is built when they do.
+ */
+public class MetricInterner {
+
+    private final Cache<MetricKey, ImmutableMetric> metrics;
+
+    @Inject
+    public MetricInterner(@Named("timeseriesMetricInternerCache") final CacheConfig cacheConfig) {
+        metrics = new CacheBuilder<>()
+                .withConfig(cacheConfig)
+                .withCacheLoader(new MetricLoader())
+                .build();
+    }
+
+    /**
+     * Returns the metric with the given identity, building it if it isn't known yet.
+     *
+     * The given collections must not be modified afterwards, since they may be retained.
+     */
+    public ImmutableMetric intern(String resourceId, String name, Tag mtype, Set<Tag> metaTags,
+                                  Set<Tag> externalTags, Map<String, String> metricLevelAttributes) {
+        final MetricKey key = new MetricKey(resourceId, name, mtype, metaTags, externalTags,
+                metricLevelAttributes != null ? metricLevelAttributes : Collections.emptyMap());
+        try {
+            return metrics.get(key);
+        } catch (Exception e) {
+            // The loader only builds the metric, so this should never happen
+            return key.toMetric();
+        }
+    }
+
+    private static final class MetricKey {
+        private final String resourceId;
+        private final String name;
+        private final Tag mtype;
+        private final Set<Tag> metaTags;
+        private final Set<Tag> externalTags;
+        private final Map<String, String> metricLevelAttributes;
+        private final int hashCode;
+
+        private MetricKey(String resourceId, String name, Tag mtype, Set<Tag> metaTags,
+                          Set<Tag> externalTags, Map<String, String> metricLevelAttributes) {
+            this.resourceId = resourceId;
+            this.name = name;
+            this.mtype = mtype;
+            this.metaTags = metaTags;
+            this.externalTags = externalTags;
+            this.metricLevelAttributes = metricLevelAttributes;
+            this.hashCode = Objects.hash(resourceId, name, mtype, metaTags, externalTags, metricLevelAttributes);
+        }
+
+        private ImmutableMetric toMetric() {
+            final ImmutableMetric.MetricBuilder builder = ImmutableMetric.builder()
+                    .intrinsicTag(IntrinsicTagNames.resourceId, resourceId)
+                    .intrinsicTag(IntrinsicTagNames.name, name)
+                    .externalTag(mtype);
+            metaTags.forEach(builder::metaTag);
+            externalTags.forEach(builder::externalTag);
+            metricLevelAttributes.forEach(builder::externalTag);
+            return builder.build();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof MetricKey)) {
+                return false;
+            }
+            final MetricKey other = (MetricKey) o;
+            return hashCode == other.hashCode
+                    && Objects.equals(resourceId, other.resourceId)
+                    && Objects.equals(name, other.name)
+                    && Objects.equals(mtype, other.mtype)
+                    && Objects.equals(metaTags, other.metaTags)
+                    && Objects.equals(externalTags, other.externalTags)
+                    && Objects.equals(metricLevelAttributes, other.metricLevelAttributes);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+
+    private static final class MetricLoader extends CacheLoader<MetricKey, ImmutableMetric> {
+        @Override
+        public ImmutableMetric load(MetricKey key) {
+            return key.toMetric();
+        }
+    }
+}
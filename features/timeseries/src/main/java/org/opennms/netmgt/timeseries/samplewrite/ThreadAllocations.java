@@ -0,0 +1,89 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2022 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2022 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.timeseries.samplewrite;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.Method;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Reads the number of bytes allocated by the current thread, when the JVM supports it.
+ *
+ * The HotSpot specific {@code com.sun.management.ThreadMXBean} is accessed reflectively so
+ * that the bundle doesn't need to import the package.
+ */
+final class ThreadAllocations {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ThreadAllocations.class);
+
+    private static final ThreadMXBean THREAD_MX_BEAN = ManagementFactory.getThreadMXBean();
+
+    private static final Method GET_THREAD_ALLOCATED_BYTES = findGetThreadAllocatedBytes();
+
+    private ThreadAllocations() {}
+
+    static boolean isSupported() {
+        return GET_THREAD_ALLOCATED_BYTES != null;
+    }
+
+    /**
+     * @return the number of bytes allocated by the current thread so far, or -1 if unsupported
+     */
+    static long getAllocatedBytes() {
+        if (GET_THREAD_ALLOCATED_BYTES == null) {
+            return -1;
+        }
+        try {
+            return (long) GET_THREAD_ALLOCATED_BYTES.invoke(THREAD_MX_BEAN, Thread.currentThread().getId());
+        } catch (Exception e) {
+            return -1;
+        }
+    }
+
+    private static Method findGetThreadAllocatedBytes() {
+        try {
+            final Class<?> clazz = Class.forName("com.sun.management.ThreadMXBean");
+            if (!clazz.isInstance(THREAD_MX_BEAN)) {
+                return null;
+            }
+            final Method isSupported = clazz.getMethod("isThreadAllocatedMemorySupported");
+            final Method isEnabled = clazz.getMethod("isThreadAllocatedMemoryEnabled");
+            if (!(boolean) isSupported.invoke(THREAD_MX_BEAN) || !(boolean) isEnabled.invoke(THREAD_MX_BEAN)) {
+                return null;
+            }
+            return clazz.getMethod("getThreadAllocatedBytes", long.class);
+        } catch (Exception e) {
+            LOG.debug("Thread allocation accounting is not available.", e);
+            return null;
+        }
+    }
+}
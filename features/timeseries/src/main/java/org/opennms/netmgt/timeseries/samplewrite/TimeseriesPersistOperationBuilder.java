@@ -51,10 +51,12 @@ import org.opennms.netmgt.collection.support.DefaultTimeKeeper;
 import org.opennms.netmgt.model.ResourcePath;
 import org.opennms.netmgt.model.ResourceTypeUtils;
 import org.opennms.netmgt.rrd.RrdRepository;
+import org.opennms.netmgt.timeseries.resource.ResourcePathIndex;
 import org.opennms.netmgt.timeseries.util.TimeseriesUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.codahale.metrics.Histogram;
 import com.codahale.metrics.MetricRegistry;
 import com.codahale.metrics.Timer;
 import com.google.common.collect.Lists;
@@ -70,6 +72,9 @@ import com.google.common.collect.Sets;
 public class TimeseriesPersistOperationBuilder implements PersistOperationBuilder {
     private static final Logger LOG = LoggerFactory.getLogger(TimeseriesPersistOperationBuilder.class);
 
+    private static final Tag COUNT_TAG = new ImmutableTag(MetaTagNames.mtype, ImmutableMetric.Mtype.count.name());
+    private static final Tag GAUGE_TAG = new ImmutableTag(MetaTagNames.mtype, ImmutableMetric.Mtype.gauge.name());
+
     private final TimeseriesWriter writer;
     private final RrdRepository rrepository;
     private final String groupName;
@@ -80,18 +85,31 @@ public class TimeseriesPersistOperationBuilder implements PersistOperationBuilde
     private final Map<ResourcePath, Map<String, String>> stringAttributesByPath = Maps.newLinkedHashMap();
     private final Map<Set<Tag>, Map<String, String>> stringAttributesByResourceIdAndName = Maps.newLinkedHashMap();
     private final Timer commitTimer;
+    private final Histogram commitAllocatedBytes;
+    private final ResourcePathIndex resourcePathIndex;
+    private final MetricInterner metricInterner;
 
     private TimeKeeper timeKeeper = new DefaultTimeKeeper();
 
     public TimeseriesPersistOperationBuilder(TimeseriesWriter writer, RrdRepository repository,
                                              ResourceIdentifier resource, String groupName, Set<Tag> configuredAdditionalMetaTags,
                                              MetricRegistry metricRegistry) {
+        this(writer, repository, resource, groupName, configuredAdditionalMetaTags, metricRegistry, null, null);
+    }
+
+    public TimeseriesPersistOperationBuilder(TimeseriesWriter writer, RrdRepository repository,
+                                             ResourceIdentifier resource, String groupName, Set<Tag> configuredAdditionalMetaTags,
+                                             MetricRegistry metricRegistry, ResourcePathIndex resourcePathIndex,
+                                             MetricInterner metricInterner) {
         this.writer = writer;
         rrepository = repository;
         this.resource = resource;
         this.groupName = groupName;
         this.configuredAdditionalMetaTags = configuredAdditionalMetaTags;
         this.commitTimer = metricRegistry.timer("samples.write.integration");
+        this.commitAllocatedBytes = metricRegistry.histogram("samples.write.integration.allocated-bytes");
+        this.resourcePathIndex = resourcePathIndex;
+        this.metricInterner = metricInterner;
     }
 
     @Override
@@ -132,7 +150,15 @@ public class TimeseriesPersistOperationBuilder implements PersistOperationBuilde
     @Override
     public void commit() {
         try(final Timer.Context context = commitTimer.time()) {
-            writer.insert(getSamplesToInsert());
+            final long allocatedBytesBefore = ThreadAllocations.getAllocatedBytes();
+            final List<Sample> samples = getSamplesToInsert();
+            if (allocatedBytesBefore >= 0) {
+                commitAllocatedBytes.update(ThreadAllocations.getAllocatedBytes() - allocatedBytesBefore);
+            }
+            writer.insert(samples);
+            if (resourcePathIndex != null) {
+                resourcePathIndex.index(samples);
+            }
         }
     }
 
@@ -174,44 +200,57 @@ public class TimeseriesPersistOperationBuilder implements PersistOperationBuilde
                 continue;
             }
 
-            ImmutableMetric.MetricBuilder builder = ImmutableMetric.builder()
-                    .intrinsicTag(IntrinsicTagNames.resourceId, resourceId)
-                    .intrinsicTag(IntrinsicTagNames.name, attrType.getName())
-                    .externalTag(type);
-
-            // add resource level string attributes
-            this.configuredAdditionalMetaTags.forEach(builder::metaTag);
-            resourceIdLevelExternalData.forEach(builder::externalTag);
-
-            // add metric level string attributes
-            Map<String, String> metricLevelAttributes = stringAttributesByResourceIdAndName.get(builder.build().getIntrinsicTags());
-            if (metricLevelAttributes != null) {
-                for (Entry<String, String> entry2 : stringAttributesByResourceIdAndName.get(builder.build().getIntrinsicTags()).entrySet()) {
-                    builder.externalTag(entry2.getKey(), entry2.getValue());
-                }
+            final ImmutableMetric metric;
+            if (metricInterner != null) {
+                metric = metricInterner.intern(resourceId, attrType.getName(), type, configuredAdditionalMetaTags,
+                        resourceIdLevelExternalData, getMetricLevelAttributes(resourceId, attrType.getName()));
+            } else {
+                metric = buildMetric(resourceId, attrType.getName(), type, resourceIdLevelExternalData);
             }
-
-            final ImmutableMetric metric = builder.build();
             final Double sampleValue = value.doubleValue();
             samples.add(ImmutableSample.builder().metric(metric).time(time).value(sampleValue).build());
         }
         return samples;
     }
 
-    private Tag typeToTag (final AttributeType type) {
+    private Map<String, String> getMetricLevelAttributes(String resourceId, String name) {
+        if (stringAttributesByResourceIdAndName.isEmpty()) {
+            return null;
+        }
+        return stringAttributesByResourceIdAndName.get(Sets.newHashSet(
+                new ImmutableTag(IntrinsicTagNames.resourceId, resourceId),
+                new ImmutableTag(IntrinsicTagNames.name, name)));
+    }
 
-        ImmutableMetric.Mtype mtype;
+    private ImmutableMetric buildMetric(String resourceId, String name, Tag type, Set<Tag> resourceIdLevelExternalData) {
+        ImmutableMetric.MetricBuilder builder = ImmutableMetric.builder()
+                .intrinsicTag(IntrinsicTagNames.resourceId, resourceId)
+                .intrinsicTag(IntrinsicTagNames.name, name)
+                .externalTag(type);
 
+        // add resource level string attributes
+        this.configuredAdditionalMetaTags.forEach(builder::metaTag);
+        resourceIdLevelExternalData.forEach(builder::externalTag);
+
+        // add metric level string attributes
+        Map<String, String> metricLevelAttributes = getMetricLevelAttributes(resourceId, name);
+        if (metricLevelAttributes != null) {
+            metricLevelAttributes.forEach(builder::externalTag);
+        }
+
+        return builder.build();
+    }
+
+    private Tag typeToTag (final AttributeType type) {
         if(type == AttributeType.COUNTER) {
-            mtype = ImmutableMetric.Mtype.count;
+            return COUNT_TAG;
         } else if (type == AttributeType.GAUGE) {
-            mtype = ImmutableMetric.Mtype.gauge;
+            return GAUGE_TAG;
         } else if(type == AttributeType.STRING) {
             return null;
         } else {
-            mtype = ImmutableMetric.Mtype.gauge;
+            return GAUGE_TAG;
         }
-        return new ImmutableTag(MetaTagNames.mtype, mtype.name());
     }
 
     /**
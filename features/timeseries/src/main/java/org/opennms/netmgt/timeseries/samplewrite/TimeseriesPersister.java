@@ -45,6 +45,7 @@ import org.opennms.netmgt.collection.api.ServiceParameters;
 import org.opennms.netmgt.model.ResourcePath;
 import org.opennms.netmgt.model.ResourceTypeUtils;
 import org.opennms.netmgt.rrd.RrdRepository;
+import org.opennms.netmgt.timeseries.resource.ResourcePathIndex;
 
 import com.codahale.metrics.MetricRegistry;
 
@@ -52,6 +53,7 @@ import com.codahale.metrics.MetricRegistry;
  * TimeseriesPersister persistence strategy.
  *
  * Both string and numeric attributes are persisted via {@link TimeseriesPersistOperationBuilder}.
+ * The written metrics are added to the {@link ResourcePathIndex}, if one is available.
  *
  */
 public class TimeseriesPersister extends AbstractPersister {
@@ -62,16 +64,21 @@ public class TimeseriesPersister extends AbstractPersister {
     private final Cache<ResourcePath, Set<Tag>> configuredAdditionalMetaTagCache;
     private TimeseriesPersistOperationBuilder builder;
     private final MetricRegistry metricRegistry;
+    private final ResourcePathIndex resourcePathIndex;
+    private final MetricInterner metricInterner;
 
     protected TimeseriesPersister(ServiceParameters params, RrdRepository repository, TimeseriesWriter timeseriesWriter,
                                   MetaTagDataLoader metaDataLoader, Cache<ResourcePath, Set<Tag>> configuredAdditionalMetaTagCache,
-                                  MetricRegistry metricRegistry) {
+                                  MetricRegistry metricRegistry, ResourcePathIndex resourcePathIndex,
+                                  MetricInterner metricInterner) {
         super(params, repository);
         this.repository = repository;
         writer = timeseriesWriter;
         this.metaDataLoader = metaDataLoader;
         this.configuredAdditionalMetaTagCache = configuredAdditionalMetaTagCache;
         this.metricRegistry = Objects.requireNonNull(metricRegistry, "metricRegistry can not be null");
+        this.resourcePathIndex = resourcePathIndex;
+        this.metricInterner = metricInterner;
     }
 
     @Override
@@ -89,7 +96,7 @@ public class TimeseriesPersister extends AbstractPersister {
             // Set the builder before any calls to persistNumericAttribute are made
             CollectionResource resource = group.getResource();
             Set<Tag> metaTags = getUserDefinedMetaTags(resource);
-            builder = new TimeseriesPersistOperationBuilder(writer, repository, resource, group.getName(), metaTags, this.metricRegistry);
+            builder = new TimeseriesPersistOperationBuilder(writer, repository, resource, group.getName(), metaTags, this.metricRegistry, this.resourcePathIndex, this.metricInterner);
             if (resource.getTimeKeeper() != null) {
                 builder.setTimeKeeper(resource.getTimeKeeper());
             }
@@ -42,6 +42,7 @@ import org.opennms.netmgt.collection.api.PersisterFactory;
 import org.opennms.netmgt.collection.api.ServiceParameters;
 import org.opennms.netmgt.model.ResourcePath;
 import org.opennms.netmgt.rrd.RrdRepository;
+import org.opennms.netmgt.timeseries.resource.ResourcePathIndex;
 
 import com.codahale.metrics.MetricRegistry;
 
@@ -56,12 +57,23 @@ public class TimeseriesPersisterFactory implements PersisterFactory {
     private final MetaTagDataLoader metaTagDataLoader;
     private final Cache<ResourcePath, Set<Tag>> configuredAdditionalMetaTagCache;
     private final MetricRegistry registry;
+    private final ResourcePathIndex resourcePathIndex;
+    private final MetricInterner metricInterner;
+
+    public TimeseriesPersisterFactory(final TimeseriesWriter timeseriesWriter,
+                                      final MetaTagDataLoader metaTagDataLoader,
+                                      final CacheConfig cacheConfig,
+                                      MetricRegistry registry) {
+        this(timeseriesWriter, metaTagDataLoader, cacheConfig, registry, null, null);
+    }
 
     @Inject
     public TimeseriesPersisterFactory(final TimeseriesWriter timeseriesWriter,
                                       final MetaTagDataLoader metaTagDataLoader,
                                       @Named("timeseriesPersisterMetaTagCache") final CacheConfig cacheConfig,
-                                      @Named("timeseriesMetricRegistry") MetricRegistry registry) {
+                                      @Named("timeseriesMetricRegistry") MetricRegistry registry,
+                                      final ResourcePathIndex resourcePathIndex,
+                                      final MetricInterner metricInterner) {
         this.timeseriesWriter = timeseriesWriter;
         this.metaTagDataLoader = metaTagDataLoader;
         this.configuredAdditionalMetaTagCache = new CacheBuilder<>()
@@ -69,6 +81,8 @@ public class TimeseriesPersisterFactory implements PersisterFactory {
                 .withCacheLoader(metaTagDataLoader)
                 .build();
         this.registry = registry;
+        this.resourcePathIndex = resourcePathIndex;
+        this.metricInterner = metricInterner;
     }
 
     @Override
@@ -81,7 +95,7 @@ public class TimeseriesPersisterFactory implements PersisterFactory {
             boolean forceStoreByGroup, boolean dontReorderAttributes) {
         // We ignore the forceStoreByGroup flag since we always store by group, and we ignore
         // the dontReorderAttributes flag since attribute order does not matter
-        TimeseriesPersister persister =  new TimeseriesPersister(params, repository, timeseriesWriter, metaTagDataLoader, configuredAdditionalMetaTagCache, registry);
+        TimeseriesPersister persister =  new TimeseriesPersister(params, repository, timeseriesWriter, metaTagDataLoader, configuredAdditionalMetaTagCache, registry, resourcePathIndex, metricInterner);
         persister.setIgnorePersist(dontPersistCounters);
         return persister;
     }
@@ -29,11 +29,20 @@
 package org.opennms.netmgt.timeseries.samplewrite;
 
 import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.concurrent.Executor;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
 import java.util.stream.Collectors;
 
 import javax.inject.Inject;
@@ -41,7 +50,9 @@ import javax.inject.Named;
 
 import org.opennms.core.logging.Logging;
 import org.opennms.integration.api.v1.timeseries.IntrinsicTagNames;
+import org.opennms.integration.api.v1.timeseries.Metric;
 import org.opennms.integration.api.v1.timeseries.Sample;
+import org.opennms.integration.api.v1.timeseries.TimeSeriesStorage;
 import org.opennms.netmgt.timeseries.TimeseriesStorageManager;
 import org.opennms.netmgt.timeseries.stats.StatisticsCollector;
 import org.slf4j.Logger;
@@ -58,6 +69,7 @@ import com.google.common.math.DoubleMath;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.lmax.disruptor.EventTranslatorOneArg;
 import com.lmax.disruptor.FatalExceptionHandler;
+import com.lmax.disruptor.LifecycleAware;
 import com.lmax.disruptor.RingBuffer;
 import com.lmax.disruptor.WorkHandler;
 import com.lmax.disruptor.WorkerPool;
@@ -69,6 +81,15 @@ import com.swrve.ratelimitedlogger.RateLimitedLog;
  * Calls to  publish the samples to a ring buffer so
  * that they don't block while the data is being persisted.
  *
+ * When a maximum batch size greater than one is configured, every consumer thread
+ * accumulates the sample lists it takes off the ring buffer and hands them to the
+ * storage in a single call once the batch is full or has aged past the maximum
+ * delay. Duplicate samples (same metric and timestamp) within a batch are collapsed,
+ * keeping the most recent value, and the samples are grouped by resource.
+ *
+ * When a backpressure timeout is configured, producers wait for up to that long for
+ * room on a full ring buffer instead of dropping their samples right away.
+ *
  * @author jwhite
  */
 public class TimeseriesWriter implements WorkHandler<SampleBatchEvent>, DisposableBean {
@@ -89,10 +110,24 @@ public class TimeseriesWriter implements WorkHandler<SampleBatchEvent>, Disposab
 
     private final int numWriterThreads;
 
+    private final int maxBatchSize;
+
+    private final long maxBatchDelayMs;
+
+    private final long backpressureTimeoutMs;
+
     private final Meter droppedSamples;
 
+    private final Meter duplicateSamples;
+
     private final Timer sampleWriteTsTimer;
 
+    private final Timer backpressureTimer;
+
+    private final List<BatchingWorkHandler> batchingHandlers = new ArrayList<>();
+
+    private ScheduledExecutorService batchFlusher;
+
     @Autowired
     private TimeseriesStorageManager storage;
 
@@ -105,16 +140,30 @@ public class TimeseriesWriter implements WorkHandler<SampleBatchEvent>, Disposab
      */
     private final AtomicLong numEntriesOnRingBuffer = new AtomicLong();
 
+    public TimeseriesWriter(Integer ringBufferSize, Integer numWriterThreads, MetricRegistry registry) {
+        this(ringBufferSize, numWriterThreads, 1, 0L, 0L, registry);
+    }
+
     @Inject
     public TimeseriesWriter(@Named("timeseries.ring_buffer_size") Integer ringBufferSize,
-                            @Named("timeseries.writer_threads") Integer numWriterThreads, @Named("timeseriesMetricRegistry") MetricRegistry registry) {
+                            @Named("timeseries.writer_threads") Integer numWriterThreads,
+                            @Named("timeseries.max_batch_size") Integer maxBatchSize,
+                            @Named("timeseries.max_batch_delay_ms") Long maxBatchDelayMs,
+                            @Named("timeseries.backpressure_timeout_ms") Long backpressureTimeoutMs,
+                            @Named("timeseriesMetricRegistry") MetricRegistry registry) {
         Preconditions.checkArgument(ringBufferSize > 0, "ringBufferSize must be positive");
         Preconditions.checkArgument(DoubleMath.isMathematicalInteger(Math.log(ringBufferSize) / Math.log(2)), "ringBufferSize must be a power of two");
         Preconditions.checkArgument(numWriterThreads > 0, "numWriterThreads must be positive");
+        Preconditions.checkArgument(maxBatchSize > 0, "maxBatchSize must be positive");
+        Preconditions.checkArgument(maxBatchSize == 1 || maxBatchDelayMs > 0, "maxBatchDelayMs must be positive when batching");
+        Preconditions.checkArgument(backpressureTimeoutMs >= 0, "backpressureTimeoutMs must be non-negative");
         Preconditions.checkNotNull(registry, "metric registry");
 
         this.ringBufferSize = ringBufferSize;
         this.numWriterThreads = numWriterThreads;
+        this.maxBatchSize = maxBatchSize;
+        this.maxBatchDelayMs = maxBatchDelayMs;
+        this.backpressureTimeoutMs = backpressureTimeoutMs;
         numEntriesOnRingBuffer.set(0L);
 
         registry.register(MetricRegistry.name("ring-buffer", "size"),
@@ -123,9 +172,12 @@ public class TimeseriesWriter implements WorkHandler<SampleBatchEvent>, Disposab
                 (Gauge<Long>) () -> (long) TimeseriesWriter.this.ringBufferSize);
 
         droppedSamples = registry.meter(MetricRegistry.name("ring-buffer", "dropped-samples"));
+        duplicateSamples = registry.meter(MetricRegistry.name("batch", "duplicate-samples"));
         sampleWriteTsTimer = registry.timer("samples.write.ts");
+        backpressureTimer = registry.timer(MetricRegistry.name("ring-buffer", "backpressure"));
 
-        LOG.debug("Using ring_buffer_size: {}", this.ringBufferSize);
+        LOG.debug("Using ring_buffer_size: {}, max_batch_size: {}, max_batch_delay_ms: {}, backpressure_timeout_ms: {}",
+                this.ringBufferSize, this.maxBatchSize, this.maxBatchDelayMs, this.backpressureTimeoutMs);
         setUpWorkerPool();
 
     }
@@ -139,7 +191,13 @@ public class TimeseriesWriter implements WorkHandler<SampleBatchEvent>, Disposab
         @SuppressWarnings("unchecked")
         final WorkHandler<SampleBatchEvent>[] handlers = new WorkHandler[numWriterThreads];
         for (int i = 0; i < numWriterThreads; i++) {
-            handlers[i] = this;
+            if (maxBatchSize > 1) {
+                final BatchingWorkHandler handler = new BatchingWorkHandler();
+                batchingHandlers.add(handler);
+                handlers[i] = handler;
+            } else {
+                handlers[i] = this;
+            }
         }
 
         ringBuffer = RingBuffer.createMultiProducer(SampleBatchEvent::new, ringBufferSize);
@@ -151,6 +209,18 @@ public class TimeseriesWriter implements WorkHandler<SampleBatchEvent>, Disposab
         ringBuffer.addGatingSequences(workerPool.getWorkerSequences());
 
         workerPool.start(executor);
+
+        if (!batchingHandlers.isEmpty()) {
+            // Flush the batches of threads that have gone idle before their batch was full
+            batchFlusher = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+                    .setNameFormat("TimeseriesWriter-Flusher-%d").setDaemon(true).build());
+            final long flushPeriodMs = Math.max(1L, maxBatchDelayMs / 2);
+            batchFlusher.scheduleWithFixedDelay(() -> {
+                for (BatchingWorkHandler handler : batchingHandlers) {
+                    handler.flushIfOlderThan(maxBatchDelayMs);
+                }
+            }, flushPeriodMs, flushPeriodMs, TimeUnit.MILLISECONDS);
+        }
     }
 
     @Override
@@ -158,6 +228,13 @@ public class TimeseriesWriter implements WorkHandler<SampleBatchEvent>, Disposab
         if (workerPool != null) {
             workerPool.drainAndHalt();
         }
+        if (batchFlusher != null) {
+            batchFlusher.shutdown();
+        }
+        // The handlers also flush on shutdown, this catches anything appended while halting
+        for (BatchingWorkHandler handler : batchingHandlers) {
+            handler.flush();
+        }
     }
 
     public void insert(List<Sample> samples) {
@@ -166,7 +243,7 @@ public class TimeseriesWriter implements WorkHandler<SampleBatchEvent>, Disposab
 
     private void pushToRingBuffer(List<Sample> samples, EventTranslatorOneArg<SampleBatchEvent, List<Sample>> translator) {
         // Add the samples to the ring buffer
-        if (!ringBuffer.tryPublishEvent(translator, samples)) {
+        if (!ringBuffer.tryPublishEvent(translator, samples) && !publishWithBackpressure(samples, translator)) {
             RATE_LIMITED_LOGGER.error("The ring buffer is full. {} samples associated with resource ids {} will be dropped.",
                     samples.size(), new Object() {
                         @Override
@@ -186,6 +263,32 @@ public class TimeseriesWriter implements WorkHandler<SampleBatchEvent>, Disposab
         numEntriesOnRingBuffer.incrementAndGet();
     }
 
+    /**
+     * Retries publishing to a full ring buffer until the backpressure timeout elapses,
+     * backing off exponentially between attempts. This slows the calling collector down
+     * to the rate at which the storage is able to absorb the samples.
+     */
+    private boolean publishWithBackpressure(List<Sample> samples, EventTranslatorOneArg<SampleBatchEvent, List<Sample>> translator) {
+        if (backpressureTimeoutMs <= 0) {
+            return false;
+        }
+        try (Timer.Context context = backpressureTimer.time()) {
+            final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(backpressureTimeoutMs);
+            long parkNanos = TimeUnit.MICROSECONDS.toNanos(50);
+            while (System.nanoTime() < deadline) {
+                LockSupport.parkNanos(Math.min(parkNanos, Math.max(0L, deadline - System.nanoTime())));
+                if (ringBuffer.tryPublishEvent(translator, samples)) {
+                    return true;
+                }
+                if (Thread.currentThread().isInterrupted()) {
+                    return false;
+                }
+                parkNanos = Math.min(parkNanos * 2, TimeUnit.MILLISECONDS.toNanos(10));
+            }
+        }
+        return false;
+    }
+
     @Override
     public void onEvent(SampleBatchEvent event) {
         // We'd expect the logs from this thread to be in collectd.log
@@ -194,14 +297,153 @@ public class TimeseriesWriter implements WorkHandler<SampleBatchEvent>, Disposab
         // Decrement our entry counter
         numEntriesOnRingBuffer.decrementAndGet();
 
+        store(event.getSamples(), event.getSamples());
+    }
+
+    private void store(List<Sample> samples, Collection<Sample> samplesForStats) {
         try(Timer.Context context = this.sampleWriteTsTimer.time()){
-            this.storage.get().store(event.getSamples());
-            this.stats.record(event.getSamples());
+            final TimeSeriesStorage timeSeriesStorage = this.storage.get();
+            final long start = System.nanoTime();
+            timeSeriesStorage.store(samples);
+            this.stats.recordStore(timeSeriesStorage.getClass().getName(), System.nanoTime() - start);
+            this.stats.record(samplesForStats);
         } catch (Throwable t) {
             RATE_LIMITED_LOGGER.error("An error occurred while inserting samples. Some sample may be lost.", t);
         }
     }
 
+    /**
+     * Consumer used when batching is enabled. There is one instance per writer thread,
+     * the lock is only contended when the flusher thread picks up an idle batch.
+     */
+    private class BatchingWorkHandler implements WorkHandler<SampleBatchEvent>, LifecycleAware {
+        private List<Sample> batch = new ArrayList<>();
+        private long batchStartedAtMs;
+
+        @Override
+        public void onEvent(SampleBatchEvent event) {
+            Logging.putPrefix("collectd");
+            numEntriesOnRingBuffer.decrementAndGet();
+
+            final List<Sample> fullBatch;
+            synchronized (this) {
+                if (batch.isEmpty()) {
+                    batchStartedAtMs = System.currentTimeMillis();
+                }
+                batch.addAll(event.getSamples());
+                if (batch.size() < maxBatchSize) {
+                    return;
+                }
+                fullBatch = takeBatch();
+            }
+            storeBatch(fullBatch);
+        }
+
+        void flushIfOlderThan(long ageMs) {
+            final List<Sample> staleBatch;
+            synchronized (this) {
+                if (batch.isEmpty() || System.currentTimeMillis() - batchStartedAtMs < ageMs) {
+                    return;
+                }
+                staleBatch = takeBatch();
+            }
+            storeBatch(staleBatch);
+        }
+
+        void flush() {
+            flushIfOlderThan(0L);
+        }
+
+        private List<Sample> takeBatch() {
+            final List<Sample> taken = batch;
+            batch = new ArrayList<>(Math.max(taken.size(), 16));
+            return taken;
+        }
+
+        private void storeBatch(List<Sample> samples) {
+            Logging.putPrefix("collectd");
+            final CoalescedBatch coalesced = coalesce(samples);
+            if (coalesced.duplicates > 0) {
+                duplicateSamples.mark(coalesced.duplicates);
+            }
+            store(coalesced.samples, coalesced.samplesWithDistinctMetrics);
+        }
+
+        @Override
+        public void onStart() {
+            // pass
+        }
+
+        @Override
+        public void onShutdown() {
+            flush();
+        }
+    }
+
+    /**
+     * Groups the samples by resource and collapses the samples that share both the metric
+     * and the timestamp, keeping the last one. Also returns one sample per distinct metric so
+     * that the tag statistics don't process the same metadata over and over again.
+     */
+    static CoalescedBatch coalesce(List<Sample> samples) {
+        final Map<String, Map<SampleKey, Sample>> samplesByResource = new LinkedHashMap<>();
+        final Map<Metric, Sample> samplesByMetric = new LinkedHashMap<>();
+        for (Sample sample : samples) {
+            final Metric metric = sample.getMetric();
+            final String resourceId = metric.getFirstTagByKey(IntrinsicTagNames.resourceId) != null
+                    ? metric.getFirstTagByKey(IntrinsicTagNames.resourceId).getValue() : null;
+            samplesByResource.computeIfAbsent(resourceId, k -> new LinkedHashMap<>())
+                    .put(new SampleKey(metric, sample.getTime()), sample);
+            samplesByMetric.putIfAbsent(metric, sample);
+        }
+        final List<Sample> coalesced = new ArrayList<>(samples.size());
+        for (Map<SampleKey, Sample> resourceSamples : samplesByResource.values()) {
+            coalesced.addAll(resourceSamples.values());
+        }
+        return new CoalescedBatch(coalesced, samplesByMetric.values(), samples.size() - coalesced.size());
+    }
+
+    static class CoalescedBatch {
+        final List<Sample> samples;
+        final Collection<Sample> samplesWithDistinctMetrics;
+        final int duplicates;
+
+        private CoalescedBatch(List<Sample> samples, Collection<Sample> samplesWithDistinctMetrics, int duplicates) {
+            this.samples = samples;
+            this.samplesWithDistinctMetrics = samplesWithDistinctMetrics;
+            this.duplicates = duplicates;
+        }
+    }
+
+    private static class SampleKey {
+        private final Metric metric;
+        private final Instant time;
+        private final int hashCode;
+
+        private SampleKey(Metric metric, Instant time) {
+            this.metric = metric;
+            this.time = time;
+            this.hashCode = Objects.hash(metric, time);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof SampleKey)) {
+                return false;
+            }
+            final SampleKey other = (SampleKey) o;
+            return Objects.equals(metric, other.metric) && Objects.equals(time, other.time);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+
     private static final EventTranslatorOneArg<SampleBatchEvent, List<Sample>> TRANSLATOR = (event, sequence, samples) -> event.setSamples(samples);
 
     public void setTimeSeriesStorage(final TimeseriesStorageManager timeseriesStorage) {
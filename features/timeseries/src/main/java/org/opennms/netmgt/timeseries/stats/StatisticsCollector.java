@@ -30,16 +30,20 @@ package org.opennms.netmgt.timeseries.stats;
 
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 import org.opennms.integration.api.v1.timeseries.Metric;
 import org.opennms.integration.api.v1.timeseries.Sample;
 
+import com.codahale.metrics.Timer;
+
 /**
  * We record statistics to answer the following questions:
  * <ul>
  *     <li>What metrics series have the highest tag cardinality?
  *         What does the set tags for the top 10 look like?</li>
  *     <li>Which string properties have the most unique values?</li>
+ *     <li>How long do the store calls take for each storage plugin?</li>
  * </ul>
  */
 
@@ -53,4 +57,14 @@ public interface StatisticsCollector {
     List<Metric> getTopNMetricsWithMostTags();
 
     List<String> getTopNTags();
+
+    /**
+     * Records the duration of a single store call made against the given storage plugin.
+     */
+    void recordStore(String pluginName, long durationNanos);
+
+    /**
+     * Store call latencies, keyed by the name of the storage plugin.
+     */
+    Map<String, Timer> getStoreTimers();
 }
@@ -30,11 +30,13 @@ package org.opennms.netmgt.timeseries.stats;
 
 import java.nio.charset.StandardCharsets;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.Lock;
 import java.util.stream.Collectors;
@@ -46,6 +48,7 @@ import org.opennms.integration.api.v1.timeseries.Metric;
 import org.opennms.integration.api.v1.timeseries.Sample;
 import org.opennms.integration.api.v1.timeseries.Tag;
 
+import com.codahale.metrics.Timer;
 import com.google.common.hash.HashFunction;
 import com.google.common.hash.Hashing;
 import com.google.common.util.concurrent.Striped;
@@ -64,6 +67,7 @@ public class StatisticsCollectorImpl implements StatisticsCollector {
                     .reversed()
                     .thenComparing(m -> ((Metric)m).getKey())); // write should not happen very often since we just push to the highest limit
     private final ConcurrentHashMap<String, HLL> topNTags = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Timer> storeTimers = new ConcurrentHashMap<>();
     @SuppressWarnings("UnstableApiUsage")
     private final HashFunction hllHashFunction = Hashing.murmur3_128();
     @SuppressWarnings("UnstableApiUsage")
@@ -129,6 +133,17 @@ public class StatisticsCollectorImpl implements StatisticsCollector {
         return topNMetrics.stream().collect(Collectors.toUnmodifiableList());
     }
 
+    @Override
+    public void recordStore(String pluginName, long durationNanos) {
+        storeTimers.computeIfAbsent(pluginName, k -> new Timer())
+                .update(durationNanos, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public Map<String, Timer> getStoreTimers() {
+        return Collections.unmodifiableMap(storeTimers);
+    }
+
     public List<String> getTopNTags() {
         Comparator<Map.Entry<String, HLL>> comp = Comparator.<Map.Entry<String, HLL>>comparingLong(e -> e.getValue().cardinality())
                 .reversed()
@@ -60,13 +60,16 @@ public class TimeseriesSearcherTest {
 
     TimeSeriesStorage storage = spy(new InMemoryStorage());
     TimeseriesSearcher searcher;
+    ResourcePathIndex resourcePathIndex;
 
     @Before
     public void setUp() {
         TimeseriesStorageManager storageManager = Mockito.mock(TimeseriesStorageManager.class);
         when(storageManager.get()).thenReturn(storage);
         CacheConfig cacheConfig = new CacheConfigBuilder().withName(TimeseriesSearcherTest.class.getSimpleName()).build();
-        searcher = new TimeseriesSearcher(storageManager, cacheConfig);
+        CacheConfig indexCacheConfig = new CacheConfigBuilder().withName(ResourcePathIndex.class.getSimpleName()).build();
+        resourcePathIndex = new ResourcePathIndex(storageManager, indexCacheConfig);
+        searcher = new TimeseriesSearcher(storageManager, cacheConfig, resourcePathIndex);
     }
 
     @Test
@@ -88,6 +91,33 @@ public class TimeseriesSearcherTest {
         verify(storage, times(2)).findMetrics(any());
     }
 
+    @Test
+    public void shouldServeWrittenMetricsFromTheIndex() throws StorageException {
+        Metric abc = createAndAddMetric("a/b/c", "d");
+        test("a/b", abc);
+        verify(storage, times(1)).findMetrics(any());
+
+        // metrics written through the persister are added to the loaded subtree
+        Metric abe = createAndAddMetric("a/b/e", "f");
+        resourcePathIndex.index(Collections.singletonList(ImmutableSample.builder().metric(abe).time(Instant.now()).value(1.0).build()));
+        test("a/b", abc, abe);
+
+        // deleted metrics are removed
+        searcher.removeFromIndex(abc);
+        test("a/b", abe);
+        assertEquals(Collections.singleton(abe), searcher.search(ResourcePath.fromString("a/b/e"), -1));
+        verify(storage, times(1)).findMetrics(any());
+    }
+
+    @Test
+    public void shouldOnlyLoadMetricsOfTheSubtree() throws StorageException {
+        Metric abcd = createAndAddMetric("a/b.c/d", "e");
+        // these would match the subtree if its key was used as a regex as is
+        createAndAddMetric("a/bxc/d", "e");
+        createAndAddMetric("x/a/b.c/d", "e");
+        test("a/b.c", abcd);
+    }
+
     private void test(String path, Metric...expectedMetrics) throws StorageException {
         Set<Metric> foundMetrics = searcher.search(ResourcePath.fromString(path), 0);
         Set<Metric> expectedMetricsSet = new HashSet<>(Arrays.asList(expectedMetrics));
@@ -0,0 +1,97 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2022 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2022 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.timeseries.samplewrite;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.util.Collections;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.opennms.core.cache.CacheConfig;
+import org.opennms.core.cache.CacheConfigBuilder;
+import org.opennms.integration.api.v1.timeseries.IntrinsicTagNames;
+import org.opennms.integration.api.v1.timeseries.MetaTagNames;
+import org.opennms.integration.api.v1.timeseries.Metric;
+import org.opennms.integration.api.v1.timeseries.Tag;
+import org.opennms.integration.api.v1.timeseries.immutables.ImmutableMetric;
+import org.opennms.integration.api.v1.timeseries.immutables.ImmutableTag;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Sets;
+
+public class MetricInternerTest {
+
+    private final Tag mtype = new ImmutableTag(MetaTagNames.mtype, Metric.Mtype.gauge.name());
+
+    private MetricInterner interner;
+
+    @Before
+    public void setUp() {
+        CacheConfig cacheConfig = new CacheConfigBuilder().withName(MetricInternerTest.class.getSimpleName()).build();
+        interner = new MetricInterner(cacheConfig);
+    }
+
+    @Test
+    public void canReuseMetricsWithTheSameIdentity() {
+        Metric m1 = interner.intern("snmp/1/ifIndex", "ifInOctets", mtype,
+                Sets.newHashSet(new ImmutableTag("node", "n1")), Sets.newHashSet(new ImmutableTag("ifName", "eth0")), null);
+        // equal, but distinct tag sets as they would be created on the next collection cycle
+        Metric m2 = interner.intern("snmp/1/ifIndex", "ifInOctets", mtype,
+                Sets.newHashSet(new ImmutableTag("node", "n1")), Sets.newHashSet(new ImmutableTag("ifName", "eth0")), null);
+        assertSame(m1, m2);
+
+        // the meta tags changed
+        Metric m3 = interner.intern("snmp/1/ifIndex", "ifInOctets", mtype,
+                Sets.newHashSet(new ImmutableTag("node", "n2")), Sets.newHashSet(new ImmutableTag("ifName", "eth0")), null);
+        assertNotSame(m1, m3);
+    }
+
+    @Test
+    public void canBuildTheSameMetricAsTheBuilder() {
+        Set<Tag> metaTags = Sets.newHashSet(new ImmutableTag("node", "n1"));
+        Set<Tag> externalTags = Sets.newHashSet(new ImmutableTag("ifName", "eth0"));
+        Metric metric = interner.intern("snmp/1/ifIndex", "ifInOctets", mtype, metaTags, externalTags,
+                ImmutableMap.of("ifAlias", "uplink"));
+
+        Metric expected = ImmutableMetric.builder()
+                .intrinsicTag(IntrinsicTagNames.resourceId, "snmp/1/ifIndex")
+                .intrinsicTag(IntrinsicTagNames.name, "ifInOctets")
+                .externalTag(mtype)
+                .metaTag("node", "n1")
+                .externalTag("ifName", "eth0")
+                .externalTag("ifAlias", "uplink")
+                .build();
+        assertEquals(expected, metric);
+        assertEquals(Collections.singleton(new ImmutableTag("node", "n1")), metric.getMetaTags());
+    }
+}
@@ -29,6 +29,7 @@
 package org.opennms.netmgt.timeseries.samplewrite;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.when;
 
 import java.time.Instant;
@@ -52,6 +53,7 @@ import org.opennms.integration.api.v1.timeseries.TimeSeriesStorage;
 import org.opennms.integration.api.v1.timeseries.immutables.ImmutableMetric;
 import org.opennms.integration.api.v1.timeseries.immutables.ImmutableSample;
 import org.opennms.netmgt.timeseries.TimeseriesStorageManager;
+import org.opennms.netmgt.timeseries.stats.StatisticsCollectorImpl;
 import org.opennms.newts.api.Resource;
 
 import com.codahale.metrics.MetricRegistry;
@@ -141,6 +143,85 @@ public class TimeseriesWriterTest {
         assertEquals(ringBufferSize, timeseriesStorage.getNumSamplesInserted());
     }
 
+    /**
+     * Verifies that small sample lists are merged into larger store calls,
+     * and that duplicate samples are collapsed.
+     */
+    @Test
+    public void canBatchAndCoalesceSamples() {
+        int ringBufferSize = 1024;
+        int numWriterThreads = 1;
+        int maxBatchSize = 100;
+
+        LockedTimeseriesStorage timeseriesStorage = new LockedTimeseriesStorage(new ReentrantLock());
+        StatisticsCollectorImpl stats = new StatisticsCollectorImpl(numWriterThreads);
+        MetricRegistry registry = new MetricRegistry();
+        TimeseriesWriter writer = new TimeseriesWriter(ringBufferSize, numWriterThreads, maxBatchSize, 60000L, 0L, registry);
+        when(storageManager.get()).thenReturn(timeseriesStorage);
+        writer.setTimeSeriesStorage(storageManager);
+        writer.setStats(stats);
+
+        Metric metric = createMetric().build();
+        Instant now = Instant.now();
+        for (int i = 0; i < 500; i++) {
+            Sample s = ImmutableSample.builder()
+                    .metric(metric)
+                    .time(now.plusSeconds(i))
+                    .value((double)i).build();
+            // Every sample is inserted twice
+            writer.insert(Lists.newArrayList(s));
+            writer.insert(Lists.newArrayList(s));
+        }
+        writer.destroy();
+
+        assertEquals(500, timeseriesStorage.getNumSamplesInserted());
+        assertTrue(timeseriesStorage.getNumStoreCalls() <= 1000 / maxBatchSize + 1);
+        assertEquals(500, registry.meter(MetricRegistry.name("batch", "duplicate-samples")).getCount());
+        assertEquals(timeseriesStorage.getNumStoreCalls(),
+                stats.getStoreTimers().get(LockedTimeseriesStorage.class.getName()).getCount());
+    }
+
+    /**
+     * Verifies that producers wait for room on a full ring buffer when
+     * a backpressure timeout is configured.
+     */
+    @Test
+    public void samplesAreNotDroppedWithBackpressure() throws Exception {
+        int ringBufferSize = 16;
+        int numWriterThreads = 1;
+
+        Lock lock = new ReentrantLock();
+        LockedTimeseriesStorage timeseriesStorage = new LockedTimeseriesStorage(lock);
+        MetricRegistry registry = new MetricRegistry();
+        TimeseriesWriter writer = new TimeseriesWriter(ringBufferSize, numWriterThreads, 1, 0L, 30000L, registry);
+        when(storageManager.get()).thenReturn(timeseriesStorage);
+        writer.setTimeSeriesStorage(storageManager);
+        writer.setStats(new StatisticsCollectorImpl(numWriterThreads));
+
+        lock.lock();
+        Thread producer = new Thread(() -> {
+            Metric metric = createMetric().build();
+            for (int i = 0; i < ringBufferSize * 4; i++) {
+                Sample s = ImmutableSample.builder()
+                        .metric(metric)
+                        .time(Instant.now())
+                        .value((double)i).build();
+                writer.insert(Lists.newArrayList(s));
+            }
+        });
+        producer.start();
+
+        // Give the producer time to fill the ring buffer, then release the storage
+        Thread.sleep(250);
+        assertTrue(producer.isAlive());
+        lock.unlock();
+        producer.join();
+        writer.destroy();
+
+        assertEquals(ringBufferSize * 4, timeseriesStorage.getNumSamplesInserted());
+        assertEquals(0, registry.meter(MetricRegistry.name("ring-buffer", "dropped-samples")).getCount());
+    }
+
     private static class LatchedTimeseriesStorage extends MockTimeSeriesStorage {
         private final CountDownLatch latch;
 
@@ -163,6 +244,7 @@ public class TimeseriesWriterTest {
         private final Lock lock;
         private final AtomicInteger numThreadsLocked = new AtomicInteger(0);
         private final AtomicInteger numSamplesInserted = new AtomicInteger(0);
+        private final AtomicInteger numStoreCalls = new AtomicInteger(0);
 
         public LockedTimeseriesStorage(Lock lock) {
             this.lock = lock;
@@ -176,11 +258,16 @@ public class TimeseriesWriterTest {
             return numSamplesInserted.get();
         }
 
+        public int getNumStoreCalls() {
+            return numStoreCalls.get();
+        }
+
         @Override
         public void store(List<Sample> samples) throws StorageException {
             numThreadsLocked.incrementAndGet();
             lock.lock();
             numSamplesInserted.addAndGet(samples.size());
+            numStoreCalls.incrementAndGet();
             lock.unlock();
             numThreadsLocked.decrementAndGet();
         }
@@ -28,7 +28,12 @@
 
 package org.opennms.netmgt.topologies.service.api;
 
-import java.util.HashSet;
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
 import java.util.Set;
 
 public class OnmsTopology {
@@ -41,21 +46,76 @@ public class OnmsTopology {
     public final static String TARGET_IFINDEX= "targetifindex";
     public static final String TOPOLOGY_NAMESPACE_LINKD = "nodes";
     
-    private Set<OnmsTopologyVertex> m_vertices;
-    private Set<OnmsTopologyEdge> m_edges;
+    /**
+     * Set of topology objects indexed by id. Vertices and edges are equal when
+     * their ids are, so this behaves like a {@link java.util.HashSet} but also
+     * allows looking an element up by id without scanning the whole set.
+     */
+    private static class RefSet<T extends OnmsTopologyAbstractRef> extends AbstractSet<T> {
+        private final Map<String, T> m_refs = new HashMap<>();
+
+        private RefSet(Collection<? extends T> refs) {
+            refs.forEach(this::add);
+        }
+
+        private T get(String id) {
+            return m_refs.get(id);
+        }
+
+        @Override
+        public boolean add(T ref) {
+            return m_refs.putIfAbsent(ref.getId(), ref) == null;
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            if (!(o instanceof OnmsTopologyAbstractRef)) {
+                return false;
+            }
+            T ref = m_refs.get(((OnmsTopologyAbstractRef) o).getId());
+            return ref != null && ref.equals(o);
+        }
+
+        @Override
+        public boolean remove(Object o) {
+            if (!contains(o)) {
+                return false;
+            }
+            m_refs.remove(((OnmsTopologyAbstractRef) o).getId());
+            return true;
+        }
+
+        @Override
+        public Iterator<T> iterator() {
+            return m_refs.values().iterator();
+        }
+
+        @Override
+        public int size() {
+            return m_refs.size();
+        }
+
+        @Override
+        public void clear() {
+            m_refs.clear();
+        }
+    }
+
+    private RefSet<OnmsTopologyVertex> m_vertices;
+    private RefSet<OnmsTopologyEdge> m_edges;
     private OnmsTopologyVertex m_defaultVertex;
 
     public OnmsTopology() {
-        m_vertices = new HashSet<OnmsTopologyVertex>();
-        m_edges = new HashSet<OnmsTopologyEdge>();
+        m_vertices = new RefSet<>(Collections.emptySet());
+        m_edges = new RefSet<>(Collections.emptySet());
     }
 
     public OnmsTopologyVertex getVertex(String id) {
-        return m_vertices.stream().filter(vertex -> id.equals(vertex.getId())).findAny().orElse(null);
+        return m_vertices.get(id);
     }
 
     public OnmsTopologyEdge getEdge(String id) {
-        return m_edges.stream().filter(edge -> id.equals(edge.getId())).findAny().orElse(null);
+        return m_edges.get(id);
     }
 
     public Set<OnmsTopologyVertex> getVertices() {
@@ -67,7 +127,7 @@ public class OnmsTopology {
     }
 
     public void setVertices(Set<OnmsTopologyVertex> vertices) {
-        m_vertices = vertices;
+        m_vertices = new RefSet<>(vertices);
     }
 
     public Set<OnmsTopologyEdge> getEdges() {
@@ -79,7 +139,7 @@ public class OnmsTopology {
     }
 
     public void setEdges(Set<OnmsTopologyEdge> edges) {
-        m_edges = edges;
+        m_edges = new RefSet<>(edges);
     }    
 
     public boolean hasVertex(String id) {
@@ -92,8 +152,8 @@ public class OnmsTopology {
     
     public OnmsTopology clone() {
         OnmsTopology topo = new OnmsTopology();
-        topo.setVertices(new HashSet<>(m_vertices));
-        topo.setEdges(new HashSet<>(m_edges));
+        topo.setVertices(m_vertices);
+        topo.setEdges(m_edges);
         topo.setDefaultVertex(m_defaultVertex);
         return topo;
     }
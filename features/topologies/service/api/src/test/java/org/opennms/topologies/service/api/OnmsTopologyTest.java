@@ -0,0 +1,74 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2022 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2022 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+
+package org.opennms.topologies.service.api;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import org.opennms.netmgt.topologies.service.api.OnmsTopology;
+import org.opennms.netmgt.topologies.service.api.OnmsTopologyEdge;
+import org.opennms.netmgt.topologies.service.api.OnmsTopologyPort;
+import org.opennms.netmgt.topologies.service.api.OnmsTopologyVertex;
+
+public class OnmsTopologyTest {
+
+    @Test
+    public void shouldLookUpVerticesAndEdgesById() {
+        OnmsTopology topology = new OnmsTopology();
+        OnmsTopologyVertex a = OnmsTopologyVertex.create("1", "a", "10.0.0.1", "icon");
+        OnmsTopologyVertex b = OnmsTopologyVertex.create("2", "b", "10.0.0.2", "icon");
+        topology.getVertices().add(a);
+        topology.addVertex(b);
+        // like a hash set, a second vertex with the same id does not replace the first one
+        assertFalse(topology.getVertices().add(OnmsTopologyVertex.create("1", "other", "10.0.0.3", "icon")));
+
+        OnmsTopologyEdge edge = OnmsTopologyEdge.create("1|2",
+                OnmsTopologyPort.create("p1", a, 1),
+                OnmsTopologyPort.create("p2", b, 2));
+        topology.getEdges().add(edge);
+
+        assertEquals(2, topology.getVertices().size());
+        assertSame(a, topology.getVertex("1"));
+        assertSame(edge, topology.getEdge("1|2"));
+        assertTrue(topology.hasVertex("2"));
+        assertFalse(topology.hasVertex("3"));
+        assertNull(topology.getEdge("2|1"));
+
+        OnmsTopology clone = topology.clone();
+        topology.getVertices().remove(b);
+        assertFalse(topology.hasVertex("2"));
+        assertTrue(clone.hasVertex("2"));
+        assertSame(edge, clone.getEdge("1|2"));
+    }
+}
@@ -56,6 +56,7 @@ public class TrapdConfiguration implements  Serializable {
 	private static final long serialVersionUID = 2;
 
 	public static final boolean DEFAULT_USE_ADDESS_FROM_VARBIND = false;
+	public static final int DEFAULT_SUPPRESSION_WINDOW = 0;
 
 	/**
      * The IP address on which trapd listens for connections.
@@ -117,6 +118,14 @@ public class TrapdConfiguration implements  Serializable {
 	@XmlAttribute(name="batch-interval", required=false)
     private int _batchInterval = 500;
 
+    /**
+     * Identical traps received within this interval (ms) are
+     * suppressed and reported as a single event with a repeat count.
+     * Suppression is disabled when set to 0.
+     */
+	@XmlAttribute(name="suppression-window", required=false)
+    private Integer _suppressionWindow;
+
     /**
      * keeps track of state for field: _newSuspectOnTrap
      */
@@ -209,7 +218,7 @@ public class TrapdConfiguration implements  Serializable {
 
     public int hashCode() {
         return Objects.hash(_snmpTrapAddress, _snmpTrapPort, _has_snmpTrapPort, _newSuspectOnTrap, _snmpv3UserList,
-                _includeRawMessage, _threads, _queueSize, _batchSize, _batchInterval, _useAddessFromVarbind);
+                _includeRawMessage, _threads, _queueSize, _batchSize, _batchInterval, _suppressionWindow, _useAddessFromVarbind);
     }
 
     @Override()
@@ -229,6 +238,7 @@ public class TrapdConfiguration implements  Serializable {
                     && Objects.equals(_queueSize, other._queueSize)
                     && Objects.equals(_batchSize, other._batchSize)
                     && Objects.equals(_batchInterval, other._batchInterval)
+                    && Objects.equals(_suppressionWindow, other._suppressionWindow)
                     && Objects.equals(_useAddessFromVarbind, other._useAddessFromVarbind);
             return equals;
         }
@@ -558,4 +568,12 @@ public class TrapdConfiguration implements  Serializable {
     public void setBatchInterval(int _batchInterval) {
         this._batchInterval = _batchInterval;
     }
+
+    public int getSuppressionWindow() {
+        return _suppressionWindow != null ? _suppressionWindow : DEFAULT_SUPPRESSION_WINDOW;
+    }
+
+    public void setSuppressionWindow(Integer _suppressionWindow) {
+        this._suppressionWindow = _suppressionWindow;
+    }
 }
@@ -0,0 +1,292 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2022 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2022 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+
+package org.opennms.netmgt.config;
+
+import java.math.BigInteger;
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeSet;
+
+import org.opennms.core.utils.ByteArrayComparator;
+import org.opennms.core.utils.IPLike;
+import org.opennms.core.utils.InetAddressUtils;
+import org.opennms.core.utils.LocationUtils;
+import org.opennms.core.xml.JaxbUtils;
+import org.opennms.netmgt.config.snmp.AddressSnmpConfigVisitor;
+import org.opennms.netmgt.config.snmp.Definition;
+import org.opennms.netmgt.config.snmp.Range;
+import org.opennms.netmgt.config.snmp.SnmpConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Immutable lookup index over the definitions of a {@link SnmpConfig}.
+ *
+ * The definitions of each location are compiled into a hash of their specific addresses and
+ * a sorted table of disjoint address intervals, each interval pointing to the first definition
+ * whose ranges cover it. IP match patterns can't be indexed, they are only tested for the
+ * definitions that precede the best indexed match.
+ *
+ * Only the matching definitions are handed to an {@link AddressSnmpConfigVisitor}, so the
+ * resulting definition is merged exactly as if the whole config had been visited. The index
+ * works on its own copy of the config and can be shared between threads without locking.
+ */
+class SnmpDefinitionIndex {
+    private static final Logger LOG = LoggerFactory.getLogger(SnmpDefinitionIndex.class);
+    private static final ByteArrayComparator BYTE_ARRAY_COMPARATOR = new ByteArrayComparator();
+
+    // IPv6 addresses sort after all IPv4 addresses, see ByteArrayComparator
+    private static final BigInteger IPV6_OFFSET = BigInteger.ONE.shiftLeft(32);
+
+    private final SnmpConfig m_source;
+    private final SnmpConfig m_config;
+    private final Map<String, LocationIndex> m_locations;
+
+    private SnmpDefinitionIndex(final SnmpConfig source, final SnmpConfig config, final Map<String, LocationIndex> locations) {
+        m_source = source;
+        m_config = config;
+        m_locations = locations;
+    }
+
+    /**
+     * Compiles the given config. The caller must make sure that the config is not modified concurrently.
+     */
+    static SnmpDefinitionIndex compile(final SnmpConfig source) {
+        final SnmpConfig config = JaxbUtils.duplicateObject(source, SnmpConfig.class);
+
+        final Map<String, List<Definition>> definitionsByLocation = new LinkedHashMap<>();
+        for (final Definition definition : config.getDefinitions()) {
+            definitionsByLocation.computeIfAbsent(LocationUtils.getEffectiveLocationName(definition.getLocation()),
+                    location -> new ArrayList<>()).add(definition);
+        }
+
+        final Map<String, LocationIndex> locations = new HashMap<>();
+        definitionsByLocation.forEach((location, definitions) -> locations.put(location, new LocationIndex(definitions)));
+        return new SnmpDefinitionIndex(source, config, locations);
+    }
+
+    /**
+     * @return true if this index was compiled from the given instance
+     */
+    boolean isCompiledFrom(final SnmpConfig config) {
+        return m_source == config;
+    }
+
+    /**
+     * @return the copy of the config this index refers to, must be treated as read-only
+     */
+    SnmpConfig getSnmpConfig() {
+        return m_config;
+    }
+
+    /**
+     * Returns a visitor that has seen the definitions matching the given address,
+     * the same as if it had been used to visit the whole config.
+     */
+    AddressSnmpConfigVisitor visit(final InetAddress address, final String location) {
+        final String effectiveLocation = LocationUtils.getEffectiveLocationName(location);
+        final AddressSnmpConfigVisitor visitor = new AddressSnmpConfigVisitor(address, location);
+        visitor.visitSnmpConfig(m_config);
+
+        final Definition atDefaultLocation = findFirstMatch(LocationUtils.DEFAULT_LOCATION_NAME, address);
+        if (atDefaultLocation != null) {
+            atDefaultLocation.visit(visitor);
+        }
+        if (!LocationUtils.isDefaultLocationName(effectiveLocation)) {
+            final Definition atGivenLocation = findFirstMatch(effectiveLocation, address);
+            if (atGivenLocation != null) {
+                atGivenLocation.visit(visitor);
+            }
+        }
+
+        visitor.visitSnmpConfigFinished();
+        return visitor;
+    }
+
+    private Definition findFirstMatch(final String location, final InetAddress address) {
+        final LocationIndex locationIndex = m_locations.get(location);
+        return locationIndex != null ? locationIndex.findFirstMatch(address) : null;
+    }
+
+    private static BigInteger toKey(final byte[] address) {
+        final BigInteger key = new BigInteger(1, address);
+        return address.length > 4 ? key.add(IPV6_OFFSET) : key;
+    }
+
+    private static class LocationIndex {
+        private final List<Definition> m_definitions;
+
+        // first definition for each specific address
+        private final Map<BigInteger, Integer> m_specifics = new HashMap<>();
+
+        // disjoint intervals sorted by start, along with the first definition covering them
+        private final BigInteger[] m_intervalStarts;
+        private final BigInteger[] m_intervalEnds;
+        private final int[] m_intervalDefinitions;
+
+        // definitions having ip matches, in order
+        private final int[] m_ipMatchDefinitions;
+
+        private LocationIndex(final List<Definition> definitions) {
+            m_definitions = Collections.unmodifiableList(definitions);
+
+            final List<Interval> ranges = new ArrayList<>();
+            final List<Integer> ipMatchDefinitions = new ArrayList<>();
+            for (int i = 0; i < definitions.size(); i++) {
+                final Definition definition = definitions.get(i);
+                for (final String specific : definition.getSpecifics()) {
+                    try {
+                        final InetAddress addr = InetAddressUtils.addr(specific);
+                        if (addr != null) {
+                            m_specifics.putIfAbsent(toKey(addr.getAddress()), i);
+                        }
+                    } catch (final IllegalArgumentException e) {
+                        LOG.info("Error while reading SNMP config <specific> tag: {}", specific, e);
+                    }
+                }
+                for (final Range range : definition.getRanges()) {
+                    try {
+                        final byte[] begin = InetAddressUtils.toIpAddrBytes(range.getBegin());
+                        final byte[] end = InetAddressUtils.toIpAddrBytes(range.getEnd());
+                        if (BYTE_ARRAY_COMPARATOR.compare(begin, end) <= 0) {
+                            ranges.add(new Interval(toKey(begin), toKey(end), i));
+                        } else {
+                            LOG.warn("{} has an 'end' that is earlier than its 'beginning'!", range);
+                            ranges.add(new Interval(toKey(end), toKey(begin), i));
+                        }
+                    } catch (final IllegalArgumentException e) {
+                        LOG.warn("Error while reading SNMP config <range> tag: {}", range, e);
+                    }
+                }
+                if (!definition.getIpMatches().isEmpty()) {
+                    ipMatchDefinitions.add(i);
+                }
+            }
+            m_ipMatchDefinitions = ipMatchDefinitions.stream().mapToInt(Integer::intValue).toArray();
+
+            final List<Interval> intervals = flatten(ranges);
+            m_intervalStarts = new BigInteger[intervals.size()];
+            m_intervalEnds = new BigInteger[intervals.size()];
+            m_intervalDefinitions = new int[intervals.size()];
+            for (int i = 0; i < intervals.size(); i++) {
+                m_intervalStarts[i] = intervals.get(i).start;
+                m_intervalEnds[i] = intervals.get(i).end;
+                m_intervalDefinitions[i] = intervals.get(i).definition;
+            }
+        }
+
+        /**
+         * Splits the possibly overlapping ranges into disjoint intervals,
+         * keeping the first definition for the addresses covered by several ranges.
+         */
+        private static List<Interval> flatten(final List<Interval> ranges) {
+            final TreeSet<BigInteger> boundaries = new TreeSet<>();
+            for (final Interval range : ranges) {
+                boundaries.add(range.start);
+                boundaries.add(range.end.add(BigInteger.ONE));
+            }
+            ranges.sort(Comparator.comparing(range -> range.start));
+
+            final List<Interval> intervals = new ArrayList<>();
+            final PriorityQueue<Interval> active = new PriorityQueue<>(Comparator.comparingInt(range -> range.definition));
+            int next = 0;
+            BigInteger start = null;
+            for (final BigInteger boundary : boundaries) {
+                if (start != null && !active.isEmpty()) {
+                    final int definition = active.peek().definition;
+                    final BigInteger end = boundary.subtract(BigInteger.ONE);
+                    final Interval last = intervals.isEmpty() ? null : intervals.get(intervals.size() - 1);
+                    if (last != null && last.definition == definition && last.end.add(BigInteger.ONE).equals(start)) {
+                        intervals.set(intervals.size() - 1, new Interval(last.start, end, definition));
+                    } else {
+                        intervals.add(new Interval(start, end, definition));
+                    }
+                }
+                while (next < ranges.size() && ranges.get(next).start.compareTo(boundary) <= 0) {
+                    active.add(ranges.get(next++));
+                }
+                while (!active.isEmpty() && active.peek().end.compareTo(boundary) < 0) {
+                    active.poll();
+                }
+                start = boundary;
+            }
+            return intervals;
+        }
+
+        private Definition findFirstMatch(final InetAddress address) {
+            final BigInteger key = toKey(address.getAddress());
+
+            int best = Integer.MAX_VALUE;
+            final Integer specific = m_specifics.get(key);
+            if (specific != null) {
+                best = specific;
+            }
+
+            int pos = Arrays.binarySearch(m_intervalStarts, key);
+            if (pos < 0) {
+                pos = -pos - 2;
+            }
+            if (pos >= 0 && key.compareTo(m_intervalEnds[pos]) <= 0) {
+                best = Math.min(best, m_intervalDefinitions[pos]);
+            }
+
+            for (final int i : m_ipMatchDefinitions) {
+                if (i >= best) {
+                    break;
+                }
+                if (m_definitions.get(i).getIpMatches().stream().anyMatch(ipMatch -> IPLike.matches(address, ipMatch))) {
+                    best = i;
+                    break;
+                }
+            }
+            return best != Integer.MAX_VALUE ? m_definitions.get(best) : null;
+        }
+    }
+
+    private static class Interval {
+        private final BigInteger start;
+        private final BigInteger end;
+        private final int definition;
+
+        private Interval(final BigInteger start, final BigInteger end, final int definition) {
+            this.start = start;
+            this.end = end;
+            this.definition = definition;
+        }
+    }
+}
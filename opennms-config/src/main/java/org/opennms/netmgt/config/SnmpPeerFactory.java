@@ -116,6 +116,11 @@ public class SnmpPeerFactory implements SnmpAgentConfigFactory {
 
     private FileReloadCallback<SnmpConfig> m_callback;
 
+    /**
+     * Compiled definitions used for the address lookups, rebuilt whenever the config is reloaded or modified.
+     */
+    private volatile SnmpDefinitionIndex m_index;
+
     /**
      * <p>Constructor for SnmpPeerFactory.</p>
      *
@@ -243,6 +248,7 @@ public class SnmpPeerFactory implements SnmpAgentConfigFactory {
                 if (m_container != null) {
                     m_container.reload();
                 }
+                m_index = null;
             }
         } finally {
             IOUtils.closeQuietly(fileWriter);
@@ -268,7 +274,7 @@ public class SnmpPeerFactory implements SnmpAgentConfigFactory {
         visitor.visitSnmpConfig(getSnmpConfig());
         snmpProfile.visit(visitor);
         Definition definition = visitor.getDefinition();
-        setSnmpAgentConfig(agentConfig, definition, VERSION_UNSPECIFIED);
+        setSnmpAgentConfig(agentConfig, definition, VERSION_UNSPECIFIED, getSnmpConfig());
         // config is derived from profile
         agentConfig.setDefault(false);
         agentConfig.setProfileLabel(snmpProfile.getLabel());
@@ -281,43 +287,66 @@ public class SnmpPeerFactory implements SnmpAgentConfigFactory {
     }
 
     public SnmpAgentConfig getAgentConfig(final InetAddress agentInetAddress, String location, final int requestedSnmpVersion) {
-        getReadLock().lock();
-        try {
-            if (getSnmpConfig() == null) {
-                final SnmpAgentConfig agentConfig = new SnmpAgentConfig(agentInetAddress);
-                if (requestedSnmpVersion == SnmpAgentConfig.VERSION_UNSPECIFIED) {
-                    agentConfig.setVersion(SnmpAgentConfig.DEFAULT_VERSION);
-                } else {
-                    agentConfig.setVersion(requestedSnmpVersion);
-                }
-
-                return agentConfig;
+        final SnmpDefinitionIndex index = getIndex();
+        if (index == null) {
+            final SnmpAgentConfig agentConfig = new SnmpAgentConfig(agentInetAddress);
+            if (requestedSnmpVersion == SnmpAgentConfig.VERSION_UNSPECIFIED) {
+                agentConfig.setVersion(SnmpAgentConfig.DEFAULT_VERSION);
+            } else {
+                agentConfig.setVersion(requestedSnmpVersion);
             }
 
-            final SnmpAgentConfig agentConfig = new SnmpAgentConfig(agentInetAddress);
+            return agentConfig;
+        }
+
+        final SnmpAgentConfig agentConfig = new SnmpAgentConfig(agentInetAddress);
 
-            // Now set the defaults from the getSnmpConfig()
-            setSnmpAgentConfig(agentConfig, new Definition(), requestedSnmpVersion);
+        // Now set the defaults from the config
+        setSnmpAgentConfig(agentConfig, new Definition(), requestedSnmpVersion, index.getSnmpConfig());
+
+        // Set the values from best matching definition
+        final AddressSnmpConfigVisitor visitor = index.visit(agentInetAddress, location);
+        final Definition matchingDef = visitor.getDefinition();
+        // Is agent config matching specific definition or coming from default config
+        if(!visitor.isMatchingDefaultConfig()) {
+           agentConfig.setDefault(false);
+        }
+        if (matchingDef != null) {
+            setSnmpAgentConfig(agentConfig, matchingDef, requestedSnmpVersion, index.getSnmpConfig());
+        }
+        return agentConfig;
+    }
 
-            // Set the values from best matching definition
-            final AddressSnmpConfigVisitor visitor = new AddressSnmpConfigVisitor(agentInetAddress, location);
-            getSnmpConfig().visit(visitor);
-            final Definition matchingDef = visitor.getDefinition();
-            // Is agent config matching specific definition or coming from default config
-            if(!visitor.isMatchingDefaultConfig()) {
-               agentConfig.setDefault(false);
+    /**
+     * Returns the index for the current config without locking, unless it needs to be compiled first.
+     *
+     * @return null if there is no config
+     */
+    private SnmpDefinitionIndex getIndex() {
+        SnmpDefinitionIndex index = m_index;
+        if (index != null && index.isCompiledFrom(getCurrentSnmpConfig())) {
+            return index;
+        }
+        getReadLock().lock();
+        try {
+            final SnmpConfig config = getCurrentSnmpConfig();
+            index = m_index;
+            if (config == null) {
+                return null;
             }
-            if (matchingDef != null) {
-                setSnmpAgentConfig(agentConfig, matchingDef, requestedSnmpVersion);
+            if (index == null || !index.isCompiledFrom(config)) {
+                index = SnmpDefinitionIndex.compile(config);
+                m_index = index;
+                LOG.debug("Compiled lookup index for {} SNMP definitions", config.getDefinitions().size());
             }
-            return agentConfig;
+            return index;
         } finally {
             getReadLock().unlock();
         }
     }
 
-    private void setSnmpAgentConfig(final SnmpAgentConfig agentConfig, final Definition def, final int requestedSnmpVersion) {
-        int version = getVersionCode(def, getSnmpConfig(), requestedSnmpVersion);
+    private void setSnmpAgentConfig(final SnmpAgentConfig agentConfig, final Definition def, final int requestedSnmpVersion, final SnmpConfig config) {
+        int version = getVersionCode(def, config, requestedSnmpVersion);
 
         setCommonAttributes(agentConfig, def, version);
         agentConfig.setSecurityLevel(def.getSecurityLevel());
@@ -411,16 +440,20 @@ public class SnmpPeerFactory implements SnmpAgentConfigFactory {
     public SnmpConfig getSnmpConfig() {
         getReadLock().lock();
         try {
-            if (m_container == null) {
-                return m_config;
-            } else {
-                return m_container.getObject();
-            }
+            return getCurrentSnmpConfig();
         } finally {
             getReadLock().unlock();
         }
     }
 
+    private SnmpConfig getCurrentSnmpConfig() {
+        if (m_container == null) {
+            return m_config;
+        } else {
+            return m_container.getObject();
+        }
+    }
+
     /**
      * Enhancement: Allows specific or ranges to be merged into SNMP configuration
      * with many other attributes.  Uses new classes the wrap JAXB-generated code to
@@ -442,6 +475,7 @@ public class SnmpPeerFactory implements SnmpAgentConfigFactory {
         try {
             final SnmpConfigManager mgr = new SnmpConfigManager(getSnmpConfig());
             mgr.mergeIntoConfig(definition);
+            m_index = null;
         } finally {
             getWriteLock().unlock();
         }
@@ -462,6 +496,7 @@ public class SnmpPeerFactory implements SnmpAgentConfigFactory {
                 definition.setSpecifics(specifics);
                 final SnmpConfigManager mgr = new SnmpConfigManager(getSnmpConfig());
                 succeeded = mgr.removeDefinition(definition);
+                m_index = null;
             }
         } finally {
             getWriteLock().unlock();
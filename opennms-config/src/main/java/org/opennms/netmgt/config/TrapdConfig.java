@@ -81,6 +81,15 @@ public interface TrapdConfig {
      */
     int getBatchIntervalMs();
 
+    /**
+     * Identical traps, with the same agent, trap OID and varbinds, that are
+     * received within this interval are suppressed and reported as a single
+     * event with a repeat count once the interval expires.
+     *
+     * @return interval in ms, or 0 if suppression is disabled
+     */
+    int getSuppressionWindowMs();
+
     void update(TrapdConfig config);
 
     boolean shouldUseAddressFromVarbind();
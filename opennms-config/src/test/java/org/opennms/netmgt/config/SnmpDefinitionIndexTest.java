@@ -0,0 +1,165 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2022 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2022 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+
+package org.opennms.netmgt.config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+import org.opennms.core.utils.InetAddressUtils;
+import org.opennms.netmgt.config.snmp.AddressSnmpConfigVisitor;
+import org.opennms.netmgt.config.snmp.Definition;
+import org.opennms.netmgt.config.snmp.Range;
+import org.opennms.netmgt.config.snmp.SnmpConfig;
+
+public class SnmpDefinitionIndexTest {
+
+    private static final String[] LOCATIONS = new String[]{null, "Default", "Minion-1", "Minion-2"};
+
+    @Test
+    public void testMatchesVisitor() {
+        final Random random = new Random(42);
+        final SnmpConfig config = randomConfig(random, 500);
+        final SnmpDefinitionIndex index = SnmpDefinitionIndex.compile(config);
+
+        for (final InetAddress address : randomAddresses(random, 5000)) {
+            for (final String location : LOCATIONS) {
+                assertSameResult(config, index, address, location);
+            }
+        }
+    }
+
+    @Test
+    public void testFirstDefinitionWins() {
+        final SnmpConfig config = new SnmpConfig();
+        config.setReadCommunity("global");
+
+        final Definition wide = new Definition();
+        wide.setReadCommunity("wide");
+        wide.addRange(new Range("10.0.0.0", "10.0.255.255"));
+        config.addDefinition(wide);
+
+        final Definition reversed = new Definition();
+        reversed.setReadCommunity("reversed");
+        reversed.addRange(new Range("10.1.0.20", "10.1.0.10"));
+        config.addDefinition(reversed);
+
+        final Definition specific = new Definition();
+        specific.setReadCommunity("specific");
+        specific.addSpecific("10.0.0.5");
+        specific.addSpecific("10.1.0.15");
+        config.addDefinition(specific);
+
+        final Definition ipMatch = new Definition();
+        ipMatch.setReadCommunity("ipmatch");
+        ipMatch.addIpMatch("10.*.*.1-5");
+        config.addDefinition(ipMatch);
+
+        final SnmpDefinitionIndex index = SnmpDefinitionIndex.compile(config);
+        assertEquals("wide", index.visit(InetAddressUtils.addr("10.0.0.5"), null).getDefinition().getReadCommunity());
+        assertEquals("reversed", index.visit(InetAddressUtils.addr("10.1.0.15"), null).getDefinition().getReadCommunity());
+        assertEquals("ipmatch", index.visit(InetAddressUtils.addr("10.2.0.3"), null).getDefinition().getReadCommunity());
+        assertEquals("global", index.visit(InetAddressUtils.addr("10.2.0.6"), null).getDefinition().getReadCommunity());
+        assertEquals("global", index.visit(InetAddressUtils.addr("2001:db8::1"), null).getDefinition().getReadCommunity());
+    }
+
+    @Test
+    public void testEmptyConfig() {
+        final SnmpDefinitionIndex index = SnmpDefinitionIndex.compile(new SnmpConfig());
+        final AddressSnmpConfigVisitor visitor = index.visit(InetAddressUtils.addr("192.168.0.1"), "Minion-1");
+        assertEquals(true, visitor.isMatchingDefaultConfig());
+        assertNull(visitor.getDefinition().getProfileLabel());
+    }
+
+    private static void assertSameResult(final SnmpConfig config, final SnmpDefinitionIndex index, final InetAddress address, final String location) {
+        final AddressSnmpConfigVisitor expected = new AddressSnmpConfigVisitor(address, location);
+        config.visit(expected);
+        final AddressSnmpConfigVisitor actual = index.visit(address, location);
+        final String message = InetAddressUtils.str(address) + "@" + location;
+        assertEquals(message, expected.getDefinition(), actual.getDefinition());
+        assertEquals(message, expected.getDefinition().getProfileLabel(), actual.getDefinition().getProfileLabel());
+        assertEquals(message, expected.isMatchingDefaultConfig(), actual.isMatchingDefaultConfig());
+    }
+
+    /**
+     * Generates a config with overlapping specifics, ranges and ip matches spread over a few locations.
+     */
+    public static SnmpConfig randomConfig(final Random random, final int definitionCount) {
+        final SnmpConfig config = new SnmpConfig();
+        config.setReadCommunity("public");
+        config.setVersion("v2c");
+        for (int i = 0; i < definitionCount; i++) {
+            final Definition definition = new Definition();
+            definition.setReadCommunity("community-" + i);
+            definition.setLocation(LOCATIONS[random.nextInt(LOCATIONS.length)]);
+            if (random.nextInt(4) == 0) {
+                definition.setProfileLabel("profile-" + i);
+            }
+            if (random.nextInt(3) == 0) {
+                definition.setTimeout(1000 + random.nextInt(5000));
+            }
+            for (int j = random.nextInt(4); j > 0; j--) {
+                definition.addSpecific(InetAddressUtils.str(randomAddress(random)));
+            }
+            for (int j = random.nextInt(3); j > 0; j--) {
+                final InetAddress begin = randomAddress(random);
+                final byte[] end = begin.getAddress();
+                end[end.length - 1] = (byte) random.nextInt(256);
+                end[end.length - 2] = (byte) (end[end.length - 2] + random.nextInt(2));
+                definition.addRange(new Range(InetAddressUtils.str(begin), InetAddressUtils.str(InetAddressUtils.getInetAddress(end))));
+            }
+            if (random.nextInt(20) == 0) {
+                definition.addIpMatch("10.0." + random.nextInt(16) + ".1-" + (1 + random.nextInt(254)));
+            }
+            config.addDefinition(definition);
+        }
+        return config;
+    }
+
+    public static List<InetAddress> randomAddresses(final Random random, final int count) {
+        final List<InetAddress> addresses = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            addresses.add(randomAddress(random));
+        }
+        return addresses;
+    }
+
+    private static InetAddress randomAddress(final Random random) {
+        if (random.nextInt(10) == 0) {
+            return InetAddressUtils.addr(String.format("2001:db8::%x:%x", random.nextInt(16), random.nextInt(0x10000)));
+        }
+        return InetAddressUtils.addr(String.format("10.0.%d.%d", random.nextInt(16), random.nextInt(256)));
+    }
+}
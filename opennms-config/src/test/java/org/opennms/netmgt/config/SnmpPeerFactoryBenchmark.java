@@ -0,0 +1,130 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2022 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2022 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+
+package org.opennms.netmgt.config;
+
+import java.net.InetAddress;
+import java.util.List;
+import java.util.Random;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.opennms.core.xml.JaxbUtils;
+import org.opennms.netmgt.config.snmp.AddressSnmpConfigVisitor;
+import org.opennms.netmgt.config.snmp.SnmpConfig;
+import org.springframework.core.io.ByteArrayResource;
+
+/**
+ * Use the Java Microbenchmarking Harness (JMH) to compare the agent config lookups through the
+ * compiled {@link SnmpDefinitionIndex} with visiting the whole config.
+ * <p>
+ * The setup fails if the index and the visitor disagree on any of the generated addresses.
+ */
+public class SnmpPeerFactoryBenchmark {
+
+    // the number of lookups in a single benchmark method call
+    private static final int BATCH_SIZE = 1000;
+
+    private static final String[] LOCATIONS = new String[]{null, "Minion-1"};
+
+    public static void main(String[] args) throws Exception {
+        org.openjdk.jmh.Main.main(args);
+    }
+
+    @State(Scope.Benchmark)
+    public static class BState {
+
+        @Param({"1000", "10000"})
+        public int definitions;
+
+        private SnmpConfig config;
+        private SnmpPeerFactory snmpPeerFactory;
+        private List<InetAddress> addresses;
+
+        @Setup
+        public void setup() {
+            final Random random = new Random(123456L);
+            config = SnmpDefinitionIndexTest.randomConfig(random, definitions);
+            snmpPeerFactory = new SnmpPeerFactory(new ByteArrayResource(JaxbUtils.marshal(config).getBytes()));
+            addresses = SnmpDefinitionIndexTest.randomAddresses(random, BATCH_SIZE);
+
+            final SnmpDefinitionIndex index = SnmpDefinitionIndex.compile(config);
+            for (final InetAddress address : addresses) {
+                for (final String location : LOCATIONS) {
+                    final AddressSnmpConfigVisitor visitor = new AddressSnmpConfigVisitor(address, location);
+                    config.visit(visitor);
+                    if (!visitor.getDefinition().equals(index.visit(address, location).getDefinition())) {
+                        throw new IllegalStateException("Index and visitor disagree on " + address + " at " + location);
+                    }
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    @Fork(value = 1)
+    @Warmup(iterations = 1)
+    @Measurement(iterations = 2)
+    public void visitor(BState state, Blackhole blackhole) {
+        for (final InetAddress address : state.addresses) {
+            final AddressSnmpConfigVisitor visitor = new AddressSnmpConfigVisitor(address, LOCATIONS[1]);
+            state.config.visit(visitor);
+            blackhole.consume(visitor.getDefinition());
+        }
+    }
+
+    @Benchmark
+    @Fork(value = 1)
+    @Warmup(iterations = 1)
+    @Measurement(iterations = 2)
+    public void index(BState state, Blackhole blackhole) {
+        for (final InetAddress address : state.addresses) {
+            blackhole.consume(state.snmpPeerFactory.getAgentConfig(address, LOCATIONS[1]));
+        }
+    }
+
+    @Benchmark
+    @Fork(value = 1)
+    @Warmup(iterations = 1)
+    @Measurement(iterations = 2)
+    @Threads(4)
+    public void indexConcurrent(BState state, Blackhole blackhole) {
+        for (final InetAddress address : state.addresses) {
+            blackhole.consume(state.snmpPeerFactory.getAgentConfig(address, LOCATIONS[1]));
+        }
+    }
+}
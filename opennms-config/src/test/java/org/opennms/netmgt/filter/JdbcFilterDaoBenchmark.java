@@ -0,0 +1,93 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2022 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2022 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.filter;
+
+import java.io.InputStream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.opennms.netmgt.config.DatabaseSchemaConfigFactory;
+
+/**
+ * Use the Java Microbenchmarking Harness (JMH) to measure the translation of filter rules into SQL statements
+ * by the {@link JdbcFilterDao}.
+ * <p>
+ * Only the rule parsing is measured, the generated statements are never executed so no database is required.
+ */
+public class JdbcFilterDaoBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        org.openjdk.jmh.Main.main(args);
+    }
+
+    @State(Scope.Benchmark)
+    public static class BState {
+
+        @Param({
+                "IPADDR != '0.0.0.0'",
+                "(ipaddr IPLIKE 192.168.*.1-254) & isSNMP",
+                "(catincIMP_mid) & (catincDEV_AC) & (nodeId == '1') & (ipAddr == '192.168.1.1') & (serviceName == 'ICMP')",
+                "((nodeLabel LIKE 'router%') | (nodeSysOID == '.1.3.6.1.4.1.9.1.1')) & !(ipaddr IPLIKE *:*:*:*:*:*:*:*) & (serviceName == \"DiskUsage-/foo/bar\")"
+        })
+        public String rule;
+
+        private JdbcFilterDao filterDao;
+
+        @Setup
+        public void setup() throws Exception {
+            filterDao = new JdbcFilterDao();
+            try (InputStream is = JdbcFilterDaoBenchmark.class.getResourceAsStream("/database-schema.xml")) {
+                filterDao.setDatabaseSchemaConfigFactory(new DatabaseSchemaConfigFactory(is));
+            }
+        }
+    }
+
+    @Benchmark
+    @Fork(value = 1)
+    @Warmup(iterations = 1)
+    @Measurement(iterations = 2)
+    public void getSQLStatement(BState state, Blackhole blackhole) {
+        blackhole.consume(state.filterDao.getSQLStatement(state.rule));
+    }
+
+    @Benchmark
+    @Fork(value = 1)
+    @Warmup(iterations = 1)
+    @Measurement(iterations = 2)
+    public void getNodeIPServiceMappingStatement(BState state, Blackhole blackhole) {
+        blackhole.consume(state.filterDao.getNodeIPServiceMappingStatement(state.rule));
+    }
+}
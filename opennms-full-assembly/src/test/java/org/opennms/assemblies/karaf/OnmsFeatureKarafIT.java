@@ -553,6 +553,12 @@ public class OnmsFeatureKarafIT extends KarafTestCase {
 		installFeature("opennms-syslogd-listener-camel-netty");
 		System.out.println(executeCommand("feature:list -i"));
 	}
+
+	@Test
+	public void testInstallFeatureOpennmsSyslogdListenerNetty() {
+		installFeature("opennms-syslogd-listener-netty");
+		System.out.println(executeCommand("feature:list -i"));
+	}
 	@Test
 	public void testInstallFeatureOpennmsTelemetryCollection() {
 		installFeature("opennms-dao-api"); // System classpath
@@ -0,0 +1,198 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2022 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2022 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+
+package org.opennms.netmgt.icmp.proxy;
+
+import java.net.InetAddress;
+import java.util.Objects;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.opennms.netmgt.icmp.EchoPacket;
+import org.opennms.netmgt.icmp.PingResponseCallback;
+import org.opennms.netmgt.icmp.Pinger;
+import org.opennms.netmgt.model.discovery.IPPollAddress;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.RateLimiter;
+
+/**
+ * Pings a series of addresses with a bounded number of requests in flight.
+ *
+ * The packets are paced by a token bucket, and the number of requests that have not yet been
+ * answered or timed out is limited to a fixed window, so that large ranges neither flood the
+ * ICMP socket nor pile up requests in the pinger.
+ *
+ * The timeouts adapt to the round trip times observed during the sweep, in the same way TCP
+ * computes its retransmission timeout (RFC 6298). They never exceed the timeout configured for
+ * the range, and are only lowered once enough replies were seen to estimate the RTT.
+ */
+public class PingSweeper {
+
+    private static final Logger LOG = LoggerFactory.getLogger(PingSweeper.class);
+
+    public static final String MAX_IN_FLIGHT_PROPERTY = "org.opennms.netmgt.icmp.sweep.maxInFlight";
+    public static final int DEFAULT_MAX_IN_FLIGHT = 1000;
+
+    /**
+     * Number of replies needed before the timeouts are derived from the RTTs.
+     */
+    protected static final int MIN_RTT_SAMPLES = 16;
+
+    /**
+     * Lower bound for the adaptive timeouts.
+     */
+    protected static final long MIN_ADAPTIVE_TIMEOUT_MS = 100;
+
+    /**
+     * Notified of every address that replied, as soon as the reply is received.
+     */
+    public interface SweepListener {
+        void onReply(InetAddress address, double rttInMs);
+    }
+
+    private final Pinger pinger;
+    private final RateLimiter rateLimiter;
+    private final int maxInFlight;
+    private final Semaphore window;
+    private final int packetSize;
+
+    private final Object rttLock = new Object();
+    private int rttSamples = 0;
+    private double smoothedRtt;
+    private double rttVariation;
+
+    public PingSweeper(Pinger pinger, double packetsPerSecond, int maxInFlight, int packetSize) {
+        Preconditions.checkArgument(packetsPerSecond > 0, "packetsPerSecond must be strictly positive");
+        Preconditions.checkArgument(maxInFlight > 0, "maxInFlight must be strictly positive");
+        this.pinger = Objects.requireNonNull(pinger);
+        this.rateLimiter = RateLimiter.create(packetsPerSecond);
+        this.maxInFlight = maxInFlight;
+        this.window = new Semaphore(maxInFlight);
+        this.packetSize = packetSize;
+    }
+
+    /**
+     * Pings all of the given addresses and waits for the last request to complete.
+     *
+     * @return the number of addresses that replied
+     */
+    public int sweep(Iterable<IPPollAddress> addresses, SweepListener listener) throws InterruptedException {
+        final SweepCallback callback = new SweepCallback(listener);
+        int sent = 0;
+        try {
+            for (final IPPollAddress pollAddress : addresses) {
+                if (pollAddress.getAddress() == null) {
+                    continue;
+                }
+                window.acquire();
+                rateLimiter.acquire();
+                final long timeout = getTimeout(pollAddress.getTimeout());
+                try {
+                    pinger.ping(pollAddress.getAddress(), timeout, pollAddress.getRetries(), packetSize, 1, callback);
+                    sent++;
+                } catch (Exception e) {
+                    window.release();
+                    LOG.warn("Failed to ping {}.", pollAddress.getAddress(), e);
+                }
+            }
+        } finally {
+            // Wait for all of the outstanding requests
+            window.acquire(maxInFlight);
+            window.release(maxInFlight);
+        }
+        LOG.debug("Swept {} addresses, {} replied.", sent, callback.replies.get());
+        return callback.replies.get();
+    }
+
+    /**
+     * Returns the timeout to use for the next request, given the timeout configured for its range.
+     */
+    protected long getTimeout(long configuredTimeout) {
+        synchronized (rttLock) {
+            if (rttSamples < MIN_RTT_SAMPLES) {
+                return configuredTimeout;
+            }
+            final long adaptiveTimeout = (long)Math.ceil(smoothedRtt + 4 * rttVariation);
+            return Math.min(configuredTimeout, Math.max(MIN_ADAPTIVE_TIMEOUT_MS, adaptiveTimeout));
+        }
+    }
+
+    protected void updateRtt(double rttInMs) {
+        synchronized (rttLock) {
+            if (rttSamples == 0) {
+                smoothedRtt = rttInMs;
+                rttVariation = rttInMs / 2;
+            } else {
+                rttVariation = 0.75 * rttVariation + 0.25 * Math.abs(smoothedRtt - rttInMs);
+                smoothedRtt = 0.875 * smoothedRtt + 0.125 * rttInMs;
+            }
+            rttSamples++;
+        }
+    }
+
+    private class SweepCallback implements PingResponseCallback {
+        private final SweepListener listener;
+        private final AtomicInteger replies = new AtomicInteger();
+
+        private SweepCallback(SweepListener listener) {
+            this.listener = listener;
+        }
+
+        @Override
+        public void handleResponse(InetAddress address, EchoPacket response) {
+            try {
+                if (response != null) {
+                    final double rtt = response.elapsedTime(TimeUnit.MILLISECONDS);
+                    updateRtt(rtt);
+                    replies.incrementAndGet();
+                    listener.onReply(address, rtt);
+                }
+            } catch (Exception e) {
+                LOG.warn("Failed to handle the reply from {}.", address, e);
+            } finally {
+                window.release();
+            }
+        }
+
+        @Override
+        public void handleTimeout(InetAddress address, EchoPacket request) {
+            window.release();
+        }
+
+        @Override
+        public void handleError(InetAddress address, EchoPacket request, Throwable t) {
+            LOG.debug("Error while pinging {}.", address, t);
+            window.release();
+        }
+    }
+}
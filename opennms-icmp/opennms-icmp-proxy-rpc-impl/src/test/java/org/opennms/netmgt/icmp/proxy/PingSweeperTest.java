@@ -0,0 +1,197 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2022 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2022 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+
+package org.opennms.netmgt.icmp.proxy;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+import org.opennms.core.utils.InetAddressUtils;
+import org.opennms.netmgt.icmp.EchoPacket;
+import org.opennms.netmgt.icmp.PingResponseCallback;
+import org.opennms.netmgt.icmp.TestPinger;
+import org.opennms.netmgt.model.discovery.IPPollAddress;
+
+public class PingSweeperTest {
+
+    private static final long CONFIGURED_TIMEOUT = 2000;
+
+    private final ScheduledExecutorService executor = Executors.newScheduledThreadPool(4);
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Replies after a fixed delay to every even address, and lets the others time out right away.
+     */
+    private class DelayedPinger extends TestPinger {
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final AtomicInteger maxInFlight = new AtomicInteger();
+        private final List<Long> timeouts = new CopyOnWriteArrayList<>();
+        private final long rttInMs;
+
+        private DelayedPinger(long rttInMs) {
+            this.rttInMs = rttInMs;
+        }
+
+        @Override
+        public void ping(InetAddress host, long timeout, int retries, int packetsize, int sequenceId, PingResponseCallback cb) throws Exception {
+            timeouts.add(timeout);
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            if ((host.getAddress()[3] & 1) == 0) {
+                executor.schedule(() -> {
+                    inFlight.decrementAndGet();
+                    cb.handleResponse(host, new Reply(rttInMs));
+                }, rttInMs, TimeUnit.MILLISECONDS);
+            } else {
+                executor.execute(() -> {
+                    inFlight.decrementAndGet();
+                    cb.handleTimeout(host, null);
+                });
+            }
+        }
+    }
+
+    private static class Reply implements EchoPacket {
+        private final long rttInMs;
+
+        private Reply(long rttInMs) {
+            this.rttInMs = rttInMs;
+        }
+
+        @Override
+        public boolean isEchoReply() {
+            return true;
+        }
+
+        @Override
+        public int getIdentifier() {
+            return 0;
+        }
+
+        @Override
+        public int getSequenceNumber() {
+            return 0;
+        }
+
+        @Override
+        public long getThreadId() {
+            return 0;
+        }
+
+        @Override
+        public long getReceivedTimeNanos() {
+            return 0;
+        }
+
+        @Override
+        public long getSentTimeNanos() {
+            return 0;
+        }
+
+        @Override
+        public double elapsedTime(TimeUnit timeUnit) {
+            return timeUnit.convert(rttInMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private static List<IPPollAddress> getAddresses(int count) {
+        final List<IPPollAddress> addresses = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            addresses.add(new IPPollAddress(null, null, InetAddressUtils.addr("10.0." + (i / 256) + "." + (i % 256)), CONFIGURED_TIMEOUT, 1));
+        }
+        return addresses;
+    }
+
+    @Test(timeout = 30000)
+    public void canStreamRepliesWithinTheWindow() throws Exception {
+        final DelayedPinger pinger = new DelayedPinger(20);
+        final PingSweeper sweeper = new PingSweeper(pinger, 1000, 8, 64);
+        final Set<InetAddress> replied = ConcurrentHashMap.newKeySet();
+        final Set<Double> rtts = ConcurrentHashMap.newKeySet();
+
+        final int replies = sweeper.sweep(getAddresses(200), (address, rtt) -> {
+            replied.add(address);
+            rtts.add(rtt);
+        });
+
+        assertEquals(100, replies);
+        assertEquals(100, replied.size());
+        assertEquals(Collections.singleton(20.0), rtts);
+        assertEquals(200, pinger.timeouts.size());
+        assertTrue("window exceeded: " + pinger.maxInFlight.get(), pinger.maxInFlight.get() <= 8);
+    }
+
+    @Test(timeout = 30000)
+    public void canAdaptTimeoutsToObservedRtts() throws Exception {
+        final DelayedPinger pinger = new DelayedPinger(10);
+        final PingSweeper sweeper = new PingSweeper(pinger, 1000, 4, 64);
+
+        sweeper.sweep(getAddresses(200), (address, rtt) -> {});
+
+        // The first requests use the configured timeout
+        assertEquals(CONFIGURED_TIMEOUT, (long)pinger.timeouts.get(0));
+        // The last ones use the floor, since the RTTs are well below it
+        assertEquals(PingSweeper.MIN_ADAPTIVE_TIMEOUT_MS, (long)pinger.timeouts.get(pinger.timeouts.size() - 1));
+    }
+
+    @Test
+    public void canNeverExceedConfiguredTimeout() {
+        final PingSweeper sweeper = new PingSweeper(new TestPinger(), 1000, 4, 64);
+        for (int i = 0; i < PingSweeper.MIN_RTT_SAMPLES; i++) {
+            sweeper.updateRtt(5000);
+        }
+        assertEquals(CONFIGURED_TIMEOUT, sweeper.getTimeout(CONFIGURED_TIMEOUT));
+    }
+
+    @Test
+    public void canRateLimitPackets() throws Exception {
+        final PingSweeper sweeper = new PingSweeper(new TestPinger(), 50, 100, 64);
+        final long start = System.currentTimeMillis();
+        sweeper.sweep(getAddresses(26), (address, rtt) -> {});
+        // The first packet goes out right away, the 25 others need half a second at 50 pps
+        assertTrue(System.currentTimeMillis() - start >= 450);
+    }
+}
@@ -29,7 +29,12 @@
 package org.opennms.netmgt.provision.service;
 
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.opennms.core.tasks.BatchTask;
 import org.slf4j.Logger;
@@ -40,13 +45,17 @@ import org.opennms.netmgt.provision.persist.AbstractRequisitionVisitor;
 import org.opennms.netmgt.provision.persist.OnmsNodeRequisition;
 import org.opennms.netmgt.provision.persist.RequisitionVisitor;
 import org.opennms.netmgt.provision.persist.requisition.Requisition;
+import org.opennms.netmgt.provision.persist.requisition.RequisitionNode;
 import org.opennms.netmgt.provision.service.lifecycle.LifeCycleInstance;
 import org.opennms.netmgt.provision.service.lifecycle.Phase;
 import org.opennms.netmgt.provision.service.lifecycle.annotations.Activity;
 import org.opennms.netmgt.provision.service.lifecycle.annotations.ActivityProvider;
 import org.opennms.netmgt.provision.service.operations.ImportOperation;
+import org.opennms.netmgt.provision.service.operations.ImportOperation.OperationType;
 import org.opennms.netmgt.provision.service.operations.ImportOperationsManager;
+import org.opennms.netmgt.provision.service.operations.NullUpdateOperation;
 import org.opennms.netmgt.provision.service.operations.RequisitionImport;
+import org.opennms.netmgt.provision.service.operations.SaveOrUpdateOperation;
 import org.springframework.core.io.Resource;
 
 /**
@@ -58,13 +67,46 @@ import org.springframework.core.io.Resource;
 @ActivityProvider
 public class CoreImportActivities {
     private static final Logger LOG = LoggerFactory.getLogger(CoreImportActivities.class);
+
+    /**
+     * When set to true, nodes whose requisition content and foreign source definition did not
+     * change since the last import are neither scanned nor persisted again.
+     */
+    public static final String SKIP_UNCHANGED_NODES_PROPERTY = "org.opennms.provisiond.importSkipUnchangedNodes";
+
+    /**
+     * When set to a positive number, the scanned nodes are written by the delete, update and insert
+     * phases of the import in transactions of that many nodes, instead of one transaction per node.
+     */
+    public static final String PERSIST_CHUNK_SIZE_PROPERTY = "org.opennms.provisiond.importPersistChunkSize";
     
     private final ProvisionService m_provisionService;
+
+    private RequisitionHashStore m_hashStore;
     
     public CoreImportActivities(final ProvisionService provisionService) {
         m_provisionService = provisionService;
     }
 
+    public void setRequisitionHashStore(final RequisitionHashStore hashStore) {
+        m_hashStore = hashStore;
+    }
+
+    private RequisitionHashStore getRequisitionHashStore() {
+        if (m_hashStore == null) {
+            throw new IllegalStateException("No requisition hash store has been configured");
+        }
+        return m_hashStore;
+    }
+
+    private static boolean isSkipUnchangedNodes() {
+        return Boolean.getBoolean(SKIP_UNCHANGED_NODES_PROPERTY);
+    }
+
+    private static int getPersistChunkSize() {
+        return Math.max(0, Integer.getInteger(PERSIST_CHUNK_SIZE_PROPERTY, 0));
+    }
+
     @Activity( lifecycle = "import", phase = "validate", schedulingHint="import")
     public RequisitionImport loadSpecFile(final Resource resource) {
         final RequisitionImport ri = new RequisitionImport();
@@ -95,16 +137,57 @@ public class CoreImportActivities {
         final String foreignSource = specFile.getForeignSource();
         final Map<String, Integer> foreignIdsToNodes = m_provisionService.getForeignIdToNodeIdMap(foreignSource);
 
+        // Service types, categories and locations are resolved from caches during the persist phase
+        m_provisionService.invalidateEntityCaches();
+
         final ImportOperationsManager opsMgr = new ImportOperationsManager(foreignIdsToNodes, m_provisionService, rescanExisting);
         
         opsMgr.setForeignSource(foreignSource);
-        opsMgr.auditNodes(specFile);
+        opsMgr.auditNodes(specFile, findUnchangedNodes(ri, foreignIdsToNodes));
+        ri.setPersistChunkSize(getPersistChunkSize());
+        ri.setOperationCounts(opsMgr.getInsertCount(), opsMgr.getUpdateCount(), opsMgr.getDeleteCount());
 
-        debug("Finished auditing nodes.");
+        info("Finished auditing nodes for requisition {}: {} inserts, {} updates, {} deletes, {} unchanged.",
+                foreignSource, opsMgr.getInsertCount(), opsMgr.getUpdateCount(), opsMgr.getDeleteCount(), ri.getUnchangedCount());
         
         return opsMgr;
     }
     
+    private Set<String> findUnchangedNodes(final RequisitionImport ri, final Map<String, Integer> foreignIdsToNodes) {
+        if (!isSkipUnchangedNodes()) {
+            return Collections.emptySet();
+        }
+        final Requisition specFile = ri.getRequisition();
+        final String foreignSource = specFile.getForeignSource();
+
+        final String foreignSourceHash;
+        final Map<String, String> currentHashes = new HashMap<>();
+        try {
+            foreignSourceHash = RequisitionHashStore.hash(m_provisionService.getForeignSource(foreignSource));
+            for (final RequisitionNode node : specFile.getNodes()) {
+                currentHashes.put(node.getForeignId(), RequisitionHashStore.hash(node));
+            }
+        } catch (final Exception e) {
+            warn("Unable to hash requisition {}, all of its nodes will be imported.", foreignSource, e);
+            return Collections.emptySet();
+        }
+
+        final RequisitionHashStore.Snapshot previous = getRequisitionHashStore().load(foreignSource);
+        final Set<String> unchangedNodes = new HashSet<>();
+        if (foreignSourceHash.equals(previous.getForeignSourceHash())) {
+            for (final Map.Entry<String, String> entry : currentHashes.entrySet()) {
+                if (foreignIdsToNodes.containsKey(entry.getKey())
+                        && entry.getValue().equals(previous.getNodeHashes().get(entry.getKey()))) {
+                    unchangedNodes.add(entry.getKey());
+                }
+            }
+        } else if (previous.getForeignSourceHash() != null) {
+            info("The definition of foreign source {} changed, all of its nodes will be imported.", foreignSource);
+        }
+        ri.setHashes(foreignSourceHash, previous.getNodeHashes(), currentHashes, unchangedNodes);
+        return unchangedNodes;
+    }
+
     @Activity( lifecycle = "import", phase = "scan", schedulingHint="import" )
     public static void scanNodes(final Phase currentPhase, final ImportOperationsManager opsMgr, final RequisitionImport ri, final String rescanExisting) {
         if (ri.isAborted()) {
@@ -157,11 +240,84 @@ public class CoreImportActivities {
             return;
         }
 
+        if (ri.getPersistChunkSize() > 0 && !(operation instanceof NullUpdateOperation)) {
+            debug("Deferring persist phase of {} to the {} phase of the import", operation, operation.getOperationType());
+            return;
+        }
+
         info("Running persist phase of {}", operation);
         operation.persist();
+        persisted(operation, ri);
         info("Finished Running persist phase of {}", operation);
 
     }
+
+    private static void persisted(final ImportOperation operation, final RequisitionImport ri) {
+        if (operation instanceof NullUpdateOperation) {
+            ri.nodeNotPersisted(((SaveOrUpdateOperation)operation).getForeignId());
+        } else if (operation instanceof SaveOrUpdateOperation) {
+            ri.nodePersisted(((SaveOrUpdateOperation)operation).getForeignId());
+        }
+    }
+
+    @Activity( lifecycle = "import", phase = "delete" , schedulingHint = "import" )
+    public static void deleteNodes(final BatchTask currentPhase, final ImportOperationsManager opsMgr, final RequisitionImport ri) {
+        persistChunks(currentPhase, opsMgr, ri, OperationType.DELETE);
+    }
+
+    @Activity( lifecycle = "import", phase = "update" , schedulingHint = "import" )
+    public static void updateNodes(final BatchTask currentPhase, final ImportOperationsManager opsMgr, final RequisitionImport ri) {
+        persistChunks(currentPhase, opsMgr, ri, OperationType.UPDATE);
+    }
+
+    @Activity( lifecycle = "import", phase = "insert" , schedulingHint = "import" )
+    public static void insertNodes(final BatchTask currentPhase, final ImportOperationsManager opsMgr, final RequisitionImport ri) {
+        persistChunks(currentPhase, opsMgr, ri, OperationType.INSERT);
+    }
+
+    private static void persistChunks(final BatchTask currentPhase, final ImportOperationsManager opsMgr, final RequisitionImport ri, final OperationType type) {
+        if (ri.isAborted()) {
+            info("The import has been aborted, skipping {} phase.", type);
+            return;
+        }
+        if (ri.getPersistChunkSize() <= 0) {
+            return;
+        }
+
+        for (final List<ImportOperation> chunk : opsMgr.getPersistChunks(type, ri.getPersistChunkSize())) {
+            currentPhase.add(chunkPersister(opsMgr, ri, type, chunk), "write");
+        }
+    }
+
+    private static Runnable chunkPersister(final ImportOperationsManager opsMgr, final RequisitionImport ri, final OperationType type, final List<ImportOperation> chunk) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    opsMgr.persistChunk(type, chunk);
+                    for (final ImportOperation operation : chunk) {
+                        persisted(operation, ri);
+                    }
+                } catch (final RuntimeException e) {
+                    // a single bad node must not keep the rest of the chunk out of the database
+                    warn("Failed to persist a chunk of {} {} operations, persisting them one at a time.", chunk.size(), type, e);
+                    for (final ImportOperation operation : chunk) {
+                        try {
+                            operation.persist();
+                            persisted(operation, ri);
+                        } catch (final RuntimeException ex) {
+                            LOG.error("Failed to persist {}", operation, ex);
+                        }
+                    }
+                }
+            }
+
+            @Override
+            public String toString() {
+                return "persist " + chunk.size() + " " + type + " operations";
+            }
+        };
+    }
     
     @Activity( lifecycle = "import", phase = "relate" , schedulingHint = "import" )
     public void relateNodes(final BatchTask currentPhase, final RequisitionImport ri) {
@@ -176,6 +332,10 @@ public class CoreImportActivities {
         RequisitionVisitor visitor = new AbstractRequisitionVisitor() {
             @Override
             public void visitNode(final OnmsNodeRequisition nodeReq) {
+                if (isParentUnchanged(ri, nodeReq)) {
+                    LOG.debug("Skipping relate of unchanged node {}", nodeReq);
+                    return;
+                }
                 LOG.debug("Scheduling relate of node {}", nodeReq);
                 currentPhase.add(parentSetter(m_provisionService, nodeReq, requisition.getForeignSource()));
             }
@@ -187,6 +347,42 @@ public class CoreImportActivities {
 
     }
     
+    /**
+     * The parent of an unchanged node only needs to be set again if it refers to a node that
+     * may have been re-created by this import.
+     */
+    private static boolean isParentUnchanged(final RequisitionImport ri, final OnmsNodeRequisition nodeReq) {
+        if (!ri.isUnchanged(nodeReq.getForeignId())) {
+            return false;
+        }
+        if (nodeReq.getParentNodeLabel() != null) {
+            return false;
+        }
+        if (nodeReq.getParentForeignId() == null) {
+            return true;
+        }
+        final String parentForeignSource = nodeReq.getParentForeignSource();
+        return (parentForeignSource == null || parentForeignSource.equals(ri.getRequisition().getForeignSource()))
+                && ri.isUnchanged(nodeReq.getParentForeignId());
+    }
+
+    /**
+     * Remembers the content of the nodes written by a successful import, so that the next
+     * import can skip them if they did not change.
+     */
+    public void importCompleted(final RequisitionImport ri) {
+        if (ri.isAborted() || ri.getRequisition() == null) {
+            return;
+        }
+        final String foreignSource = ri.getRequisition().getForeignSource();
+        if (!isSkipUnchangedNodes() || ri.getForeignSourceHash() == null) {
+            // the database may now differ from any hashes kept by an earlier import
+            getRequisitionHashStore().delete(foreignSource);
+            return;
+        }
+        getRequisitionHashStore().save(foreignSource, new RequisitionHashStore.Snapshot(ri.getForeignSourceHash(), ri.getImportedHashes()));
+    }
+
     private static Runnable parentSetter(final ProvisionService provisionService, final OnmsNodeRequisition nodeReq, final String foreignSource) {
         return new Runnable() {
             @Override
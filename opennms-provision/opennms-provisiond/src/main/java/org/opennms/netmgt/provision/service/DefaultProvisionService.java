@@ -44,6 +44,7 @@ import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 
 import org.joda.time.DateTime;
@@ -208,6 +209,14 @@ public class DefaultProvisionService implements ProvisionService, InitializingBe
 
     private final ThreadLocal<Map<String, OnmsServiceType>> m_typeCache = new ThreadLocal<Map<String, OnmsServiceType>>();
     private final ThreadLocal<Map<String, OnmsCategory>> m_categoryCache = new ThreadLocal<Map<String, OnmsCategory>>();
+    private final ThreadLocal<Map<String, OnmsMonitoringLocation>> m_locationCache = new ThreadLocal<Map<String, OnmsMonitoringLocation>>();
+
+    /*
+     * The per-thread caches above are dropped and reloaded whenever their generation falls
+     * behind this one, which is bumped once per import by invalidateEntityCaches().
+     */
+    private final AtomicLong m_cacheGeneration = new AtomicLong();
+    private final ThreadLocal<Long> m_threadCacheGeneration = new ThreadLocal<Long>();
 
     @Override
     public void afterPropertiesSet() throws Exception {
@@ -228,7 +237,7 @@ public class DefaultProvisionService implements ProvisionService, InitializingBe
 
     private void updateLocation(final OnmsNode node) {
         if (node.getLocation() == null) {
-            node.setLocation(m_monitoringLocationDao.getDefaultLocation());
+            node.setLocation(createLocationIfNecessary(MonitoringLocationDao.DEFAULT_MONITORING_LOCATION_ID));
         } else {
             node.setLocation(createLocationIfNecessary(node.getLocation().getLocationName()));
         }
@@ -238,22 +247,59 @@ public class DefaultProvisionService implements ProvisionService, InitializingBe
     @Transactional
     @Override
     public void insertNode(final OnmsNode node) {
-        updateLocation(node);
-        m_nodeDao.save(node);
+        insertNodes(Collections.singletonList(node));
+    }
+
+    /** {@inheritDoc} */
+    @Transactional
+    @Override
+    public void insertNodes(final List<OnmsNode> nodes) {
+        preloadEntityCaches();
+        for (final OnmsNode node : nodes) {
+            updateLocation(node);
+            m_nodeDao.save(node);
+        }
         m_nodeDao.flush();
 
-        final EntityVisitor visitor = new AddEventVisitor(m_eventForwarder);
-        node.visit(visitor);
+        for (final OnmsNode node : nodes) {
+            final EntityVisitor visitor = new AddEventVisitor(m_eventForwarder);
+            node.visit(visitor);
+        }
     }
 
     /** {@inheritDoc} */
     @Transactional
     @Override
     public void updateNode(final OnmsNode node, String rescanExisting) {
+        updateNodes(Collections.singletonList(node), rescanExisting);
+    }
+
+    /** {@inheritDoc} */
+    @Transactional
+    @Override
+    public void updateNodes(final List<OnmsNode> nodes, final String rescanExisting) {
+        preloadEntityCaches();
+        final List<Runnable> eventSenders = new ArrayList<>(nodes.size());
+        for (final OnmsNode node : nodes) {
+            eventSenders.add(mergeNode(node, rescanExisting));
+        }
+        m_nodeDao.flush();
+
+        for (final Runnable eventSender : eventSenders) {
+            eventSender.run();
+        }
+    }
+
+    /**
+     * Merges the node into its database entry without flushing the session.
+     *
+     * @return sends the events for the changes once they have been flushed
+     */
+    private Runnable mergeNode(final OnmsNode node, final String rescanExisting) {
         updateLocation(node);
         final OnmsNode dbNode = m_nodeDao.getHierarchy(node.getId());
-        String prevLocation = dbNode.getLocation().getLocationName();
-        String currentLocation = node.getLocation().getLocationName();
+        final String prevLocation = dbNode.getLocation().getLocationName();
+        final String currentLocation = node.getLocation().getLocationName();
 
         // on an update, leave categories alone, let the NodeScan handle applying requisitioned categories
         node.setCategories(dbNode.getCategories());
@@ -275,14 +321,15 @@ public class DefaultProvisionService implements ProvisionService, InitializingBe
 
         updateNodeHostname(dbNode);
         m_nodeDao.update(dbNode);
-        m_nodeDao.flush();
 
-        if(!prevLocation.equals(currentLocation)) {
-            accumulator.sendNow(EventUtils.createNodeLocationChangedEvent(PROVISIOND, dbNode.getId(), dbNode.getLabel(), prevLocation, currentLocation));
-        }
-        accumulator.flush();
-        final EntityVisitor eventAccumlator = new UpdateEventVisitor(m_eventForwarder, rescanExisting);
-        dbNode.visit(eventAccumlator);
+        return () -> {
+            if(!prevLocation.equals(currentLocation)) {
+                accumulator.sendNow(EventUtils.createNodeLocationChangedEvent(PROVISIOND, dbNode.getId(), dbNode.getLabel(), prevLocation, currentLocation));
+            }
+            accumulator.flush();
+            final EntityVisitor eventAccumlator = new UpdateEventVisitor(m_eventForwarder, rescanExisting);
+            dbNode.visit(eventAccumlator);
+        };
     }
 
     private void updateNodeHostname(final OnmsNode node) {
@@ -331,14 +378,27 @@ public class DefaultProvisionService implements ProvisionService, InitializingBe
     @Transactional
     @Override
     public void deleteNode(final Integer nodeId) {
-        LOG.debug("deleteNode: nodeId={}", nodeId);
+        deleteNodes(Collections.singletonList(nodeId));
+    }
 
-        final OnmsNode node = m_nodeDao.get(nodeId);
-        if (node != null) {
-            final DeleteEventVisitor visitor = new DeleteEventVisitor(m_eventForwarder);
+    /** {@inheritDoc} */
+    @Transactional
+    @Override
+    public void deleteNodes(final List<Integer> nodeIds) {
+        final List<OnmsNode> deletedNodes = new ArrayList<>(nodeIds.size());
+        for (final Integer nodeId : nodeIds) {
+            LOG.debug("deleteNode: nodeId={}", nodeId);
 
-            m_nodeDao.delete(node);
-            m_nodeDao.flush();
+            final OnmsNode node = m_nodeDao.get(nodeId);
+            if (node != null) {
+                m_nodeDao.delete(node);
+                deletedNodes.add(node);
+            }
+        }
+        m_nodeDao.flush();
+
+        for (final OnmsNode node : deletedNodes) {
+            final DeleteEventVisitor visitor = new DeleteEventVisitor(m_eventForwarder);
             node.visit(visitor);
         }
     }
@@ -654,11 +714,18 @@ public class DefaultProvisionService implements ProvisionService, InitializingBe
         if (locationName == null) {
             return createLocationIfNecessary(MonitoringLocationDao.DEFAULT_MONITORING_LOCATION_ID);
         } else {
-            OnmsMonitoringLocation location = new OnmsMonitoringLocation();
-            location.setLocationName(locationName);
-            // NMS-7968: Set monitoring area too because it is a non-null field
-            location.setMonitoringArea(locationName);
-            return createLocationDefIfNecessary(location);
+            preloadExistingLocations();
+
+            OnmsMonitoringLocation location = m_locationCache.get().get(locationName);
+            if (location == null) {
+                location = new OnmsMonitoringLocation();
+                location.setLocationName(locationName);
+                // NMS-7968: Set monitoring area too because it is a non-null field
+                location.setMonitoringArea(locationName);
+                location = createLocationDefIfNecessary(location);
+                m_locationCache.get().put(locationName, location);
+            }
+            return location;
         }
     }
 
@@ -767,7 +834,35 @@ public class DefaultProvisionService implements ProvisionService, InitializingBe
         m_nodeDao.flush();
     }
 
+    /** {@inheritDoc} */
+    @Override
+    public void invalidateEntityCaches() {
+        m_cacheGeneration.incrementAndGet();
+    }
+
+    /**
+     * Loads the service types, categories and monitoring locations the nodes may refer to
+     * with a single query each, unless they are already cached by this thread.
+     */
+    private void preloadEntityCaches() {
+        preloadExistingTypes();
+        preloadExistingCategories();
+        preloadExistingLocations();
+    }
+
+    private void checkCacheGeneration() {
+        final long generation = m_cacheGeneration.get();
+        final Long threadGeneration = m_threadCacheGeneration.get();
+        if (threadGeneration == null || threadGeneration.longValue() != generation) {
+            m_typeCache.remove();
+            m_categoryCache.remove();
+            m_locationCache.remove();
+            m_threadCacheGeneration.set(generation);
+        }
+    }
+
     private void preloadExistingTypes() {
+        checkCacheGeneration();
         if (m_typeCache.get() == null) {
             m_typeCache.set(loadServiceTypeMap());
         }
@@ -803,6 +898,7 @@ public class DefaultProvisionService implements ProvisionService, InitializingBe
     }
 
     private void preloadExistingCategories() {
+        checkCacheGeneration();
         if (m_categoryCache.get() == null) {
             m_categoryCache.set(loadCategoryMap());
         }
@@ -817,6 +913,22 @@ public class DefaultProvisionService implements ProvisionService, InitializingBe
         return categoryMap;
     }
 
+    private void preloadExistingLocations() {
+        checkCacheGeneration();
+        if (m_locationCache.get() == null) {
+            m_locationCache.set(loadLocationMap());
+        }
+    }
+
+    @Transactional(readOnly=true)
+    private Map<String, OnmsMonitoringLocation> loadLocationMap() {
+        final HashMap<String, OnmsMonitoringLocation> locationMap = new HashMap<String, OnmsMonitoringLocation>();
+        for (final OnmsMonitoringLocation location : m_monitoringLocationDao.findAll()) {
+            locationMap.put(location.getLocationName(), location);
+        }
+        return locationMap;
+    }
+
     @Transactional
     private OnmsCategory loadCategory(final String name) {
         return new CreateIfNecessaryTemplate<OnmsCategory, CategoryDao>(m_transactionManager, m_categoryDao) {
@@ -1162,6 +1274,14 @@ public class DefaultProvisionService implements ProvisionService, InitializingBe
         return foreignSource.getDetectors();
     }
 
+    /** {@inheritDoc} */
+    @Override
+    public ForeignSource getForeignSource(final String foreignSourceName) {
+        final ForeignSource foreignSource = m_foreignSourceRepository.getForeignSource(foreignSourceName);
+        assertNotNull(foreignSource, "Expected a foreignSource with name %s", foreignSourceName);
+        return foreignSource;
+    }
+
     /** {@inheritDoc} */
     @Override
     public List<NodePolicy> getNodePoliciesForForeignSource(final String foreignSourceName) {
@@ -46,6 +46,7 @@ import org.opennms.netmgt.provision.LocationAwareDnsLookupClient;
 import org.opennms.netmgt.provision.NodePolicy;
 import org.opennms.netmgt.provision.SnmpInterfacePolicy;
 import org.opennms.netmgt.provision.persist.ForeignSourceRepository;
+import org.opennms.netmgt.provision.persist.foreignsource.ForeignSource;
 import org.opennms.netmgt.provision.persist.foreignsource.PluginConfig;
 import org.opennms.netmgt.provision.persist.requisition.Requisition;
 import org.opennms.netmgt.snmp.SnmpProfileMapper;
@@ -90,6 +91,14 @@ public interface ProvisionService {
      */
     void clearCache();
 
+    /**
+     * Drop the service types, categories and monitoring locations that were preloaded
+     * to resolve node references, so that the next lookup on any thread reloads them
+     * with a single query each. Called at the start of every import so that entities
+     * that were removed from the database in the meantime are not referenced.
+     */
+    void invalidateEntityCaches();
+
     /**
      * Lookup a monitoring location in the database, creating it if necessary. This
      * method looks up the {@link OnmsMonitoringLocation} object with the ID 'locationId' in the
@@ -120,6 +129,20 @@ public interface ProvisionService {
      */
     @Transactional
     void updateNode(OnmsNode node, String rescanExisting);
+
+    /**
+     * Update the database entries for the given nodes in a single transaction. Each node
+     * is merged into its database entry as by {@link #updateNode(OnmsNode, String)}, the
+     * changes of all nodes are flushed together, and the same events are sent afterwards.
+     *
+     * @param nodes
+     *            The nodes that have been updated and should be written to the
+     *            database
+     * @param rescanExisting
+     *            see {@link #updateNode(OnmsNode, String)}
+     */
+    @Transactional
+    void updateNodes(List<OnmsNode> nodes, String rescanExisting);
     
     @Transactional
     OnmsNode updateNodeAttributes(OnmsNode node);
@@ -151,6 +174,12 @@ public interface ProvisionService {
     @Transactional
     void deleteNode(Integer nodeId);
 
+    /**
+     * Delete the indicated nodes from the database in a single transaction.
+     */
+    @Transactional
+    void deleteNodes(List<Integer> nodeIds);
+
     @Transactional
     void deleteInterface(Integer nodeId, String ipAddr);
 
@@ -174,6 +203,12 @@ public interface ProvisionService {
     @Transactional
     void insertNode(OnmsNode node);
 
+    /**
+     * Insert the provided nodes into the database in a single transaction
+     */
+    @Transactional
+    void insertNodes(List<OnmsNode> nodes);
+
     /**
      * Look up the OnmsServiceType with the given name, creating one if it
      * doesn't exist.
@@ -242,6 +277,8 @@ public interface ProvisionService {
 
     List<PluginConfig> getDetectorsForForeignSource(String foreignSource);
 
+    ForeignSource getForeignSource(String foreignSourceName);
+
     List<NodePolicy> getNodePoliciesForForeignSource(String foreignSourceName);
     
     List<IpInterfacePolicy> getIpInterfacePoliciesForForeignSource(String foreignSourceName);
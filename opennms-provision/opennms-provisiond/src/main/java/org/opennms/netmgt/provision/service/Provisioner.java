@@ -41,10 +41,8 @@ import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
-import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 
 import org.opennms.core.spring.BeanUtils;
@@ -82,8 +80,9 @@ import org.springframework.core.io.FileSystemResource;
 import org.springframework.core.io.Resource;
 import org.springframework.core.io.UrlResource;
 
+import com.codahale.metrics.JmxReporter;
+import com.codahale.metrics.MetricRegistry;
 import com.google.common.collect.Maps;
-import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 import io.opentracing.Tracer;
 
@@ -96,6 +95,8 @@ import io.opentracing.Tracer;
 public class Provisioner implements SpringServiceDaemon {
     private static final String SCHEDULE_RESCAN_FOR_UPDATED_NODES = "org.opennms.provisiond.scheduleRescanForUpdatedNodes";
     private static final String SCHEDULE_RESCAN_FOR_EXISTING_NODES = "org.opennms.provisiond.scheduleRescanForExistingNodes";
+    private static final String NEW_SUSPECT_THREADS = "org.opennms.provisiond.newSuspectThreads";
+    private static final String JMX_DOMAIN = "org.opennms.netmgt.provisiond";
 
     private static final Logger LOG = LoggerFactory.getLogger(Provisioner.class);
     
@@ -114,10 +115,15 @@ public class Provisioner implements SpringServiceDaemon {
     
     private volatile TimeTrackingMonitor m_stats;
 
-    private final ThreadFactory newSuspectThreadFactory = new ThreadFactoryBuilder()
-            .setNameFormat("newSuspectExecutor")
-            .build();
-    private ExecutorService m_newSuspectExecutor = Executors.newSingleThreadExecutor(newSuspectThreadFactory);
+    private final MetricRegistry m_metrics = new MetricRegistry();
+    private JmxReporter m_metricsReporter;
+
+    // New suspect scans for the same address and location are serialized, others may run concurrently.
+    // Lanes are keyed by address since the foreign source and sysName are only known once the scan ran,
+    // so with more than one lane two addresses of the same device can be scanned at the same time and
+    // both may miss the other's node, creating duplicate nodes. The default of 1 lane avoids this.
+    private StripedExecutor m_newSuspectExecutor = new StripedExecutor("newSuspectExecutor",
+            Math.max(1, Integer.getInteger(NEW_SUSPECT_THREADS, 1)), m_metrics);
 
     @Autowired
     private ProvisioningAdapterManager m_manager;
@@ -244,6 +250,15 @@ public class Provisioner implements SpringServiceDaemon {
         m_tracerRegistry.init(SystemInfoUtils.getInstanceId());
         Tracer tracer = m_tracerRegistry.getTracer();
         m_provisionService.setTracer(tracer);
+        LOG.info("Handling new suspect events with {} thread(s).", m_newSuspectExecutor.getNumLanes());
+        if (m_newSuspectExecutor.getNumLanes() > 1) {
+            LOG.warn("New suspect scans for different addresses of the same device may run concurrently and create duplicate nodes. Set {} to 1 to avoid this.",
+                    NEW_SUSPECT_THREADS);
+        }
+        m_metricsReporter = JmxReporter.forRegistry(m_metrics)
+                .inDomain(JMX_DOMAIN)
+                .build();
+        m_metricsReporter.start();
     }
 
     /**
@@ -256,6 +271,9 @@ public class Provisioner implements SpringServiceDaemon {
         m_importSchedule.stop();
         m_scheduledExecutor.shutdown();
         m_newSuspectExecutor.shutdown();
+        if (m_metricsReporter != null) {
+            m_metricsReporter.close();
+        }
     }
 
     /**
@@ -462,6 +480,7 @@ public class Provisioner implements SpringServiceDaemon {
         if (ri.isAborted()) {
             throw new ModelImportException("Import failed for resource " + resource.toString(), ri.getError());
         }
+        m_importActivities.importCompleted(ri);
         return ri;
     }
 
@@ -544,6 +563,7 @@ public class Provisioner implements SpringServiceDaemon {
             final RequisitionImport ri = importModelFromResource(resource, rescanExisting, m_stats);
             String foreignSource = null;
             if (ri != null && ri.getRequisition() != null) {
+                m_stats.setNodeCounts(ri.getDeleteCount(), ri.getUpdateCount(), ri.getInsertCount(), ri.getUnchangedCount());
                 foreignSource = ri.getRequisition().getForeignSource();
             }
 
@@ -632,6 +652,11 @@ public class Provisioner implements SpringServiceDaemon {
             return;
         }
 
+        // The location is resolved on the worker since it may require a database lookup,
+        // so key on what identifies it in the event instead
+        final String locationKey = paramMap.containsKey("location") ? paramMap.get("location") : event.getDistPoller();
+        final String key = ip + "@" + locationKey;
+
         Runnable r = new Runnable() {
             @Override
             public void run() {
@@ -669,8 +694,8 @@ public class Provisioner implements SpringServiceDaemon {
                 }
             }
         };
-        // Run new suspect events in a single thread executor so that only one node will be scanned at a given time.
-        m_newSuspectExecutor.execute(r);
+        // Scans for the same address and location run one at a time, in the order the events were received
+        m_newSuspectExecutor.execute(key, r);
         
     }
     
@@ -961,4 +986,8 @@ public class Provisioner implements SpringServiceDaemon {
     public ExecutorService getNewSuspectExecutor() {
         return m_newSuspectExecutor;
     }
+
+    public MetricRegistry getMetrics() {
+        return m_metrics;
+    }
 }
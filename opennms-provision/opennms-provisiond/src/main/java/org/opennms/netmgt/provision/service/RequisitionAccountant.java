@@ -28,6 +28,9 @@
 
 package org.opennms.netmgt.provision.service;
 
+import java.util.Collections;
+import java.util.Set;
+
 import org.opennms.netmgt.provision.persist.AbstractRequisitionVisitor;
 import org.opennms.netmgt.provision.persist.OnmsAssetRequisition;
 import org.opennms.netmgt.provision.persist.OnmsInterfaceMetaDataRequisition;
@@ -42,6 +45,7 @@ import org.opennms.netmgt.provision.service.operations.SaveOrUpdateOperation;
 
 public class RequisitionAccountant extends AbstractRequisitionVisitor {
 	private final ImportOperationsManager m_opsMgr;
+    private final Set<String> m_skippedNodes;
     private SaveOrUpdateOperation m_currentOp;
         
     /**
@@ -50,12 +54,27 @@ public class RequisitionAccountant extends AbstractRequisitionVisitor {
      * @param opsMgr a {@link org.opennms.netmgt.provision.service.operations.ImportOperationsManager} object.
      */
     public RequisitionAccountant(ImportOperationsManager opsMgr) {
+        this(opsMgr, Collections.emptySet());
+    }
+
+    /**
+     * <p>Constructor for RequisitionAccountant.</p>
+     *
+     * @param opsMgr a {@link org.opennms.netmgt.provision.service.operations.ImportOperationsManager} object.
+     * @param skippedNodes the foreign ids of the nodes for which no operation must be created
+     */
+    public RequisitionAccountant(ImportOperationsManager opsMgr, Set<String> skippedNodes) {
         m_opsMgr = opsMgr;
+        m_skippedNodes = skippedNodes;
     }
     
     /** {@inheritDoc} */
     @Override
     public void visitNode(OnmsNodeRequisition nodeReq) {
+        if (m_skippedNodes.contains(nodeReq.getForeignId())) {
+            m_currentOp = null;
+            return;
+        }
         m_currentOp = m_opsMgr.foundNode(nodeReq.getForeignId(), nodeReq.getNodeLabel(), nodeReq.getLocation(), nodeReq.getBuilding(), nodeReq.getCity());
     }
 
@@ -68,6 +87,9 @@ public class RequisitionAccountant extends AbstractRequisitionVisitor {
     /** {@inheritDoc} */
     @Override
     public void visitInterface(OnmsIpInterfaceRequisition ifaceReq) {
+        if (m_currentOp == null) {
+            return;
+        }
         m_currentOp.foundInterface(ifaceReq.getIpAddr().trim(), ifaceReq.getDescr(), ifaceReq.getSnmpPrimary(), ifaceReq.getManaged(), ifaceReq.getStatus());
         
     }
@@ -75,33 +97,51 @@ public class RequisitionAccountant extends AbstractRequisitionVisitor {
     /** {@inheritDoc} */
     @Override
     public void visitMonitoredService(OnmsMonitoredServiceRequisition svcReq) {
+        if (m_currentOp == null) {
+            return;
+        }
         m_currentOp.foundMonitoredService(svcReq.getServiceName());
     }
 
     /** {@inheritDoc} */
     @Override
     public void visitNodeCategory(OnmsNodeCategoryRequisition catReq) {
+        if (m_currentOp == null) {
+            return;
+        }
         m_currentOp.foundCategory(catReq.getName());
     }
 
     /** {@inheritDoc} */
     @Override
     public void visitAsset(OnmsAssetRequisition assetReq) {
+        if (m_currentOp == null) {
+            return;
+        }
         m_currentOp.foundAsset(assetReq.getName(), assetReq.getValue());
     }
 
     @Override
     public void visitNodeMetaData(OnmsNodeMetaDataRequisition metaDataReq) {
+        if (m_currentOp == null) {
+            return;
+        }
         m_currentOp.foundNodeMetaData(metaDataReq.getContext(), metaDataReq.getKey(), metaDataReq.getValue());
     }
 
     @Override
     public void visitInterfaceMetaData(OnmsInterfaceMetaDataRequisition metaDataReq) {
+        if (m_currentOp == null) {
+            return;
+        }
         m_currentOp.foundInterfaceMetaData(metaDataReq.getContext(), metaDataReq.getKey(), metaDataReq.getValue());
     }
 
     @Override
     public void visitServiceMetaData(OnmsServiceMetaDataRequisition metaDataReq) {
+        if (m_currentOp == null) {
+            return;
+        }
         m_currentOp.foundServiceMetaData(metaDataReq.getContext(), metaDataReq.getKey(), metaDataReq.getValue());
     }
 }
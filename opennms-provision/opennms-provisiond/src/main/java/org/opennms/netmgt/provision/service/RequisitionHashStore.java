@@ -0,0 +1,182 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2022 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2022 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+
+package org.opennms.netmgt.provision.service;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+import org.opennms.core.xml.JaxbUtils;
+import org.opennms.netmgt.provision.persist.foreignsource.ForeignSource;
+import org.opennms.netmgt.provision.persist.foreignsource.PluginConfig;
+import org.opennms.netmgt.provision.persist.requisition.RequisitionNode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+
+/**
+ * Remembers a content hash for every node of a requisition after it has been imported, along
+ * with a hash of the scan interval, detectors and policies of its foreign source, so that the next import can
+ * tell which nodes did not change.
+ *
+ * The hashes of a foreign source are kept in a single properties file which is replaced
+ * atomically. A missing or unreadable file simply means that every node is considered changed.
+ */
+public class RequisitionHashStore {
+    private static final Logger LOG = LoggerFactory.getLogger(RequisitionHashStore.class);
+
+    private static final String FOREIGN_SOURCE_KEY = "foreign-source";
+    private static final String NODE_PREFIX = "node.";
+
+    private final Path m_directory;
+
+    public RequisitionHashStore(final Path directory) {
+        m_directory = directory;
+    }
+
+    public RequisitionHashStore(final File directory) {
+        this(directory.toPath());
+    }
+
+    public Path getDirectory() {
+        return m_directory;
+    }
+
+    /**
+     * Hashes of a single foreign source.
+     */
+    public static class Snapshot {
+        private final String m_foreignSourceHash;
+        private final Map<String, String> m_nodeHashes;
+
+        public Snapshot(final String foreignSourceHash, final Map<String, String> nodeHashes) {
+            m_foreignSourceHash = foreignSourceHash;
+            m_nodeHashes = nodeHashes;
+        }
+
+        public String getForeignSourceHash() {
+            return m_foreignSourceHash;
+        }
+
+        public Map<String, String> getNodeHashes() {
+            return m_nodeHashes;
+        }
+    }
+
+    public Snapshot load(final String foreignSource) {
+        final Path file = getFile(foreignSource);
+        if (!Files.isRegularFile(file)) {
+            return new Snapshot(null, Collections.emptyMap());
+        }
+        final Properties props = new Properties();
+        try (InputStream in = Files.newInputStream(file)) {
+            props.load(in);
+        } catch (final IOException e) {
+            LOG.warn("Unable to read the requisition hashes from {}, all nodes will be imported.", file, e);
+            return new Snapshot(null, Collections.emptyMap());
+        }
+        final Map<String, String> nodeHashes = new HashMap<>(props.size());
+        for (final String key : props.stringPropertyNames()) {
+            if (key.startsWith(NODE_PREFIX)) {
+                nodeHashes.put(key.substring(NODE_PREFIX.length()), props.getProperty(key));
+            }
+        }
+        return new Snapshot(props.getProperty(FOREIGN_SOURCE_KEY), nodeHashes);
+    }
+
+    public void save(final String foreignSource, final Snapshot snapshot) {
+        final Properties props = new Properties();
+        if (snapshot.getForeignSourceHash() != null) {
+            props.setProperty(FOREIGN_SOURCE_KEY, snapshot.getForeignSourceHash());
+        }
+        for (final Map.Entry<String, String> entry : snapshot.getNodeHashes().entrySet()) {
+            props.setProperty(NODE_PREFIX + entry.getKey(), entry.getValue());
+        }
+        final Path file = getFile(foreignSource);
+        try {
+            Files.createDirectories(m_directory);
+            final Path tmp = Files.createTempFile(m_directory, file.getFileName().toString(), ".tmp");
+            try (OutputStream out = Files.newOutputStream(tmp)) {
+                props.store(out, "Requisition hashes for foreign source " + foreignSource);
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (final IOException e) {
+            LOG.warn("Unable to write the requisition hashes to {}, the next import will process all nodes.", file, e);
+            delete(foreignSource);
+        }
+    }
+
+    public void delete(final String foreignSource) {
+        try {
+            Files.deleteIfExists(getFile(foreignSource));
+        } catch (final IOException e) {
+            LOG.warn("Unable to delete the requisition hashes of foreign source {}.", foreignSource, e);
+        }
+    }
+
+    private Path getFile(final String foreignSource) {
+        try {
+            return m_directory.resolve(URLEncoder.encode(foreignSource, StandardCharsets.UTF_8.name()) + ".properties");
+        } catch (final UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public static String hash(final RequisitionNode node) {
+        return Hashing.sha256().hashString(JaxbUtils.marshal(node), StandardCharsets.UTF_8).toString();
+    }
+
+    public static String hash(final ForeignSource foreignSource) {
+        final Hasher hasher = Hashing.sha256().newHasher();
+        hasher.putString("scan-interval:" + foreignSource.getScanInterval(), StandardCharsets.UTF_8);
+        for (final PluginConfig detector : foreignSource.getDetectors()) {
+            hasher.putString("detector:", StandardCharsets.UTF_8);
+            hasher.putString(JaxbUtils.marshal(detector), StandardCharsets.UTF_8);
+        }
+        for (final PluginConfig policy : foreignSource.getPolicies()) {
+            hasher.putString("policy:", StandardCharsets.UTF_8);
+            hasher.putString(JaxbUtils.marshal(policy), StandardCharsets.UTF_8);
+        }
+        return hasher.hash().toString();
+    }
+}
@@ -0,0 +1,188 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2022 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2022 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+
+package org.opennms.netmgt.provision.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * An executor made of a fixed number of single threaded lanes.
+ *
+ * Tasks submitted with a key always run on the same lane, so tasks sharing a key
+ * are executed one at a time and in submission order, while tasks with different
+ * keys may run concurrently.
+ *
+ * Tasks submitted without a key through the {@link java.util.concurrent.Executor}
+ * interface act as a barrier: they only run once every task that was queued before
+ * them, on any lane, has completed. This keeps the "wait for everything queued so
+ * far" semantics callers had with a single threaded executor.
+ */
+public class StripedExecutor extends AbstractExecutorService {
+
+    private final List<ExecutorService> lanes;
+
+    private final AtomicInteger queued = new AtomicInteger(0);
+
+    private final Timer waitTimer;
+
+    private final Timer runTimer;
+
+    /**
+     * @param name used for the thread names and as the prefix of the metric names
+     * @param numLanes number of lanes, and therefore threads
+     * @param metrics registry to which the queue depth and latency metrics are added
+     */
+    public StripedExecutor(String name, int numLanes, MetricRegistry metrics) {
+        Objects.requireNonNull(name, "name");
+        Objects.requireNonNull(metrics, "metrics");
+        Preconditions.checkArgument(numLanes > 0, "numLanes must be strictly positive");
+
+        final ThreadFactory threadFactory = new ThreadFactoryBuilder()
+                .setNameFormat(numLanes == 1 ? name : name + "-%d")
+                .build();
+        final List<ExecutorService> lanes = new ArrayList<>(numLanes);
+        for (int i = 0; i < numLanes; i++) {
+            lanes.add(Executors.newSingleThreadExecutor(threadFactory));
+        }
+        this.lanes = lanes;
+
+        metrics.register(MetricRegistry.name(name, "queued"), (Gauge<Integer>) queued::get);
+        metrics.register(MetricRegistry.name(name, "lanes"), (Gauge<Integer>) () -> numLanes);
+        waitTimer = metrics.timer(MetricRegistry.name(name, "wait"));
+        runTimer = metrics.timer(MetricRegistry.name(name, "run"));
+    }
+
+    /**
+     * Executes the given command on the lane associated with the key.
+     */
+    public void execute(Object key, Runnable command) {
+        Objects.requireNonNull(key, "key");
+        Objects.requireNonNull(command, "command");
+        final ExecutorService lane = lanes.get(laneFor(key));
+        final long enqueuedAt = System.nanoTime();
+        queued.incrementAndGet();
+        try {
+            lane.execute(() -> {
+                queued.decrementAndGet();
+                waitTimer.update(System.nanoTime() - enqueuedAt, TimeUnit.NANOSECONDS);
+                try (Timer.Context ctx = runTimer.time()) {
+                    command.run();
+                }
+            });
+        } catch (RuntimeException e) {
+            queued.decrementAndGet();
+            throw e;
+        }
+    }
+
+    /**
+     * Executes the given command once all of the tasks currently queued on
+     * all lanes have completed.
+     */
+    @Override
+    public void execute(Runnable command) {
+        Objects.requireNonNull(command, "command");
+        if (lanes.size() == 1) {
+            lanes.get(0).execute(command);
+            return;
+        }
+        // The last lane to reach the barrier runs the command
+        final AtomicInteger remaining = new AtomicInteger(lanes.size());
+        for (ExecutorService lane : lanes) {
+            lane.execute(() -> {
+                if (remaining.decrementAndGet() == 0) {
+                    command.run();
+                }
+            });
+        }
+    }
+
+    public int getNumLanes() {
+        return lanes.size();
+    }
+
+    public int getQueued() {
+        return queued.get();
+    }
+
+    protected int laneFor(Object key) {
+        // Spread the bits, as done by HashMap, before reducing to a lane index
+        final int h = key.hashCode();
+        return Math.floorMod(h ^ (h >>> 16), lanes.size());
+    }
+
+    @Override
+    public void shutdown() {
+        lanes.forEach(ExecutorService::shutdown);
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        final List<Runnable> pending = new ArrayList<>();
+        lanes.forEach(lane -> pending.addAll(lane.shutdownNow()));
+        queued.set(0);
+        return pending;
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return lanes.stream().allMatch(ExecutorService::isShutdown);
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return lanes.stream().allMatch(ExecutorService::isTerminated);
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        final long deadline = System.nanoTime() + unit.toNanos(timeout);
+        for (ExecutorService lane : lanes) {
+            final long remaining = deadline - System.nanoTime();
+            if (!lane.awaitTermination(Math.max(0, remaining), TimeUnit.NANOSECONDS)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -56,6 +56,7 @@ public class TimeTrackingMonitor implements ProvisionMonitor {
 	private int m_deleteCount;
 	private int m_insertCount;
 	private int m_updateCount;
+	private int m_unchangedCount;
 	private int m_eventCount;
 
 	/** {@inheritDoc} */
@@ -194,6 +195,16 @@ public class TimeTrackingMonitor implements ProvisionMonitor {
 		m_relateDuration.end();
 	}
 	
+	/**
+	 * Records how many nodes were deleted, updated, inserted and left untouched by the import.
+	 */
+	public void setNodeCounts(int deleteCount, int updateCount, int insertCount, int unchangedCount) {
+	    m_deleteCount = deleteCount;
+	    m_updateCount = updateCount;
+	    m_insertCount = insertCount;
+	    m_unchangedCount = unchangedCount;
+	}
+
 	/**
 	 * <p>toString</p>
 	 *
@@ -204,7 +215,8 @@ public class TimeTrackingMonitor implements ProvisionMonitor {
 		final StringBuilder stats = new StringBuilder();
 		stats.append("Deletes: ").append(m_deleteCount).append(", ");
 		stats.append("Updates: ").append(m_updateCount).append(", ");
-		stats.append("Inserts: ").append(m_insertCount).append("\n");
+		stats.append("Inserts: ").append(m_insertCount).append(", ");
+		stats.append("Unchanged: ").append(m_unchangedCount).append("\n");
 		stats.append(m_importDuration).append(", ");
 		stats.append(m_loadingDuration).append(", ");
 		stats.append(m_auditDuration).append('\n');
@@ -47,6 +47,15 @@ public class DeleteOperation extends ImportOperation {
         m_nodeId = nodeId;
     }
 
+    /**
+     * <p>getNodeId</p>
+     *
+     * @return the id of the node to delete
+     */
+    protected Integer getNodeId() {
+        return m_nodeId;
+    }
+
     /**
      * <p>toString</p>
      *
@@ -38,6 +38,7 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
 import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.TimeUnit;
@@ -46,9 +47,12 @@ import org.opennms.netmgt.model.OnmsNode;
 import org.opennms.netmgt.provision.persist.requisition.Requisition;
 import org.opennms.netmgt.provision.service.ProvisionService;
 import org.opennms.netmgt.provision.service.RequisitionAccountant;
+import org.opennms.netmgt.provision.service.operations.ImportOperation.OperationType;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.collect.Lists;
+
 /**
  * This class tracks nodes that need to be deleted, inserted, or updated during
  * provisioning import operations.
@@ -310,7 +314,75 @@ public class ImportOperationsManager {
      * @param requisition a {@link org.opennms.netmgt.provision.persist.requisition.Requisition} object.
      */
     public void auditNodes(Requisition requisition) {
-        requisition.visit(new RequisitionAccountant(this));
+        auditNodes(requisition, Collections.emptySet());
+    }
+
+    /**
+     * Audits the requisition, leaving the given nodes alone: no operation is created for them
+     * and they are not deleted.
+     *
+     * @param requisition a {@link org.opennms.netmgt.provision.persist.requisition.Requisition} object.
+     * @param unchangedNodes the foreign ids of existing nodes that must not be touched
+     */
+    public void auditNodes(Requisition requisition, Set<String> unchangedNodes) {
+        m_foreignIdToNodeMap.keySet().removeAll(unchangedNodes);
+        requisition.visit(new RequisitionAccountant(this, unchangedNodes));
+    }
+
+    /**
+     * Returns the operations of the given type that write to the database, split into chunks
+     * of at most chunkSize operations. Operations that leave their node untouched because
+     * rescanExisting is false are not included.
+     *
+     * @param type the type of the operations
+     * @param chunkSize the maximum number of operations per chunk
+     * @return the chunks, each of which can be persisted with {@link #persistChunk(OperationType, List)}
+     */
+    public List<List<ImportOperation>> getPersistChunks(final OperationType type, final int chunkSize) {
+        final List<ImportOperation> operations = new ArrayList<>();
+        for (final ImportOperation oper : getOperations()) {
+            if (oper.getOperationType() == type && !(oper instanceof NullUpdateOperation)) {
+                operations.add(oper);
+            }
+        }
+        return Lists.partition(operations, chunkSize);
+    }
+
+    /**
+     * Persists a chunk of operations of the given type in a single transaction. The events of
+     * the operations are sent once all of them have been written.
+     *
+     * @param type the type of the operations
+     * @param chunk operations returned by {@link #getPersistChunks(OperationType, int)}
+     */
+    public void persistChunk(final OperationType type, final List<ImportOperation> chunk) {
+        LOG.info("Persist: {} {} operations", chunk.size(), type);
+        switch (type) {
+        case DELETE:
+            final List<Integer> nodeIds = new ArrayList<>(chunk.size());
+            for (final ImportOperation oper : chunk) {
+                nodeIds.add(((DeleteOperation)oper).getNodeId());
+            }
+            m_provisionService.deleteNodes(nodeIds);
+            break;
+        case UPDATE:
+            m_provisionService.updateNodes(getNodes(chunk), m_rescanExisting);
+            break;
+        case INSERT:
+            m_provisionService.insertNodes(getNodes(chunk));
+            break;
+        }
+
+        // clear the cache to we don't use up all the memory
+        m_provisionService.clearCache();
+    }
+
+    private static List<OnmsNode> getNodes(final List<ImportOperation> chunk) {
+        final List<OnmsNode> nodes = new ArrayList<>(chunk.size());
+        for (final ImportOperation oper : chunk) {
+            nodes.add(((SaveOrUpdateOperation)oper).getNode());
+        }
+        return nodes;
     }
 
     @SuppressWarnings("unused")
@@ -28,6 +28,11 @@
 
 package org.opennms.netmgt.provision.service.operations;
 
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
 import javax.xml.bind.ValidationException;
 
 import org.slf4j.Logger;
@@ -39,6 +44,18 @@ public class RequisitionImport {
     private Requisition m_requisition;
     private Throwable m_throwable;
 
+    private String m_foreignSourceHash;
+    private Map<String, String> m_previousHashes = Collections.emptyMap();
+    private Map<String, String> m_currentHashes = Collections.emptyMap();
+    private Set<String> m_unchangedNodes = Collections.emptySet();
+    private final Map<String, String> m_importedHashes = new ConcurrentHashMap<>();
+
+    private int m_insertCount;
+    private int m_updateCount;
+    private int m_deleteCount;
+
+    private int m_persistChunkSize;
+
     public Requisition getRequisition() {
         return m_requisition;
     }
@@ -68,6 +85,93 @@ public class RequisitionImport {
         }
     }
 
+    /**
+     * Records the hashes computed while auditing the requisition.
+     *
+     * @param foreignSourceHash the hash of the detectors and policies of the foreign source
+     * @param previousHashes the node hashes stored by the previous import
+     * @param currentHashes the node hashes of this requisition
+     * @param unchangedNodes the foreign ids of the nodes that are skipped by this import
+     */
+    public void setHashes(final String foreignSourceHash, final Map<String, String> previousHashes, final Map<String, String> currentHashes, final Set<String> unchangedNodes) {
+        m_foreignSourceHash = foreignSourceHash;
+        m_previousHashes = previousHashes;
+        m_currentHashes = currentHashes;
+        m_unchangedNodes = unchangedNodes;
+        for (final String foreignId : unchangedNodes) {
+            m_importedHashes.put(foreignId, currentHashes.get(foreignId));
+        }
+    }
+
+    public String getForeignSourceHash() {
+        return m_foreignSourceHash;
+    }
+
+    public boolean isUnchanged(final String foreignId) {
+        return m_unchangedNodes.contains(foreignId);
+    }
+
+    public int getUnchangedCount() {
+        return m_unchangedNodes.size();
+    }
+
+    /**
+     * Marks the node as written to the database with the content of this requisition.
+     */
+    public void nodePersisted(final String foreignId) {
+        final String hash = m_currentHashes.get(foreignId);
+        if (hash != null) {
+            m_importedHashes.put(foreignId, hash);
+        }
+    }
+
+    /**
+     * Marks the node as left untouched in the database, so it still matches the previous import.
+     */
+    public void nodeNotPersisted(final String foreignId) {
+        final String hash = m_previousHashes.get(foreignId);
+        if (hash != null) {
+            m_importedHashes.put(foreignId, hash);
+        }
+    }
+
+    /**
+     * @return the hashes of the nodes whose database state matches the content they were hashed from
+     */
+    public Map<String, String> getImportedHashes() {
+        return Collections.unmodifiableMap(m_importedHashes);
+    }
+
+    public void setOperationCounts(final int insertCount, final int updateCount, final int deleteCount) {
+        m_insertCount = insertCount;
+        m_updateCount = updateCount;
+        m_deleteCount = deleteCount;
+    }
+
+    public int getInsertCount() {
+        return m_insertCount;
+    }
+
+    public int getUpdateCount() {
+        return m_updateCount;
+    }
+
+    public int getDeleteCount() {
+        return m_deleteCount;
+    }
+
+    /**
+     * @return the number of operations persisted per transaction by the import phases, or 0
+     *         if every node is persisted by its own nodeImport lifecycle
+     */
+    public int getPersistChunkSize() {
+        return m_persistChunkSize;
+    }
+
+    public void setPersistChunkSize(final int persistChunkSize) {
+        m_persistChunkSize = persistChunkSize;
+    }
+
     public boolean isAborted() {
         if (m_throwable != null) return true;
         return false;
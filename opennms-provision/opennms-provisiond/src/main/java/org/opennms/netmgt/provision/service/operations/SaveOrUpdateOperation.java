@@ -181,6 +181,10 @@ public abstract class SaveOrUpdateOperation extends ImportOperation {
         return m_node;
     }
 
+    public String getForeignId() {
+        return m_node.getForeignId();
+    }
+
     protected String getRescanExisting() {
         return m_rescanExisting;
     }
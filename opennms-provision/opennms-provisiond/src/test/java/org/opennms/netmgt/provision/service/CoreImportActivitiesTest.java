@@ -0,0 +1,270 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2022 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2022 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.provision.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.atLeast;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.ArgumentCaptor;
+import org.opennms.core.tasks.BatchTask;
+import org.opennms.netmgt.provision.persist.foreignsource.ForeignSource;
+import org.opennms.netmgt.provision.persist.foreignsource.PluginConfig;
+import org.opennms.netmgt.provision.persist.requisition.Requisition;
+import org.opennms.netmgt.provision.persist.requisition.RequisitionNode;
+import org.opennms.netmgt.provision.service.operations.ImportOperation;
+import org.opennms.netmgt.provision.service.operations.ImportOperationsManager;
+import org.opennms.netmgt.provision.service.operations.RequisitionImport;
+
+public class CoreImportActivitiesTest {
+
+    @Rule
+    public TemporaryFolder m_folder = new TemporaryFolder();
+
+    private ProvisionService m_provisionService;
+    private RequisitionHashStore m_hashStore;
+    private CoreImportActivities m_activities;
+
+    @Before
+    public void setUp() {
+        System.setProperty(CoreImportActivities.SKIP_UNCHANGED_NODES_PROPERTY, "true");
+
+        final Map<String, Integer> foreignIdsToNodes = new HashMap<>();
+        foreignIdsToNodes.put("n1", 1);
+        foreignIdsToNodes.put("n2", 2);
+
+        m_provisionService = mock(ProvisionService.class);
+        when(m_provisionService.getForeignIdToNodeIdMap("fs")).thenReturn(foreignIdsToNodes);
+        when(m_provisionService.getForeignSource("fs")).thenReturn(new ForeignSource("fs"));
+
+        m_hashStore = new RequisitionHashStore(m_folder.getRoot().toPath().resolve("hashes"));
+        m_activities = new CoreImportActivities(m_provisionService);
+        m_activities.setRequisitionHashStore(m_hashStore);
+    }
+
+    @After
+    public void tearDown() {
+        System.clearProperty(CoreImportActivities.SKIP_UNCHANGED_NODES_PROPERTY);
+        System.clearProperty(CoreImportActivities.PERSIST_CHUNK_SIZE_PROPERTY);
+    }
+
+    @Test
+    public void shouldSkipUnchangedNodes() {
+        final ImportOperationsManager first = importRequisition(requisition("router", "switch"));
+        assertEquals(2, first.getUpdateCount());
+        final Map<String, String> hashes = m_hashStore.load("fs").getNodeHashes();
+        assertEquals(2, hashes.size());
+
+        final RequisitionImport ri = new RequisitionImport();
+        final ImportOperationsManager second = importRequisition(ri, requisition("router", "switch"));
+        assertEquals(0, second.getOperationCount());
+        assertEquals(2, ri.getUnchangedCount());
+        assertEquals(hashes, m_hashStore.load("fs").getNodeHashes());
+    }
+
+    @Test
+    public void shouldReimportChangedNodes() {
+        importRequisition(requisition("router", "switch"));
+        final String unchangedHash = m_hashStore.load("fs").getNodeHashes().get("n1");
+
+        final ImportOperationsManager opsMgr = importRequisition(requisition("router", "firewall"));
+        assertEquals(1, opsMgr.getUpdateCount());
+        assertEquals(0, opsMgr.getDeleteCount());
+        verify(m_provisionService).updateNode(argThat(node -> "firewall".equals(node.getLabel())), anyString());
+
+        final Map<String, String> hashes = m_hashStore.load("fs").getNodeHashes();
+        assertEquals(unchangedHash, hashes.get("n1"));
+        assertEquals(RequisitionHashStore.hash(node("n2", "firewall")), hashes.get("n2"));
+    }
+
+    @Test
+    public void shouldReimportAllNodesWhenThePoliciesChange() {
+        importRequisition(requisition("router", "switch"));
+
+        final ForeignSource foreignSource = new ForeignSource("fs");
+        foreignSource.addPolicy(new PluginConfig("p1", "org.opennms.netmgt.provision.persist.policies.NodeCategorySettingPolicy"));
+        when(m_provisionService.getForeignSource("fs")).thenReturn(foreignSource);
+
+        final ImportOperationsManager opsMgr = importRequisition(requisition("router", "switch"));
+        assertEquals(2, opsMgr.getUpdateCount());
+        assertEquals(RequisitionHashStore.hash(foreignSource), m_hashStore.load("fs").getForeignSourceHash());
+    }
+
+    @Test
+    public void shouldNotRecordTheHashOfAFailedPersist() {
+        importRequisition(requisition("router", "switch"));
+
+        doThrow(new IllegalStateException("boom")).when(m_provisionService).updateNode(argThat(node -> "firewall".equals(node.getLabel())), anyString());
+        importRequisition(requisition("router", "firewall"));
+
+        // the node must be imported again by the next run
+        assertFalse(m_hashStore.load("fs").getNodeHashes().containsKey("n2"));
+        final ImportOperationsManager opsMgr = importRequisition(requisition("router", "firewall"));
+        assertEquals(1, opsMgr.getUpdateCount());
+    }
+
+    @Test
+    public void shouldDropTheHashesWhenDisabled() {
+        importRequisition(requisition("router", "switch"));
+
+        System.clearProperty(CoreImportActivities.SKIP_UNCHANGED_NODES_PROPERTY);
+        final ImportOperationsManager opsMgr = importRequisition(requisition("router", "switch"));
+        assertEquals(2, opsMgr.getUpdateCount());
+        assertNull(m_hashStore.load("fs").getForeignSourceHash());
+    }
+
+    @Test(expected=IllegalStateException.class)
+    public void shouldFailWithoutAHashStore() {
+        m_activities = new CoreImportActivities(m_provisionService);
+        importRequisition(requisition("router", "switch"));
+    }
+
+    @Test
+    public void shouldPersistInChunks() {
+        System.setProperty(CoreImportActivities.PERSIST_CHUNK_SIZE_PROPERTY, "2");
+        final Map<String, Integer> foreignIdsToNodes = new HashMap<>();
+        foreignIdsToNodes.put("n1", 1);
+        foreignIdsToNodes.put("n2", 2);
+        foreignIdsToNodes.put("n9", 9);
+        when(m_provisionService.getForeignIdToNodeIdMap("fs")).thenReturn(foreignIdsToNodes);
+
+        final Requisition requisition = requisition("router", "switch");
+        requisition.putNode(node("n3", "firewall"));
+        requisition.putNode(node("n4", "printer"));
+        requisition.putNode(node("n5", "server"));
+
+        final RequisitionImport ri = new RequisitionImport();
+        importRequisitionInChunks(ri, requisition);
+
+        verify(m_provisionService, never()).deleteNode(any());
+        verify(m_provisionService, never()).updateNode(any(), anyString());
+        verify(m_provisionService, never()).insertNode(any());
+        verify(m_provisionService).deleteNodes(Collections.singletonList(9));
+        verify(m_provisionService).updateNodes(argThat(nodes -> nodes.size() == 2), eq(Boolean.TRUE.toString()));
+        verify(m_provisionService).insertNodes(argThat(nodes -> nodes.size() == 2));
+        verify(m_provisionService).insertNodes(argThat(nodes -> nodes.size() == 1));
+        assertEquals(5, m_hashStore.load("fs").getNodeHashes().size());
+    }
+
+    @Test
+    public void shouldPersistAFailedChunkNodeByNode() {
+        System.setProperty(CoreImportActivities.PERSIST_CHUNK_SIZE_PROPERTY, "2");
+        doThrow(new IllegalStateException("boom")).when(m_provisionService).updateNodes(anyList(), anyString());
+        doThrow(new IllegalStateException("boom")).when(m_provisionService).updateNode(argThat(node -> "switch".equals(node.getLabel())), anyString());
+
+        importRequisitionInChunks(new RequisitionImport(), requisition("router", "switch"));
+
+        verify(m_provisionService, times(2)).updateNode(any(), anyString());
+        final Map<String, String> hashes = m_hashStore.load("fs").getNodeHashes();
+        assertEquals(RequisitionHashStore.hash(node("n1", "router")), hashes.get("n1"));
+        assertFalse(hashes.containsKey("n2"));
+    }
+
+    private ImportOperationsManager importRequisition(final Requisition requisition) {
+        return importRequisition(new RequisitionImport(), requisition);
+    }
+
+    /**
+     * Runs the audit, persist and completion steps of an import the way the import lifecycle does,
+     * letting a failed persist fail only its own node.
+     */
+    private ImportOperationsManager importRequisition(final RequisitionImport ri, final Requisition requisition) {
+        ri.setRequisition(requisition);
+        final ImportOperationsManager opsMgr = m_activities.auditNodes(ri, Boolean.TRUE.toString());
+        for (final ImportOperation operation : opsMgr.getOperations()) {
+            try {
+                CoreImportActivities.persistNode(operation, ri);
+            } catch (final IllegalStateException e) {
+                if (!"boom".equals(e.getMessage())) {
+                    fail(e.getMessage());
+                }
+            }
+        }
+        m_activities.importCompleted(ri);
+        return opsMgr;
+    }
+
+    /**
+     * Runs an import whose nodes are written by the delete, update and insert phases.
+     */
+    private void importRequisitionInChunks(final RequisitionImport ri, final Requisition requisition) {
+        ri.setRequisition(requisition);
+        final ImportOperationsManager opsMgr = m_activities.auditNodes(ri, Boolean.TRUE.toString());
+        for (final ImportOperation operation : opsMgr.getOperations()) {
+            CoreImportActivities.persistNode(operation, ri);
+        }
+
+        final BatchTask currentPhase = mock(BatchTask.class);
+        CoreImportActivities.deleteNodes(currentPhase, opsMgr, ri);
+        CoreImportActivities.updateNodes(currentPhase, opsMgr, ri);
+        CoreImportActivities.insertNodes(currentPhase, opsMgr, ri);
+        final ArgumentCaptor<Runnable> persisters = ArgumentCaptor.forClass(Runnable.class);
+        verify(currentPhase, atLeast(0)).add(persisters.capture(), eq("write"));
+        for (final Runnable persister : persisters.getAllValues()) {
+            persister.run();
+        }
+        m_activities.importCompleted(ri);
+    }
+
+    private static Requisition requisition(final String label1, final String label2) {
+        final Requisition requisition = new Requisition("fs");
+        requisition.putNode(node("n1", label1));
+        requisition.putNode(node("n2", label2));
+        return requisition;
+    }
+
+    private static RequisitionNode node(final String foreignId, final String label) {
+        final RequisitionNode node = new RequisitionNode();
+        node.setForeignId(foreignId);
+        node.setNodeLabel(label);
+        return node;
+    }
+}
@@ -0,0 +1,97 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2022 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2022 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+
+package org.opennms.netmgt.provision.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.joda.time.Duration;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.opennms.netmgt.provision.persist.foreignsource.ForeignSource;
+import org.opennms.netmgt.provision.persist.foreignsource.PluginConfig;
+import org.opennms.netmgt.provision.persist.requisition.RequisitionNode;
+
+public class RequisitionHashStoreTest {
+
+    @Rule
+    public TemporaryFolder m_folder = new TemporaryFolder();
+
+    @Test
+    public void shouldDetectChangedNodes() {
+        final RequisitionNode node = node("n1", "router");
+        assertEquals(RequisitionHashStore.hash(node), RequisitionHashStore.hash(node("n1", "router")));
+        assertNotEquals(RequisitionHashStore.hash(node), RequisitionHashStore.hash(node("n1", "switch")));
+
+        final ForeignSource foreignSource = new ForeignSource("fs");
+        final String defaults = RequisitionHashStore.hash(foreignSource);
+        assertEquals(defaults, RequisitionHashStore.hash(new ForeignSource("fs")));
+        foreignSource.addPolicy(new PluginConfig("p1", "org.opennms.netmgt.provision.persist.policies.NodeCategorySettingPolicy"));
+        final String withPolicy = RequisitionHashStore.hash(foreignSource);
+        assertNotEquals(defaults, withPolicy);
+        foreignSource.setScanInterval(Duration.standardHours(1));
+        assertNotEquals(withPolicy, RequisitionHashStore.hash(foreignSource));
+    }
+
+    @Test
+    public void shouldStoreHashesPerForeignSource() throws Exception {
+        final RequisitionHashStore store = new RequisitionHashStore(m_folder.getRoot().toPath().resolve("hashes"));
+
+        final RequisitionHashStore.Snapshot empty = store.load("fs/1");
+        assertNull(empty.getForeignSourceHash());
+        assertTrue(empty.getNodeHashes().isEmpty());
+
+        final Map<String, String> nodeHashes = new HashMap<>();
+        nodeHashes.put("n1", "a");
+        nodeHashes.put("node=2", "b");
+        store.save("fs/1", new RequisitionHashStore.Snapshot("fs", nodeHashes));
+
+        final RequisitionHashStore.Snapshot loaded = store.load("fs/1");
+        assertEquals("fs", loaded.getForeignSourceHash());
+        assertEquals(nodeHashes, loaded.getNodeHashes());
+        assertTrue(store.load("fs").getNodeHashes().isEmpty());
+
+        store.delete("fs/1");
+        assertNull(store.load("fs/1").getForeignSourceHash());
+    }
+
+    private static RequisitionNode node(final String foreignId, final String label) {
+        final RequisitionNode node = new RequisitionNode();
+        node.setForeignId(foreignId);
+        node.setNodeLabel(label);
+        return node;
+    }
+}
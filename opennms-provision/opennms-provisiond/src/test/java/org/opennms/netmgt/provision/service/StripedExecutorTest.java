@@ -0,0 +1,122 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2022 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2022 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+
+package org.opennms.netmgt.provision.service;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.codahale.metrics.MetricRegistry;
+
+public class StripedExecutorTest {
+
+    private final MetricRegistry metrics = new MetricRegistry();
+
+    private final StripedExecutor executor = new StripedExecutor("test", 4, metrics);
+
+    @After
+    public void tearDown() throws InterruptedException {
+        executor.shutdownNow();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void preservesOrderingPerKey() throws InterruptedException {
+        final List<Integer> executed = Collections.synchronizedList(new ArrayList<>());
+        final List<Integer> expected = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            final int k = i;
+            executor.execute("10.0.0.1@Default", () -> executed.add(k));
+            expected.add(k);
+        }
+
+        final CountDownLatch latch = new CountDownLatch(1);
+        executor.execute(latch::countDown);
+        assertTrue(latch.await(10, TimeUnit.SECONDS));
+        assertThat(executed, equalTo(expected));
+    }
+
+    @Test
+    public void runsDifferentKeysConcurrently() throws InterruptedException {
+        // Find two keys that map to different lanes
+        final String first = "10.0.0.1@Default";
+        String second = null;
+        for (int i = 2; second == null; i++) {
+            final String candidate = "10.0.0." + i + "@Default";
+            if (executor.laneFor(candidate) != executor.laneFor(first)) {
+                second = candidate;
+            }
+        }
+
+        // Block the first lane, the second should still make progress
+        final CountDownLatch blocker = new CountDownLatch(1);
+        final CountDownLatch ran = new CountDownLatch(1);
+        executor.execute(first, () -> {
+            try {
+                blocker.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        executor.execute(second, ran::countDown);
+        assertTrue(ran.await(10, TimeUnit.SECONDS));
+        assertThat(executor.getQueued(), equalTo(0));
+        blocker.countDown();
+    }
+
+    @Test
+    public void unkeyedTasksWaitForAllLanes() throws InterruptedException {
+        final CountDownLatch blocker = new CountDownLatch(1);
+        final CountDownLatch barrier = new CountDownLatch(1);
+        executor.execute("10.0.0.1@Default", () -> {
+            try {
+                blocker.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        executor.execute(barrier::countDown);
+
+        // The barrier must not run while a previously queued task is still busy
+        assertThat(barrier.await(500, TimeUnit.MILLISECONDS), equalTo(false));
+        blocker.countDown();
+        assertTrue(barrier.await(10, TimeUnit.SECONDS));
+        assertThat(metrics.timer("test.run").getCount(), equalTo(1L));
+    }
+}
@@ -108,6 +108,17 @@ class CollectableService implements ReadyRunnable {
      */
     private volatile long m_lastScheduledCollectionTime;
 
+    /**
+     * The time at which the next collection is due, or 0 if it is not known
+     * i.e. while the collection is running.
+     */
+    private volatile long m_nextScheduledCollectionTime;
+
+    /**
+     * How late the last collection started compared to when it was due.
+     */
+    private volatile long m_lastSchedulingLag;
+
     /**
      * The scheduler for collectd
      */
@@ -234,6 +245,21 @@ class CollectableService implements ReadyRunnable {
         return m_updates;
     }
 
+    /**
+     * Returns how late this service is compared to when it was due for
+     * collection, or how late its last collection was if it is not overdue.
+     *
+     * @param now the current time in milliseconds
+     * @return the scheduling lag in milliseconds
+     */
+    long getSchedulingLag(long now) {
+        final long nextScheduledCollectionTime = m_nextScheduledCollectionTime;
+        if (nextScheduledCollectionTime > 0 && now > nextScheduledCollectionTime) {
+            return now - nextScheduledCollectionTime;
+        }
+        return m_lastSchedulingLag;
+    }
+
     /**
      * Uses the existing package name to try and re-obtain the package from the collectd config factory.
      * Should be called when the collect config has been reloaded.
@@ -330,6 +356,13 @@ class CollectableService implements ReadyRunnable {
     }
 
     private void doRun() {
+        // Keep track of how far behind the scheduler is
+        final long nextScheduledCollectionTime = m_nextScheduledCollectionTime;
+        if (nextScheduledCollectionTime > 0) {
+            m_lastSchedulingLag = Math.max(0, System.currentTimeMillis() - nextScheduledCollectionTime);
+            m_nextScheduledCollectionTime = 0;
+        }
+
         // Process any outstanding updates.
         if (processUpdates() == ABORT_COLLECTION) {
             LOG.debug("run: Aborting because processUpdates returned ABORT_COLLECTION (probably marked for deletion) for {}", this);
@@ -379,6 +412,7 @@ class CollectableService implements ReadyRunnable {
             diff = Math.min(diff, m_spec.getInterval());
         }
     	// Reschedule the service
+        m_nextScheduledCollectionTime = System.currentTimeMillis() + m_spec.getInterval() - diff;
         m_scheduler.schedule(m_spec.getInterval() - diff, getReadyRunnable());
     }
 
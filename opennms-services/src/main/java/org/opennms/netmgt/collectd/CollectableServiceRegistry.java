@@ -0,0 +1,230 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2022 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2022 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.collectd;
+
+import static org.opennms.core.utils.InetAddressUtils.str;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The CollectableServiceRegistry keeps track of all of the CollectableService
+ * objects known to Collectd.
+ *
+ * The services are indexed by node id, by node id and IP address and by IP
+ * address alone so that the event handlers can find the services they affect
+ * without scanning through all of them. Lookups return a snapshot of the
+ * matching services, and iterating over the registry never blocks additions
+ * or removals.
+ *
+ * A service is indexed under the node id and address it had when it was
+ * added (or re-indexed) since the node id of a CollectableService only
+ * changes later on, once it processes its updates.
+ */
+class CollectableServiceRegistry implements Iterable<CollectableService> {
+
+    /**
+     * All of the registered services, along with the keys they are indexed by.
+     * Changes to the indexes for a given service are made while holding its
+     * entry in this map.
+     */
+    private final Map<CollectableService, IndexKey> m_services = new ConcurrentHashMap<>();
+
+    private final Map<Integer, Set<CollectableService>> m_byNodeId = new ConcurrentHashMap<>();
+
+    private final Map<IndexKey, Set<CollectableService>> m_byNodeIdAndAddress = new ConcurrentHashMap<>();
+
+    private final Map<String, Set<CollectableService>> m_byAddress = new ConcurrentHashMap<>();
+
+    /**
+     * Adds the given service to the registry.
+     *
+     * @return false if the service was already registered
+     */
+    public boolean add(CollectableService cSvc) {
+        final IndexKey key = new IndexKey(cSvc.getNodeId(), str(cSvc.getAddress()));
+        final boolean[] added = { false };
+        m_services.computeIfAbsent(cSvc, s -> {
+            index(s, key);
+            added[0] = true;
+            return key;
+        });
+        return added[0];
+    }
+
+    /**
+     * Removes the given service from the registry.
+     *
+     * @return false if the service was not registered
+     */
+    public boolean remove(CollectableService cSvc) {
+        final boolean[] removed = { false };
+        m_services.computeIfPresent(cSvc, (s, key) -> {
+            unindex(s, key);
+            removed[0] = true;
+            return null;
+        });
+        return removed[0];
+    }
+
+    /**
+     * Moves the given service under another node id, i.e. when its interface
+     * was reparented.
+     */
+    public void reindex(CollectableService cSvc, int nodeId) {
+        m_services.computeIfPresent(cSvc, (s, key) -> {
+            final IndexKey newKey = new IndexKey(nodeId, key.m_address);
+            unindex(s, key);
+            index(s, newKey);
+            return newKey;
+        });
+    }
+
+    public List<CollectableService> getByNodeId(int nodeId) {
+        return snapshot(m_byNodeId.get(nodeId));
+    }
+
+    public List<CollectableService> getByNodeIdAndAddress(int nodeId, String ipAddress) {
+        return snapshot(m_byNodeIdAndAddress.get(new IndexKey(nodeId, ipAddress)));
+    }
+
+    public List<CollectableService> getByAddress(String ipAddress) {
+        return ipAddress == null ? Collections.emptyList() : snapshot(m_byAddress.get(ipAddress));
+    }
+
+    public int size() {
+        return m_services.size();
+    }
+
+    /**
+     * The returned iterator is weakly consistent: it reflects the state of
+     * the registry at some point at or since its creation, and does not
+     * support removal.
+     */
+    @Override
+    public Iterator<CollectableService> iterator() {
+        return Collections.unmodifiableSet(m_services.keySet()).iterator();
+    }
+
+    /**
+     * @return the largest scheduling lag of all of the services, in milliseconds
+     */
+    public long getMaxSchedulingLag() {
+        final long now = System.currentTimeMillis();
+        long max = 0;
+        for (CollectableService cSvc : m_services.keySet()) {
+            max = Math.max(max, cSvc.getSchedulingLag(now));
+        }
+        return max;
+    }
+
+    /**
+     * @return the average scheduling lag of all of the services, in milliseconds
+     */
+    public double getAverageSchedulingLag() {
+        final long now = System.currentTimeMillis();
+        long total = 0;
+        int count = 0;
+        for (CollectableService cSvc : m_services.keySet()) {
+            total += cSvc.getSchedulingLag(now);
+            count++;
+        }
+        return count > 0 ? (double)total / count : 0.0;
+    }
+
+    private void index(CollectableService cSvc, IndexKey key) {
+        addTo(m_byNodeId, key.m_nodeId, cSvc);
+        addTo(m_byNodeIdAndAddress, key, cSvc);
+        if (key.m_address != null) {
+            addTo(m_byAddress, key.m_address, cSvc);
+        }
+    }
+
+    private void unindex(CollectableService cSvc, IndexKey key) {
+        removeFrom(m_byNodeId, key.m_nodeId, cSvc);
+        removeFrom(m_byNodeIdAndAddress, key, cSvc);
+        if (key.m_address != null) {
+            removeFrom(m_byAddress, key.m_address, cSvc);
+        }
+    }
+
+    private static <K> void addTo(Map<K, Set<CollectableService>> index, K key, CollectableService cSvc) {
+        index.compute(key, (k, services) -> {
+            final Set<CollectableService> set = services != null ? services : ConcurrentHashMap.newKeySet();
+            set.add(cSvc);
+            return set;
+        });
+    }
+
+    private static <K> void removeFrom(Map<K, Set<CollectableService>> index, K key, CollectableService cSvc) {
+        index.computeIfPresent(key, (k, services) -> {
+            services.remove(cSvc);
+            // Drop empty buckets so that deleted nodes and interfaces don't leak
+            return services.isEmpty() ? null : services;
+        });
+    }
+
+    private static List<CollectableService> snapshot(Collection<CollectableService> services) {
+        return services == null ? Collections.emptyList() : new ArrayList<>(services);
+    }
+
+    private static final class IndexKey {
+        private final int m_nodeId;
+        private final String m_address;
+
+        private IndexKey(int nodeId, String address) {
+            m_nodeId = nodeId;
+            m_address = address;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof IndexKey)) {
+                return false;
+            }
+            final IndexKey other = (IndexKey) obj;
+            return m_nodeId == other.m_nodeId && Objects.equals(m_address, other.m_address);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(m_nodeId, m_address);
+        }
+    }
+}
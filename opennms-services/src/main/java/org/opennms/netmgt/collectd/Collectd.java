@@ -33,12 +33,9 @@ import static org.opennms.core.utils.InetAddressUtils.str;
 import java.net.InetAddress;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Collections;
 import java.util.HashMap;
-import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.ListIterator;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
@@ -140,9 +137,9 @@ public class Collectd extends AbstractServiceDaemon implements
     private final Map<String,ServiceCollector> m_collectors = new HashMap<>(4);
 
     /**
-     * List of all CollectableService objects.
+     * Registry of all CollectableService objects.
      */
-    private final List<CollectableService> m_collectableServices;
+    private final CollectableServiceRegistry m_collectableServices;
 
     /**
      * Reference to the collection scheduler
@@ -208,7 +205,7 @@ public class Collectd extends AbstractServiceDaemon implements
     public Collectd() {
         super(LOG4J_CATEGORY);
 
-        m_collectableServices = Collections.synchronizedList(new LinkedList<>());
+        m_collectableServices = new CollectableServiceRegistry();
     }
 
     /**
@@ -490,7 +487,7 @@ public class Collectd extends AbstractServiceDaemon implements
                     m_thresholdingService
                 );
 
-                // Add new collectable service to the collectable service list.
+                // Add new collectable service to the collectable service registry.
                 m_collectableServices.add(cSvc);
 
                 // Schedule the collectable service for immediate collection
@@ -599,16 +596,11 @@ public class Collectd extends AbstractServiceDaemon implements
             sb.append(" is already scheduled.");
         }
         
-        synchronized (m_collectableServices) {
-        	for (CollectableService cSvc : m_collectableServices) {
-                InetAddress addr = (InetAddress) cSvc.getAddress();
-                if (cSvc.getNodeId() == iface.getNode().getId()
-                        && str(addr).equals(ipAddress)
-                        && cSvc.getPackageName().equals(pkgName)
-                        && cSvc.getServiceName().equals(svcName)) {
-                    isScheduled = true;
-                    break;
-                }
+        for (CollectableService cSvc : m_collectableServices.getByNodeIdAndAddress(iface.getNode().getId(), ipAddress)) {
+            if (cSvc.getPackageName().equals(pkgName)
+                    && cSvc.getServiceName().equals(svcName)) {
+                isScheduled = true;
+                break;
             }
         }
 
@@ -636,7 +628,7 @@ public class Collectd extends AbstractServiceDaemon implements
         }
     }
 
-    protected List<CollectableService> getCollectableServices() {
+    protected CollectableServiceRegistry getCollectableServices() {
         return m_collectableServices;
     }
 
@@ -781,38 +773,28 @@ public class Collectd extends AbstractServiceDaemon implements
 
         Long nodeId = event.getNodeid();
 
-        // Iterate over the collectable services list and mark any entries
-        // which match the deleted nodeId/IP address pair for deletion
-        synchronized (getCollectableServices()) {
-            CollectableService cSvc = null;
-            ListIterator<CollectableService> liter = getCollectableServices().listIterator();
-            while (liter.hasNext()) {
-                cSvc = liter.next();
-
-                // Only interested in entries with matching nodeId and IP
-                // address
-                InetAddress addr = (InetAddress) cSvc.getAddress();
-                if (!(cSvc.getNodeId() == nodeId && InetAddrUtils.str(addr).equals(ipAddr)))
-                    continue;
+        // Mark any collectable services which match the deleted nodeId/IP
+        // address pair for deletion
+        for (CollectableService cSvc : getCollectableServices().getByNodeIdAndAddress(nodeId.intValue(), ipAddr)) {
+            InetAddress addr = (InetAddress) cSvc.getAddress();
 
-                synchronized (cSvc) {
-                    // Retrieve the CollectorUpdates object associated with
-                    // this CollectableService if one exists.
-                    CollectorUpdates updates = cSvc.getCollectorUpdates();
+            synchronized (cSvc) {
+                // Retrieve the CollectorUpdates object associated with
+                // this CollectableService if one exists.
+                CollectorUpdates updates = cSvc.getCollectorUpdates();
 
-                    // Now set the update's deletion flag so the next
-                    // time it is selected for execution by the scheduler
-                    // the collection will be skipped and the service will not
-                    // be rescheduled.
-                    LOG.debug("Marking CollectableService for deletion because an interface was deleted:  Service nodeid={}, deleted node:{}service address:{}deleted interface:{}", cSvc.getNodeId(), nodeId, InetAddrUtils.str(addr), ipAddr);
+                // Now set the update's deletion flag so the next
+                // time it is selected for execution by the scheduler
+                // the collection will be skipped and the service will not
+                // be rescheduled.
+                LOG.debug("Marking CollectableService for deletion because an interface was deleted:  Service nodeid={}, deleted node:{}service address:{}deleted interface:{}", cSvc.getNodeId(), nodeId, InetAddrUtils.str(addr), ipAddr);
 
-                    updates.markForDeletion();
-                }
-
-                // Now safe to remove the collectable service from
-                // the collectable services list
-                liter.remove();
+                updates.markForDeletion();
             }
+
+            // Now safe to remove the collectable service from
+            // the collectable services registry
+            getCollectableServices().remove(cSvc);
         }
 
             LOG.debug("interfaceDeletedHandler: processing of interfaceDeleted event for {}/{} completed", nodeId, ipAddr);
@@ -888,32 +870,37 @@ public class Collectd extends AbstractServiceDaemon implements
         // SnmpMonitor.NodeInfo attribute to reflect the new nodeId. All
         // subsequent collections will then be updating the appropriate RRDs.
         //
-        OnmsIpInterface iface = null;
-        synchronized (getCollectableServices()) {
-            CollectableService cSvc = null;
-            Iterator<CollectableService> iter = getCollectableServices().iterator();
-            while (iter.hasNext()) {
-                cSvc = iter.next();
-
-                InetAddress addr = (InetAddress) cSvc.getAddress();
-				if (addr.equals(event.getInterfaceAddress())) {
-                    synchronized (cSvc) {
-                        // Got a match!
-                        LOG.debug("interfaceReparentedHandler: got a CollectableService match for {}", event.getInterface());
-
-                        // Retrieve the CollectorUpdates object associated
-                        // with
-                        // this CollectableService.
-                        CollectorUpdates updates = cSvc.getCollectorUpdates();
-                        if (iface == null) {
-                        	iface = getIpInterface(event.getNodeid().intValue(), event.getInterface());
-                        }
+        // The services are moved under the new nodeId in the registry right
+        // away so that events for the new node find them.
+        //
+        Integer newNodeId = null;
+        try {
+            newNodeId = Integer.valueOf(newNodeIdStr);
+        } catch (NumberFormatException e) {
+            LOG.warn("interfaceReparentedHandler: invalid new nodeId {}, the services will remain indexed under nodeId {}.", newNodeIdStr, oldNodeIdStr);
+        }
 
-                        // Now set the reparenting flag
-                        updates.markForReparenting(oldNodeIdStr, newNodeIdStr, iface);
-                        LOG.debug("interfaceReparentedHandler: marking {} for reparenting for service SNMP.", event.getInterface());
-                    }
+        OnmsIpInterface iface = null;
+        for (CollectableService cSvc : getCollectableServices().getByAddress(str(event.getInterfaceAddress()))) {
+            synchronized (cSvc) {
+                // Got a match!
+                LOG.debug("interfaceReparentedHandler: got a CollectableService match for {}", event.getInterface());
+
+                // Retrieve the CollectorUpdates object associated
+                // with
+                // this CollectableService.
+                CollectorUpdates updates = cSvc.getCollectorUpdates();
+                if (iface == null) {
+                	iface = getIpInterface(event.getNodeid().intValue(), event.getInterface());
                 }
+
+                // Now set the reparenting flag
+                updates.markForReparenting(oldNodeIdStr, newNodeIdStr, iface);
+                LOG.debug("interfaceReparentedHandler: marking {} for reparenting for service SNMP.", event.getInterface());
+            }
+
+            if (newNodeId != null) {
+                getCollectableServices().reindex(cSvc, newNodeId);
             }
         }
 
@@ -992,35 +979,25 @@ public class Collectd extends AbstractServiceDaemon implements
     }
 
     private void unscheduleNodeAndMarkForDeletion(Long nodeId) {
-		// Iterate over the collectable service list and mark any entries
-        // which match the deleted nodeId for deletion.
-        synchronized (getCollectableServices()) {
-            CollectableService cSvc = null;
-            final ListIterator<CollectableService> liter = getCollectableServices().listIterator();
-            while (liter.hasNext()) {
-                cSvc = liter.next();
-
-                // Only interested in entries with matching nodeId
-                if (!(cSvc.getNodeId() == nodeId))
-                    continue;
-
-                synchronized (cSvc) {
-                    // Retrieve the CollectorUpdates object associated
-                    // with this CollectableService.
-                    CollectorUpdates updates = cSvc.getCollectorUpdates();
-
-                    // Now set the update's deletion flag so the next
-                    // time it is selected for execution by the scheduler
-                    // the collection will be skipped and the service will not
-                    // be rescheduled.
-                    LOG.debug("Marking CollectableService for deletion because a node was deleted:  Service nodeid={}, deleted node:{}", cSvc.getNodeId(), nodeId);
-                    updates.markForDeletion();
-                }
-
-                // Now safe to remove the collectable service from
-                // the collectable services list
-                liter.remove();
+		// Mark any collectable services which match the deleted nodeId for
+        // deletion.
+        for (CollectableService cSvc : getCollectableServices().getByNodeId(nodeId.intValue())) {
+            synchronized (cSvc) {
+                // Retrieve the CollectorUpdates object associated
+                // with this CollectableService.
+                CollectorUpdates updates = cSvc.getCollectorUpdates();
+
+                // Now set the update's deletion flag so the next
+                // time it is selected for execution by the scheduler
+                // the collection will be skipped and the service will not
+                // be rescheduled.
+                LOG.debug("Marking CollectableService for deletion because a node was deleted:  Service nodeid={}, deleted node:{}", cSvc.getNodeId(), nodeId);
+                updates.markForDeletion();
             }
+
+            // Now safe to remove the collectable service from
+            // the collectable services registry
+            getCollectableServices().remove(cSvc);
         }
 	}
 
@@ -1178,32 +1155,22 @@ public class Collectd extends AbstractServiceDaemon implements
             // primary SNMP interface and a service name of "SNMP" for
             // deletion.
             //
-            synchronized (getCollectableServices()) {
-                CollectableService cSvc = null;
-                ListIterator<CollectableService> liter = getCollectableServices().listIterator();
-                while (liter.hasNext()) {
-                    cSvc = liter.next();
-
-                    final InetAddress addr = (InetAddress) cSvc.getAddress();
-                    final String addrString = str(addr);
-					if (addrString != null && addrString.equals(oldPrimaryIfAddr)) {
-                        synchronized (cSvc) {
-                            // Got a match! Retrieve the CollectorUpdates
-                            // object
-                            // associated
-                            // with this CollectableService.
-                            CollectorUpdates updates = cSvc.getCollectorUpdates();
-
-                            // Now set the deleted flag
-                            updates.markForDeletion();
-                            LOG.debug("primarySnmpInterfaceChangedHandler: marking {} as deleted for service SNMP.", oldPrimaryIfAddr);
-                        }
+            for (CollectableService cSvc : getCollectableServices().getByAddress(oldPrimaryIfAddr)) {
+                synchronized (cSvc) {
+                    // Got a match! Retrieve the CollectorUpdates
+                    // object
+                    // associated
+                    // with this CollectableService.
+                    CollectorUpdates updates = cSvc.getCollectorUpdates();
 
-                        // Now safe to remove the collectable service from
-                        // the collectable services list
-                        liter.remove();
-                    }
+                    // Now set the deleted flag
+                    updates.markForDeletion();
+                    LOG.debug("primarySnmpInterfaceChangedHandler: marking {} as deleted for service SNMP.", oldPrimaryIfAddr);
                 }
+
+                // Now safe to remove the collectable service from
+                // the collectable services registry
+                getCollectableServices().remove(cSvc);
             }
         }
 
@@ -1250,29 +1217,19 @@ public class Collectd extends AbstractServiceDaemon implements
         // address for reinitialization
         //
         OnmsIpInterface iface = null;
-        synchronized (getCollectableServices()) {
-            Iterator<CollectableService> iter = getCollectableServices().iterator();
-            while (iter.hasNext()) {
-                CollectableService cSvc = iter.next();
+        for (CollectableService cSvc : getCollectableServices().getByNodeIdAndAddress(nodeid.intValue(), ipAddress)) {
+            synchronized (cSvc) {
+            	if (iface == null) {
+                    iface = getIpInterface(nodeid.intValue(), ipAddress);
+            	}
+                // Got a match! Retrieve the CollectorUpdates object
+                // associated
+                // with this CollectableService.
+                CollectorUpdates updates = cSvc.getCollectorUpdates();
         
-                final InetAddress addr = (InetAddress) cSvc.getAddress();
-                final String addrString = str(addr);
-                LOG.debug("Comparing CollectableService ip address = {} and event ip interface = {}", addrString, ipAddress);
-                if (addrString != null && addrString.equals(ipAddress) && cSvc.getNodeId() == nodeid.intValue()) {
-                    synchronized (cSvc) {
-                    	if (iface == null) {
-                            iface = getIpInterface(nodeid.intValue(), ipAddress);
-                    	}
-                        // Got a match! Retrieve the CollectorUpdates object
-                        // associated
-                        // with this CollectableService.
-                        CollectorUpdates updates = cSvc.getCollectorUpdates();
-        
-                        // Now set the reinitialization flag
-                        updates.markForReinitialization(iface);
-                        LOG.debug("reinitializePrimarySnmpInterfaceHandler: marking {} for reinitialization for service SNMP.", ipAddress);
-                    }
-                }
+                // Now set the reinitialization flag
+                updates.markForReinitialization(iface);
+                LOG.debug("reinitializePrimarySnmpInterfaceHandler: marking {} for reinitialization for service SNMP.", ipAddress);
             }
         }
     }
@@ -1303,42 +1260,30 @@ public class Collectd extends AbstractServiceDaemon implements
         String ipAddr = event.getInterface();
         String svcName = event.getService();
 
-        // Iterate over the collectable services list and mark any entries
-        // which match the nodeId/ipAddr of the deleted service
-        // for deletion.
-        synchronized (getCollectableServices()) {
-            CollectableService cSvc = null;
-            ListIterator<CollectableService> liter = getCollectableServices().listIterator();
-            while (liter.hasNext()) {
-                cSvc = liter.next();
-
-                // Only interested in entries with matching nodeId, IP address
-                // and service
-                InetAddress addr = (InetAddress) cSvc.getAddress();
-                
-                //WATCH the brackets; there used to be an extra close bracket after the ipAddr comparison which borked this whole expression
-                if (!(cSvc.getNodeId() == nodeId && 
-                        InetAddrUtils.str(addr).equals(ipAddr) &&
-                        cSvc.getServiceName().equals(svcName))) 
-                    continue;
-
-                synchronized (cSvc) {
-                    // Retrieve the CollectorUpdates object associated with
-                    // this CollectableService if one exists.
-                    CollectorUpdates updates = cSvc.getCollectorUpdates();
-
-                    // Now set the update's deletion flag so the next
-                    // time it is selected for execution by the scheduler
-                    // the collection will be skipped and the service will not
-                    // be rescheduled.
-                    LOG.debug("Marking CollectableService for deletion because a service was deleted:  Service nodeid={}, deleted node:{}, service address:{}, deleted interface:{}, service servicename:{}, deleted service name:{}, event source {}", cSvc.getNodeId(), nodeId, InetAddrUtils.str(addr), ipAddr, cSvc.getServiceName(), svcName, event.getSource());
-                    updates.markForDeletion();
-                }
+        // Mark any collectable services which match the nodeId/ipAddr of
+        // the deleted service for deletion.
+        for (CollectableService cSvc : getCollectableServices().getByNodeIdAndAddress(nodeId.intValue(), ipAddr)) {
+            // Only interested in entries with matching service
+            InetAddress addr = (InetAddress) cSvc.getAddress();
+            if (!cSvc.getServiceName().equals(svcName))
+                continue;
 
-                // Now safe to remove the collectable service from
-                // the collectable services list
-                liter.remove();
+            synchronized (cSvc) {
+                // Retrieve the CollectorUpdates object associated with
+                // this CollectableService if one exists.
+                CollectorUpdates updates = cSvc.getCollectorUpdates();
+
+                // Now set the update's deletion flag so the next
+                // time it is selected for execution by the scheduler
+                // the collection will be skipped and the service will not
+                // be rescheduled.
+                LOG.debug("Marking CollectableService for deletion because a service was deleted:  Service nodeid={}, deleted node:{}, service address:{}, deleted interface:{}, service servicename:{}, deleted service name:{}, event source {}", cSvc.getNodeId(), nodeId, InetAddrUtils.str(addr), ipAddr, cSvc.getServiceName(), svcName, event.getSource());
+                updates.markForDeletion();
             }
+
+            // Now safe to remove the collectable service from
+            // the collectable services registry
+            getCollectableServices().remove(cSvc);
         }
 
         LOG.debug("serviceDeletedHandler: processing of serviceDeleted event for {}/{}/{} completed.", nodeId, ipAddr, svcName);
@@ -1525,6 +1470,14 @@ public class Collectd extends AbstractServiceDaemon implements
         return m_collectableServices.size();
     }
 
+    public long getSchedulingLagMax() {
+        return m_collectableServices.getMaxSchedulingLag();
+    }
+
+    public double getSchedulingLagAverage() {
+        return m_collectableServices.getAverageSchedulingLag();
+    }
+
     @VisibleForTesting
     public void setPollOutagesDao(ReadablePollOutagesDao pollOutagesDao) {
         this.pollOutagesDao = Objects.requireNonNull(pollOutagesDao);
@@ -152,6 +152,16 @@ public class Collectd extends AbstractSpringContextJmxServiceDaemon<org.opennms.
     public long getCollectableServiceCount() {
         return getDaemon().getCollectableServiceCount();
     }
+
+    @Override
+    public long getSchedulingLagMax() {
+        return getDaemon().getSchedulingLagMax();
+    }
+
+    @Override
+    public double getSchedulingLagAverage() {
+        return getDaemon().getSchedulingLagAverage();
+    }
     
     private ThreadPoolExecutor getExecutor() {
         return (ThreadPoolExecutor) ((LegacyScheduler) getDaemon().getScheduler()).getRunner();
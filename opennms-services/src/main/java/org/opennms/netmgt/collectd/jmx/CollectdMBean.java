@@ -82,6 +82,18 @@ public interface CollectdMBean extends BaseOnmsMBean {
      */
     public long getCollectableServiceCount();
 
+    /**
+     * @return The largest delay, in milliseconds, between when a collectable service
+     *         was due for collection and when its collection started
+     */
+    public long getSchedulingLagMax();
+
+    /**
+     * @return The average delay, in milliseconds, between when the collectable services
+     *         were due for collection and when their collections started
+     */
+    public double getSchedulingLagAverage();
+
     /**
      * @return The number of pending tasks
      */
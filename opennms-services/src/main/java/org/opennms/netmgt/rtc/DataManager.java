@@ -33,6 +33,7 @@ import java.net.InetAddress;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Timestamp;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Date;
@@ -42,6 +43,8 @@ import java.util.List;
 import java.util.ListIterator;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
 
 import org.opennms.core.utils.InetAddressUtils;
 import org.opennms.netmgt.config.RTCConfigFactory;
@@ -50,9 +53,11 @@ import org.opennms.netmgt.events.api.EventConstants;
 import org.opennms.netmgt.filter.api.FilterDao;
 import org.opennms.netmgt.filter.api.FilterParseException;
 import org.opennms.netmgt.rtc.datablock.RTCCategory;
+import org.opennms.netmgt.rtc.datablock.RTCCategoryAvailability;
 import org.opennms.netmgt.rtc.datablock.RTCHashMap;
 import org.opennms.netmgt.rtc.datablock.RTCNode;
 import org.opennms.netmgt.rtc.datablock.RTCNodeKey;
+import org.opennms.netmgt.rtc.datablock.RTCNodeSvcTime;
 import org.opennms.netmgt.rtc.utils.LegacyEuiLevelMapper;
 import org.opennms.netmgt.xml.rtc.EuiLevel;
 import org.slf4j.Logger;
@@ -65,6 +70,8 @@ import org.springframework.transaction.TransactionStatus;
 import org.springframework.transaction.support.TransactionCallbackWithoutResult;
 import org.springframework.transaction.support.TransactionTemplate;
 
+import com.google.common.util.concurrent.Striped;
+
 /**
  * Contains and maintains all the data for the RTC.
  *
@@ -80,6 +87,12 @@ import org.springframework.transaction.support.TransactionTemplate;
  * 'nodeGainedService' event would result in the 'nodeGainedService()' method
  * being called by the DataUpdater(s).
  *
+ * Updates are serialized per node through a set of striped read/write locks,
+ * so that outages on different nodes can be processed concurrently and do not
+ * block the availability queries. The availability of each category is
+ * maintained incrementally by a 'RTCCategoryAvailability' as outages are
+ * created, resolved and removed.
+ *
  * @author <A HREF="mailto:sowmya@opennms.org">Sowmya Nataraj </A>
  * @author <A HREF="http://www.opennms.org">OpenNMS.org </A>
  */
@@ -87,6 +100,8 @@ public class DataManager implements AvailabilityService, InitializingBean {
     
     private static final Logger LOG = LoggerFactory.getLogger(DataManager.class);
 
+    private static final int LOCK_STRIPES = 64;
+
     @Autowired
 	private FilterDao m_filterDao;
 
@@ -132,7 +147,7 @@ public class DataManager implements AvailabilityService, InitializingBean {
 		}
 
 		// This is called exactly once for each unique (node ID, IP address, service name) tuple
-		public synchronized void processIfService(RTCNodeKey key) {
+		public void processIfService(RTCNodeKey key) {
 			for (RTCCategory cat : m_categories.values()) {
 				if (catContainsIfService(cat, key)) {
 					RTCNode rtcN = getRTCNode(key);
@@ -185,12 +200,23 @@ public class DataManager implements AvailabilityService, InitializingBean {
      */
     private Map<String, RTCCategory> m_categories;
 
+    /**
+     * The incrementally maintained availability of each category, keyed by
+     * category label
+     */
+    private Map<String, RTCCategoryAvailability> m_availability;
+
     /**
      * map keyed using the RTCNodeKey or node ID or node ID/IP address
      */
     private RTCHashMap m_map;
 
-	private static void addOutageToRTCNode(RTCNode rtcN, Timestamp lostTimeTS, Timestamp regainedTimeTS) {
+    /**
+     * Locks guarding the entries of a node in the map and in the categories
+     */
+    private final Striped<ReadWriteLock> m_nodeLocks = Striped.readWriteLock(LOCK_STRIPES);
+
+	private void addOutageToRTCNode(RTCNode rtcN, Timestamp lostTimeTS, Timestamp regainedTimeTS) {
 		if (lostTimeTS == null) return;
 		long lostTime = lostTimeTS.getTime();
 		long regainedTime = -1;
@@ -201,17 +227,24 @@ public class DataManager implements AvailabilityService, InitializingBean {
 
 		LOG.debug("regained time for nodeid/ip/svc: {}/{}/{}: {}/{}", rtcN.getNodeID(), rtcN.getIP(), rtcN.getSvcName(), regainedTimeTS, regainedTime);
 
-		rtcN.addSvcTime(lostTime, regainedTime);
+		if (rtcN.addSvcTime(lostTime, regainedTime)) {
+			for (String catLabel : rtcN.getCategories()) {
+				m_availability.get(catLabel).addOutage(lostTime, regainedTime);
+			}
+		}
 	}
 
 	private void addRTCNode(RTCNode rtcN) {
 		m_map.add(rtcN);
 	}
 
-	private static void addNodeToCategory(RTCCategory cat, RTCNode rtcN) {
+	private void addNodeToCategory(RTCCategory cat, RTCNode rtcN) {
 
 		// add the category info to the node
-        rtcN.addCategory(cat.getLabel());
+		if (!rtcN.belongsTo(cat.getLabel())) {
+			rtcN.addCategory(cat.getLabel());
+			m_availability.get(cat.getLabel()).addService(rtcN.getSvcTimes());
+		}
 
 		// Add node to category
 		cat.addNode(rtcN);
@@ -321,6 +354,12 @@ public class DataManager implements AvailabilityService, InitializingBean {
 
     	LOG.debug("Number of categories read: {}", m_categories.size());
 
+    	final Map<String, RTCCategoryAvailability> availability = new HashMap<>();
+    	for (String catLabel : m_categories.keySet()) {
+    		availability.put(catLabel, new RTCCategoryAvailability(m_configFactory.getRollingWindow()));
+    	}
+    	m_availability = availability;
+
     	// create data holder
     	m_map = new RTCHashMap(30000);
 
@@ -353,7 +392,7 @@ public class DataManager implements AvailabilityService, InitializingBean {
      * @param svcName
      *            the service name
      */
-    public synchronized void nodeGainedService(int nodeid, InetAddress ip, String svcName) {
+    public void nodeGainedService(int nodeid, InetAddress ip, String svcName) {
         //
         // check the 'status' flag for the service
         //
@@ -414,18 +453,27 @@ public class DataManager implements AvailabilityService, InitializingBean {
      * @param t
      *            the time at which service was lost
      */
-    public synchronized void outageCreated(int nodeid, InetAddress ip, String svcName, long t) {
-        RTCNodeKey key = new RTCNodeKey(nodeid, ip, svcName);
-        RTCNode rtcN = m_map.getRTCNode(key);
-        if (rtcN == null) {
-            // oops! got a lost/regained service for a node that is not known?
-            LOG.info("Received a outageCreated event for an unknown/irrelevant node: {}", key.toString());
-            return;
-        }
-
-        // inform node
-        rtcN.nodeLostService(t);
+    public void outageCreated(int nodeid, InetAddress ip, String svcName, long t) {
+        final Lock lock = m_nodeLocks.get(nodeid).writeLock();
+        lock.lock();
+        try {
+            RTCNodeKey key = new RTCNodeKey(nodeid, ip, svcName);
+            RTCNode rtcN = m_map.getRTCNode(key);
+            if (rtcN == null) {
+                // oops! got a lost/regained service for a node that is not known?
+                LOG.info("Received a outageCreated event for an unknown/irrelevant node: {}", key.toString());
+                return;
+            }
 
+            // inform node
+            if (rtcN.nodeLostService(t)) {
+                for (String catLabel : rtcN.getCategories()) {
+                    m_availability.get(catLabel).addOutage(t, -1);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
     }
 
     /**
@@ -441,17 +489,28 @@ public class DataManager implements AvailabilityService, InitializingBean {
      * @param t
      *            the time at which service was regained
      */
-    public synchronized void outageResolved(int nodeid, InetAddress ip, String svcName, long t) {
-        RTCNodeKey key = new RTCNodeKey(nodeid, ip, svcName);
-        RTCNode rtcN = m_map.getRTCNode(key);
-        if (rtcN == null) {
-            // oops! got a lost/regained service for a node that is not known?
-            LOG.info("Received a outageResolved event for an unknown/irrelevant node: {}", key.toString());
-            return;
-        }
+    public void outageResolved(int nodeid, InetAddress ip, String svcName, long t) {
+        final Lock lock = m_nodeLocks.get(nodeid).writeLock();
+        lock.lock();
+        try {
+            RTCNodeKey key = new RTCNodeKey(nodeid, ip, svcName);
+            RTCNode rtcN = m_map.getRTCNode(key);
+            if (rtcN == null) {
+                // oops! got a lost/regained service for a node that is not known?
+                LOG.info("Received a outageResolved event for an unknown/irrelevant node: {}", key.toString());
+                return;
+            }
 
-        // inform node
-        rtcN.nodeRegainedService(t);
+            // inform node
+            final long lostTime = rtcN.nodeRegainedService(t);
+            if (lostTime != -1) {
+                for (String catLabel : rtcN.getCategories()) {
+                    m_availability.get(catLabel).resolveOutage(lostTime, t);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
     }
 
     /**
@@ -464,50 +523,53 @@ public class DataManager implements AvailabilityService, InitializingBean {
      * @param svcName
      *            the service that was deleted
      */
-    public synchronized void serviceDeleted(int nodeid, InetAddress ip, String svcName) {
-        // create lookup key
-        RTCNodeKey key = new RTCNodeKey(nodeid, ip, svcName);
+    public void serviceDeleted(int nodeid, InetAddress ip, String svcName) {
+        final Lock lock = m_nodeLocks.get(nodeid).writeLock();
+        lock.lock();
+        try {
+            // create lookup key
+            RTCNodeKey key = new RTCNodeKey(nodeid, ip, svcName);
 
-        // lookup the node
-        RTCNode rtcN = m_map.getRTCNode(key);
-        if (rtcN == null) {
-            LOG.warn("Received a {} event for an unknown node: {}", EventConstants.SERVICE_DELETED_EVENT_UEI, key.toString());
+            // lookup the node
+            RTCNode rtcN = m_map.getRTCNode(key);
+            if (rtcN == null) {
+                LOG.warn("Received a {} event for an unknown node: {}", EventConstants.SERVICE_DELETED_EVENT_UEI, key.toString());
 
-            return;
-        }
+                return;
+            }
 
-        //
-        // Go through from all the categories this node belongs to
-        // and delete the service
-        //
-        List<String> categories = rtcN.getCategories();
-        ListIterator<String> catIter = categories.listIterator();
-        while (catIter.hasNext()) {
-            String catlabel = (String) catIter.next();
-
-            RTCCategory cat = (RTCCategory) m_categories.get(catlabel);
-
-            // get nodes in this category
-            List<Integer> catNodes = cat.getNodes();
-
-            // check if the category contains this node
-            int nIndex = catNodes.indexOf(rtcN.getNodeID());
-            if (nIndex != -1) {
-                // remove from the category if it is the only service left.
-                if (m_map.getServiceCount(nodeid, catlabel) == 1) {
-                    catNodes.remove(nIndex);
-                    LOG.info("Removing node from category: {}", catlabel);
+            //
+            // Go through from all the categories this node belongs to
+            // and delete the service
+            //
+            List<RTCNodeSvcTime> svcTimes = rtcN.getSvcTimes();
+            List<String> categories = rtcN.getCategories();
+            ListIterator<String> catIter = categories.listIterator();
+            while (catIter.hasNext()) {
+                String catlabel = (String) catIter.next();
+
+                RTCCategory cat = (RTCCategory) m_categories.get(catlabel);
+
+                // check if the category contains this node
+                if (cat.getNodes().contains(rtcN.getNodeID())) {
+                    // remove from the category if it is the only service left.
+                    if (m_map.getServiceCount(nodeid, catlabel) == 1) {
+                        cat.deleteNode(nodeid);
+                        LOG.info("Removing node from category: {}", catlabel);
+                    }
+
+                    // let the node know that this category is out
+                    catIter.remove();
+                    m_availability.get(catlabel).removeService(svcTimes);
                 }
-
-                // let the node know that this category is out
-                catIter.remove();
             }
-        }
 
-        // finally remove from map
-        
-        m_map.delete(rtcN);
+            // finally remove from map
 
+            m_map.delete(rtcN);
+        } finally {
+            lock.unlock();
+        }
     }
     
     /**
@@ -515,7 +577,7 @@ public class DataManager implements AvailabilityService, InitializingBean {
      *
      * @param nodeid a long.
      */
-    public synchronized void assetInfoChanged(int nodeid) {
+    public void assetInfoChanged(int nodeid) {
         try {
         	rtcNodeRescan(nodeid);
         } catch (FilterParseException ex) {
@@ -537,7 +599,7 @@ public class DataManager implements AvailabilityService, InitializingBean {
      *
      * @param nodeid a long.
      */
-    public synchronized void nodeCategoryMembershipChanged(int nodeid) {
+    public void nodeCategoryMembershipChanged(int nodeid) {
         try {
         	rtcNodeRescan(nodeid);
         } catch (FilterParseException ex) {
@@ -567,16 +629,27 @@ public class DataManager implements AvailabilityService, InitializingBean {
      *             if the database read or filtering the data against the
      *             category rule fails for some reason
      */
-    public synchronized void rtcNodeRescan(int nodeid) throws SQLException, FilterParseException, RTCException {
-    	
-    	for (RTCCategory cat : m_categories.values()) {
-			cat.deleteNode(nodeid);
-		}
-    	
-    	m_map.deleteNode(nodeid);
-    	
-    	populateNodesFromDB("ifsvc.nodeid = ?", new Object[] { Long.valueOf(nodeid) });
-    	
+    public void rtcNodeRescan(int nodeid) throws SQLException, FilterParseException, RTCException {
+        final Lock lock = m_nodeLocks.get(nodeid).writeLock();
+        lock.lock();
+        try {
+            for (RTCCategory cat : m_categories.values()) {
+                cat.deleteNode(nodeid);
+            }
+
+            for (RTCNode rtcN : m_map.getRTCNodes(nodeid)) {
+                final List<RTCNodeSvcTime> svcTimes = rtcN.getSvcTimes();
+                for (String catLabel : rtcN.getCategories()) {
+                    m_availability.get(catLabel).removeService(svcTimes);
+                }
+            }
+
+            m_map.deleteNode(nodeid);
+
+            populateNodesFromDB("ifsvc.nodeid = ?", new Object[] { Long.valueOf(nodeid) });
+        } finally {
+            lock.unlock();
+        }
     }
 
     /**
@@ -599,27 +672,40 @@ public class DataManager implements AvailabilityService, InitializingBean {
      * @param newNodeId
      *            the node that the IP now belongs to
      */
-    public synchronized void interfaceReparented(InetAddress ip, int oldNodeId, int newNodeId) {
-        // get all RTCNodes with the IP/old node ID
-        for (RTCNode rtcN : m_map.getRTCNodes(oldNodeId, ip)) {
+    public void interfaceReparented(InetAddress ip, int oldNodeId, int newNodeId) {
+        // lock both nodes, in the order given by the stripes to avoid deadlocks
+        final List<Lock> locks = new ArrayList<>(2);
+        for (ReadWriteLock rwLock : m_nodeLocks.bulkGet(Arrays.asList(oldNodeId, newNodeId))) {
+            final Lock lock = rwLock.writeLock();
+            lock.lock();
+            locks.add(lock);
+        }
+        try {
+            // get all RTCNodes with the IP/old node ID, copied since we modify the map as we go
+            for (RTCNode rtcN : new ArrayList<>(m_map.getRTCNodes(oldNodeId, ip))) {
 
-            // remove the node with the old node id from the map
-            m_map.delete(rtcN);
+                // remove the node with the old node id from the map
+                m_map.delete(rtcN);
 
-            // change the node ID on the RTCNode
-            rtcN.setNodeID(newNodeId);
+                // change the node ID on the RTCNode
+                rtcN.setNodeID(newNodeId);
 
-            // now add the node with the new node ID
-            m_map.add(rtcN);
+                // now add the node with the new node ID
+                m_map.add(rtcN);
 
-            // remove old node ID from the categories it belonged to
-            // and the new node ID
-            for (String catlabel : rtcN.getCategories()) {
-                RTCCategory rtcCat = m_categories.get(catlabel);
-                rtcCat.deleteNode(oldNodeId);
-                rtcCat.addNode(newNodeId);
-            }
+                // remove old node ID from the categories it belonged to
+                // and the new node ID
+                for (String catlabel : rtcN.getCategories()) {
+                    RTCCategory rtcCat = m_categories.get(catlabel);
+                    rtcCat.deleteNode(oldNodeId);
+                    rtcCat.addNode(newNodeId);
+                }
 
+            }
+        } finally {
+            for (Lock lock : locks) {
+                lock.unlock();
+            }
         }
     }
 
@@ -636,8 +722,42 @@ public class DataManager implements AvailabilityService, InitializingBean {
      * @return the value(uptime) for the category in the last 'rollingWindow'
      *         starting at current time
      */
-    public synchronized double getValue(RTCCategory category, long curTime, long rollingWindow) {
-        return m_map.getValue(category.getLabel(), curTime, rollingWindow);
+    public double getValue(RTCCategory category, long curTime, long rollingWindow) {
+        final RTCCategoryAvailability availability = m_availability.get(category.getLabel());
+        if (availability != null && availability.getRollingWindow() == rollingWindow) {
+            final double value = availability.getValue(curTime);
+            if (!Double.isNaN(value)) {
+                return value;
+            }
+        }
+        LOG.debug("Computing the value for category {} from all nodes.", category.getLabel());
+        return computeValue(category.getLabel(), curTime, rollingWindow);
+    }
+
+    /**
+     * Compute the value (uptime) for the category from the outages of
+     * every service in the category.
+     */
+    private double computeValue(String catLabel, long curTime, long rollingWindow) {
+        double outageTime = 0.0;
+        int count = 0;
+        for (Integer nodeid : m_map.getNodeIDs()) {
+            final Lock lock = m_nodeLocks.get(nodeid).readLock();
+            lock.lock();
+            try {
+                for (RTCNode rtcN : m_map.getRTCNodes(nodeid)) {
+                    try {
+                        outageTime += rtcN.getDownTime(catLabel, curTime, rollingWindow);
+                        count++;
+                    } catch (NodeNotInCategoryException e) {
+                        continue;
+                    }
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+        return RTCUtils.getOutagePercentage(outageTime, rollingWindow, count);
     }
 
     /**
@@ -655,8 +775,14 @@ public class DataManager implements AvailabilityService, InitializingBean {
      * @return the value(uptime) for the node in the last 'rollingWindow'
      *         starting at current time in the context of the passed category
      */
-    public synchronized double getValue(int nodeid, RTCCategory category, long curTime, long rollingWindow) {
-        return m_map.getValue(nodeid, category.getLabel(), curTime, rollingWindow);
+    public double getValue(int nodeid, RTCCategory category, long curTime, long rollingWindow) {
+        final Lock lock = m_nodeLocks.get(nodeid).readLock();
+        lock.lock();
+        try {
+            return m_map.getValue(nodeid, category.getLabel(), curTime, rollingWindow);
+        } finally {
+            lock.unlock();
+        }
     }
 
     /**
@@ -670,8 +796,14 @@ public class DataManager implements AvailabilityService, InitializingBean {
      * @return the service count for the nodeid in the context of the passed
      *         category
      */
-    public synchronized int getServiceCount(int nodeid, RTCCategory category) {
-        return m_map.getServiceCount(nodeid, category.getLabel());
+    public int getServiceCount(int nodeid, RTCCategory category) {
+        final Lock lock = m_nodeLocks.get(nodeid).readLock();
+        lock.lock();
+        try {
+            return m_map.getServiceCount(nodeid, category.getLabel());
+        } finally {
+            lock.unlock();
+        }
     }
 
     /**
@@ -685,8 +817,14 @@ public class DataManager implements AvailabilityService, InitializingBean {
      * @return the service down count for the nodeid in the context of the
      *         passed category
      */
-    public synchronized int getServiceDownCount(int nodeid, RTCCategory category) {
-        return m_map.getServiceDownCount(nodeid, category.getLabel());
+    public int getServiceDownCount(int nodeid, RTCCategory category) {
+        final Lock lock = m_nodeLocks.get(nodeid).readLock();
+        lock.lock();
+        try {
+            return m_map.getServiceDownCount(nodeid, category.getLabel());
+        } finally {
+            lock.unlock();
+        }
     }
 
     /**
@@ -695,12 +833,13 @@ public class DataManager implements AvailabilityService, InitializingBean {
      * @return the categories
      */
     @Override
-    public synchronized Map<String, RTCCategory> getCategories() {
+    public Map<String, RTCCategory> getCategories() {
         return m_categories;
     }
 
     public Collection<Integer> getNodes(RTCCategory category) {
-        return category.getNodes();
+        // copy, since the list may be modified while the caller iterates over it
+        return new ArrayList<>(category.getNodes());
     }
 
     @Override
@@ -0,0 +1,319 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2022 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2022 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+
+package org.opennms.netmgt.rtc.datablock;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.opennms.netmgt.rtc.RTCUtils;
+
+/**
+ * Maintains the availability of a category incrementally.
+ *
+ * Rather than walking every service in the category when the value is
+ * requested, the outages of the services in the category are folded into a
+ * handful of running sums as they are created, resolved or removed. The sums
+ * are split by how each outage overlaps the rolling window:
+ *
+ * <ul>
+ * <li>open outages that started within the window contribute
+ * <code>curTime - lostTime</code></li>
+ * <li>open outages that started before the window contribute the whole
+ * window</li>
+ * <li>closed outages that started within the window contribute
+ * <code>regainedTime - lostTime</code></li>
+ * <li>closed outages that started before the window contribute
+ * <code>regainedTime - windowStart</code></li>
+ * </ul>
+ *
+ * Outages are moved between these groups, or dropped once they expire, as the
+ * window slides forward. This only needs to look at the outages crossing the
+ * start of the window.
+ *
+ * The incremental value is only valid for the configured rolling window and
+ * for a current time that does not go backwards or precede any of the known
+ * outages; {@link #getValue(long)} returns {@link Double#NaN} otherwise, and
+ * the caller is expected to fall back to a full computation.
+ */
+public class RTCCategoryAvailability {
+
+    private final long m_rollingWindow;
+
+    /**
+     * Number of services in the category
+     */
+    private int m_serviceCount = 0;
+
+    /**
+     * Start of the window as of the last slide
+     */
+    private long m_windowStart = Long.MIN_VALUE;
+
+    /**
+     * Most recent time seen, either as a query or as an outage boundary
+     */
+    private long m_latestTime = Long.MIN_VALUE;
+
+    /**
+     * Open outages that started within the window: lost time -> count
+     */
+    private final TreeMap<Long, Integer> m_openInWindow = new TreeMap<>();
+    private int m_openInWindowCount = 0;
+    private long m_openInWindowLostSum = 0;
+
+    /**
+     * Open outages that started before the window
+     */
+    private int m_openSpanningCount = 0;
+
+    /**
+     * Closed outages that started within the window: lost time -> regained times
+     */
+    private final TreeMap<Long, List<Long>> m_closedInWindow = new TreeMap<>();
+    private long m_closedInWindowSum = 0;
+
+    /**
+     * Closed outages that started before the window: regained time -> count
+     */
+    private final TreeMap<Long, Integer> m_closedSpanning = new TreeMap<>();
+    private int m_closedSpanningCount = 0;
+    private long m_closedSpanningRegainedSum = 0;
+
+    /**
+     * Constructor.
+     *
+     * @param rollingWindow
+     *            the window, in milliseconds, over which availability is
+     *            computed
+     */
+    public RTCCategoryAvailability(long rollingWindow) {
+        m_rollingWindow = rollingWindow;
+    }
+
+    /**
+     * Account for a service that was added to the category.
+     *
+     * @param svcTimes
+     *            the outages currently known for the service
+     */
+    public synchronized void addService(Collection<RTCNodeSvcTime> svcTimes) {
+        m_serviceCount++;
+        for (RTCNodeSvcTime svcTime : svcTimes) {
+            addOutage(svcTime.getLostTime(), svcTime.getRegainedTime());
+        }
+    }
+
+    /**
+     * Account for a service that was removed from the category.
+     *
+     * @param svcTimes
+     *            the outages currently known for the service
+     */
+    public synchronized void removeService(Collection<RTCNodeSvcTime> svcTimes) {
+        m_serviceCount--;
+        for (RTCNodeSvcTime svcTime : svcTimes) {
+            removeOutage(svcTime.getLostTime(), svcTime.getRegainedTime());
+        }
+    }
+
+    /**
+     * Account for an outage of a service in the category.
+     *
+     * @param lostTime
+     *            the time at which service was lost
+     * @param regainedTime
+     *            the time at which service was regained, or -1 if the outage
+     *            is still open
+     */
+    public synchronized void addOutage(long lostTime, long regainedTime) {
+        m_latestTime = Math.max(m_latestTime, Math.max(lostTime, regainedTime));
+        if (regainedTime < 0) {
+            if (lostTime < m_windowStart) {
+                m_openSpanningCount++;
+            } else {
+                increment(m_openInWindow, lostTime, 1);
+                m_openInWindowCount++;
+                m_openInWindowLostSum += lostTime;
+            }
+        } else if (regainedTime < m_windowStart) {
+            // already expired
+        } else if (lostTime < m_windowStart) {
+            addClosedSpanning(regainedTime);
+        } else {
+            m_closedInWindow.computeIfAbsent(lostTime, k -> new ArrayList<>(1)).add(regainedTime);
+            m_closedInWindowSum += regainedTime - lostTime;
+        }
+    }
+
+    /**
+     * Account for an open outage of a service in the category being resolved.
+     *
+     * @param lostTime
+     *            the time at which service was lost
+     * @param regainedTime
+     *            the time at which service was regained
+     */
+    public synchronized void resolveOutage(long lostTime, long regainedTime) {
+        removeOutage(lostTime, -1);
+        addOutage(lostTime, regainedTime);
+    }
+
+    private void removeOutage(long lostTime, long regainedTime) {
+        if (regainedTime < 0) {
+            if (lostTime < m_windowStart) {
+                m_openSpanningCount--;
+            } else if (increment(m_openInWindow, lostTime, -1)) {
+                m_openInWindowCount--;
+                m_openInWindowLostSum -= lostTime;
+            }
+        } else if (regainedTime < m_windowStart) {
+            // already expired
+        } else if (lostTime < m_windowStart) {
+            if (increment(m_closedSpanning, regainedTime, -1)) {
+                m_closedSpanningCount--;
+                m_closedSpanningRegainedSum -= regainedTime;
+            }
+        } else {
+            final List<Long> regainedTimes = m_closedInWindow.get(lostTime);
+            if (regainedTimes != null && regainedTimes.remove(Long.valueOf(regainedTime))) {
+                m_closedInWindowSum -= regainedTime - lostTime;
+                if (regainedTimes.isEmpty()) {
+                    m_closedInWindow.remove(lostTime);
+                }
+            }
+        }
+    }
+
+    /**
+     * Get the value (uptime) for the category in the rolling window ending at
+     * the given time.
+     *
+     * @param curTime
+     *            the current time
+     * @return the value (uptime) for the category, or {@link Double#NaN} if
+     *         it cannot be derived incrementally for the given time
+     */
+    public synchronized double getValue(long curTime) {
+        if (curTime < m_latestTime) {
+            return Double.NaN;
+        }
+        m_latestTime = curTime;
+        slideWindow(curTime - m_rollingWindow);
+
+        final double outageTime = (double) m_openInWindowCount * curTime - m_openInWindowLostSum
+                + (double) m_openSpanningCount * m_rollingWindow
+                + m_closedInWindowSum
+                + m_closedSpanningRegainedSum - (double) m_closedSpanningCount * m_windowStart;
+
+        return RTCUtils.getOutagePercentage(outageTime, m_rollingWindow, m_serviceCount);
+    }
+
+    /**
+     * Return the window this availability is computed over.
+     *
+     * @return the rolling window in milliseconds
+     */
+    public long getRollingWindow() {
+        return m_rollingWindow;
+    }
+
+    /**
+     * Return the number of services in the category.
+     *
+     * @return the number of services in the category
+     */
+    public synchronized int getServiceCount() {
+        return m_serviceCount;
+    }
+
+    private void slideWindow(long windowStart) {
+        if (windowStart <= m_windowStart) {
+            return;
+        }
+        m_windowStart = windowStart;
+
+        // Open outages that are now older than the window count for the whole window
+        final Map<Long, Integer> openExpired = m_openInWindow.headMap(windowStart, false);
+        for (Map.Entry<Long, Integer> entry : openExpired.entrySet()) {
+            m_openInWindowCount -= entry.getValue();
+            m_openInWindowLostSum -= entry.getKey() * entry.getValue();
+            m_openSpanningCount += entry.getValue();
+        }
+        openExpired.clear();
+
+        // Closed outages that started before the window are now either spanning or expired
+        final Map<Long, List<Long>> closedExpired = m_closedInWindow.headMap(windowStart, false);
+        for (Map.Entry<Long, List<Long>> entry : closedExpired.entrySet()) {
+            for (Long regainedTime : entry.getValue()) {
+                m_closedInWindowSum -= regainedTime - entry.getKey();
+                if (regainedTime >= windowStart) {
+                    addClosedSpanning(regainedTime);
+                }
+            }
+        }
+        closedExpired.clear();
+
+        // Spanning outages that were regained before the window have expired
+        for (Iterator<Map.Entry<Long, Integer>> it = m_closedSpanning.headMap(windowStart, false).entrySet().iterator(); it.hasNext();) {
+            final Map.Entry<Long, Integer> entry = it.next();
+            m_closedSpanningCount -= entry.getValue();
+            m_closedSpanningRegainedSum -= entry.getKey() * entry.getValue();
+            it.remove();
+        }
+    }
+
+    private void addClosedSpanning(long regainedTime) {
+        increment(m_closedSpanning, regainedTime, 1);
+        m_closedSpanningCount++;
+        m_closedSpanningRegainedSum += regainedTime;
+    }
+
+    private static boolean increment(TreeMap<Long, Integer> counts, long key, int delta) {
+        final Integer count = counts.get(key);
+        if (count == null) {
+            if (delta < 0) {
+                return false;
+            }
+            counts.put(key, delta);
+            return true;
+        }
+        final int newCount = count + delta;
+        if (newCount <= 0) {
+            counts.remove(key);
+        } else {
+            counts.put(key, newCount);
+        }
+        return true;
+    }
+}
@@ -31,11 +31,11 @@ package org.opennms.netmgt.rtc.datablock;
 import java.net.InetAddress;
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashMap;
-import java.util.Iterator;
-import java.util.LinkedList;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.opennms.netmgt.rtc.NodeNotInCategoryException;
 import org.opennms.netmgt.rtc.RTCUtils;
@@ -60,16 +60,21 @@ public class RTCHashMap {
      * @param initialCapacity a int.
      */
     public RTCHashMap(int initialCapacity) {
-        m_map = new HashMap<RTCNodeKey,List<RTCNode>>(initialCapacity);
+        m_map = new ConcurrentHashMap<RTCNodeKey,List<RTCNode>>(initialCapacity);
     }
 
-    private List<Integer> getNodeIDs() {
-    	List<Integer> nodes = new LinkedList<>();
-    	for (Iterator<RTCNodeKey> it = m_map.keySet().iterator(); it.hasNext();) {
-			RTCNodeKey key = it.next();
-			nodes.add(key.getNodeID());
-		}
-    	return nodes;
+    /**
+     * Return the IDs of the nodes in the map. Each node is only returned once
+     * even though it is present under several keys.
+     *
+     * @return the node IDs
+     */
+    public Set<Integer> getNodeIDs() {
+        final Set<Integer> nodes = new LinkedHashSet<>();
+        for (RTCNodeKey key : m_map.keySet()) {
+            nodes.add(key.getNodeID());
+        }
+        return nodes;
     }
     
     /**
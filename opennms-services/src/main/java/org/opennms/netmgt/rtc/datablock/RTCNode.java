@@ -127,9 +127,23 @@ public class RTCNode {
      *            time at which service was lost
      * @param regainedtime
      *            time at which service was regained
+     * @return false if the entry was rejected
      */
-    public void addSvcTime(long losttime, long regainedtime) {
-        m_svcTimesList.addSvcTime(losttime, regainedtime);
+    public synchronized boolean addSvcTime(long losttime, long regainedtime) {
+        return m_svcTimesList.addSvcTime(losttime, regainedtime);
+    }
+
+    /**
+     * Return a copy of the lost/regained service times for this node.
+     *
+     * @return the service times
+     */
+    public synchronized List<RTCNodeSvcTime> getSvcTimes() {
+        final List<RTCNodeSvcTime> svcTimes = new ArrayList<>(m_svcTimesList.size());
+        for (RTCNodeSvcTime svcTime : m_svcTimesList) {
+            svcTimes.add(new RTCNodeSvcTime(svcTime.getLostTime(), svcTime.getRegainedTime()));
+        }
+        return svcTimes;
     }
 
     /**
@@ -165,8 +179,9 @@ public class RTCNode {
      *
      * @param t
      *            the time at which service was lost
+     * @return true if a new outage was opened
      */
-    public synchronized void nodeLostService(long t) {
+    public synchronized boolean nodeLostService(long t) {
         // check if the last element in the times list is 'open'
         // i.e. is waiting for a regained service - if yes,
         // don't add anything
@@ -178,13 +193,14 @@ public class RTCNode {
             if (stime.getRegainedTime() == -1) {
                 // last event was a 'lostService'
                 // ignore this event
-                return;
+                return false;
             }
         }
 
         // create a new entry
         RTCNodeSvcTime newStime = new RTCNodeSvcTime(t);
         m_svcTimesList.add(newStime);
+        return true;
     }
 
     /**
@@ -194,8 +210,10 @@ public class RTCNode {
      *
      * @param t
      *            the time at which node regained service
+     * @return the time at which the resolved outage started, or -1 if there
+     *         was no open outage
      */
-    public synchronized void nodeRegainedService(long t) {
+    public synchronized long nodeRegainedService(long t) {
         int listsize = m_svcTimesList.size();
         if (listsize > 0) {
             RTCNodeSvcTime stime = (RTCNodeSvcTime) m_svcTimesList.get(listsize - 1);
@@ -203,11 +221,13 @@ public class RTCNode {
             if (stime.getRegainedTime() != -1) {
                 // last event was a 'regainedService'
                 // ignore this event
-                return;
+                return -1;
             }
 
             stime.setRegainedTime(t);
+            return stime.getLostTime();
         }
+        return -1;
     }
 
     /**
@@ -275,7 +295,7 @@ public class RTCNode {
      * @return the total outage time for this node
      * @throws NodeNotInCategoryException 
      */
-    public long getDownTime(String cat, long curTime, long rollingWindow) throws NodeNotInCategoryException {
+    public synchronized long getDownTime(String cat, long curTime, long rollingWindow) throws NodeNotInCategoryException {
         // get the down time for this node in the context of the
         // category.
         // if the service is not in 'context', throw an exception
@@ -291,7 +311,7 @@ public class RTCNode {
      *
      * @return true if the service is currently down
      */
-    public boolean isServiceCurrentlyDown() {
+    public synchronized boolean isServiceCurrentlyDown() {
         int size = m_svcTimesList.size();
         if (size == 0) {
             return false;
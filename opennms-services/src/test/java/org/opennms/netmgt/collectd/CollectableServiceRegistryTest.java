@@ -0,0 +1,99 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2022 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2022 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.collectd;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.net.InetAddress;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.easymock.EasyMock;
+import org.junit.Test;
+import org.opennms.core.utils.InetAddressUtils;
+
+public class CollectableServiceRegistryTest {
+
+    private final CollectableServiceRegistry registry = new CollectableServiceRegistry();
+
+    @Test
+    public void canLookupServicesByIndex() {
+        CollectableService svc1 = mockService(1, InetAddressUtils.ONE_TWENTY_SEVEN, "SNMP");
+        CollectableService svc2 = mockService(1, InetAddressUtils.ONE_TWENTY_SEVEN, "JMX");
+        CollectableService svc3 = mockService(2, InetAddressUtils.ONE_TWENTY_SEVEN, "SNMP");
+        CollectableService svc4 = mockService(2, InetAddressUtils.UNPINGABLE_ADDRESS, "SNMP");
+
+        assertTrue(registry.add(svc1));
+        assertTrue(registry.add(svc2));
+        assertTrue(registry.add(svc3));
+        assertTrue(registry.add(svc4));
+        assertFalse(registry.add(svc1));
+        assertEquals(4, registry.size());
+
+        assertEquals(2, registry.getByNodeId(1).size());
+        assertTrue(registry.getByNodeId(1).containsAll(Arrays.asList(svc1, svc2)));
+        assertEquals(Collections.singletonList(svc4), registry.getByNodeIdAndAddress(2, InetAddressUtils.str(InetAddressUtils.UNPINGABLE_ADDRESS)));
+        assertEquals(3, registry.getByAddress("127.0.0.1").size());
+        assertEquals(0, registry.getByNodeId(3).size());
+
+        assertTrue(registry.remove(svc1));
+        assertFalse(registry.remove(svc1));
+        assertEquals(Collections.singletonList(svc2), registry.getByNodeIdAndAddress(1, "127.0.0.1"));
+        assertEquals(3, registry.size());
+    }
+
+    @Test
+    public void canReindexServices() {
+        CollectableService svc = mockService(1, InetAddressUtils.ONE_TWENTY_SEVEN, "SNMP");
+        registry.add(svc);
+
+        registry.reindex(svc, 5);
+
+        assertTrue(registry.getByNodeId(1).isEmpty());
+        assertEquals(Collections.singletonList(svc), registry.getByNodeId(5));
+        assertEquals(Collections.singletonList(svc), registry.getByNodeIdAndAddress(5, "127.0.0.1"));
+        assertEquals(Collections.singletonList(svc), registry.getByAddress("127.0.0.1"));
+
+        // The service is removed using the key it is currently indexed under
+        assertTrue(registry.remove(svc));
+        assertTrue(registry.getByNodeId(5).isEmpty());
+        assertTrue(registry.getByAddress("127.0.0.1").isEmpty());
+    }
+
+    private static CollectableService mockService(int nodeId, InetAddress address, String svcName) {
+        CollectableService svc = EasyMock.createMock(CollectableService.class);
+        EasyMock.expect(svc.getNodeId()).andReturn(nodeId).anyTimes();
+        EasyMock.expect(svc.getAddress()).andReturn(address).anyTimes();
+        EasyMock.expect(svc.getServiceName()).andReturn(svcName).anyTimes();
+        EasyMock.replay(svc);
+        return svc;
+    }
+}
@@ -0,0 +1,141 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2022 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2022 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+
+package org.opennms.netmgt.rtc.datablock;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+import org.opennms.netmgt.rtc.RTCUtils;
+
+public class RTCCategoryAvailabilityTest {
+
+    private static final long WINDOW = 24L * 60L * 60L * 1000L;
+
+    @Test
+    public void isFullyAvailableWithoutOutages() {
+        final RTCCategoryAvailability availability = new RTCCategoryAvailability(WINDOW);
+        assertEquals(100.0, availability.getValue(System.currentTimeMillis()), 0.0001);
+
+        availability.addService(Collections.emptyList());
+        availability.addService(Collections.emptyList());
+        assertEquals(100.0, availability.getValue(System.currentTimeMillis()), 0.0001);
+        assertEquals(2, availability.getServiceCount());
+    }
+
+    @Test
+    public void tracksOutagesAsTheWindowSlides() {
+        final long now = 10 * WINDOW;
+        final long hour = 60L * 60L * 1000L;
+        final RTCCategoryAvailability availability = new RTCCategoryAvailability(WINDOW);
+        for (int i = 0; i < 6; i++) {
+            availability.addService(Collections.emptyList());
+        }
+
+        // Closed outage of 30 minutes, one hour ago
+        availability.addOutage(now - hour, now - hour / 2);
+        assertEquals(RTCUtils.getOutagePercentage(hour / 2, WINDOW, 6), availability.getValue(now), 0.0001);
+
+        // Open outage started one hour ago
+        availability.addOutage(now - hour, -1);
+        assertEquals(RTCUtils.getOutagePercentage(hour / 2 + hour, WINDOW, 6), availability.getValue(now), 0.0001);
+
+        // Half an hour after the first outage starts to leave the window, 15 minutes of it remain
+        final long later = now + WINDOW - hour / 4 * 3;
+        assertEquals(RTCUtils.getOutagePercentage(hour / 4 + WINDOW, WINDOW, 6), availability.getValue(later), 0.0001);
+
+        // Once resolved, the open outage only counts from the start of the window
+        availability.resolveOutage(now - hour, later);
+        assertEquals(RTCUtils.getOutagePercentage(hour / 4 + WINDOW, WINDOW, 6), availability.getValue(later), 0.0001);
+
+        // Both outages have expired a window later
+        assertEquals(100.0, availability.getValue(later + WINDOW), 0.0001);
+    }
+
+    @Test
+    public void cannotGoBackInTime() {
+        final RTCCategoryAvailability availability = new RTCCategoryAvailability(WINDOW);
+        availability.addService(Collections.emptyList());
+        availability.addOutage(1000, 2000);
+        assertTrue(Double.isNaN(availability.getValue(1500)));
+        assertEquals(100.0, availability.getValue(2000 + WINDOW), 0.0001);
+        assertTrue(Double.isNaN(availability.getValue(2000)));
+    }
+
+    @Test
+    public void matchesFullComputation() {
+        final Random random = new Random(42);
+        final RTCCategoryAvailability availability = new RTCCategoryAvailability(WINDOW);
+        final List<List<RTCNodeSvcTime>> services = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            services.add(new ArrayList<>());
+            availability.addService(Collections.emptyList());
+        }
+
+        long now = 5 * WINDOW;
+        for (int step = 0; step < 2000; step++) {
+            now += random.nextInt(10 * 60 * 1000);
+            final List<RTCNodeSvcTime> svcTimes = services.get(random.nextInt(services.size()));
+            final RTCNodeSvcTime last = svcTimes.isEmpty() ? null : svcTimes.get(svcTimes.size() - 1);
+            if (last != null && last.getRegainedTime() == -1) {
+                last.setRegainedTime(now);
+                availability.resolveOutage(last.getLostTime(), now);
+            } else {
+                svcTimes.add(new RTCNodeSvcTime(now));
+                availability.addOutage(now, -1);
+            }
+
+            if (step % 25 == 0) {
+                // Occasionally remove a service and replace it with a fresh one
+                final int index = random.nextInt(services.size());
+                availability.removeService(services.get(index));
+                services.set(index, new ArrayList<>());
+                availability.addService(Collections.emptyList());
+            }
+
+            final long curTime = now + random.nextInt(60 * 1000);
+            double outageTime = 0;
+            for (List<RTCNodeSvcTime> service : services) {
+                for (RTCNodeSvcTime svcTime : service) {
+                    if (!svcTime.hasExpired(curTime - WINDOW)) {
+                        outageTime += svcTime.getDownTime(curTime, WINDOW);
+                    }
+                }
+            }
+            assertEquals(RTCUtils.getOutagePercentage(outageTime, WINDOW, services.size()), availability.getValue(curTime), 0.0001);
+            now = curTime;
+        }
+    }
+}
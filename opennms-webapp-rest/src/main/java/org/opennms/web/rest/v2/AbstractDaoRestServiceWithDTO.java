@@ -30,6 +30,7 @@ package org.opennms.web.rest.v2;
 
 import java.io.Serializable;
 import java.net.InetAddress;
+import java.net.URI;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Collection;
@@ -66,14 +67,18 @@ import org.apache.cxf.jaxrs.ext.search.SearchCondition;
 import org.apache.cxf.jaxrs.ext.search.SearchConditionVisitor;
 import org.apache.cxf.jaxrs.ext.search.SearchContext;
 import org.apache.cxf.jaxrs.ext.search.SearchParseException;
+import org.hibernate.EntityMode;
 import org.hibernate.HibernateException;
 import org.hibernate.Query;
 import org.hibernate.Session;
 import org.hibernate.SessionFactory;
+import org.hibernate.metadata.ClassMetadata;
 import org.opennms.core.config.api.JaxbListWrapper;
 import org.opennms.core.criteria.Criteria;
 import org.opennms.core.criteria.CriteriaBuilder;
 import org.opennms.core.criteria.Order;
+import org.opennms.core.criteria.restrictions.Restriction;
+import org.opennms.core.criteria.restrictions.Restrictions;
 import org.opennms.core.utils.InetAddressUtils;
 import org.opennms.netmgt.dao.api.OnmsDao;
 import org.opennms.netmgt.events.api.EventProxy;
@@ -140,6 +145,19 @@ public abstract class AbstractDaoRestServiceWithDTO<T,D,Q,K extends Serializable
 
     protected static final int DEFAULT_LIMIT = 10;
 
+    /**
+     * Query parameter that switches a listing to keyset pagination: the page starts
+     * after the entity with the given identifier (or at the beginning if empty) and
+     * the next page is advertised in a {@code Link} header.
+     */
+    protected static final String AFTER_PARAM = "after";
+
+    /**
+     * Query parameter that controls whether the total count is calculated for a listing.
+     * Defaults to {@code true} for offset pagination and {@code false} for keyset pagination.
+     */
+    protected static final String TOTAL_COUNT_PARAM = "totalCount";
+
     protected abstract OnmsDao<T,K> getDao();
     protected abstract Class<T> getDaoClass();
     protected abstract Class<Q> getQueryBeanClass();
@@ -254,31 +272,107 @@ public abstract class AbstractDaoRestServiceWithDTO<T,D,Q,K extends Serializable
     @GET
     @Produces({MediaType.APPLICATION_JSON, MediaType.APPLICATION_XML, MediaType.APPLICATION_ATOM_XML})
     public Response get(@Context final UriInfo uriInfo, @Context final SearchContext searchContext) {
+        final MultivaluedMap<String, String> params = uriInfo.getQueryParameters();
         Criteria crit = getCriteria(uriInfo, searchContext);
+
+        // Keep the restrictions without the keyset condition around for the count
+        final List<Restriction> restrictions = new ArrayList<>(crit.getRestrictions());
+        final ClassMetadata keyset = params.containsKey(AFTER_PARAM) ? applyKeyset(crit, params) : null;
+        final boolean withTotalCount = params.containsKey(TOTAL_COUNT_PARAM) ? Boolean.parseBoolean(params.getFirst(TOTAL_COUNT_PARAM)) : keyset == null;
+
         final List<T> coll = getDao().findMatching(crit);
         if (coll == null || coll.size() < 1) {
             return Response.status(Status.NO_CONTENT).build();
         } else {
             Integer offset = crit.getOffset();
-
-            // Remove limit, offset and ordering when fetching count
-            crit.setLimit(null);
-            crit.setOffset(null);
-            crit.setOrders(new ArrayList<Order>());
-            int totalCount = getDao().countMatching(crit);
+            final Integer limit = crit.getLimit();
+            final boolean lastPage = limit == null || limit <= 0 || coll.size() < limit;
+
+            Integer totalCount = null;
+            if (withTotalCount) {
+                if (lastPage && keyset == null && !crit.isDistinct()) {
+                    // The total is known without asking the database again
+                    totalCount = (offset == null ? 0 : offset) + coll.size();
+                } else {
+                    // Remove limit, offset and ordering when fetching count
+                    crit.setRestrictions(restrictions);
+                    crit.setLimit(null);
+                    crit.setOffset(null);
+                    crit.setOrders(new ArrayList<Order>());
+                    totalCount = getDao().countMatching(crit);
+                }
+            }
 
             // Map the entities to the corresponding DTOs
             final List<D> collOfDtos = coll.stream()
                     .map(this::mapEntityToDTO)
                     .collect(Collectors.toList());
             final JaxbListWrapper<D> list = createListWrapper(collOfDtos);
-            list.setTotalCount(totalCount);
+            if (totalCount != null) {
+                list.setTotalCount(totalCount);
+            } else {
+                list.setTotalCountUnknown();
+            }
             list.setOffset(offset);
 
+            if (keyset != null) {
+                final Response.ResponseBuilder response = Response.ok(list);
+                if (!lastPage) {
+                    final Serializable lastKey = keyset.getIdentifier(coll.get(coll.size() - 1), EntityMode.POJO);
+                    final URI next = uriInfo.getRequestUriBuilder().replaceQueryParam(AFTER_PARAM, lastKey).build();
+                    response.header("Link", String.format("<%s>; rel=\"next\"", next));
+                }
+                return response.build();
+            }
+
             // Make sure that offset is set to a numeric value when setting the Content-Range header
             offset = (offset == null ? 0 : offset);
-            return Response.ok(list).header("Content-Range", String.format("items %d-%d/%d", offset, offset + coll.size() - 1, totalCount)).build();
+            return Response.ok(list).header("Content-Range", String.format("items %d-%d/%s", offset, offset + coll.size() - 1, totalCount == null ? "*" : totalCount)).build();
+        }
+    }
+
+    /**
+     * Replaces the offset and ordering of the given criteria with a seek on the identifier
+     * of the entity, so that deep pages cost the same as the first one.
+     *
+     * @return the metadata of the entity, used to extract the key of the last row
+     */
+    private ClassMetadata applyKeyset(final Criteria crit, final MultivaluedMap<String, String> params) {
+        final ClassMetadata meta = m_sessionFactory.getClassMetadata(getDaoClass());
+        if (meta == null || !meta.hasIdentifierProperty()) {
+            throw getException(Status.BAD_REQUEST, "Keyset pagination is not supported for {}.", getDaoClass().getSimpleName());
+        }
+        final String idProperty = meta.getIdentifierPropertyName();
+
+        final String orderBy = params.getFirst("orderBy");
+        if (orderBy != null && !orderBy.trim().equals(idProperty)) {
+            throw getException(Status.BAD_REQUEST, "Keyset pagination can only be ordered by {}.", idProperty);
+        }
+        final boolean desc = "desc".equalsIgnoreCase(Strings.nullToEmpty(params.getFirst("order")).trim());
+
+        final String after = Strings.nullToEmpty(params.getFirst(AFTER_PARAM)).trim();
+        if (!after.isEmpty()) {
+            final Object key = parseKey(meta.getIdentifierType().getReturnedClass(), after);
+            crit.addRestriction(desc ? Restrictions.lt(idProperty, key) : Restrictions.gt(idProperty, key));
+        }
+        crit.setOffset(null);
+        crit.setOrders(Collections.singletonList(new Order(idProperty, !desc)));
+        return meta;
+    }
+
+    private Object parseKey(final Class<?> keyClass, final String key) {
+        try {
+            if (Integer.class.equals(keyClass) || int.class.equals(keyClass)) {
+                return Integer.valueOf(key);
+            } else if (Long.class.equals(keyClass) || long.class.equals(keyClass)) {
+                return Long.valueOf(key);
+            } else if (String.class.equals(keyClass)) {
+                return key;
+            }
+        } catch (final NumberFormatException e) {
+            throw getException(Status.BAD_REQUEST, "Invalid value for parameter {}: {}", AFTER_PARAM, key);
         }
+        throw getException(Status.BAD_REQUEST, "Keyset pagination is not supported for {}.", getDaoClass().getSimpleName());
     }
 
     @GET
@@ -29,7 +29,11 @@
 package org.opennms.web.rest.v2;
 
 import java.util.Date;
+import java.util.Map;
 
+import javax.ws.rs.core.MediaType;
+
+import org.json.JSONArray;
 import org.json.JSONObject;
 import org.junit.Assert;
 import org.junit.Test;
@@ -48,6 +52,8 @@ import org.opennms.netmgt.model.OnmsServiceType;
 import org.opennms.netmgt.model.OnmsSeverity;
 import org.opennms.test.JUnitConfigurationEnvironment;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.web.WebAppConfiguration;
 import org.springframework.transaction.annotation.Transactional;
@@ -124,6 +130,68 @@ public class EventRestServiceIT extends AbstractSpringJerseyRestTestCase {
         Assert.assertEquals(1, object.getInt("totalCount"));
     }
 
+    @Test
+    @JUnitTemporaryDatabase
+    public void testTotalCountCanBeSkipped() throws Exception {
+        // With the count, the total is reported in the body and in the Content-Range header
+        MockHttpServletResponse response = getEvents(parseParamData("limit=2"), MediaType.APPLICATION_JSON);
+        Assert.assertEquals("items 0-1/6", response.getHeader("Content-Range"));
+        Assert.assertEquals(6, new JSONObject(response.getContentAsString()).getInt("totalCount"));
+
+        // Without it, the total is omitted rather than defaulting to the size of the page
+        response = getEvents(parseParamData("limit=2&totalCount=false"), MediaType.APPLICATION_JSON);
+        Assert.assertEquals("items 0-1/*", response.getHeader("Content-Range"));
+        final JSONObject object = new JSONObject(response.getContentAsString());
+        Assert.assertEquals(2, object.getInt("count"));
+        Assert.assertTrue(object.isNull("totalCount"));
+
+        response = getEvents(parseParamData("limit=2&totalCount=false"), MediaType.APPLICATION_XML);
+        Assert.assertEquals("items 0-1/*", response.getHeader("Content-Range"));
+        Assert.assertTrue(response.getContentAsString().contains("count=\"2\""));
+        Assert.assertFalse(response.getContentAsString().contains("totalCount="));
+    }
+
+    @Test
+    @JUnitTemporaryDatabase
+    public void testKeysetPagination() throws Exception {
+        String url = "/events";
+
+        // First page, the total count is skipped by default
+        JSONObject object = new JSONObject(sendRequest(GET, url, parseParamData("after=&limit=4"), 200));
+        JSONArray events = object.getJSONArray("event");
+        Assert.assertEquals(4, events.length());
+        Assert.assertTrue(object.isNull("totalCount"));
+        for (int i = 1; i < events.length(); i++) {
+            Assert.assertTrue(events.getJSONObject(i - 1).getInt("id") < events.getJSONObject(i).getInt("id"));
+        }
+
+        // Second page, starting after the last event of the first one
+        final int lastId = events.getJSONObject(3).getInt("id");
+        object = new JSONObject(sendRequest(GET, url, parseParamData("after=" + lastId + "&limit=4&totalCount=true"), 200));
+        events = object.getJSONArray("event");
+        Assert.assertEquals(2, events.length());
+        Assert.assertEquals(6, object.getInt("totalCount"));
+        Assert.assertTrue(events.getJSONObject(0).getInt("id") > lastId);
+
+        // Descending order walks backwards from the given key
+        object = new JSONObject(sendRequest(GET, url, parseParamData("after=" + lastId + "&order=desc&limit=10"), 200));
+        Assert.assertEquals(3, object.getJSONArray("event").length());
+
+        // Only the identifier can be used to order keyset pages
+        sendRequest(GET, url, parseParamData("after=&orderBy=eventTime"), 400);
+    }
+
+    private MockHttpServletResponse getEvents(final Map<String, String> parameters, final String accept) throws Exception {
+        final MockHttpServletRequest request = createRequest(servletContext, GET, "/events", getUser(), getUserRoles());
+        request.setParameters(parameters);
+        request.setQueryString(getQueryString(parameters));
+        request.addHeader(ACCEPT, accept);
+        final MockHttpServletResponse response = createResponse();
+        dispatch(request, response);
+        Assert.assertEquals(200, response.getStatus());
+        return response;
+    }
+
     @Test
     @JUnitTemporaryDatabase
     public void testAddEvent() throws Exception {